@@ -2,7 +2,6 @@ package ir4;
 
 import ir2.Preprocessor;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -34,6 +33,9 @@ public final class Document {
    */
   private Map<String, Integer> terms;
   private List<String> tokens;
+  /* Der zuletzt berechnete Vektor und der Index, für den er berechnet wurde: */
+  private InformationRetrieval vectorIndex;
+  private FloatVector vector;
 
   /**
    * @param title The document title
@@ -96,18 +98,28 @@ public final class Document {
     return map;
   }
 
+  /*
+   * Ein Index ändert sich nach seinem Aufbau nicht mehr, d.h. wir müssen den Vektor für einen Index
+   * nur einmal berechnen, statt bei jedem Vergleich (etwa beim Sortieren mit dem VectorRanker).
+   */
   private List<Float> computeVector(final InformationRetrieval index) {
+    if (vector != null && vectorIndex == index) {
+      return vector;
+    }
     Set<String> terms = index.getTerms();
     /* Ein Vektor für dieses Dokument ist... */
-    List<Float> vector = new ArrayList<Float>(terms.size());
+    float[] values = new float[terms.size()];
+    int i = 0;
     /* ...für jeden Term im Vokabular... */
     for (String t : terms) {
       /*
        * ...der numerische Wert des Terms (wir delegieren an die Berechnung der numerischen
        * Repräsentation oben):
        */
-      vector.add(NUMERICAL.value(t, this, index));
+      values[i++] = NUMERICAL.value(t, this, index);
     }
+    vector = new FloatVector(values);
+    vectorIndex = index;
     return vector;
   }
 
@@ -0,0 +1,62 @@
+package ir4;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/*
+ * Ein Vektor, der nach außen eine Liste ist (wie ihn VectorComparison erwartet), seine Werte aber
+ * als Array hält und seine Länge nur einmal berechnet, statt bei jedem Vergleich (vgl.
+ * FeatureVector im Text-Mining-Projekt).
+ */
+/**
+ * An immutable vector backed by a float array, with its euclidian length computed once.
+ * @author Fabian Steeg (fabian.steeg@uni-koeln.de)
+ */
+final class FloatVector extends AbstractList<Float> implements RandomAccess {
+
+  private final float[] values;
+  private final float length;
+
+  /**
+   * @param values The vector values (not copied, so they should not be changed afterwards)
+   */
+  FloatVector(final float[] values) {
+    this.values = values;
+    this.length = VectorKernels.norm(values);
+  }
+
+  /**
+   * @param vector The vector values
+   * @return The given vector if it is a float vector, else a float vector with its values
+   */
+  static FloatVector of(final List<Float> vector) {
+    return vector instanceof FloatVector ? (FloatVector) vector : new FloatVector(VectorKernels
+        .toArray(vector));
+  }
+
+  /**
+   * @return The vector values
+   */
+  float[] getValues() {
+    return values;
+  }
+
+  /**
+   * @return The euclidian length of this vector
+   */
+  float getLength() {
+    return length;
+  }
+
+  @Override
+  public Float get(final int index) {
+    return values[index];
+  }
+
+  @Override
+  public int size() {
+    return values.length;
+  }
+
+}
@@ -55,26 +55,15 @@ public interface VectorComparison {
       return cosineSimilarity;
     }
 
+    /*
+     * Statt die Listen bei jedem Vergleich in Arrays zu kopieren und ihre Längen zu berechnen,
+     * nehmen wir beides aus dem FloatVector, wo es nur einmal pro Vektor berechnet wird (siehe
+     * Document#computeVector); andere Listen werden hier einmal umgewandelt:
+     */
     private float cosineSimilarity(final List<Float> v1, final List<Float> v2) {
-      return dotProduct(v1, v2) / (euclidicLength(v1) * euclidicLength(v2));
-    }
-
-    private float dotProduct(final List<Float> v1, final List<Float> v2) {
-      /* Dot product: ist die Summe der Produkte der korrespondierenden Vektor-Werte: */
-      float sum = 0;
-      for (int i = 0; i < v1.size(); i++) {
-        sum += (v1.get(i) * v2.get(i));
-      }
-      return sum;
-    }
-
-    private float euclidicLength(final List<Float> v) {
-      /* Euklidische Länge: Wurzel aus der Summe der quadrierten Elemente eines Vektors: */
-      float sum = 0;
-      for (int i = 0; i < v.size(); i++) {
-        sum += Math.pow(v.get(i), 2);
-      }
-      return (float) Math.sqrt(sum);
+      FloatVector a = FloatVector.of(v1);
+      FloatVector b = FloatVector.of(v2);
+      return VectorKernels.cosine(a.getValues(), a.getLength(), b.getValues(), b.getLength());
     }
 
   };
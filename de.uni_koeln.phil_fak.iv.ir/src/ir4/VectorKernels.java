@@ -0,0 +1,77 @@
+package ir4;
+
+import java.util.List;
+
+/*
+ * Rechenkerne für die Vektorvergleiche auf primitiven Arrays statt auf Listen von Float-Objekten
+ * (kein Unboxing, zusammenhängender Speicher). Die Schleifen sind ausgerollt, mit unabhängigen
+ * Summen, so dass der JIT-Compiler die Multiplikationen überlappen kann.
+ */
+/**
+ * Dot product, length and cosine kernels for float arrays.
+ * @author Fabian Steeg (fabian.steeg@uni-koeln.de)
+ */
+final class VectorKernels {
+
+  private VectorKernels() {
+    // Enforce non-instantiability with a private constructor
+  }
+
+  /**
+   * @param v The vector values
+   * @return The vector values as an array
+   */
+  static float[] toArray(final List<Float> v) {
+    float[] result = new float[v.size()];
+    int i = 0;
+    for (Float f : v) {
+      result[i++] = f;
+    }
+    return result;
+  }
+
+  /**
+   * @param a The first vector
+   * @param b The second vector, of the same length as the first
+   * @return The dot product of the vectors
+   */
+  static float dot(final float[] a, final float[] b) {
+    float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+    int i = 0;
+    for (int n = a.length - 3; i < n; i += 4) {
+      s0 += a[i] * b[i];
+      s1 += a[i + 1] * b[i + 1];
+      s2 += a[i + 2] * b[i + 2];
+      s3 += a[i + 3] * b[i + 3];
+    }
+    for (; i < a.length; i++) {
+      s0 += a[i] * b[i];
+    }
+    return (s0 + s1) + (s2 + s3);
+  }
+
+  /**
+   * @param a The vector
+   * @return The euclidian length of the vector
+   */
+  static float norm(final float[] a) {
+    return (float) Math.sqrt(dot(a, a));
+  }
+
+  /*
+   * Die Längen werden pro Vektor nur einmal berechnet (siehe FloatVector), hier bleibt nur das
+   * Dot-Produkt. Durch Rundung kann der Quotient für gleiche Vektoren knapp über 1 liegen:
+   */
+  /**
+   * @param a The first vector
+   * @param normA The precomputed euclidian length of the first vector
+   * @param b The second vector, of the same length as the first
+   * @param normB The precomputed euclidian length of the second vector
+   * @return The cosine similarity of the vectors, or 0 if one of them has length 0
+   */
+  static float cosine(final float[] a, final float normA, final float[] b, final float normB) {
+    float dot = dot(a, b);
+    float norms = normA * normB;
+    return dot == 0 || norms == 0 ? 0 : Math.min(1f, dot / norms);
+  }
+}
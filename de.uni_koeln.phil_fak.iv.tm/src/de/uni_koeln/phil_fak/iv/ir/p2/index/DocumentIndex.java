@@ -20,13 +20,10 @@
 package de.uni_koeln.phil_fak.iv.ir.p2.index;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.SortedSet;
-import java.util.TreeSet;
 
 import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus;
 import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document;
@@ -45,20 +42,21 @@ import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document;
 public final class DocumentIndex implements Corpus {
 
     private List<Document> docs;
-    private SortedSet<String> dictionary;
-    private Map<String, Integer> documentFrequencies;
+    private Map<String, Document> sources;
+    private TermStatistics statistics;
 
     /** Creates a new indexed corpus. */
     public DocumentIndex() {
-        this.dictionary = new TreeSet<String>();
-        this.documentFrequencies = new HashMap<String, Integer>();
+        this.statistics = new TermStatistics();
         docs = new ArrayList<Document>();
+        sources = new HashMap<String, Document>();
     }
 
     /**
      * @param docs The docs to add to the corpus
      */
     public DocumentIndex(final List<Document> docs) {
+        this();
         for (Document document : docs) {
             add(document);
         }
@@ -77,14 +75,9 @@ public final class DocumentIndex implements Corpus {
      * @see de.uni_koeln.phil_fak.iv.tm.storage.Corpus#add(de.uni_koeln.phil_fak.iv.tm.storage.Document)
      */
     public void add(final Document document) {
-        Collection<String> terms = document.getTerms();
-        for (String newTerm : terms) {
-            Integer integer = documentFrequencies.get(newTerm);
-            documentFrequencies.put(newTerm, integer == null ? 1 : integer + 1);
-        }
-        dictionary.addAll(terms);
+        statistics.add(document);
         docs.add(document);
-
+        sources.put(document.getSource(), document);
     }
 
     /**
@@ -97,12 +90,30 @@ public final class DocumentIndex implements Corpus {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * @see de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus#replace(de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document,
+     *      de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document)
+     */
+    public void replace(final Document previous, final Document current) {
+        int i = docs.indexOf(previous);
+        if (i >= 0) {
+            statistics.replace(previous, current);
+            docs.set(i, current);
+            sources.remove(previous.getSource());
+            sources.put(current.getSource(), current);
+        } else {
+            /* Ohne Vorgänger ist das neue Dokument einfach hinzuzufügen: */
+            add(current);
+        }
+    }
+
     /**
      * {@inheritDoc}
      * @see de.uni_koeln.phil_fak.iv.tm.storage.Corpus#getDocumentFrequencyOf(java.lang.String)
      */
     public Integer getDocumentFrequencyOf(final String term) {
-        return documentFrequencies.get(term);
+        return statistics.getDocumentFrequencyOf(term);
     }
 
     /**
@@ -119,6 +130,14 @@ public final class DocumentIndex implements Corpus {
         return result;
     }
 
+    /**
+     * {@inheritDoc}
+     * @see de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus#getDocument(java.lang.String)
+     */
+    public Document getDocument(final String source) {
+        return sources.get(source);
+    }
+
     /**
      * {@inheritDoc}
      * @see de.uni_koeln.phil_fak.iv.tm.storage.Corpus#getDocumentsForTopic(java.lang.String)
@@ -138,7 +157,7 @@ public final class DocumentIndex implements Corpus {
      * @see de.uni_koeln.phil_fak.iv.tm.storage.Corpus#getTerms()
      */
     public Set<String> getTerms() {
-        return this.dictionary;
+        return statistics.getTerms();
     }
 
     /**
@@ -146,7 +165,7 @@ public final class DocumentIndex implements Corpus {
      * @see de.uni_koeln.phil_fak.iv.tm.storage.Corpus#getNumberOfDocuments()
      */
     public Integer getNumberOfDocuments() {
-        return docs.size();
+        return statistics.getNumberOfDocuments();
     }
 
     /*
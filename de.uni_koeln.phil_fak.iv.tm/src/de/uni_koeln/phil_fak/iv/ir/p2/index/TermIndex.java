@@ -65,6 +65,18 @@ public final class TermIndex implements Document {
         }
     }
 
+    /**
+     * @param content The document content
+     * @param termsAndFrequencies The terms of the content and their frequencies
+     *            in the content, as computed by a previous preprocessing (e.g.
+     *            when loading a stored document)
+     */
+    public TermIndex(final String content,
+            final Map<String, Integer> termsAndFrequencies) {
+        this.content = content;
+        this.termsAndFrequencies = termsAndFrequencies;
+    }
+
     /*
      * Man sollte /immer/ toString überschreiben, erleichtert die Verwendung der
      * Klasse in jeder Hinsicht sehr.
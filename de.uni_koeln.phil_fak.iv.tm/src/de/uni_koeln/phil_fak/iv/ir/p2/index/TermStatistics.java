@@ -0,0 +1,184 @@
+/**
+ * Material for the course 'Information-Retrieval', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-informationretrieval.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.ir.p2.index;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document;
+
+/*
+ * Die Statistiken eines Korpus, die wir für die Merkmalsberechnung brauchen:
+ * das Vokabular, die Dokumentenfrequenz jedes Terms und die Anzahl der
+ * Dokumente. Als eigene Klasse (statt nur als Felder im DocumentIndex) können
+ * wir sie auch unabhängig von den Dokumenten speichern und laden (siehe
+ * CorpusDatabase), statt sie bei jedem Öffnen neu zu berechnen.
+ */
+/**
+ * Dictionary, document frequencies and document count of a corpus.
+ * @author Fabian Steeg (fsteeg)
+ */
+public final class TermStatistics {
+
+    private SortedSet<String> dictionary;
+    private Map<String, Integer> documentFrequencies;
+    private int numberOfDocuments;
+
+    /** Creates new, empty statistics. */
+    public TermStatistics() {
+        this.dictionary = new TreeSet<String>();
+        this.documentFrequencies = new HashMap<String, Integer>();
+        this.numberOfDocuments = 0;
+    }
+
+    /**
+     * @param document The document to count
+     */
+    public void add(final Document document) {
+        Set<String> terms = document.getTerms();
+        for (String newTerm : terms) {
+            increment(newTerm);
+        }
+        numberOfDocuments++;
+    }
+
+    /*
+     * Beim Ersetzen eines Dokuments ändern sich die Dokumentenfrequenzen nur
+     * für die Terme, die nur in einer der beiden Versionen vorkommen, d.h. wir
+     * müssen nicht alles neu zählen, sondern nur die Differenz anpassen.
+     */
+    /**
+     * @param previous The document to replace
+     * @param current The new version of the document
+     */
+    public void replace(final Document previous, final Document current) {
+        Set<String> oldTerms = previous.getTerms();
+        Set<String> newTerms = current.getTerms();
+        for (String oldTerm : oldTerms) {
+            if (!newTerms.contains(oldTerm)) {
+                decrement(oldTerm);
+            }
+        }
+        for (String newTerm : newTerms) {
+            if (!oldTerms.contains(newTerm)) {
+                increment(newTerm);
+            }
+        }
+    }
+
+    /**
+     * @param document The counted document to remove from the statistics
+     */
+    public void remove(final Document document) {
+        for (String oldTerm : document.getTerms()) {
+            decrement(oldTerm);
+        }
+        numberOfDocuments--;
+    }
+
+    private void increment(final String term) {
+        Integer integer = documentFrequencies.get(term);
+        documentFrequencies.put(term, integer == null ? 1 : integer + 1);
+        if (integer == null) {
+            dictionary.add(term);
+        }
+    }
+
+    private void decrement(final String term) {
+        Integer integer = documentFrequencies.get(term);
+        if (integer == null || integer <= 1) {
+            /* Der Term kommt in keinem Dokument mehr vor: */
+            documentFrequencies.remove(term);
+            dictionary.remove(term);
+        } else {
+            documentFrequencies.put(term, integer - 1);
+        }
+    }
+
+    /**
+     * @return All terms in the counted documents, in sorted order
+     */
+    public Set<String> getTerms() {
+        return dictionary;
+    }
+
+    /**
+     * @param term The term to find the document frequency for
+     * @return The number of counted documents containing the term, or null if
+     *         no counted document contains the term
+     */
+    public Integer getDocumentFrequencyOf(final String term) {
+        return documentFrequencies.get(term);
+    }
+
+    /**
+     * @return The number of counted documents
+     */
+    public Integer getNumberOfDocuments() {
+        return numberOfDocuments;
+    }
+
+    /**
+     * @param out The output to write the statistics to
+     * @throws IOException If writing fails
+     */
+    public void write(final DataOutput out) throws IOException {
+        out.writeInt(numberOfDocuments);
+        out.writeInt(dictionary.size());
+        for (String term : dictionary) {
+            out.writeUTF(term);
+            out.writeInt(documentFrequencies.get(term));
+        }
+    }
+
+    /**
+     * @param in The input to read statistics from, as written by
+     *            {@link #write(DataOutput)}
+     * @return The statistics read from the input
+     * @throws IOException If reading fails
+     */
+    public static TermStatistics read(final DataInput in) throws IOException {
+        TermStatistics result = new TermStatistics();
+        result.numberOfDocuments = in.readInt();
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            String term = in.readUTF();
+            result.dictionary.add(term);
+            result.documentFrequencies.put(term, in.readInt());
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("%s for %s documents with %s terms", getClass()
+                .getSimpleName(), numberOfDocuments, dictionary.size());
+    }
+}
@@ -0,0 +1,349 @@
+/**
+ * Material for the course 'Information-Retrieval', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-informationretrieval.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.ir.p5.features;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus;
+import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document;
+
+/*
+ * Paarweise Ähnlichkeiten aller Vektoren, ohne alle n² Paare zu vergleichen
+ * (nach dem All-Pairs-Verfahren von Bayardo et al. mit der L2-Schranke aus
+ * L2AP). Alle Vektoren werden auf Länge 1 normiert, die Kosinusähnlichkeit ist
+ * dann das Dot-Produkt. Die Idee: von jedem Vektor indexieren wir nur einen
+ * Teil seiner Werte in einem invertierten Index. Die nicht indexierten Werte
+ * (das Präfix) wählen wir so, dass ihre Länge kleiner als der Schwellenwert t
+ * ist; ihr Beitrag zum Dot-Produkt mit einem anderen Vektor der Länge 1 ist
+ * dann auch kleiner als t. Zwei Vektoren mit einer Ähnlichkeit von mindestens
+ * t müssen sich also einen indexierten Wert teilen, d.h. wir finden sie über
+ * den Index. Ins Präfix kommen die häufigsten Dimensionen (Terme), so werden
+ * die Postings-Listen kurz. Die Anfragen für die einzelnen Zeilen sind
+ * voneinander unabhängig, die verteilen wir in Blöcken auf mehrere Threads.
+ */
+/**
+ * All-pairs similarity search over sparse vectors, using an inverted index with
+ * prefix filtering and parallel row blocks, resulting in a top-k neighbour
+ * graph.
+ * @author Fabian Steeg (fsteeg)
+ */
+public final class AllPairsSimilarity {
+
+    private static final int BLOCK_SIZE = 64;
+
+    private SparseVector[] vectors;
+    private int dimension;
+    private int threads;
+    /* Die Dokumentenfrequenz jeder Dimension, für die Wahl der Präfixe: */
+    private int[] frequencies;
+
+    /* Für den aktuellen Schwellenwert: Index und Präfixe */
+    private int[][] postingIds;
+    private float[][] postingValues;
+    private SparseVector[] prefixes;
+
+    /**
+     * @param vectors The vectors to compare, all of the same dimension
+     * @param threads The number of threads to use
+     */
+    public AllPairsSimilarity(final List<SparseVector> vectors,
+            final int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException(
+                    "Number of threads must be positive, not: " + threads);
+        }
+        this.threads = threads;
+        this.vectors = new SparseVector[vectors.size()];
+        this.dimension = vectors.isEmpty() ? 0 : vectors.get(0).getDimension();
+        this.frequencies = new int[dimension];
+        for (int i = 0; i < this.vectors.length; i++) {
+            SparseVector vector = vectors.get(i);
+            if (vector.getDimension() != dimension) {
+                throw new IllegalArgumentException(String.format(
+                        "Vector %s has dimension %s, not %s", i, vector
+                                .getDimension(), dimension));
+            }
+            this.vectors[i] = vector.normalized();
+            for (int index : vector.getIndices()) {
+                frequencies[index]++;
+            }
+        }
+    }
+
+    /**
+     * @param vectors The vectors to compare, all of the same dimension
+     */
+    public AllPairsSimilarity(final List<SparseVector> vectors) {
+        this(vectors, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param corpus The corpus the documents are part of
+     * @param documents The documents to compare
+     * @return An all-pairs similarity search over the TF-IDF vectors of the
+     *         documents, in the order of the given documents
+     */
+    public static AllPairsSimilarity of(final Corpus corpus,
+            final List<? extends Document> documents) {
+        List<SparseVector> vectors = new ArrayList<SparseVector>(documents
+                .size());
+        for (Document document : documents) {
+            vectors.add(SparseVector.of(document.getVector(corpus)));
+        }
+        return new AllPairsSimilarity(vectors);
+    }
+
+    /**
+     * @param k The maximum number of neighbours to find for each vector
+     * @param threshold The minimum cosine similarity of neighbours, greater
+     *            than 0 (higher values allow more pruning)
+     * @return For each vector, the up to k most similar other vectors with a
+     *         similarity of at least the given threshold
+     */
+    public NeighbourGraph neighbours(final int k, final float threshold) {
+        if (k < 1 || threshold <= 0 || threshold > 1) {
+            throw new IllegalArgumentException(String.format(
+                    "Need k > 0 and 0 < threshold <= 1, got %s and %s", k,
+                    threshold));
+        }
+        index(threshold);
+        final int[][] neighbours = new int[vectors.length][];
+        final float[][] similarities = new float[vectors.length][];
+        final AtomicInteger nextBlock = new AtomicInteger();
+        List<Callable<Void>> workers = new ArrayList<Callable<Void>>();
+        for (int i = 0; i < threads; i++) {
+            workers.add(new Callable<Void>() {
+                public Void call() {
+                    Query query = new Query(k, threshold);
+                    int start = nextBlock.getAndIncrement() * BLOCK_SIZE;
+                    while (start < vectors.length) {
+                        int end = Math.min(start + BLOCK_SIZE, vectors.length);
+                        for (int row = start; row < end; row++) {
+                            query.run(row, neighbours, similarities);
+                        }
+                        start = nextBlock.getAndIncrement() * BLOCK_SIZE;
+                    }
+                    return null;
+                }
+            });
+        }
+        ExecutorService exec = Executors.newFixedThreadPool(threads);
+        try {
+            for (Future<Void> future : exec.invokeAll(workers)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted during all-pairs", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("All-pairs failed", e.getCause());
+        } finally {
+            exec.shutdownNow();
+        }
+        return new NeighbourGraph(neighbours, similarities, k, threshold);
+    }
+
+    /*
+     * Aufteilen jedes Vektors in das nicht indexierte Präfix (die häufigsten
+     * Dimensionen, solange deren Länge unter dem Schwellenwert bleibt) und den
+     * Rest, der in den Index kommt.
+     */
+    private void index(final float threshold) {
+        prefixes = new SparseVector[vectors.length];
+        boolean[][] indexed = new boolean[vectors.length][];
+        int[] counts = new int[dimension];
+        for (int i = 0; i < vectors.length; i++) {
+            int[] indices = vectors[i].getIndices();
+            float[] values = vectors[i].getValues();
+            Integer[] order = byFrequency(indices);
+            indexed[i] = new boolean[indices.length];
+            float squares = 0;
+            boolean prefix = true;
+            for (Integer position : order) {
+                float value = values[position];
+                prefix = prefix
+                        && Math.sqrt(squares + value * value) < threshold;
+                if (prefix) {
+                    squares += value * value;
+                } else {
+                    indexed[i][position] = true;
+                    counts[indices[position]]++;
+                }
+            }
+            prefixes[i] = part(vectors[i], indexed[i], false);
+        }
+        postingIds = new int[dimension][];
+        postingValues = new float[dimension][];
+        for (int d = 0; d < dimension; d++) {
+            postingIds[d] = new int[counts[d]];
+            postingValues[d] = new float[counts[d]];
+            counts[d] = 0;
+        }
+        for (int i = 0; i < vectors.length; i++) {
+            int[] indices = vectors[i].getIndices();
+            float[] values = vectors[i].getValues();
+            for (int j = 0; j < indices.length; j++) {
+                if (indexed[i][j]) {
+                    int d = indices[j];
+                    postingIds[d][counts[d]] = i;
+                    postingValues[d][counts[d]++] = values[j];
+                }
+            }
+        }
+    }
+
+    private Integer[] byFrequency(final int[] indices) {
+        Integer[] order = new Integer[indices.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(final Integer a, final Integer b) {
+                int fa = frequencies[indices[a]];
+                int fb = frequencies[indices[b]];
+                return fa != fb ? fb - fa : a - b;
+            }
+        });
+        return order;
+    }
+
+    private SparseVector part(final SparseVector vector,
+            final boolean[] indexed, final boolean selected) {
+        int count = 0;
+        for (boolean b : indexed) {
+            if (b == selected) {
+                count++;
+            }
+        }
+        int[] indices = new int[count];
+        float[] values = new float[count];
+        for (int i = 0, j = 0; i < indexed.length; i++) {
+            if (indexed[i] == selected) {
+                indices[j] = vector.getIndices()[i];
+                values[j++] = vector.getValues()[i];
+            }
+        }
+        return new SparseVector(indices, values, dimension);
+    }
+
+    /*
+     * Die Anfrage für eine Zeile: wir sammeln über den Index die Teilsummen
+     * der Kandidaten, prüfen für jeden mit der L2-Schranke, ob er mit seinem
+     * Präfix überhaupt noch über den Schwellenwert kommen kann, und rechnen nur
+     * dann das Präfix dazu. Die Arrays werden pro Thread einmal angelegt und
+     * über eine Markierung (die aktuelle Zeile) wiederverwendet.
+     */
+    private final class Query {
+        private final int k;
+        private final float threshold;
+        private final float[] sums = new float[vectors.length];
+        private final int[] marks = new int[vectors.length];
+        private final int[] candidates = new int[vectors.length];
+        private final float[] dense = new float[dimension];
+        private final int[] topIds;
+        private final float[] topScores;
+
+        Query(final int k, final float threshold) {
+            this.k = k;
+            this.threshold = threshold;
+            this.topIds = new int[k];
+            this.topScores = new float[k];
+        }
+
+        void run(final int row, final int[][] neighbours,
+                final float[][] similarities) {
+            SparseVector vector = vectors[row];
+            int[] indices = vector.getIndices();
+            float[] values = vector.getValues();
+            int count = 0;
+            for (int i = 0; i < indices.length; i++) {
+                int d = indices[i];
+                float value = values[i];
+                dense[d] = value;
+                int[] ids = postingIds[d];
+                float[] weights = postingValues[d];
+                for (int p = 0; p < ids.length; p++) {
+                    int candidate = ids[p];
+                    if (candidate == row) {
+                        continue;
+                    }
+                    if (marks[candidate] != row + 1) {
+                        marks[candidate] = row + 1;
+                        sums[candidate] = 0;
+                        candidates[count++] = candidate;
+                    }
+                    sums[candidate] += value * weights[p];
+                }
+            }
+            int found = 0;
+            for (int c = 0; c < count; c++) {
+                int candidate = candidates[c];
+                float min = found == k ? topScores[k - 1] : threshold;
+                SparseVector prefix = prefixes[candidate];
+                if (sums[candidate] + prefix.getLength() < min) {
+                    continue;
+                }
+                float score = sums[candidate]
+                        + VectorKernels.dot(prefix.getIndices(), prefix
+                                .getValues(), dense);
+                if (score >= min) {
+                    found = insert(found, candidate, score);
+                }
+            }
+            for (int index : indices) {
+                dense[index] = 0;
+            }
+            neighbours[row] = Arrays.copyOf(topIds, found);
+            similarities[row] = Arrays.copyOf(topScores, found);
+        }
+
+        /* Einfügen in die absteigend sortierten besten k: */
+        private int insert(final int found, final int id, final float score) {
+            int i = found == k ? k - 1 : found;
+            while (i > 0 && topScores[i - 1] < score) {
+                topIds[i] = topIds[i - 1];
+                topScores[i] = topScores[i - 1];
+                i--;
+            }
+            topIds[i] = id;
+            topScores[i] = score;
+            return found == k ? k : found + 1;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("%s of %s vectors with dimension %s", getClass()
+                .getSimpleName(), vectors.length, dimension);
+    }
+}
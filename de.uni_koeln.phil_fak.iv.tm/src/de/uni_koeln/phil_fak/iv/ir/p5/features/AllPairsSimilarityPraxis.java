@@ -0,0 +1,99 @@
+/**
+ * Material for the course 'Information-Retrieval', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-informationretrieval.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.ir.p5.features;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/*
+ * Tests für die All-Pairs-Suche: trotz Präfix-Index und Abbruch-Schranken
+ * muss sie für jeden Vektor dieselben Ähnlichkeiten finden wie der Vergleich
+ * mit allen anderen Vektoren, und zwar mit einem wie mit mehreren Threads.
+ */
+/**
+ * Tests for the all-pairs similarity search, against a brute force search.
+ * @author Fabian Steeg (fsteeg)
+ */
+public class AllPairsSimilarityPraxis {
+    private static final int SIZE = 1000;
+    private static final int DIMENSION = 500;
+    private static final int K = 5;
+    private List<SparseVector> vectors;
+
+    @Before
+    public void before() {
+        /* Wenige häufige und viele seltene Dimensionen, wie bei Termen: */
+        Random random = new Random(3);
+        vectors = new ArrayList<SparseVector>(SIZE);
+        for (int i = 0; i < SIZE; i++) {
+            float[] dense = new float[DIMENSION];
+            for (int j = 0; j < 15; j++) {
+                int position = (int) (Math.abs(random.nextGaussian()) * 60)
+                        % DIMENSION;
+                dense[position] += random.nextFloat();
+            }
+            vectors.add(SparseVector.of(dense));
+        }
+    }
+
+    @Test
+    public void lowThreshold() {
+        check(0.3f, 1);
+        check(0.3f, 4);
+    }
+
+    @Test
+    public void highThreshold() {
+        check(0.6f, 1);
+        check(0.6f, 4);
+    }
+
+    private void check(final float threshold, final int threads) {
+        NeighbourGraph graph = new AllPairsSimilarity(vectors, threads)
+                .neighbours(K, threshold);
+        for (int i = 0; i < SIZE; i++) {
+            List<Float> exact = exact(i, threshold);
+            float[] found = graph.getSimilarities(i);
+            Assert.assertEquals(Math.min(K, exact.size()), found.length);
+            for (int j = 0; j < found.length; j++) {
+                Assert.assertEquals(exact.get(j), found[j], 1E-4f);
+            }
+        }
+    }
+
+    private List<Float> exact(final int i, final float threshold) {
+        List<Float> result = new ArrayList<Float>();
+        for (int j = 0; j < SIZE; j++) {
+            float similarity = vectors.get(i).similarity(vectors.get(j));
+            if (j != i && similarity >= threshold) {
+                result.add(similarity);
+            }
+        }
+        Collections.sort(result, Collections.reverseOrder());
+        return result;
+    }
+}
@@ -0,0 +1,254 @@
+/**
+ * Material for the course 'Information-Retrieval', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-informationretrieval.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.ir.p5.features;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document;
+
+/*
+ * Merkmalsauswahl: statt jedes Terms im Vokabular verwenden wir nur die
+ * Terme, die am meisten über die Klasse eines Dokuments aussagen. Dazu zählen
+ * wir in einem Durchgang über die Trainingsdokumente, in wie vielen
+ * Dokumenten jeder Klasse jeder Term vorkommt. Daraus berechnen wir je nach
+ * Maß: Chi-Quadrat (wie stark hängen Term und Klasse zusammen, hier das
+ * Maximum über die Klassen), Information Gain (wie viel weniger unsicher
+ * sind wir über die Klasse, wenn wir wissen, ob der Term vorkommt) oder
+ * einfach die Dokumentfrequenz (seltene Terme helfen selten).
+ */
+/**
+ * Selection of the terms most informative about the classes of training
+ * documents, as a reduced feature space.
+ * @author Fabian Steeg (fsteeg)
+ */
+public final class FeatureSelection {
+
+    /** The measure to rank the terms with. */
+    public enum Measure {
+        /** The maximum chi-square statistic of the term over the classes. */
+        CHI_SQUARE,
+        /** The information gain of the term for the class distribution. */
+        INFORMATION_GAIN,
+        /** The number of training documents containing the term. */
+        DOCUMENT_FREQUENCY
+    }
+
+    private List<String> classes;
+    private int[] classFrequencies;
+    private int documents;
+    /* Für jeden Term: in wie vielen Dokumenten jeder Klasse er vorkommt */
+    private Map<String, int[]> termFrequencies;
+
+    /**
+     * @param documents The training documents
+     * @param labels The class label of each training document
+     */
+    public FeatureSelection(final List<? extends Document> documents,
+            final List<String> labels) {
+        if (documents.size() != labels.size()) {
+            throw new IllegalArgumentException(String.format(
+                    "Got %s labels for %s documents", labels.size(), documents
+                            .size()));
+        }
+        this.classes = new ArrayList<String>(new TreeSet<String>(labels));
+        Map<String, Integer> classIds = new HashMap<String, Integer>();
+        for (String c : classes) {
+            classIds.put(c, classIds.size());
+        }
+        this.classFrequencies = new int[classes.size()];
+        this.termFrequencies = new HashMap<String, int[]>();
+        this.documents = documents.size();
+        for (int i = 0; i < documents.size(); i++) {
+            int c = classIds.get(labels.get(i));
+            classFrequencies[c]++;
+            for (String term : documents.get(i).getTerms()) {
+                int[] counts = termFrequencies.get(term);
+                if (counts == null) {
+                    counts = new int[classes.size()];
+                    termFrequencies.put(term, counts);
+                }
+                counts[c]++;
+            }
+        }
+    }
+
+    /**
+     * @param documents The training documents, labeled with their topics
+     * @return The feature selection for the documents
+     */
+    public static FeatureSelection of(
+            final List<? extends Document> documents) {
+        List<String> labels = new ArrayList<String>(documents.size());
+        for (Document document : documents) {
+            labels.add(document.getTopic());
+        }
+        return new FeatureSelection(documents, labels);
+    }
+
+    /**
+     * @param term The term
+     * @param measure The measure
+     * @return The score of the term under the measure (0 for unknown terms)
+     */
+    public double score(final String term, final Measure measure) {
+        int[] counts = termFrequencies.get(term);
+        if (counts == null) {
+            return 0;
+        }
+        switch (measure) {
+        case CHI_SQUARE:
+            return chiSquare(counts);
+        case INFORMATION_GAIN:
+            return informationGain(counts);
+        default:
+            return sum(counts);
+        }
+    }
+
+    /*
+     * Für jede Klasse eine Vierfeldertafel: A = Dokumente der Klasse mit dem
+     * Term, B = andere Dokumente mit dem Term, C = Dokumente der Klasse ohne
+     * den Term, D = andere Dokumente ohne den Term.
+     */
+    private double chiSquare(final int[] counts) {
+        int df = sum(counts);
+        double max = 0;
+        for (int c = 0; c < counts.length; c++) {
+            double a = counts[c];
+            double b = df - a;
+            double cc = classFrequencies[c] - a;
+            double d = documents - df - cc;
+            double denominator = (a + cc) * (b + d) * (a + b) * (cc + d);
+            if (denominator > 0) {
+                double diff = a * d - cc * b;
+                max = Math.max(max, documents * diff * diff / denominator);
+            }
+        }
+        return max;
+    }
+
+    /*
+     * IG = H(C) - P(t) H(C|t) - P(nicht t) H(C|nicht t)
+     */
+    private double informationGain(final int[] counts) {
+        int df = sum(counts);
+        double with = 0;
+        double without = 0;
+        double prior = 0;
+        for (int c = 0; c < counts.length; c++) {
+            prior += entropy(classFrequencies[c], documents);
+            with += entropy(counts[c], df);
+            without += entropy(classFrequencies[c] - counts[c], documents
+                    - df);
+        }
+        return prior - df / (double) documents * with
+                - (documents - df) / (double) documents * without;
+    }
+
+    /* Der Beitrag -p log p einer Klasse zur Entropie, p = count / total: */
+    private static double entropy(final int count, final int total) {
+        if (count == 0 || total == 0) {
+            return 0;
+        }
+        double p = count / (double) total;
+        return -p * Math.log(p);
+    }
+
+    private static int sum(final int[] counts) {
+        int sum = 0;
+        for (int count : counts) {
+            sum += count;
+        }
+        return sum;
+    }
+
+    /**
+     * @param measure The measure to rank the terms with
+     * @param n The maximum number of terms to select
+     * @return The position of each selected term in the reduced feature space,
+     *         usable with {@link TfIdfFeatures#sparseVector(Map)}
+     */
+    public Map<String, Integer> select(final Measure measure, final int n) {
+        return select(measure, n, 1);
+    }
+
+    /**
+     * @param measure The measure to rank the terms with
+     * @param n The maximum number of terms to select
+     * @param minDocumentFrequency The minimum number of training documents a
+     *            term must occur in to be selected
+     * @return The position of each selected term in the reduced feature space
+     *         (in alphabetical order of the terms, like the full vocabulary),
+     *         usable with {@link TfIdfFeatures#sparseVector(Map)}
+     */
+    public Map<String, Integer> select(final Measure measure, final int n,
+            final int minDocumentFrequency) {
+        final Map<String, Double> scores = new HashMap<String, Double>();
+        for (Map.Entry<String, int[]> entry : termFrequencies.entrySet()) {
+            if (sum(entry.getValue()) >= minDocumentFrequency) {
+                scores.put(entry.getKey(), score(entry.getKey(), measure));
+            }
+        }
+        List<String> ranked = new ArrayList<String>(scores.keySet());
+        /* Absteigend nach Wert, bei gleichem Wert alphabetisch: */
+        Collections.sort(ranked, new Comparator<String>() {
+            public int compare(final String a, final String b) {
+                int result = scores.get(b).compareTo(scores.get(a));
+                return result != 0 ? result : a.compareTo(b);
+            }
+        });
+        SortedSet<String> selected = new TreeSet<String>(ranked.subList(0,
+                Math.min(n, ranked.size())));
+        Map<String, Integer> positions = new HashMap<String, Integer>(
+                selected.size() * 2);
+        for (String term : selected) {
+            positions.put(term, positions.size());
+        }
+        return positions;
+    }
+
+    /** @return The class labels of the training documents */
+    public List<String> getClasses() {
+        return Collections.unmodifiableList(classes);
+    }
+
+    /** @return The number of distinct terms in the training documents */
+    public int getNumberOfTerms() {
+        return termFrequencies.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("%s for %s documents, %s classes, %s terms",
+                getClass().getSimpleName(), documents, classes.size(),
+                termFrequencies.size());
+    }
+}
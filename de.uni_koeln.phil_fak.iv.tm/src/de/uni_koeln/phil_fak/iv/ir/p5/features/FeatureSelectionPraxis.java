@@ -0,0 +1,211 @@
+/**
+ * Material for the course 'Information-Retrieval', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-informationretrieval.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.ir.p5.features;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.uni_koeln.phil_fak.iv.ir.p2.index.TermIndex;
+import de.uni_koeln.phil_fak.iv.ir.p5.features.FeatureSelection.Measure;
+import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document;
+import de.uni_koeln.phil_fak.iv.tm.p1.corpus.SampleDocuments;
+import de.uni_koeln.phil_fak.iv.tm.p3.classification.NaiveBayes;
+
+/*
+ * Tests für die Merkmalsauswahl, mit von Hand gerechneten Werten für 8
+ * Dokumente in 2 Klassen. Die Vierfeldertafeln (A = Dokumente der Klasse a
+ * mit dem Term, B = der Klasse b mit dem Term, C und D ohne den Term):
+ * alpha 3/1/1/3, beta 4/0/0/4, gamma 2/2/2/2, delta 1/0/3/4, zeta 0/4/4/0.
+ */
+/**
+ * Tests for the feature selection, against hand-computed values.
+ * @author Fabian Steeg (fsteeg)
+ */
+public class FeatureSelectionPraxis {
+    private static final double DELTA = 1E-6;
+    private List<Document> documents;
+    private List<String> labels;
+    private FeatureSelection selection;
+
+    @Before
+    public void before() {
+        documents = new ArrayList<Document>();
+        labels = new ArrayList<String>();
+        add("a", "alpha beta gamma delta");
+        add("a", "alpha beta gamma");
+        add("a", "alpha beta");
+        add("a", "beta");
+        add("b", "alpha gamma zeta");
+        add("b", "gamma zeta");
+        add("b", "zeta");
+        add("b", "zeta");
+        selection = new FeatureSelection(documents, labels);
+    }
+
+    private void add(final String label, final String content) {
+        labels.add(label);
+        documents.add(new TermIndex(content));
+    }
+
+    @Test
+    public void chiSquare() {
+        /* N (AD - CB)^2 / ((A + C)(B + D)(A + B)(C + D)) */
+        Assert.assertEquals(8 * 64 / 256.0, score("alpha", Measure.CHI_SQUARE),
+                DELTA);
+        Assert.assertEquals(8.0, score("beta", Measure.CHI_SQUARE), DELTA);
+        Assert.assertEquals(0.0, score("gamma", Measure.CHI_SQUARE), DELTA);
+        Assert.assertEquals(8 * 16 / 112.0, score("delta", Measure.CHI_SQUARE),
+                DELTA);
+        Assert.assertEquals(8.0, score("zeta", Measure.CHI_SQUARE), DELTA);
+        Assert.assertEquals(0.0, score("omega", Measure.CHI_SQUARE), DELTA);
+    }
+
+    @Test
+    public void informationGain() {
+        /* H(C) = ln 2, mit dem Term und ohne je H(3/4, 1/4): */
+        double h = -0.75 * Math.log(0.75) - 0.25 * Math.log(0.25);
+        Assert.assertEquals(Math.log(2) - h, score("alpha",
+                Measure.INFORMATION_GAIN), DELTA);
+        Assert.assertEquals(Math.log(2), score("beta",
+                Measure.INFORMATION_GAIN), DELTA);
+        Assert.assertEquals(0.0, score("gamma", Measure.INFORMATION_GAIN),
+                DELTA);
+        /* Mit dem Term eindeutig, ohne H(3/7, 4/7) in 7 von 8 Dokumenten: */
+        double without = -3 / 7.0 * Math.log(3 / 7.0) - 4 / 7.0
+                * Math.log(4 / 7.0);
+        Assert.assertEquals(Math.log(2) - 7 / 8.0 * without, score("delta",
+                Measure.INFORMATION_GAIN), DELTA);
+    }
+
+    @Test
+    public void documentFrequency() {
+        Assert.assertEquals(4.0, score("alpha", Measure.DOCUMENT_FREQUENCY),
+                DELTA);
+        Assert.assertEquals(1.0, score("delta", Measure.DOCUMENT_FREQUENCY),
+                DELTA);
+    }
+
+    @Test
+    public void select() {
+        /* beta und zeta (8), alpha (2), delta (8/7), gamma (0): */
+        assertSelected(selection.select(Measure.CHI_SQUARE, 3), "alpha",
+                "beta", "zeta");
+        assertSelected(selection.select(Measure.CHI_SQUARE, 4), "alpha",
+                "beta", "delta", "zeta");
+        assertSelected(selection.select(Measure.INFORMATION_GAIN, 4),
+                "alpha", "beta", "delta", "zeta");
+        /* Bei gleichem Wert alphabetisch: */
+        assertSelected(selection.select(Measure.CHI_SQUARE, 1), "beta");
+        assertSelected(selection.select(Measure.DOCUMENT_FREQUENCY, 3),
+                "alpha", "beta", "gamma");
+        assertSelected(selection.select(Measure.CHI_SQUARE, 10), "alpha",
+                "beta", "delta", "gamma", "zeta");
+    }
+
+    @Test
+    public void selectMinDocumentFrequency() {
+        /* delta kommt nur in einem Dokument vor: */
+        assertSelected(selection.select(Measure.CHI_SQUARE, 4, 2), "alpha",
+                "beta", "gamma", "zeta");
+        assertSelected(selection.select(Measure.CHI_SQUARE, 10, 5));
+    }
+
+    @Test
+    public void naiveBayes() {
+        /*
+         * Mit allen Termen (10 Tokens in a, 7 in b, 6 Terme): a ist
+         * 4 ln(4/16) + ln(1/16) = -8.32, b ist 4 ln(2/13) + ln(5/13) = -8.44.
+         * Mit beta und zeta (4 Tokens je Klasse, 2 Terme) zählt nur zeta: b.
+         */
+        Document document = new TermIndex("alpha alpha alpha alpha zeta");
+        Assert.assertEquals("a", train(new NaiveBayes(1)).classify(document));
+        Map<String, Integer> selected = selection.select(Measure.CHI_SQUARE,
+                2);
+        Assert.assertEquals("b", train(
+                new NaiveBayes(1, selected.keySet())).classify(document));
+    }
+
+    @Test
+    public void naiveBayesIgnoresUnselected() {
+        /*
+         * Mit ausgewählten Termen klassifiziert Naive Bayes wie mit Dokumenten,
+         * aus denen die anderen Terme entfernt sind.
+         */
+        List<Document> train = SampleDocuments.create(300, 1, "politik",
+                "sport", "kultur");
+        List<Document> test = SampleDocuments.create(100, 2, "politik",
+                "sport", "kultur");
+        FeatureSelection features = FeatureSelection.of(train);
+        Set<String> selected = new HashSet<String>(features.select(
+                Measure.CHI_SQUARE, 50).keySet());
+        NaiveBayes reduced = new NaiveBayes(1, selected);
+        NaiveBayes filtered = new NaiveBayes(1);
+        for (Document document : train) {
+            reduced.train(document, document.getTopic());
+            filtered.train(filter(document, selected), document.getTopic());
+        }
+        for (Document document : test) {
+            Assert.assertEquals(filtered.classify(filter(document, selected)),
+                    reduced.classify(document));
+        }
+    }
+
+    private double score(final String term, final Measure measure) {
+        return selection.score(term, measure);
+    }
+
+    private NaiveBayes train(final NaiveBayes classifier) {
+        for (int i = 0; i < documents.size(); i++) {
+            classifier.train(documents.get(i), labels.get(i));
+        }
+        return classifier;
+    }
+
+    private static Document filter(final Document document,
+            final Set<String> terms) {
+        Map<String, Integer> frequencies = new HashMap<String, Integer>();
+        for (String term : document.getTerms()) {
+            if (terms.contains(term)) {
+                frequencies.put(term, document.getTermFrequencyOf(term));
+            }
+        }
+        return new TermIndex(document.getContent(), frequencies);
+    }
+
+    /* Die Positionen sind alphabetisch, wie im ganzen Vokabular: */
+    private static void assertSelected(final Map<String, Integer> positions,
+            final String... terms) {
+        Assert.assertEquals(terms.length, positions.size());
+        for (int i = 0; i < terms.length; i++) {
+            Assert.assertEquals(Arrays.asList(terms).toString(), Integer
+                    .valueOf(i), positions.get(terms[i]));
+        }
+    }
+}
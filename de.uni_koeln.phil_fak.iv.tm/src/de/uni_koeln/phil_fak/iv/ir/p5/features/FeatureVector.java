@@ -38,6 +38,12 @@ import javax.xml.bind.annotation.XmlList;
 public final class FeatureVector {
     @XmlList
     private List<Float> features;
+    /*
+     * Für die Ähnlichkeitsberechnung die Werte als Array und die Länge des
+     * Vektors, beides nur einmal berechnet und nicht gespeichert:
+     */
+    private transient float[] values;
+    private transient Float length;
 
     @SuppressWarnings("unused")
     // For JAXB
@@ -65,6 +71,31 @@ public final class FeatureVector {
         return features;
     }
 
+    /**
+     * @return The vector values as an array, computed once (so the values
+     *         should not be changed after calling this)
+     */
+    public float[] toArray() {
+        if (values == null) {
+            float[] result = new float[features.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = features.get(i);
+            }
+            values = result;
+        }
+        return values;
+    }
+
+    /**
+     * @return The euclidian length of this vector, computed once
+     */
+    public float getLength() {
+        if (length == null) {
+            length = VectorKernels.norm(toArray());
+        }
+        return length;
+    }
+
     /**
      * {@inheritDoc}
      * @see java.lang.Object#equals(java.lang.Object)
@@ -107,17 +138,16 @@ public final class FeatureVector {
         if (this.features.size() != other.features.size()) {
             throw new UncomparableVectorsException(this, other);
         }
-        float dotProduct = dot(other);
-        float euclidianLengthProduct = euc(other);
         /*
          * Da die Winkel zwischen Vektoren in einem rein positiven
          * Koordinatensystem maximal 90 Grad betragen, ist die
          * Kosinusähnlichkeit immer ein Wert zwischen 0 und 1 und so ein
          * brauchbares Maß zur Bestimmung der Ähnlichkeit (wobei 1 "identisch"
-         * und 0 "keine Ähnlichkeit" bedeutet)
+         * und 0 "keine Ähnlichkeit" bedeutet). Die Längen der Vektoren
+         * berechnen wir dabei nur einmal pro Vektor, nicht bei jedem Vergleich:
          */
-        float dist = dotProduct == 0 || euclidianLengthProduct == 0
-                ? 0 : dotProduct / euclidianLengthProduct;
+        float dist = VectorKernels.cosine(this.toArray(), this.getLength(),
+                other.toArray(), other.getLength());
         /*
          * Obiges behaupten und vermuten wir, aber sowas hier und da zu
          * überprüfen macht die Fehlersuche einfacher und erhöht das Vertrauen
@@ -130,50 +160,11 @@ public final class FeatureVector {
             throw new IllegalStateException(message);
         }
         if (new Float(dist).isNaN()) {
-            throw new IllegalStateException(
-                    String
-                            .format(
-                                    "Distance computed by devision of dot product %s and euclidian distance %s is not a number",
-                                    dotProduct, euclidianLengthProduct));
+            throw new IllegalStateException(String.format(
+                    "Similarity of vectors with lengths %s and %s "
+                            + "is not a number", getLength(), other
+                            .getLength()));
         }
         return dist;
     }
-
-    private float euc(FeatureVector query) {
-        /*
-         * Hier lag unser Problem vom Ende der letzten Stunde: wir haben hier
-         * ints verwendet, aber 0 als int plus 0.04 (z.B.) es null bliev null,
-         * die erste summe mal null gab null, und irgendein dot-Produkt durch
-         * null gab Unendlichkeit (oder wieder null, wenn wir das abfangen).
-         */
-        float sum1 = 0;
-        float sum2 = 0;
-        /*
-         * Euklidische Länge: Wurzel aus der Summe der quadrierten Elemente
-         * eines der Vektoren:
-         */
-        for (Float f : features) {
-            sum1 += Math.pow(f, 2);
-        }
-        for (Float f : query.features) {
-            sum2 += Math.pow(f, 2);
-        }
-        /*
-         * Wir wollen das Produkt der euklidischen Längen der zwei Vektoren
-         * (|V(d1)| |V(d2)|)
-         */
-        return (float) (Math.sqrt(sum1) * Math.sqrt(sum2));
-    }
-
-    private float dot(FeatureVector query) {
-        /*
-         * Das dot product ist die Summe der Produkte der korrespondierenden
-         * Vektor-Werte:
-         */
-        float sum = 0;
-        for (int i = 0; i < features.size(); i++) {
-            sum += (features.get(i) * query.features.get(i));
-        }
-        return sum;
-    }
 }
@@ -0,0 +1,198 @@
+/**
+ * Material for the course 'Information-Retrieval', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-informationretrieval.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.ir.p5.features;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document;
+
+/*
+ * Vektoren ohne Vokabular ("hashing trick"): statt jedem Term eine Position
+ * im Vokabular zuzuordnen, nehmen wir die Position aus einem Hashwert des
+ * Terms, modulo einer festen Größe 2^k. Damit haben alle Vektoren immer
+ * dieselbe Dimension, egal wie viele Terme das Korpus später hat, und wir
+ * können jedes Dokument für sich vektorisieren, ohne das Vokabular zu
+ * kennen. Terme mit gleicher Position (Kollisionen) werden addiert; mit
+ * einem Vorzeichen aus einem weiteren Bit des Hashwerts heben sie sich im
+ * Mittel gegenseitig auf, statt sich zu verstärken. Für TF-IDF zählen wir
+ * die Dokumentfrequenzen ebenfalls pro Position (add), in einem Durchgang
+ * über die Dokumente.
+ */
+/**
+ * Feature hashing vectorizer producing sparse vectors of a fixed dimension.
+ * @author Fabian Steeg (fsteeg)
+ */
+public final class HashingVectorizer {
+
+    private int bits;
+    private int mask;
+    private boolean signed;
+    private boolean idf;
+    /* Dokumentfrequenz pro Position, für TF-IDF: */
+    private AtomicIntegerArray documentFrequencies;
+    private AtomicInteger documents;
+
+    /**
+     * Signed hashing of term frequencies, without IDF weighting.
+     * @param bits The number of bits k of the dimension 2^k (1 to 30)
+     */
+    public HashingVectorizer(final int bits) {
+        this(bits, true, false);
+    }
+
+    /**
+     * @param bits The number of bits k of the dimension 2^k (1 to 30)
+     * @param signed If true, the value of each term is added with a sign taken
+     *            from its hash, so that collisions cancel out in expectation
+     * @param idf If true, term frequencies are weighted with the inverse
+     *            document frequency of their position, counted with
+     *            {@link #add(Document)}
+     */
+    public HashingVectorizer(final int bits, final boolean signed,
+            final boolean idf) {
+        if (bits < 1 || bits > 30) {
+            throw new IllegalArgumentException(
+                    "Number of bits must be between 1 and 30, not: " + bits);
+        }
+        this.bits = bits;
+        this.mask = (1 << bits) - 1;
+        this.signed = signed;
+        this.idf = idf;
+        if (idf) {
+            this.documentFrequencies = new AtomicIntegerArray(1 << bits);
+            this.documents = new AtomicInteger();
+        }
+    }
+
+    /**
+     * Counts the document for the document frequencies (only needed for IDF
+     * weighting; may be called concurrently).
+     * @param document The document to count
+     */
+    public void add(final Document document) {
+        if (!idf) {
+            return;
+        }
+        documents.incrementAndGet();
+        int[] positions = new int[document.getTerms().size()];
+        int count = 0;
+        for (String term : document.getTerms()) {
+            positions[count++] = hash(term) & mask;
+        }
+        /* Jede Position nur einmal pro Dokument zählen: */
+        Arrays.sort(positions);
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || positions[i] != positions[i - 1]) {
+                documentFrequencies.incrementAndGet(positions[i]);
+            }
+        }
+    }
+
+    /**
+     * @param document The document to compute the vector for
+     * @return The hashed vector of the document, with a dimension of 2^k
+     */
+    public SparseVector vector(final Document document) {
+        Set<String> terms = document.getTerms();
+        int[] positions = new int[terms.size()];
+        float[] weights = new float[terms.size()];
+        int count = 0;
+        for (String term : terms) {
+            int hash = hash(term);
+            positions[count] = hash & mask;
+            float weight = document.getTermFrequencyOf(term)
+                    * idf(positions[count]);
+            /* Das Vorzeichen aus dem obersten Bit, nie Teil der Position: */
+            weights[count++] = signed && hash < 0 ? -weight : weight;
+        }
+        /*
+         * Kollisionen innerhalb des Dokuments werden dabei zusammengefasst,
+         * Positionen, bei denen sich die Werte aufheben, fallen weg:
+         */
+        return SparseVector.sorted(positions, weights, count, getDimension());
+    }
+
+    /*
+     * Geglättete IDF (wie oft üblich mit +1), so dass auch Positionen, die
+     * noch in keinem gezählten Dokument vorkamen, ein Gewicht bekommen:
+     */
+    private float idf(final int position) {
+        if (!idf) {
+            return 1;
+        }
+        return (float) Math.log((documents.get() + 1f)
+                / (documentFrequencies.get(position) + 1f)) + 1;
+    }
+
+    /*
+     * MurmurHash3 (32 Bit) über die Zeichen des Terms: anders als
+     * String#hashCode gut verteilt auch in den unteren Bits, die wir für die
+     * Position verwenden, und unabhängig von der JVM.
+     */
+    static int hash(final String term) {
+        int h = 0x9747b28c;
+        int length = term.length();
+        int i = 0;
+        for (; i + 1 < length; i += 2) {
+            h = mix(h, term.charAt(i) | (term.charAt(i + 1) << 16));
+            h = Integer.rotateLeft(h, 13) * 5 + 0xe6546b64;
+        }
+        if (i < length) {
+            h = mix(h, term.charAt(i));
+        }
+        h ^= length * 2;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static int mix(final int h, final int block) {
+        int k = block * 0xcc9e2d51;
+        k = Integer.rotateLeft(k, 15);
+        k *= 0x1b873593;
+        return h ^ k;
+    }
+
+    /** @return The dimension 2^k of the vectors */
+    public int getDimension() {
+        return 1 << bits;
+    }
+
+    /** @return The number of documents counted for the IDF weights */
+    public int getNumberOfDocuments() {
+        return idf ? documents.get() : 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("%s with dimension 2^%s (signed: %s, idf: %s)",
+                getClass().getSimpleName(), bits, signed, idf);
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ * Material for the course 'Information-Retrieval', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-informationretrieval.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.ir.p5.features;
+
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import de.uni_koeln.phil_fak.iv.ir.p2.index.TermIndex;
+import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document;
+import de.uni_koeln.phil_fak.iv.tm.p1.corpus.SampleDocuments;
+
+/*
+ * Tests für das Vektorisieren mit Hashwerten. Die Hashwerte haben wir mit
+ * einer getrennten Implementierung des Verfahrens (über Zeichenpaare statt
+ * Bytes, deshalb nicht die Werte der Referenzimplementierung) berechnet.
+ */
+/**
+ * Tests for the feature hashing vectorizer.
+ * @author Fabian Steeg (fsteeg)
+ */
+public class HashingVectorizerPraxis {
+    private static final int BITS = 4;
+
+    @Test
+    public void dimension() {
+        HashingVectorizer vectorizer = new HashingVectorizer(BITS);
+        Assert.assertEquals(16, vectorizer.getDimension());
+        for (Document document : SampleDocuments.create(20, 1, "politik",
+                "sport")) {
+            SparseVector vector = vectorizer.vector(document);
+            Assert.assertEquals(16, vector.getDimension());
+            for (int index : vector.getIndices()) {
+                Assert.assertTrue(index >= 0 && index < 16);
+            }
+        }
+        Assert.assertEquals(1 << 30, new HashingVectorizer(30)
+                .getDimension());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void noBits() {
+        new HashingVectorizer(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tooManyBits() {
+        new HashingVectorizer(31);
+    }
+
+    @Test
+    public void hash() {
+        Assert.assertEquals(0xebb6c228, HashingVectorizer.hash(""));
+        Assert.assertEquals(0xaaa95179, HashingVectorizer.hash("a"));
+        Assert.assertEquals(0xa8da3042, HashingVectorizer.hash("term"));
+        Assert.assertEquals(0x3e261d8a, HashingVectorizer.hash("köln"));
+        Assert.assertEquals(HashingVectorizer.hash("term"), HashingVectorizer
+                .hash(new String(new char[] { 't', 'e', 'r', 'm' })));
+    }
+
+    @Test
+    public void collisions() {
+        /* Zwei Terme mit gleicher Position, gleichem und anderem Vorzeichen: */
+        String term = "wa";
+        String same = null;
+        String opposite = null;
+        for (char c = 'b'; same == null || opposite == null; c++) {
+            String other = "w" + c;
+            int a = HashingVectorizer.hash(term);
+            int b = HashingVectorizer.hash(other);
+            if ((a & 15) == (b & 15)) {
+                if ((a < 0) == (b < 0)) {
+                    same = same == null ? other : same;
+                } else {
+                    opposite = opposite == null ? other : opposite;
+                }
+            }
+        }
+        int position = HashingVectorizer.hash(term) & 15;
+        /* Mit Vorzeichen heben sie sich auf, die Position fällt weg: */
+        HashingVectorizer signed = new HashingVectorizer(BITS);
+        Assert.assertEquals(0, signed.vector(document(term, opposite)).size());
+        Assert.assertEquals(2f, Math.abs(value(signed.vector(document(term,
+                same)), position)));
+        /* Ohne Vorzeichen addieren sie sich: */
+        HashingVectorizer unsigned = new HashingVectorizer(BITS, false, false);
+        Assert.assertEquals(2f, value(unsigned.vector(document(term,
+                opposite)), position));
+    }
+
+    @Test
+    public void stable() {
+        List<Document> documents = SampleDocuments.create(50, 2, "politik",
+                "sport");
+        HashingVectorizer vectorizer = new HashingVectorizer(10);
+        SparseVector before = vectorizer.vector(documents.get(0));
+        for (Document document : documents) {
+            vectorizer.add(document);
+        }
+        Assert.assertEquals(0, vectorizer.getNumberOfDocuments());
+        Assert.assertEquals(before, vectorizer.vector(documents.get(0)));
+        /* Mit IDF ändern die weiteren Dokumente die Gewichte: */
+        HashingVectorizer idf = new HashingVectorizer(10, true, true);
+        before = idf.vector(documents.get(0));
+        for (Document document : documents) {
+            idf.add(document);
+        }
+        Assert.assertEquals(50, idf.getNumberOfDocuments());
+        Assert.assertFalse(before.equals(idf.vector(documents.get(0))));
+    }
+
+    private static Document document(final String... terms) {
+        TermIndex result = new TermIndex("");
+        for (String term : terms) {
+            result.add(term);
+        }
+        return result;
+    }
+
+    private static float value(final SparseVector vector, final int index) {
+        int[] indices = vector.getIndices();
+        for (int i = 0; i < indices.length; i++) {
+            if (indices[i] == index) {
+                return vector.getValues()[i];
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,493 @@
+/**
+ * Material for the course 'Information-Retrieval', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-informationretrieval.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.ir.p5.features;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+ * Approximative Nächste-Nachbarn-Suche mit einem Hierarchical Navigable Small
+ * World Graph (HNSW, Malkov & Yashunin). Jeder Vektor ist ein Knoten in
+ * mehreren Graph-Ebenen: auf der untersten sind alle Knoten, auf jeder höheren
+ * (zufällig gewählt) exponentiell weniger. Eine Suche beginnt oben beim
+ * Einstiegspunkt, geht gierig zum nächsten Nachbarn der Anfrage und steigt
+ * dann eine Ebene ab; auf der untersten Ebene wird eine Kandidatenliste der
+ * Größe ef verfolgt. Ein größeres ef findet mehr der echten Nachbarn (Recall),
+ * braucht aber länger. Die Vektoren werden auf Länge 1 normiert, die Distanz
+ * ist 1 minus Kosinusähnlichkeit. Suchen verändern den Graph nicht und laufen
+ * daher parallel, nur das Einfügen und Entfernen schließt andere Zugriffe aus.
+ */
+/**
+ * HNSW approximate nearest neighbour index over sparse vectors, using cosine
+ * distance, with incremental insertion and binary persistence. Searches may
+ * run concurrently with each other.
+ * @author Fabian Steeg (fsteeg)
+ */
+public final class HnswIndex {
+
+    private static final int MAGIC = 0x484e5357;
+
+    /* Ein Knoten im Graph mit seinen Nachbarn auf jeder seiner Ebenen: */
+    private static final class Node {
+        private final SparseVector vector;
+        private final int[][] links;
+
+        Node(final SparseVector vector, final int level) {
+            this.vector = vector;
+            this.links = new int[level + 1][];
+            for (int i = 0; i <= level; i++) {
+                links[i] = new int[0];
+            }
+        }
+    }
+
+    private static final class Candidate {
+        private final int node;
+        private final float distance;
+
+        Candidate(final int node, final float distance) {
+            this.node = node;
+            this.distance = distance;
+        }
+    }
+
+    /*
+     * Welche Knoten die aktuelle Suche schon besucht hat: statt die
+     * Markierungen für jede Suche zu löschen, zählen wir die Marke hoch.
+     * Jeder Thread hat seine eigenen Markierungen, so dass Suchen parallel
+     * laufen können.
+     */
+    private static final class Visited {
+        private int mark;
+        private int[] marks = new int[16];
+
+        void next(final int size) {
+            if (marks.length < size) {
+                int[] grown = new int[Math.max(size, marks.length * 2)];
+                System.arraycopy(marks, 0, grown, 0, marks.length);
+                marks = grown;
+            }
+            if (mark == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                mark = 0;
+            }
+            mark++;
+        }
+
+        boolean visit(final int node) {
+            if (marks[node] == mark) {
+                return false;
+            }
+            marks[node] = mark;
+            return true;
+        }
+    }
+
+    private static final Comparator<Candidate> NEAREST_FIRST =
+            new Comparator<Candidate>() {
+                public int compare(final Candidate a, final Candidate b) {
+                    return Float.compare(a.distance, b.distance);
+                }
+            };
+
+    private static final Comparator<Candidate> FARTHEST_FIRST = Collections
+            .reverseOrder(NEAREST_FIRST);
+
+    private int m;
+    private int efConstruction;
+    private double levelFactor;
+    private Random random;
+    private List<Node> nodes;
+    private BitSet deleted;
+    private int entryPoint;
+    private ReadWriteLock lock;
+    private ThreadLocal<Visited> visited;
+
+    /**
+     * @param m The number of links per node on the upper levels (twice as many
+     *            on the lowest level); higher values improve recall and cost
+     *            memory and insertion time
+     * @param efConstruction The size of the candidate list when inserting;
+     *            higher values improve the graph and cost insertion time
+     */
+    public HnswIndex(final int m, final int efConstruction) {
+        if (m < 2 || efConstruction < 1) {
+            throw new IllegalArgumentException(String.format(
+                    "Need m > 1 and efConstruction > 0, got %s and %s", m,
+                    efConstruction));
+        }
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.levelFactor = 1 / Math.log(m);
+        this.random = new Random(m * 31L + efConstruction);
+        this.nodes = new ArrayList<Node>();
+        this.deleted = new BitSet();
+        this.entryPoint = -1;
+        this.lock = new ReentrantReadWriteLock();
+        this.visited = new ThreadLocal<Visited>() {
+            @Override
+            protected Visited initialValue() {
+                return new Visited();
+            }
+        };
+    }
+
+    /** Creates an index with m=16 and efConstruction=100. */
+    public HnswIndex() {
+        this(16, 100);
+    }
+
+    /** @return The number of nodes in the index, including removed nodes */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return nodes.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param vector The vector to insert
+     * @return The id of the new node for the vector, its position in the
+     *         insertion order
+     */
+    public int add(final SparseVector vector) {
+        lock.writeLock().lock();
+        try {
+            return insert(vector);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int insert(final SparseVector vector) {
+        int level = (int) (-Math.log(1 - random.nextDouble()) * levelFactor);
+        Node node = new Node(vector.normalized(), level);
+        int id = nodes.size();
+        nodes.add(node);
+        if (entryPoint < 0) {
+            entryPoint = id;
+            return id;
+        }
+        int top = topLevel();
+        Candidate nearest = new Candidate(entryPoint, distance(node.vector,
+                entryPoint));
+        /* Oberhalb der Ebene des neuen Knotens nur gierig absteigen: */
+        for (int l = top; l > level; l--) {
+            nearest = greedy(node.vector, nearest, l);
+        }
+        List<Candidate> entries = Collections.singletonList(nearest);
+        for (int l = Math.min(level, top); l >= 0; l--) {
+            List<Candidate> found = searchLayer(node.vector, entries,
+                    efConstruction, l);
+            int[] selected = select(node.vector, found, maxLinks(l));
+            node.links[l] = selected;
+            for (int neighbour : selected) {
+                connect(neighbour, id, l);
+            }
+            entries = found;
+        }
+        if (level > top) {
+            entryPoint = id;
+        }
+        return id;
+    }
+
+    /**
+     * @param id The id of the node to exclude from search results; it stays in
+     *            the graph for navigation
+     */
+    public void remove(final int id) {
+        lock.writeLock().lock();
+        try {
+            deleted.set(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param query The query vector
+     * @param k The number of neighbours to return
+     * @param ef The size of the candidate list, at least k; higher values
+     *            improve recall and cost time
+     * @return The ids of the (approximately) k nearest nodes, nearest first
+     */
+    public int[] search(final SparseVector query, final int k, final int ef) {
+        lock.readLock().lock();
+        try {
+            return find(query, k, ef);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int[] find(final SparseVector query, final int k, final int ef) {
+        if (entryPoint < 0) {
+            return new int[0];
+        }
+        SparseVector q = query.normalized();
+        Candidate nearest = new Candidate(entryPoint, distance(q, entryPoint));
+        for (int l = topLevel(); l > 0; l--) {
+            nearest = greedy(q, nearest, l);
+        }
+        List<Candidate> found = searchLayer(q, Collections
+                .singletonList(nearest), Math.max(ef, k), 0);
+        int[] result = new int[Math.min(k, found.size())];
+        int count = 0;
+        for (Candidate candidate : found) {
+            if (count == result.length) {
+                break;
+            }
+            if (!deleted.get(candidate.node)) {
+                result[count++] = candidate.node;
+            }
+        }
+        int[] trimmed = new int[count];
+        System.arraycopy(result, 0, trimmed, 0, count);
+        return trimmed;
+    }
+
+    private int topLevel() {
+        return nodes.get(entryPoint).links.length - 1;
+    }
+
+    private int maxLinks(final int level) {
+        return level == 0 ? 2 * m : m;
+    }
+
+    private float distance(final SparseVector vector, final int node) {
+        return 1 - vector.dot(nodes.get(node).vector);
+    }
+
+    private Candidate greedy(final SparseVector query, final Candidate start,
+            final int level) {
+        Candidate current = start;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int neighbour : nodes.get(current.node).links[level]) {
+                float d = distance(query, neighbour);
+                if (d < current.distance) {
+                    current = new Candidate(neighbour, d);
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /*
+     * Die Suche auf einer Ebene: wir erweitern immer den nächsten noch nicht
+     * erweiterten Kandidaten, bis der weiter weg ist als das schlechteste der
+     * ef besten bisherigen Ergebnisse.
+     */
+    private List<Candidate> searchLayer(final SparseVector query,
+            final List<Candidate> entries, final int ef, final int level) {
+        Visited seen = visited.get();
+        seen.next(nodes.size());
+        PriorityQueue<Candidate> candidates = new PriorityQueue<Candidate>(
+                ef + 1, NEAREST_FIRST);
+        PriorityQueue<Candidate> results = new PriorityQueue<Candidate>(
+                ef + 1, FARTHEST_FIRST);
+        for (Candidate entry : entries) {
+            seen.visit(entry.node);
+            candidates.add(entry);
+            results.add(entry);
+        }
+        while (results.size() > ef) {
+            results.poll();
+        }
+        while (!candidates.isEmpty()) {
+            Candidate current = candidates.poll();
+            if (current.distance > results.peek().distance) {
+                break;
+            }
+            for (int neighbour : nodes.get(current.node).links[level]) {
+                if (!seen.visit(neighbour)) {
+                    continue;
+                }
+                float d = distance(query, neighbour);
+                if (results.size() < ef || d < results.peek().distance) {
+                    Candidate candidate = new Candidate(neighbour, d);
+                    candidates.add(candidate);
+                    results.add(candidate);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+        List<Candidate> result = new ArrayList<Candidate>(results);
+        Collections.sort(result, NEAREST_FIRST);
+        return result;
+    }
+
+    /*
+     * Auswahl der Nachbarn mit der Heuristik aus dem HNSW-Artikel: ein
+     * Kandidat wird nur verbunden, wenn er näher an dem Knoten ist als an
+     * allen schon gewählten Nachbarn. So verbinden die Kanten verschiedene
+     * Richtungen statt nur einen dichten Haufen.
+     */
+    private int[] select(final SparseVector vector,
+            final List<Candidate> sorted, final int max) {
+        List<Candidate> selected = new ArrayList<Candidate>(max);
+        for (Candidate candidate : sorted) {
+            if (selected.size() == max) {
+                break;
+            }
+            SparseVector c = nodes.get(candidate.node).vector;
+            boolean closer = true;
+            for (Candidate s : selected) {
+                if (distance(c, s.node) < candidate.distance) {
+                    closer = false;
+                    break;
+                }
+            }
+            if (closer) {
+                selected.add(candidate);
+            }
+        }
+        int[] result = new int[selected.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = selected.get(i).node;
+        }
+        return result;
+    }
+
+    private void connect(final int node, final int neighbour, final int level) {
+        Node n = nodes.get(node);
+        int[] links = n.links[level];
+        int[] grown = new int[links.length + 1];
+        System.arraycopy(links, 0, grown, 0, links.length);
+        grown[links.length] = neighbour;
+        if (grown.length <= maxLinks(level)) {
+            n.links[level] = grown;
+        } else {
+            /* Zu viele Nachbarn: neu auswählen */
+            List<Candidate> candidates = new ArrayList<Candidate>(grown.length);
+            for (int link : grown) {
+                candidates.add(new Candidate(link, distance(n.vector, link)));
+            }
+            Collections.sort(candidates, NEAREST_FIRST);
+            n.links[level] = select(n.vector, candidates, maxLinks(level));
+        }
+    }
+
+    /**
+     * @param out The stream to write this index to
+     * @throws IOException If writing fails
+     */
+    public void write(final DataOutputStream out) throws IOException {
+        lock.readLock().lock();
+        try {
+            writeNodes(out);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void writeNodes(final DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(m);
+        out.writeInt(efConstruction);
+        out.writeInt(entryPoint);
+        out.writeInt(nodes.size());
+        for (int i = 0; i < nodes.size(); i++) {
+            Node node = nodes.get(i);
+            out.writeBoolean(deleted.get(i));
+            SparseVector vector = node.vector;
+            out.writeInt(vector.getDimension());
+            out.writeInt(vector.size());
+            for (int j = 0; j < vector.size(); j++) {
+                out.writeInt(vector.getIndices()[j]);
+                out.writeFloat(vector.getValues()[j]);
+            }
+            out.writeInt(node.links.length);
+            for (int[] links : node.links) {
+                out.writeInt(links.length);
+                for (int link : links) {
+                    out.writeInt(link);
+                }
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * @param in The stream to read an index from, as written by
+     *            {@link #write(DataOutputStream)}
+     * @return The index read from the stream
+     * @throws IOException If reading fails
+     */
+    public static HnswIndex read(final DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an HNSW index");
+        }
+        HnswIndex index = new HnswIndex(in.readInt(), in.readInt());
+        index.entryPoint = in.readInt();
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            if (in.readBoolean()) {
+                index.deleted.set(i);
+            }
+            int dimension = in.readInt();
+            int[] indices = new int[in.readInt()];
+            float[] values = new float[indices.length];
+            for (int j = 0; j < indices.length; j++) {
+                indices[j] = in.readInt();
+                values[j] = in.readFloat();
+            }
+            Node node = new Node(new SparseVector(indices, values, dimension),
+                    in.readInt() - 1);
+            for (int l = 0; l < node.links.length; l++) {
+                int[] links = new int[in.readInt()];
+                for (int j = 0; j < links.length; j++) {
+                    links[j] = in.readInt();
+                }
+                node.links[l] = links;
+            }
+            index.nodes.add(node);
+        }
+        return index;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("%s with %s nodes (m=%s, efConstruction=%s)",
+                getClass().getSimpleName(), nodes.size(), m, efConstruction);
+    }
+}
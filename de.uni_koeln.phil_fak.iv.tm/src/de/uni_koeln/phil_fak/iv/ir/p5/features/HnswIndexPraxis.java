@@ -0,0 +1,162 @@
+/**
+ * Material for the course 'Information-Retrieval', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-informationretrieval.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.ir.p5.features;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/*
+ * Tests für den HNSW-Index: die gefundenen Nachbarn vergleichen wir mit den
+ * echten, die wir durch Vergleich mit allen Vektoren finden. Die Vektoren
+ * sind zufällig, aber um Gruppen herum verteilt (wie Dokumente zu Themen) und
+ * bei jedem Lauf gleich.
+ */
+/**
+ * Tests for the HNSW index, against a brute force search.
+ * @author Fabian Steeg (fsteeg)
+ */
+public class HnswIndexPraxis {
+    private static final int SIZE = 3000;
+    private static final int QUERIES = 50;
+    private static final int K = 10;
+    private static final int EF = 100;
+    private List<SparseVector> vectors;
+    private HnswIndex index;
+
+    @Before
+    public void before() {
+        vectors = vectors(SIZE, 1);
+        index = new HnswIndex();
+        for (SparseVector vector : vectors) {
+            index.add(vector);
+        }
+    }
+
+    @Test
+    public void recall() {
+        List<SparseVector> queries = vectors(QUERIES, 2);
+        int found = 0;
+        for (SparseVector query : queries) {
+            Set<Integer> exact = exact(query, K);
+            for (int node : index.search(query, K, EF)) {
+                if (exact.contains(node)) {
+                    found++;
+                }
+            }
+        }
+        float recall = found / (float) (QUERIES * K);
+        System.out.println("HNSW recall@" + K + ": " + recall);
+        Assert.assertTrue(recall >= 0.9f);
+    }
+
+    @Test
+    public void concurrentSearch() throws Exception {
+        final List<SparseVector> queries = vectors(QUERIES, 2);
+        List<int[]> expected = new ArrayList<int[]>();
+        for (SparseVector query : queries) {
+            expected.add(index.search(query, K, EF));
+        }
+        /* Parallel gestellt müssen die Anfragen dasselbe ergeben: */
+        ExecutorService exec = Executors.newFixedThreadPool(4);
+        List<Future<int[]>> results = new ArrayList<Future<int[]>>();
+        for (final SparseVector query : queries) {
+            results.add(exec.submit(new Callable<int[]>() {
+                public int[] call() {
+                    return index.search(query, K, EF);
+                }
+            }));
+        }
+        for (int i = 0; i < queries.size(); i++) {
+            Assert.assertTrue(Arrays.equals(expected.get(i), results.get(i)
+                    .get()));
+        }
+        exec.shutdown();
+    }
+
+    @Test
+    public void removeAndPersist() throws IOException {
+        SparseVector query = vectors.get(0);
+        Assert.assertEquals(0, index.search(query, 1, EF)[0]);
+        index.remove(0);
+        int[] before = index.search(query, K, EF);
+        for (int node : before) {
+            Assert.assertTrue(node != 0);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        index.write(new DataOutputStream(bytes));
+        HnswIndex read = HnswIndex.read(new DataInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())));
+        Assert.assertEquals(index.size(), read.size());
+        Assert.assertTrue(Arrays.equals(before, read.search(query, K, EF)));
+    }
+
+    private Set<Integer> exact(final SparseVector query, final int k) {
+        final float[] similarities = new float[vectors.size()];
+        Integer[] nodes = new Integer[vectors.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = i;
+            similarities[i] = query.similarity(vectors.get(i));
+        }
+        Arrays.sort(nodes, new Comparator<Integer>() {
+            public int compare(final Integer a, final Integer b) {
+                return Float.compare(similarities[b], similarities[a]);
+            }
+        });
+        return new HashSet<Integer>(Arrays.asList(nodes).subList(0, k));
+    }
+
+    /* Vektoren mit 20 Einträgen rund um eine von 50 Gruppen: */
+    static List<SparseVector> vectors(final int count, final long seed) {
+        final int dimension = 2000;
+        Random random = new Random(seed);
+        List<SparseVector> result = new ArrayList<SparseVector>(count);
+        for (int i = 0; i < count; i++) {
+            float[] dense = new float[dimension];
+            int group = random.nextInt(50);
+            for (int j = 0; j < 20; j++) {
+                int position = (group * 40
+                        + (int) (random.nextGaussian() * 30) + dimension)
+                        % dimension;
+                dense[position] += random.nextFloat();
+            }
+            result.add(SparseVector.of(dense));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Material for the course 'Information-Retrieval', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-informationretrieval.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.ir.p5.features;
+
+/*
+ * Das Ergebnis eines All-Pairs-Vergleichs: für jeden Vektor (über seine
+ * Position identifiziert) die bis zu k ähnlichsten anderen Vektoren mit ihrer
+ * Ähnlichkeit, absteigend sortiert. Statt einer vollen n×n-Matrix brauchen wir
+ * so nur n×k Einträge.
+ */
+/**
+ * Sparse graph of the top-k most similar neighbours of each vector.
+ * @author Fabian Steeg (fsteeg)
+ */
+public final class NeighbourGraph {
+
+    private int[][] neighbours;
+    private float[][] similarities;
+    private int k;
+    private float threshold;
+
+    NeighbourGraph(final int[][] neighbours, final float[][] similarities,
+            final int k, final float threshold) {
+        this.neighbours = neighbours;
+        this.similarities = similarities;
+        this.k = k;
+        this.threshold = threshold;
+    }
+
+    /** @return The number of vectors in the graph */
+    public int size() {
+        return neighbours.length;
+    }
+
+    /** @return The maximum number of neighbours per vector */
+    public int getK() {
+        return k;
+    }
+
+    /** @return The minimum similarity of neighbours */
+    public float getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * @param i The position of a vector
+     * @return The positions of the most similar vectors, most similar first
+     */
+    public int[] getNeighbours(final int i) {
+        return neighbours[i];
+    }
+
+    /**
+     * @param i The position of a vector
+     * @return The similarities of the vectors returned by
+     *         {@link #getNeighbours(int)}, in the same order
+     */
+    public float[] getSimilarities(final int i) {
+        return similarities[i];
+    }
+
+    /**
+     * @param i The position of a vector
+     * @param j The position of another vector
+     * @return The similarity of the two vectors if j is a neighbour of i,
+     *         else 0
+     */
+    public float similarity(final int i, final int j) {
+        int[] row = neighbours[i];
+        for (int n = 0; n < row.length; n++) {
+            if (row[n] == j) {
+                return similarities[i][n];
+            }
+        }
+        return 0;
+    }
+
+    /** @return The total number of edges in the graph */
+    public int getNumberOfEdges() {
+        int result = 0;
+        for (int[] row : neighbours) {
+            result += row.length;
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("%s of %s vectors with %s edges (k=%s, t=%s)",
+                getClass().getSimpleName(), size(), getNumberOfEdges(), k,
+                threshold);
+    }
+}
@@ -0,0 +1,225 @@
+/**
+ * Material for the course 'Information-Retrieval', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-informationretrieval.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.ir.p5.features;
+
+import java.util.Arrays;
+
+/*
+ * Ein TF-IDF-Vektor über das ganze Vokabular hat fast nur Nullen; hier
+ * speichern wir nur die Werte ungleich Null mit ihren (aufsteigend sortierten)
+ * Positionen im Vektor, sowie die Länge des Vektors.
+ */
+/**
+ * Sparse representation of a feature vector.
+ * @author Fabian Steeg (fsteeg)
+ */
+public final class SparseVector {
+
+    private int[] indices;
+    private float[] values;
+    private int dimension;
+    private float length;
+
+    /**
+     * @param indices The ascending indices of the non-zero values
+     * @param values The non-zero values
+     * @param dimension The dimension of the vector
+     */
+    public SparseVector(final int[] indices, final float[] values,
+            final int dimension) {
+        if (indices.length != values.length) {
+            throw new IllegalArgumentException(String.format(
+                    "Got %s indices but %s values", indices.length,
+                    values.length));
+        }
+        this.indices = indices;
+        this.values = values;
+        this.dimension = dimension;
+        this.length = VectorKernels.norm(values);
+    }
+
+    /**
+     * @param dense The dense vector values
+     * @return The sparse representation of the given values
+     */
+    public static SparseVector of(final float[] dense) {
+        int count = 0;
+        for (float f : dense) {
+            if (f != 0) {
+                count++;
+            }
+        }
+        int[] indices = new int[count];
+        float[] values = new float[count];
+        for (int i = 0, j = 0; i < dense.length; i++) {
+            if (dense[i] != 0) {
+                indices[j] = i;
+                values[j++] = dense[i];
+            }
+        }
+        return new SparseVector(indices, values, dense.length);
+    }
+
+    /**
+     * @param vector The feature vector
+     * @return The sparse representation of the given vector
+     */
+    public static SparseVector of(final FeatureVector vector) {
+        return of(vector.toArray());
+    }
+
+    /*
+     * Die Werte kommen meist in der Reihenfolge der Terme eines Dokuments
+     * (aus einem Set), nicht nach Index. Statt Paare von Objekten zu
+     * sortieren, packen wir Index und Position in ein long und sortieren nur
+     * die longs; über die Position finden wir danach den Wert.
+     */
+    /**
+     * @param indices The indices of the values, in any order and possibly
+     *            repeated
+     * @param values The values
+     * @param count The number of entries to take from the arrays
+     * @param dimension The dimension of the vector
+     * @return The sparse vector of the given entries, sorted by index, with
+     *         the values of repeated indices summed up and zero values left out
+     */
+    public static SparseVector sorted(final int[] indices,
+            final float[] values, final int count, final int dimension) {
+        long[] entries = new long[count];
+        for (int i = 0; i < count; i++) {
+            /* Index und Position zusammen sortieren: */
+            entries[i] = ((long) indices[i] << 32) | i;
+        }
+        Arrays.sort(entries);
+        int[] resultIndices = new int[count];
+        float[] resultValues = new float[count];
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            int index = (int) (entries[i] >>> 32);
+            float value = values[(int) entries[i]];
+            if (size > 0 && resultIndices[size - 1] == index) {
+                resultValues[size - 1] += value;
+            } else {
+                resultIndices[size] = index;
+                resultValues[size++] = value;
+            }
+        }
+        int nonZero = 0;
+        for (int i = 0; i < size; i++) {
+            if (resultValues[i] != 0) {
+                resultIndices[nonZero] = resultIndices[i];
+                resultValues[nonZero++] = resultValues[i];
+            }
+        }
+        return new SparseVector(Arrays.copyOf(resultIndices, nonZero), Arrays
+                .copyOf(resultValues, nonZero), dimension);
+    }
+
+    /** @return The ascending indices of the non-zero values */
+    public int[] getIndices() {
+        return indices;
+    }
+
+    /** @return The non-zero values */
+    public float[] getValues() {
+        return values;
+    }
+
+    /** @return The number of non-zero values */
+    public int size() {
+        return indices.length;
+    }
+
+    /** @return The dimension of the vector */
+    public int getDimension() {
+        return dimension;
+    }
+
+    /** @return The euclidian length of the vector */
+    public float getLength() {
+        return length;
+    }
+
+    /**
+     * @return A copy of this vector with euclidian length 1, or this vector if
+     *         it has length 0 or 1
+     */
+    public SparseVector normalized() {
+        if (length == 0 || length == 1) {
+            return this;
+        }
+        float[] result = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = values[i] / length;
+        }
+        return new SparseVector(indices, result, dimension);
+    }
+
+    /**
+     * @param other The vector to compute the dot product with
+     * @return The dot product of this and the other vector
+     */
+    public float dot(final SparseVector other) {
+        return VectorKernels.dot(indices, values, other.indices, other.values);
+    }
+
+    /**
+     * @param other The vector to compare this vector to
+     * @return The cosine similarity of this and the other vector
+     */
+    public float similarity(final SparseVector other) {
+        return VectorKernels.cosine(indices, values, length, other.indices,
+                other.values, other.length);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(final Object obj) {
+        if (!(obj instanceof SparseVector)) {
+            return false;
+        }
+        SparseVector that = (SparseVector) obj;
+        return this.dimension == that.dimension
+                && Arrays.equals(this.indices, that.indices)
+                && Arrays.equals(this.values, that.values);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(indices) + Arrays.hashCode(values);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("%s with %s of %s values", getClass()
+                .getSimpleName(), indices.length, dimension);
+    }
+}
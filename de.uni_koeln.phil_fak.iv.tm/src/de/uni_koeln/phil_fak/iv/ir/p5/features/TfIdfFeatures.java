@@ -20,7 +20,9 @@
 package de.uni_koeln.phil_fak.iv.ir.p5.features;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus;
@@ -81,6 +83,47 @@ public final class TfIdfFeatures {
         return new FeatureVector(values);
     }
 
+    /*
+     * Die meisten Werte im Vektor sind 0 (die Terme, die im Dokument nicht
+     * vorkommen). Für den dünn besetzten Vektor gehen wir deshalb nur über die
+     * Terme des Dokuments, und brauchen dazu die Position jedes Terms im
+     * Vokabular (die wir nur einmal für alle Dokumente berechnen).
+     */
+    /**
+     * @param positions The position of each dictionary term in the vector, as
+     *            returned by {@link #positions(Corpus)}
+     * @return The non-zero values of {@link #vector()}, computed from the terms
+     *         of the document only
+     */
+    public SparseVector sparseVector(final Map<String, Integer> positions) {
+        Set<String> terms = document.getTerms();
+        int[] indices = new int[terms.size()];
+        float[] weights = new float[terms.size()];
+        int count = 0;
+        for (String term : terms) {
+            Integer position = positions.get(term);
+            if (position != null) {
+                indices[count] = position;
+                weights[count++] = tfIdf(term);
+            }
+        }
+        return SparseVector.sorted(indices, weights, count, positions.size());
+    }
+
+    /**
+     * @param corpus The corpus
+     * @return The position of each term of the corpus in the feature vectors
+     */
+    public static Map<String, Integer> positions(final Corpus corpus) {
+        Set<String> terms = corpus.getTerms();
+        Map<String, Integer> positions = new HashMap<String, Integer>(terms
+                .size() * 2);
+        for (String term : terms) {
+            positions.put(term, positions.size());
+        }
+        return positions;
+    }
+
     private Float tfIdf(final String dictionaryTerm) {
         /* TF und DF */
         Integer tf = document.getTermFrequencyOf(dictionaryTerm);
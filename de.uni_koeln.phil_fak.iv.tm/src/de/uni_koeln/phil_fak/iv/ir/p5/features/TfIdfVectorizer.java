@@ -0,0 +1,129 @@
+/**
+ * Material for the course 'Information-Retrieval', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-informationretrieval.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.ir.p5.features;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus;
+import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document;
+
+/*
+ * TF-IDF-Vektoren wie in TfIdfFeatures, aber dünn besetzt und über feste
+ * Term-IDs: die Positionen der Terme im (sortierten) Vokabular des Korpus
+ * verschieben sich, wenn neue Terme dazukommen, hier bekommt jeder Term beim
+ * ersten Auftreten eine ID, die sich nicht mehr ändert. So bleiben Vektoren
+ * vergleichbar, die zu verschiedenen Zeitpunkten berechnet wurden (z.B. für
+ * einen Index oder ein Clustering, das mit dem Korpus wächst). Die IDF-Werte
+ * sind die zum Zeitpunkt der Berechnung.
+ */
+/**
+ * Sparse TF-IDF vectors over stable term ids.
+ * @author Fabian Steeg (fsteeg)
+ */
+public final class TfIdfVectorizer {
+
+    private Map<String, Integer> termIds;
+
+    /** Creates a vectorizer without any known terms. */
+    public TfIdfVectorizer() {
+        this.termIds = new HashMap<String, Integer>();
+    }
+
+    /**
+     * @param document The document to compute the vector for
+     * @param corpus The corpus to take the document frequencies from
+     * @param addTerms If true, terms without an id get a new id; else they are
+     *            ignored (e.g. for query documents)
+     * @return The TF-IDF vector of the document, with a dimension of the
+     *         number of known terms
+     */
+    public synchronized SparseVector vector(final Document document,
+            final Corpus corpus, final boolean addTerms) {
+        Set<String> terms = document.getTerms();
+        int[] ids = new int[terms.size()];
+        float[] weights = new float[terms.size()];
+        int count = 0;
+        for (String term : terms) {
+            Integer id = termIds.get(term);
+            if (id == null && addTerms) {
+                id = termIds.size();
+                termIds.put(term, id);
+            }
+            Integer df = corpus.getDocumentFrequencyOf(term);
+            if (id != null && df != null) {
+                float idf = (float) Math.log(corpus.getNumberOfDocuments()
+                        / (float) df);
+                ids[count] = id;
+                weights[count++] = document.getTermFrequencyOf(term) * idf;
+            }
+        }
+        return SparseVector.sorted(ids, weights, count, termIds.size());
+    }
+
+    /** @return The number of terms with an id */
+    public synchronized int getNumberOfTerms() {
+        return termIds.size();
+    }
+
+    /**
+     * @param out The stream to write the term ids to
+     * @throws IOException If writing fails
+     */
+    public synchronized void write(final DataOutputStream out)
+            throws IOException {
+        out.writeInt(termIds.size());
+        for (Map.Entry<String, Integer> entry : termIds.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeInt(entry.getValue());
+        }
+    }
+
+    /**
+     * @param in The stream to read term ids from, as written by
+     *            {@link #write(DataOutputStream)}
+     * @return A vectorizer with the term ids read from the stream
+     * @throws IOException If reading fails
+     */
+    public static TfIdfVectorizer read(final DataInputStream in)
+            throws IOException {
+        TfIdfVectorizer result = new TfIdfVectorizer();
+        int terms = in.readInt();
+        for (int i = 0; i < terms; i++) {
+            String term = in.readUTF();
+            result.termIds.put(term, in.readInt());
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("%s with %s terms", getClass().getSimpleName(),
+                getNumberOfTerms());
+    }
+}
@@ -0,0 +1,195 @@
+/**
+ * Material for the course 'Information-Retrieval', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-informationretrieval.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.ir.p5.features;
+
+/*
+ * Die Rechenkerne für Ähnlichkeiten von Vektoren, auf primitiven Arrays statt
+ * auf Listen von Float-Objekten (kein Unboxing, zusammenhängender Speicher).
+ * Die Schleifen sind vierfach ausgerollt, mit vier unabhängigen Summen, so
+ * dass der JIT-Compiler die Multiplikationen überlappen und vektorisieren
+ * kann. Dünn besetzte Vektoren werden als aufsteigend sortierte Indizes mit
+ * zugehörigen Werten dargestellt.
+ */
+/**
+ * Dot product, norm and cosine kernels for dense and sparse float vectors.
+ * @author Fabian Steeg (fsteeg)
+ */
+public final class VectorKernels {
+
+    private VectorKernels() {
+        // Enforce non-instantiability with a private constructor
+    }
+
+    /**
+     * @param a The first dense vector
+     * @param b The second dense vector, of the same length as the first
+     * @return The dot product of the vectors
+     */
+    public static float dot(final float[] a, final float[] b) {
+        checkLengths(a.length, b.length);
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (int n = a.length - 3; i < n; i += 4) {
+            s0 += a[i] * b[i];
+            s1 += a[i + 1] * b[i + 1];
+            s2 += a[i + 2] * b[i + 2];
+            s3 += a[i + 3] * b[i + 3];
+        }
+        for (; i < a.length; i++) {
+            s0 += a[i] * b[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * @param a The dense vector, or the non-zero values of a sparse vector
+     * @return The euclidian length of the vector
+     */
+    public static float norm(final float[] a) {
+        return (float) Math.sqrt(dot(a, a));
+    }
+
+    /*
+     * Dot-Produkt und beide Längen in einem Durchlauf: jeder Wert wird nur
+     * einmal aus dem Speicher geholt.
+     */
+    /**
+     * @param a The first dense vector
+     * @param b The second dense vector, of the same length as the first
+     * @return The cosine similarity of the vectors, or 0 if one of them has
+     *         length 0
+     */
+    public static float cosine(final float[] a, final float[] b) {
+        checkLengths(a.length, b.length);
+        float dot0 = 0, dot1 = 0, aa0 = 0, aa1 = 0, bb0 = 0, bb1 = 0;
+        int i = 0;
+        for (int n = a.length - 1; i < n; i += 2) {
+            float a0 = a[i], a1 = a[i + 1], b0 = b[i], b1 = b[i + 1];
+            dot0 += a0 * b0;
+            dot1 += a1 * b1;
+            aa0 += a0 * a0;
+            aa1 += a1 * a1;
+            bb0 += b0 * b0;
+            bb1 += b1 * b1;
+        }
+        for (; i < a.length; i++) {
+            dot0 += a[i] * b[i];
+            aa0 += a[i] * a[i];
+            bb0 += b[i] * b[i];
+        }
+        float norms = (float) (Math.sqrt(aa0 + aa1) * Math.sqrt(bb0 + bb1));
+        return cosine(dot0 + dot1, norms);
+    }
+
+    /**
+     * @param a The first dense vector
+     * @param normA The precomputed euclidian length of the first vector
+     * @param b The second dense vector, of the same length as the first
+     * @param normB The precomputed euclidian length of the second vector
+     * @return The cosine similarity of the vectors, or 0 if one of them has
+     *         length 0
+     */
+    public static float cosine(final float[] a, final float normA,
+            final float[] b, final float normB) {
+        return cosine(dot(a, b), normA * normB);
+    }
+
+    /*
+     * Für dünn besetzte Vektoren laufen wir wie beim Schneiden von
+     * Postings-Listen gleichzeitig durch beide Index-Arrays; nur wo beide
+     * Vektoren einen Wert haben, trägt das Produkt zur Summe bei.
+     */
+    /**
+     * @param indicesA The sorted indices of the non-zero values of the first
+     *            vector
+     * @param valuesA The non-zero values of the first vector
+     * @param indicesB The sorted indices of the non-zero values of the second
+     *            vector
+     * @param valuesB The non-zero values of the second vector
+     * @return The dot product of the vectors
+     */
+    public static float dot(final int[] indicesA, final float[] valuesA,
+            final int[] indicesB, final float[] valuesB) {
+        float sum = 0;
+        int i = 0, j = 0;
+        while (i < indicesA.length && j < indicesB.length) {
+            int a = indicesA[i];
+            int b = indicesB[j];
+            if (a == b) {
+                sum += valuesA[i++] * valuesB[j++];
+            } else if (a < b) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * @param indices The indices of the non-zero values of the sparse vector
+     * @param values The non-zero values of the sparse vector
+     * @param dense The dense vector
+     * @return The dot product of the vectors
+     */
+    public static float dot(final int[] indices, final float[] values,
+            final float[] dense) {
+        float s0 = 0, s1 = 0;
+        int i = 0;
+        for (int n = indices.length - 1; i < n; i += 2) {
+            s0 += values[i] * dense[indices[i]];
+            s1 += values[i + 1] * dense[indices[i + 1]];
+        }
+        if (i < indices.length) {
+            s0 += values[i] * dense[indices[i]];
+        }
+        return s0 + s1;
+    }
+
+    /**
+     * @param indicesA The sorted indices of the non-zero values of the first
+     *            vector
+     * @param valuesA The non-zero values of the first vector
+     * @param normA The precomputed euclidian length of the first vector
+     * @param indicesB The sorted indices of the non-zero values of the second
+     *            vector
+     * @param valuesB The non-zero values of the second vector
+     * @param normB The precomputed euclidian length of the second vector
+     * @return The cosine similarity of the vectors, or 0 if one of them has
+     *         length 0
+     */
+    public static float cosine(final int[] indicesA, final float[] valuesA,
+            final float normA, final int[] indicesB, final float[] valuesB,
+            final float normB) {
+        return cosine(dot(indicesA, valuesA, indicesB, valuesB), normA * normB);
+    }
+
+    private static float cosine(final float dot, final float norms) {
+        return dot == 0 || norms == 0 ? 0 : dot / norms;
+    }
+
+    private static void checkLengths(final int a, final int b) {
+        if (a != b) {
+            throw new IllegalArgumentException(String.format(
+                    "Cannot compare vector of length %s with vector of length %s",
+                    a, b));
+        }
+    }
+}
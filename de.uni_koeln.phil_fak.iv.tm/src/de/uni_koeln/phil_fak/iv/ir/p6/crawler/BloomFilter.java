@@ -0,0 +1,117 @@
+/**
+ * Material for the course 'Information-Retrieval', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-informationretrieval.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.ir.p6.crawler;
+
+/*
+ * Ein Bloom-Filter für bereits gesehene URLs: statt jede URL als String in
+ * einem HashSet zu halten (bei Millionen von URLs viele hundert MB), setzen
+ * wir für jede URL k Bits in einem Bit-Array. Ist eines der k Bits für eine
+ * URL nicht gesetzt, haben wir sie sicher noch nicht gesehen. Sind alle
+ * gesetzt, haben wir sie sehr wahrscheinlich schon gesehen (falsch-positive
+ * sind möglich, falsch-negative nicht, vgl. IR-Buch, Kap. 20).
+ */
+/**
+ * A compact, probabilistic set of URL strings.
+ * @author Fabian Steeg (fsteeg)
+ */
+final class BloomFilter {
+
+    private final long[] bits;
+    private final int size;
+    private final int hashes;
+
+    /**
+     * @param expected The expected number of elements
+     * @param falsePositives The acceptable false positive rate, e.g. 0.001
+     */
+    BloomFilter(final int expected, final double falsePositives) {
+        if (expected <= 0 || falsePositives <= 0 || falsePositives >= 1) {
+            throw new IllegalArgumentException(String.format(
+                    "Illegal Bloom filter setup: %s elements, %s rate",
+                    expected, falsePositives));
+        }
+        /* Optimale Anzahl von Bits und Hash-Funktionen (m und k): */
+        double ln2 = Math.log(2);
+        long m = (long) Math.ceil(-expected * Math.log(falsePositives)
+                / (ln2 * ln2));
+        this.size = (int) Math.min(Integer.MAX_VALUE - 63, Math.max(64, m));
+        this.hashes = Math.max(1, (int) Math.round(size / (double) expected
+                * ln2));
+        this.bits = new long[(size + 63) / 64];
+    }
+
+    /**
+     * @param url The URL to add
+     * @return True if the URL was not contained before
+     */
+    boolean put(final String url) {
+        boolean changed = false;
+        int h1 = url.hashCode();
+        int h2 = fnv(url);
+        for (int i = 0; i < hashes; i++) {
+            /* Double Hashing: k Hash-Werte aus zwei Hash-Funktionen */
+            int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % size;
+            long mask = 1L << bit;
+            if ((bits[bit >>> 6] & mask) == 0) {
+                bits[bit >>> 6] |= mask;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @param url The URL to check
+     * @return True if the URL was probably added before, false if it was
+     *         definitely not added before
+     */
+    boolean mightContain(final String url) {
+        int h1 = url.hashCode();
+        int h2 = fnv(url);
+        for (int i = 0; i < hashes; i++) {
+            int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % size;
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /* FNV-1a als zweite, von String#hashCode unabhängige Hash-Funktion: */
+    private static int fnv(final String s) {
+        int hash = 0x811c9dc5;
+        for (int i = 0; i < s.length(); i++) {
+            hash ^= s.charAt(i);
+            hash *= 0x01000193;
+        }
+        /* Ungerade, damit die k Positionen sich nicht wiederholen: */
+        return hash | 1;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("%s with %s bits and %s hashes", getClass()
+                .getSimpleName(), size, hashes);
+    }
+}
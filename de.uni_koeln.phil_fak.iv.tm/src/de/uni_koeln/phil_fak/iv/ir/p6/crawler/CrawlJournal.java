@@ -0,0 +1,445 @@
+/**
+ * Material for the course 'Information-Retrieval', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-informationretrieval.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.ir.p6.crawler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document;
+
+/*
+ * Ein dauerhaftes Protokoll eines Crawls, damit ein abgebrochener Crawl dort
+ * weitermachen kann, wo er aufgehört hat. Im Verzeichnis des Journals liegen
+ * drei Dateien, an die nur angehängt wird: die Frontier (jede URL, die wir
+ * crawlen wollen, mit ihrer Tiefe; die Zeilennummer ist die laufende Nummer
+ * der URL), die Liste der Nummern der bereits abgearbeiteten URLs und die
+ * gecrawlten Seiten selbst (siehe PageStore). Beim Öffnen lesen wir Frontier
+ * und erledigte Nummern wieder ein: was in der Frontier steht, aber nicht
+ * erledigt ist, wird noch gecrawlt. Welche URLs wir schon kennen, merken wir
+ * uns in einem Bloom-Filter, statt in einem Set von Strings. Den legen wir so
+ * groß an, wie für die erwartete Anzahl von URLs nötig (beim Wiederaufnehmen
+ * mindestens doppelt so groß wie die bisherige Frontier), damit nicht jeder
+ * kleine Crawl Platz für Millionen von URLs belegt.
+ */
+/**
+ * A durable, resumable log of the frontier and the fetched URLs of a crawl.
+ * @author Fabian Steeg (fsteeg)
+ */
+public final class CrawlJournal {
+
+    private static final String FRONTIER = "frontier.log";
+    private static final String FETCHED = "fetched.log";
+    private static final String PAGES = "pages.warc";
+    private static final String CHARSET = "UTF-8";
+    private static final int EXPECTED_URLS = 100000;
+    private static final double FALSE_POSITIVES = 0.001;
+
+    /**
+     * An URL in the frontier, with its crawl depth and sequence number.
+     */
+    static final class Entry {
+        private final String url;
+        private final int depth;
+        private final int number;
+
+        Entry(final String url, final int depth, final int number) {
+            this.url = url;
+            this.depth = depth;
+            this.number = number;
+        }
+
+        String getUrl() {
+            return url;
+        }
+
+        int getDepth() {
+            return depth;
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see java.lang.Object#toString()
+         */
+        @Override
+        public String toString() {
+            return String.format("%s %s (depth %s)", number, url, depth);
+        }
+    }
+
+    private final File location;
+    private final BloomFilter seen;
+    private final BitSet fetched;
+    private final LinkedList<Entry> pending;
+    private final PageStore pages;
+    private Writer frontierLog;
+    private Writer fetchedLog;
+    private int size = 0;
+    private int active = 0;
+
+    /**
+     * @param location The directory of the journal
+     * @return The journal at the given location, resuming from its previous
+     *         state if the journal exists, for up to 100,000 URLs (or twice
+     *         the URLs already in the journal) before the rate of URLs
+     *         wrongly taken as seen grows above 0.1%
+     */
+    public static CrawlJournal open(final String location) {
+        return open(location, EXPECTED_URLS);
+    }
+
+    /**
+     * @param location The directory of the journal
+     * @param expectedUrls The expected number of URLs in the crawl, for
+     *            sizing the filter of seen URLs (at least twice the URLs
+     *            already in the journal are used)
+     * @return The journal at the given location, resuming from its previous
+     *         state if the journal exists
+     */
+    public static CrawlJournal open(final String location,
+            final int expectedUrls) {
+        return new CrawlJournal(location, expectedUrls);
+    }
+
+    /**
+     * @param location The directory of the journal
+     * @return A new, empty journal at the given location, for up to 100,000
+     *         URLs (see {@link #open(String)})
+     */
+    public static CrawlJournal create(final String location) {
+        return create(location, EXPECTED_URLS);
+    }
+
+    /**
+     * @param location The directory of the journal
+     * @param expectedUrls The expected number of URLs in the crawl, for
+     *            sizing the filter of seen URLs
+     * @return A new, empty journal at the given location
+     */
+    public static CrawlJournal create(final String location,
+            final int expectedUrls) {
+        for (String name : new String[] { FRONTIER, FETCHED, PAGES }) {
+            File f = new File(location, name);
+            boolean ok = f.delete();
+            if (!ok && f.exists()) {
+                throw new IllegalArgumentException("Could not delete: " + f);
+            }
+        }
+        return new CrawlJournal(location, expectedUrls);
+    }
+
+    private CrawlJournal(final String location, final int expectedUrls) {
+        if (expectedUrls < 1) {
+            throw new IllegalArgumentException(
+                    "Expected number of URLs must be positive, not: "
+                            + expectedUrls);
+        }
+        this.location = new File(location);
+        if (!this.location.isDirectory() && !this.location.mkdirs()) {
+            throw new IllegalArgumentException("Could not create: "
+                    + location);
+        }
+        int known;
+        try {
+            known = lines(new File(location, FRONTIER));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not open journal at "
+                    + location, e);
+        }
+        this.seen = new BloomFilter((int) Math.min(Integer.MAX_VALUE, Math
+                .max(expectedUrls, 2L * known)), FALSE_POSITIVES);
+        this.fetched = new BitSet();
+        this.pending = new LinkedList<Entry>();
+        this.pages = new PageStore(new File(location, PAGES));
+        try {
+            resume();
+            frontierLog = writer(FRONTIER);
+            fetchedLog = writer(FETCHED);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not open journal at "
+                    + location, e);
+        }
+    }
+
+    private void resume() throws IOException {
+        /*
+         * Eine unvollständige letzte Zeile (etwa nach einem Absturz beim
+         * Schreiben) schneiden wir ab, sonst würde die nächste Zeile direkt
+         * an sie angehängt: aus "12" und "5" würde "125".
+         */
+        truncate(FETCHED);
+        truncate(FRONTIER);
+        /* Genauso einen unvollständigen letzten Record der Seiten: */
+        pages.repair();
+        /* Erst welche Nummern erledigt sind... */
+        BufferedReader reader = reader(FETCHED);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            try {
+                fetched.set(Integer.parseInt(line.trim()));
+            } catch (NumberFormatException e) {
+                System.err.println("Skipping invalid journal line: " + line);
+            }
+        }
+        reader.close();
+        /*
+         * ...dann die Frontier: alles nicht erledigte ist noch zu crawlen.
+         * Auch eine ungültige Zeile zählen wir mit, da die Zeilennummer die
+         * laufende Nummer der URL ist.
+         */
+        reader = reader(FRONTIER);
+        while ((line = reader.readLine()) != null) {
+            Entry entry = entry(line, size);
+            if (entry == null) {
+                System.err.println("Skipping invalid journal line: " + line);
+            } else {
+                seen.put(entry.url);
+                if (!fetched.get(size)) {
+                    pending.add(entry);
+                }
+            }
+            size++;
+        }
+        reader.close();
+        if (size > 0) {
+            System.out.println(String.format(
+                    "Resuming crawl: %s URLs fetched, %s pending",
+                    getNumberOfFetched(), pending.size()));
+        }
+    }
+
+    private static Entry entry(final String line, final int number) {
+        int tab = line.indexOf('\t');
+        if (tab < 0) {
+            return null;
+        }
+        try {
+            return new Entry(line.substring(tab + 1), Integer.parseInt(line
+                    .substring(0, tab)), number);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /* Die Anzahl der Zeilen, ohne sie als Strings zu lesen: */
+    private static int lines(final File file) throws IOException {
+        int count = 0;
+        if (!file.exists()) {
+            return count;
+        }
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try {
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b == '\n') {
+                    count++;
+                }
+            }
+        } finally {
+            in.close();
+        }
+        return count;
+    }
+
+    private void truncate(final String name) throws IOException {
+        File file = new File(location, name);
+        if (!file.exists()) {
+            return;
+        }
+        RandomAccessFile log = new RandomAccessFile(file, "rw");
+        try {
+            long length = log.length();
+            long end = length;
+            while (end > 0) {
+                log.seek(end - 1);
+                if (log.read() == '\n') {
+                    break;
+                }
+                end--;
+            }
+            if (end < length) {
+                System.err.println(String.format(
+                        "Truncating incomplete line at %s in %s", end, file));
+                log.setLength(end);
+            }
+        } finally {
+            log.close();
+        }
+    }
+
+    /**
+     * @param url The URL to add to the frontier
+     * @param depth The depth of the URL in the crawl
+     * @return True if the URL was added, false if it was seen before
+     */
+    synchronized boolean enqueue(final String url, final int depth) {
+        if (seen.mightContain(url)) {
+            return false;
+        }
+        seen.put(url);
+        append(frontierLog, depth + "\t" + url);
+        pending.add(new Entry(url, depth, size++));
+        return true;
+    }
+
+    /**
+     * @return The next URL to crawl, or null if there is currently none
+     */
+    synchronized Entry next() {
+        Entry entry = pending.poll();
+        if (entry != null) {
+            active++;
+        }
+        return entry;
+    }
+
+    /**
+     * @param entry The entry that has been crawled
+     * @param page The raw page fetched for the entry, or null if fetching
+     *            failed
+     */
+    synchronized void fetched(final Entry entry, final byte[] page) {
+        /*
+         * Erst die Seite, dann die Markierung als erledigt: stürzen wir
+         * dazwischen ab, holen wir die Seite beim nächsten Mal eben nochmal.
+         */
+        try {
+            if (page != null) {
+                try {
+                    pages.append(entry.url, page);
+                } catch (IOException e) {
+                    throw new IllegalStateException(
+                            "Could not store page for " + entry.url, e);
+                }
+            }
+            append(fetchedLog, String.valueOf(entry.number));
+            fetched.set(entry.number);
+        } finally {
+            /* Sonst warten die anderen Runnables ewig auf uns: */
+            active--;
+        }
+    }
+
+    /**
+     * @return True if there are no pending URLs and none are being crawled
+     */
+    synchronized boolean isDone() {
+        return pending.isEmpty() && active == 0;
+    }
+
+    /**
+     * @return The number of URLs fetched in this crawl so far
+     */
+    public synchronized int getNumberOfFetched() {
+        return fetched.cardinality();
+    }
+
+    /**
+     * @return The number of URLs in the frontier that were not fetched yet
+     */
+    public synchronized int getNumberOfPending() {
+        return pending.size();
+    }
+
+    /**
+     * Reprocess the stored pages without crawling them again.
+     * @return The document representations of all pages stored in this
+     *         journal
+     */
+    public List<Document> getDocuments() {
+        final List<Document> docs = new ArrayList<Document>();
+        final Set<String> urls = new HashSet<String>();
+        try {
+            pages.read(new PageStore.Handler() {
+                public void handle(final String url, final byte[] page) {
+                    WebDocument document = Parser.parse(url, page);
+                    if (document != null && urls.add(url)
+                            && document.getTopic() != null) {
+                        docs.add(document);
+                    }
+                }
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return docs;
+    }
+
+    /** Close the files of this journal. */
+    public synchronized void close() {
+        try {
+            frontierLog.close();
+            fetchedLog.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        pages.close();
+    }
+
+    private void append(final Writer writer, final String line) {
+        try {
+            writer.write(line);
+            writer.write('\n');
+            writer.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write journal at "
+                    + location, e);
+        }
+    }
+
+    private Writer writer(final String name) throws IOException {
+        return new OutputStreamWriter(new FileOutputStream(new File(location,
+                name), true), CHARSET);
+    }
+
+    private BufferedReader reader(final String name) throws IOException {
+        File file = new File(location, name);
+        if (!file.exists()) {
+            return new BufferedReader(new StringReader(""));
+        }
+        return new BufferedReader(new InputStreamReader(new FileInputStream(
+                file), CHARSET));
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("%s at %s with %s URLs (%s pending)", getClass()
+                .getSimpleName(), location, size, getNumberOfPending());
+    }
+}
@@ -0,0 +1,170 @@
+/**
+ * Material for the course 'Information-Retrieval', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-informationretrieval.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.ir.p6.crawler;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/*
+ * Tests für das Wiederaufnehmen eines Crawls aus dem Journal. Statt zu crawlen
+ * füllen wir das Journal selbst und schreiben unvollständige Zeilen und
+ * Records ans Ende der Dateien, wie sie bei einem Absturz beim Schreiben
+ * entstehen.
+ */
+/**
+ * Tests for resuming a crawl from a torn crawl journal.
+ * @author Fabian Steeg (fsteeg)
+ */
+public class CrawlJournalPraxis {
+    private static final String DATA = "output/crawl-journal-praxis";
+    private CrawlJournal journal;
+
+    @Before
+    public void before() {
+        journal = CrawlJournal.create(DATA);
+        for (String url : new String[] { "a", "b", "c" }) {
+            Assert.assertTrue(journal.enqueue("http://www.spiegel.de/" + url,
+                    1));
+        }
+        /* Die erste URL ist erledigt: */
+        journal.fetched(journal.next(), null);
+        journal.close();
+    }
+
+    @Test
+    public void tornLines() throws IOException {
+        /* Eine halbe Nummer und eine halbe URL ohne Zeilenende: */
+        append("fetched.log", "2");
+        append("frontier.log", "1\thttp://www.spiegel.de/d");
+        journal = CrawlJournal.open(DATA);
+        Assert.assertEquals(1, journal.getNumberOfFetched());
+        Assert.assertEquals(2, journal.getNumberOfPending());
+        /* Neue Zeilen werden nicht an die halben angehängt: */
+        Assert.assertTrue(journal.enqueue("http://www.spiegel.de/d", 1));
+        journal.close();
+        journal = CrawlJournal.open(DATA);
+        Assert.assertEquals(urls("b", "c", "d"), pending());
+    }
+
+    @Test
+    public void invalidLines() throws IOException {
+        /* Eine vollständige, aber ungültige Zeile zählt als Nummer 3 mit: */
+        append("frontier.log", "x\thttp://www.spiegel.de/x\n");
+        journal = CrawlJournal.open(DATA);
+        Assert.assertTrue(journal.enqueue("http://www.spiegel.de/d", 1));
+        Assert.assertEquals(urls("b", "c", "d"), pending());
+        journal.close();
+        /* Nur wenn 'd' die Nummer 4 hat, wird hier 'd' als erledigt gelesen: */
+        append("fetched.log", "4\n");
+        journal = CrawlJournal.open(DATA);
+        Assert.assertEquals(urls("b", "c"), pending());
+    }
+
+    @Test
+    public void tornRecord() throws IOException {
+        /* Die Länge im Kopf passt nicht mehr zur geschriebenen Seite: */
+        tornRecord("Content-Length: 500\r\n\r\n<html>d");
+    }
+
+    @Test
+    public void tornHeader() throws IOException {
+        /* Abgebrochen in der Zeile mit der Länge: */
+        tornRecord("Content-Length: ");
+    }
+
+    private void tornRecord(final String torn) throws IOException {
+        journal = CrawlJournal.open(DATA);
+        journal.fetched(journal.next(), page("b"));
+        journal.fetched(journal.next(), page("c"));
+        journal.close();
+        append("pages.warc", "WARC/1.0\r\nWARC-Type: response\r\n"
+                + "WARC-Target-URI: http://www.spiegel.de/d\r\n" + torn);
+        /* Beim Wiederaufnehmen neue Seiten anhängen... */
+        journal = CrawlJournal.open(DATA);
+        Assert.assertTrue(journal.enqueue("http://www.spiegel.de/d", 1));
+        journal.fetched(journal.next(), page("d"));
+        journal.close();
+        /* ...die wir alle unverändert wieder lesen, die halbe nicht: */
+        final List<String> pages = new ArrayList<String>();
+        int count = new PageStore(new File(DATA, "pages.warc"))
+                .read(new PageStore.Handler() {
+                    public void handle(final String url, final byte[] page) {
+                        try {
+                            pages.add(url + " " + new String(page, "UTF-8"));
+                        } catch (IOException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
+                });
+        Assert.assertEquals(3, count);
+        List<String> expected = new ArrayList<String>();
+        for (String name : new String[] { "b", "c", "d" }) {
+            expected.add(urls(name).get(0) + " "
+                    + new String(page(name), "UTF-8"));
+        }
+        Assert.assertEquals(expected, pages);
+        journal = CrawlJournal.open(DATA);
+    }
+
+    @After
+    public void after() {
+        journal.close();
+    }
+
+    private List<String> pending() {
+        List<String> result = new ArrayList<String>();
+        CrawlJournal.Entry entry;
+        while ((entry = journal.next()) != null) {
+            result.add(entry.getUrl());
+        }
+        return result;
+    }
+
+    private static List<String> urls(final String... names) {
+        List<String> result = new ArrayList<String>();
+        for (String name : names) {
+            result.add("http://www.spiegel.de/" + name);
+        }
+        return result;
+    }
+
+    private static byte[] page(final String name) throws IOException {
+        return ("<html><body>" + name + "</body></html>").getBytes("UTF-8");
+    }
+
+    private static void append(final String name, final String content)
+            throws IOException {
+        FileOutputStream out = new FileOutputStream(new File(DATA, name), true);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -20,11 +20,13 @@
 package de.uni_koeln.phil_fak.iv.ir.p6.crawler;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
+import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus;
 import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document;
 
 /*
@@ -38,6 +40,8 @@ import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document;
  */
 public final class Crawler {
 
+    private static final int CRAWL_DELAY_MS = 100;
+
     private Crawler() {
     // Enforce non-instantiability with a private constructor
     }
@@ -111,4 +115,96 @@ public final class Crawler {
         return docs;
     }
 
+    /*
+     * Ein Crawl, der seinen Stand im übergebenen Journal festhält: wird er
+     * abgebrochen (oder stürzt ab) und mit dem gleichen Journal erneut
+     * gestartet, macht er mit den noch nicht gecrawlten URLs weiter, statt
+     * wieder bei den Start-URLs zu beginnen.
+     */
+    /**
+     * @param journal The journal to record the crawl in; if it contains an
+     *            interrupted crawl, that crawl is resumed
+     * @param depth The depth of the crawl (0 means only the seed pages, 1 means
+     *            follow all links on the seed pages, etc.)
+     * @param max The maximum number of URLs to fetch, including those fetched
+     *            in previous runs recorded in the journal
+     * @param seed The pages to use as the starting point for the crawl
+     * @return The document representations of the web pages crawled in this
+     *         run (all crawled pages are available from
+     *         {@link CrawlJournal#getDocuments()})
+     */
+    public static List<Document> crawl(final CrawlJournal journal,
+            final int depth, final int max, final String... seed) {
+        for (String url : seed) {
+            /* Bereits bekannte Start-URLs ignoriert das Journal: */
+            journal.enqueue(url, 0);
+        }
+        /*
+         * Wie oben arbeiten wir mit einem Thread pro Start-URL, die sich die
+         * URLs aber gemeinsam aus dem Journal holen:
+         */
+        int threads = Math.max(1, seed.length);
+        ExecutorService exec = Executors.newFixedThreadPool(threads);
+        List<Document> docs = Collections
+                .synchronizedList(new ArrayList<Document>());
+        for (int i = 0; i < threads; i++) {
+            exec.execute(new JournalCrawlerRunnable(journal, depth, docs, max));
+        }
+        exec.shutdown();
+        try {
+            exec.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        System.out.println("Crawled " + docs.size() + " documents, journal: "
+                + journal);
+        return docs;
+    }
+
+    /*
+     * Aktualisieren eines bestehenden Korpus, ohne alles neu zu crawlen: für
+     * jedes Web-Dokument fragen wir bedingt an, ob sich die Seite geändert hat
+     * (siehe Parser#refresh). Nur geänderte Dokumente werden im Korpus
+     * ersetzt, so dass auch nur für diese die Dokumentenfrequenzen angepasst
+     * werden müssen. Unveränderte Seiten, für die der Server neue Validatoren
+     * geschickt hat, ersetzen wir auch, aber mit gleichem Inhalt.
+     */
+    /**
+     * @param corpus The corpus to update with the current versions of its web
+     *            documents
+     * @return The number of documents whose content changed
+     */
+    public static int recrawl(final Corpus corpus) {
+        int changed = 0;
+        int unchanged = 0;
+        int revalidated = 0;
+        for (Document document : new ArrayList<Document>(corpus
+                .getDocuments())) {
+            if (!(document instanceof WebDocument)) {
+                continue;
+            }
+            WebDocument previous = (WebDocument) document;
+            WebDocument current = Parser.refresh(previous);
+            if (current != null && current != previous) {
+                corpus.replace(previous, current);
+                if (current.equals(previous)) {
+                    revalidated++;
+                } else {
+                    changed++;
+                }
+            } else {
+                unchanged++;
+            }
+            try {
+                Thread.sleep(CRAWL_DELAY_MS);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+        System.out.println(String.format(
+                "Recrawled: %s changed, %s unchanged, %s with new validators",
+                changed, unchanged, revalidated));
+        return changed;
+    }
+
 }
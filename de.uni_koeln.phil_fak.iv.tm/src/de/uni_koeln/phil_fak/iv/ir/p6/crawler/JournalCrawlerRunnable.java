@@ -0,0 +1,130 @@
+/**
+ * Material for the course 'Information-Retrieval', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-informationretrieval.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.ir.p6.crawler;
+
+import java.util.List;
+
+import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document;
+
+/*
+ * Anders als der CrawlerRunnable, der von einer Start-URL aus rekursiv
+ * crawlt, holt sich dieser Runnable seine Arbeit aus dem Journal: solange es
+ * dort URLs gibt, wird die nächste geholt, gespeichert, geparst und ihre Links
+ * kommen wieder ins Journal. So ist der Stand des Crawls jederzeit auf der
+ * Platte und nicht nur auf dem Stack einer Rekursion.
+ */
+/**
+ * A crawler runnable working off the frontier of a crawl journal.
+ * @author Fabian Steeg (fsteeg)
+ */
+class JournalCrawlerRunnable implements Runnable {
+
+    private static final int CRAWL_DELAY_MS = 100;
+    private CrawlJournal journal;
+    private List<Document> docs;
+    private int depth;
+    private int max;
+
+    /**
+     * @param journal The journal to take URLs from and to record the crawl in
+     * @param depth The depth (0 means only the seed pages, 1 all links on the
+     *            seed pages, etc.)
+     * @param docs The list to add the crawled documents to
+     * @param max The maximum number of URLs to fetch in the journal's crawl
+     */
+    public JournalCrawlerRunnable(final CrawlJournal journal, final int depth,
+            final List<Document> docs, final int max) {
+        this.journal = journal;
+        this.depth = depth;
+        this.docs = docs;
+        this.max = max;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see java.lang.Runnable#run()
+     */
+    public void run() {
+        while (journal.getNumberOfFetched() < max) {
+            CrawlJournal.Entry entry = journal.next();
+            if (entry == null) {
+                /*
+                 * Nichts zu tun: wenn auch sonst niemand mehr crawlt, sind wir
+                 * fertig, sonst kommen vielleicht noch neue Links dazu:
+                 */
+                if (journal.isDone()) {
+                    return;
+                }
+                pause();
+                continue;
+            }
+            crawl(entry);
+            /* Ein Mindestmass an Verzögerung: */
+            pause();
+        }
+    }
+
+    /*
+     * Erst kommen die Links ins Journal, dann wird die URL als erledigt
+     * markiert: stürzen wir dazwischen ab, wird die Seite beim nächsten Mal
+     * eben nochmal geholt, statt dass ihre Links verloren gehen. Und solange
+     * wir nicht fertig sind, sieht kein anderer Runnable ein leeres Journal.
+     */
+    private void crawl(final CrawlJournal.Entry entry) {
+        byte[] page = null;
+        try {
+            page = Parser.fetch(entry.getUrl());
+            if (page != null) {
+                WebDocument document = Parser.parse(entry.getUrl(), page);
+                if (document != null) {
+                    process(entry, document);
+                }
+            }
+        } finally {
+            /* Auch wenn etwas schief ging, ist die URL erledigt: */
+            journal.fetched(entry, page);
+        }
+    }
+
+    private void process(final CrawlJournal.Entry entry,
+            final WebDocument document) {
+        if (document.getTopic() != null
+                && document.getContent().trim().length() > 0) {
+            docs.add(document);
+        } else {
+            System.err.println("Could not extract topic for: "
+                    + entry.getUrl());
+        }
+        if (entry.getDepth() < depth) {
+            for (String out : document.getLinks()) {
+                journal.enqueue(out, entry.getDepth() + 1);
+            }
+        }
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(CRAWL_DELAY_MS);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+
+}
@@ -0,0 +1,293 @@
+/**
+ * Material for the course 'Information-Retrieval', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-informationretrieval.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.ir.p6.crawler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+/*
+ * Ein an WARC (ISO 28500, das Archivformat des Internet Archive) angelehnter
+ * Speicher für gecrawlte Seiten: jede Seite wird als Record mit ein paar
+ * Kopfzeilen und dem rohen HTML hinten an eine Datei angehängt. Es wird nie
+ * etwas überschrieben, so dass ein Absturz höchstens den letzten Record
+ * unvollständig hinterlässt; den schneidet repair beim Wiederaufnehmen ab,
+ * bevor weitere Records angehängt werden. Aus dem Speicher können die Seiten
+ * später ohne erneutes Crawling wieder verarbeitet werden.
+ */
+/**
+ * Append-only store for raw crawled pages in a WARC-like format.
+ * @author Fabian Steeg (fsteeg)
+ */
+final class PageStore {
+
+    private static final String CHARSET = "UTF-8";
+    private static final String VERSION = "WARC/1.0";
+    private static final String URI = "WARC-Target-URI: ";
+    private static final String LENGTH = "Content-Length: ";
+    private static final String CRLF = "\r\n";
+
+    /* Zählt die gelesenen Bytes, für das Ende des letzten ganzen Records: */
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(final InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len)
+                throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+
+    private final File file;
+    private OutputStream out;
+
+    /**
+     * @param file The file to append pages to
+     */
+    PageStore(final File file) {
+        this.file = file;
+    }
+
+    /**
+     * @param url The URL the page was fetched from
+     * @param page The raw page content
+     * @throws IOException If the record could not be written
+     */
+    synchronized void append(final String url, final byte[] page)
+            throws IOException {
+        if (out == null) {
+            out = new BufferedOutputStream(new FileOutputStream(file, true));
+        }
+        SimpleDateFormat format = new SimpleDateFormat(
+                "yyyy-MM-dd'T'HH:mm:ss'Z'");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        StringBuilder header = new StringBuilder(VERSION).append(CRLF);
+        header.append("WARC-Type: response").append(CRLF);
+        header.append(URI).append(url).append(CRLF);
+        header.append("WARC-Date: ").append(format.format(new Date())).append(
+                CRLF);
+        header.append(LENGTH).append(page.length).append(CRLF).append(CRLF);
+        out.write(header.toString().getBytes(CHARSET));
+        out.write(page);
+        out.write((CRLF + CRLF).getBytes(CHARSET));
+        /* Jeder Record soll nach dem Schreiben auch wirklich in der Datei sein: */
+        out.flush();
+    }
+
+    /**
+     * Callback for reading the stored pages one at a time.
+     */
+    interface Handler {
+        /**
+         * @param url The URL the page was fetched from
+         * @param page The raw page content
+         */
+        void handle(String url, byte[] page);
+    }
+
+    /*
+     * Wir lesen Record für Record und geben jede Seite direkt an den Handler,
+     * statt alle Seiten auf einmal in den Speicher zu laden:
+     */
+    /**
+     * @param handler The handler to pass each stored page to, in the order the
+     *            pages were stored
+     * @return The number of pages read
+     * @throws IOException If the store could not be read
+     */
+    synchronized int read(final Handler handler) throws IOException {
+        final int[] count = new int[1];
+        scan(new Handler() {
+            public void handle(final String url, final byte[] page) {
+                handler.handle(url, page);
+                count[0]++;
+            }
+        });
+        return count[0];
+    }
+
+    /*
+     * Nach einem Absturz beim Schreiben kann der letzte Record unvollständig
+     * sein: etwa mit einer Länge im Kopf, für die die Seite zu kurz ist.
+     * Hängen wir dahinter weitere Records an, würden die beim Lesen als Rest
+     * dieser Seite gelesen. Deshalb schneiden wir die Datei vorher hinter dem
+     * letzten vollständigen Record ab.
+     */
+    /**
+     * Truncates the store after its last complete record, to be called before
+     * appending to a store that may end with a partially written record.
+     * @throws IOException If the store could not be read or truncated
+     */
+    synchronized void repair() throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        long end = scan(null);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            if (end < raf.length()) {
+                System.err.println(String.format(
+                        "Truncating incomplete record at %s in %s", end, file));
+                raf.setLength(end);
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    /* Gibt jede vollständige Seite an den Handler (falls es einen gibt): */
+    private long scan(final Handler handler) throws IOException {
+        long end = 0;
+        if (!file.exists()) {
+            return end;
+        }
+        CountingInputStream in = new CountingInputStream(
+                new BufferedInputStream(new FileInputStream(file)));
+        byte[] trailer = (CRLF + CRLF).getBytes(CHARSET);
+        try {
+            String line;
+            while ((line = readLine(in)) != null) {
+                if (!line.equals(VERSION)) {
+                    continue;
+                }
+                String url = null;
+                int length = -1;
+                /* Die Kopfzeilen enden mit einer Leerzeile: */
+                while ((line = readLine(in)) != null && line.length() > 0) {
+                    if (line.startsWith(URI)) {
+                        url = line.substring(URI.length());
+                    } else if (line.startsWith(LENGTH)) {
+                        length = length(line);
+                    }
+                }
+                if (line == null || url == null || length < 0) {
+                    break;
+                }
+                byte[] page = new byte[length];
+                byte[] rest = new byte[trailer.length];
+                try {
+                    readFully(in, page);
+                    readFully(in, rest);
+                } catch (EOFException e) {
+                    /* Unvollständiger letzter Record, z.B. nach einem Absturz */
+                    System.err.println("Skipping truncated record for: " + url);
+                    break;
+                }
+                if (!Arrays.equals(trailer, rest)) {
+                    System.err.println("Skipping invalid record for: " + url);
+                    break;
+                }
+                end = in.count;
+                if (handler != null) {
+                    handler.handle(url, page);
+                }
+            }
+        } finally {
+            in.close();
+        }
+        return end;
+    }
+
+    /* Eine abgeschnittene Zeile wie "Content-Length: " ist keine Länge: */
+    private static int length(final String line) {
+        try {
+            return Integer.parseInt(line.substring(LENGTH.length()).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /** Close the underlying file, if open. */
+    synchronized void close() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            out = null;
+        }
+    }
+
+    private static String readLine(final InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1 && b != '\n') {
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        if (b == -1 && line.size() == 0) {
+            return null;
+        }
+        return line.toString(CHARSET);
+    }
+
+    private static void readFully(final InputStream in, final byte[] bytes)
+            throws IOException {
+        int read = 0;
+        while (read < bytes.length) {
+            int r = in.read(bytes, read, bytes.length - read);
+            if (r == -1) {
+                throw new EOFException();
+            }
+            read += r;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("%s at %s", getClass().getSimpleName(), file);
+    }
+}
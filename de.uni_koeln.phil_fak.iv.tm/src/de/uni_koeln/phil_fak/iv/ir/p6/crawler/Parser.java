@@ -19,12 +19,19 @@
  */
 package de.uni_koeln.phil_fak.iv.ir.p6.crawler;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
 import java.util.HashSet;
 import java.util.Set;
 
 import org.cyberneko.html.parsers.DOMParser;
 import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 import de.uni_koeln.phil_fak.iv.ir.p2.index.TermIndex;
@@ -45,32 +52,142 @@ final class Parser {
     // Enforce non-instantiability with a private constructor.
     }
 
-    private static StringBuilder builder;
-    private static Set<String> links;
+    private static final int BUFFER_SIZE = 8192;
 
     /**
      * @param url The URL of the page to parse into a document
      * @return A document instance for the given URL
      */
     public static WebDocument parse(final String url) {
+        return load(url, null);
+    }
+
+    /*
+     * Erneutes Crawlen einer bereits bekannten Seite: Wir fragen bedingt an
+     * (mit den Validatoren der alten Version) und parsen nur, wenn sich die
+     * Seite tatsächlich geändert hat. Ist sie unverändert, bekommen wir das
+     * übergebene Dokument selbst zurück, oder, wenn der Server neue
+     * Validatoren geschickt hat, eine Kopie mit diesen (die der Aufrufer im
+     * Korpus ersetzen muss, damit wir sie beim nächsten Mal mitschicken).
+     */
+    /**
+     * @param previous The previously crawled version of a document
+     * @return The given document if it is unchanged or could not be fetched,
+     *         an equal copy if only the validators of the page changed, else
+     *         a new document for the changed page
+     */
+    static WebDocument refresh(final WebDocument previous) {
+        return load(previous.getSource(), previous);
+    }
+
+    private static WebDocument load(final String url,
+            final WebDocument previous) {
+        Validators old = previous == null ? null : previous.getValidators();
+        try {
+            URLConnection connection = new URL(url).openConnection();
+            if (old != null) {
+                old.addTo(connection);
+            }
+            /* 304: Der Server sagt uns, dass sich nichts geändert hat */
+            if (connection instanceof HttpURLConnection
+                    && ((HttpURLConnection) connection).getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                return old == null ? previous : unchanged(previous, old
+                        .updated(connection));
+            }
+            byte[] page = read(connection.getInputStream());
+            Validators current = Validators.of(connection, page);
+            /* Gleiche Checksum der rohen Seite: wir müssen nicht parsen */
+            if (old != null && old.getChecksum() == current.getChecksum()) {
+                return unchanged(previous, current);
+            }
+            WebDocument document = parse(url, page, current);
+            /*
+             * Dokumente ohne Validatoren (z.B. aus älteren Korpora) können wir
+             * erst nach dem Parsen über die Checksum des Inhalts vergleichen:
+             */
+            if (previous != null && previous.equals(document)) {
+                return unchanged(previous, current);
+            }
+            return document;
+        } catch (IOException e) {
+            System.err.println("Could not fetch " + url + ": " + e.getMessage());
+        }
+        return previous;
+    }
+
+    private static WebDocument unchanged(final WebDocument previous,
+            final Validators validators) {
+        return validators.equals(previous.getValidators()) ? previous
+                : previous.with(validators);
+    }
+
+    /*
+     * Wir holen die Seite selbst, statt die URL direkt dem Parser zu geben, so
+     * dass wir die rohe Seite auch speichern können (siehe CrawlJournal):
+     */
+    /**
+     * @param url The URL of the page to fetch
+     * @return The raw content of the page at the given URL, or null if it
+     *         could not be fetched
+     */
+    static byte[] fetch(final String url) {
+        try {
+            return read(new URL(url).openStream());
+        } catch (IOException e) {
+            System.err.println("Could not fetch " + url + ": " + e.getMessage());
+        }
+        return null;
+    }
+
+    private static byte[] read(final InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @param url The URL the page was fetched from
+     * @param page The raw page content
+     * @return A document instance for the given page
+     */
+    static WebDocument parse(final String url, final byte[] page) {
+        return parse(url, page, Validators.of(null, page));
+    }
+
+    private static WebDocument parse(final String url, final byte[] page,
+            final Validators validators) {
         /*
          * Als Parser verwenden wir NekoHTML, einen fehlerkorrigierenden Parser
          * (http://nekohtml.sourceforge.net/) der auf Xerces aufbaut:
          */
         DOMParser parser = new DOMParser();
         try {
-            /* Dem Neko-Parser können wir einfach die URL als String übergeben: */
-            parser.parse(url);
-            /* Wir instanziieren die zu fülleneden Werte: */
-            builder = new StringBuilder();
-            links = new HashSet<String>();
+            /* Dem Neko-Parser geben wir die Seite mit ihrer URL: */
+            InputSource source = new InputSource(new ByteArrayInputStream(page));
+            source.setSystemId(url);
+            parser.parse(source);
+            /*
+             * Wir instanziieren die zu fülleneden Werte (lokal, nicht als
+             * statische Felder, damit parallel geparst werden kann):
+             */
+            StringBuilder builder = new StringBuilder();
+            Set<String> links = new HashSet<String>();
             /* Und beginnen die Verarbeitung mit dem ersten Element: */
             org.w3c.dom.Document document = parser.getDocument();
             Node root = document.getFirstChild();
-            process(root);
+            process(root, builder, links);
             /* Dann erzeugen wir aus den Werten unser Dokument-Objekt: */
             Document indexedDocument = new TermIndex(builder.toString());
             WebDocument doc = new WebDocument(url, links, indexedDocument);
+            doc.setValidators(validators);
             return doc;
         } catch (SAXException e) {
             e.printStackTrace();
@@ -80,7 +197,8 @@ final class Parser {
         return null;
     }
 
-    private static void process(final Node node) {
+    private static void process(final Node node,
+            final StringBuilder builder, final Set<String> links) {
         /*
          * Wir ermitteln die Elemente über ihre Namen. Man könnte auch mit
          * instanceof testen ob es etwa ein HTMLParagraphElement ist, allerdings
@@ -112,7 +230,7 @@ final class Parser {
          */
         Node sibling = node.getNextSibling();
         if (sibling != null) {
-            process(sibling);
+            process(sibling, builder, links);
         }
         /*
          * Nachdem jeder je seinen Nachbarn aufgerufen hat, kommt jetzt das
@@ -120,7 +238,7 @@ final class Parser {
          */
         Node child = node.getFirstChild();
         if (child != null) {
-            process(child);
+            process(child, builder, links);
         }
     }
 }
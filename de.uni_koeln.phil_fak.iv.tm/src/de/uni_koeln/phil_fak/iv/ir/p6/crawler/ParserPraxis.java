@@ -0,0 +1,117 @@
+/**
+ * Material for the course 'Text-Mining', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-textmining.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.ir.p6.crawler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/*
+ * Tests für das erneute Crawlen einer unveränderten Seite: Schickt der Server
+ * dabei neue Validatoren, müssen die im zurückgegebenen Dokument stehen, damit
+ * wir sie beim nächsten Mal mitschicken. Als Server dient ein lokaler
+ * HttpServer, dessen ETag wir zwischen den Anfragen ändern.
+ */
+/**
+ * Tests for refreshing documents of unchanged pages.
+ * @author Fabian Steeg (fsteeg)
+ */
+public class ParserPraxis {
+    private static final byte[] PAGE = "<html><body><p>Text</p></body></html>"
+            .getBytes();
+    private HttpServer server;
+    private String url;
+    /* Das aktuelle ETag, und ob der Server bedingt antwortet (mit 304): */
+    private volatile String etag;
+    private volatile boolean conditional;
+
+    @Before
+    public void before() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            public void handle(final HttpExchange exchange) throws IOException {
+                String path = exchange.getRequestURI().getPath();
+                if (!path.equals("/page.html")) {
+                    exchange.sendResponseHeaders(404, -1);
+                    exchange.close();
+                    return;
+                }
+                exchange.getResponseHeaders().set("ETag", etag);
+                String match = exchange.getRequestHeaders().getFirst(
+                        "If-None-Match");
+                if (conditional && match != null) {
+                    exchange.sendResponseHeaders(304, -1);
+                } else {
+                    exchange.sendResponseHeaders(200, PAGE.length);
+                    OutputStream out = exchange.getResponseBody();
+                    out.write(PAGE);
+                    out.close();
+                }
+                exchange.close();
+            }
+        });
+        server.start();
+        url = String.format("http://localhost:%s/page.html", server
+                .getAddress().getPort());
+        etag = "\"a\"";
+    }
+
+    @Test
+    public void notModified() {
+        conditional = true;
+        assertRefreshed();
+    }
+
+    @Test
+    public void sameChecksum() {
+        conditional = false;
+        assertRefreshed();
+    }
+
+    @After
+    public void after() {
+        server.stop(0);
+    }
+
+    private void assertRefreshed() {
+        WebDocument first = Parser.parse(url);
+        Assert.assertEquals("\"a\"", first.getValidators().getETag());
+        /* Gleiche Seite, neues ETag: eine Kopie mit dem neuen ETag */
+        etag = "\"b\"";
+        WebDocument second = Parser.refresh(first);
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals(first, second);
+        Assert.assertEquals("\"b\"", second.getValidators().getETag());
+        Assert.assertEquals(first.getValidators().getChecksum(), second
+                .getValidators().getChecksum());
+        /* Gleiche Seite, gleiches ETag: das Dokument selbst */
+        Assert.assertSame(second, Parser.refresh(second));
+    }
+}
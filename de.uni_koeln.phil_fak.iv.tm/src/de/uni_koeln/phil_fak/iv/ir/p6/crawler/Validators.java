@@ -0,0 +1,170 @@
+/**
+ * Material for the course 'Information-Retrieval', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-informationretrieval.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.ir.p6.crawler;
+
+import java.net.URLConnection;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+/*
+ * Die Validatoren einer Seite: was uns der Server als ETag und Last-Modified
+ * mitgeteilt hat und eine Checksum über die rohe Seite. Damit können wir beim
+ * erneuten Crawlen bedingt anfragen (der Server antwortet dann mit 304, wenn
+ * sich nichts geändert hat) und, wenn der Server das nicht unterstützt,
+ * zumindest vor dem Parsen erkennen, dass die Seite gleich geblieben ist.
+ */
+/**
+ * HTTP cache validators and a checksum for a fetched page.
+ * @author Fabian Steeg (fsteeg)
+ */
+public final class Validators {
+
+    private String etag;
+    private String lastModified;
+    private long checksum;
+
+    /**
+     * @param connection The connection the page was fetched with, or null
+     * @param page The raw page content
+     * @return The validators for the given page
+     */
+    static Validators of(final URLConnection connection, final byte[] page) {
+        Validators validators = new Validators();
+        if (connection != null) {
+            validators.etag = connection.getHeaderField("ETag");
+            validators.lastModified = connection
+                    .getHeaderField("Last-Modified");
+        }
+        Checksum cs = new CRC32();
+        cs.update(page, 0, page.length);
+        validators.checksum = cs.getValue();
+        return validators;
+    }
+
+    /*
+     * Beim Laden aus einem Speicher (siehe CorpusLog) haben wir keine
+     * Verbindung und keine Seite mehr, nur die gespeicherten Werte.
+     */
+    /**
+     * @param etag The ETag sent for the page, or null
+     * @param lastModified The Last-Modified date sent for the page, or null
+     * @param checksum The checksum of the raw page
+     * @return The validators with the given values
+     */
+    public static Validators restore(final String etag,
+            final String lastModified, final long checksum) {
+        Validators validators = new Validators();
+        validators.etag = etag;
+        validators.lastModified = lastModified;
+        validators.checksum = checksum;
+        return validators;
+    }
+
+    private Validators() {}
+
+    /*
+     * Auch mit einer 304-Antwort oder bei gleicher Seite kann der Server ein
+     * neues ETag oder Last-Modified schicken; die müssen wir beim nächsten
+     * Mal mitschicken, sonst bekommen wir die Seite wieder ganz.
+     */
+    /**
+     * @param connection The connection of a response for the same page
+     * @return Validators with the checksum of these and the ETag and
+     *         Last-Modified of the response, where it has them
+     */
+    Validators updated(final URLConnection connection) {
+        String newEtag = connection.getHeaderField("ETag");
+        String newLastModified = connection.getHeaderField("Last-Modified");
+        return restore(newEtag != null ? newEtag : etag,
+                newLastModified != null ? newLastModified : lastModified,
+                checksum);
+    }
+
+    /**
+     * @param connection The unconnected connection to make conditional on
+     *            these validators
+     */
+    void addTo(final URLConnection connection) {
+        if (etag != null) {
+            connection.setRequestProperty("If-None-Match", etag);
+        }
+        if (lastModified != null) {
+            connection.setRequestProperty("If-Modified-Since", lastModified);
+        }
+    }
+
+    /**
+     * @return The ETag sent for the page, or null
+     */
+    public String getETag() {
+        return etag;
+    }
+
+    /**
+     * @return The Last-Modified date sent for the page, or null
+     */
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @return The checksum of the raw page
+     */
+    public long getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(final Object obj) {
+        if (!(obj instanceof Validators)) {
+            return false;
+        }
+        Validators that = (Validators) obj;
+        return checksum == that.checksum && equal(etag, that.etag)
+                && equal(lastModified, that.lastModified);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        return (int) (checksum ^ (checksum >>> 32));
+    }
+
+    private static boolean equal(final String a, final String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("%s ETag: %s, Last-Modified: %s, checksum: %s",
+                getClass().getSimpleName(), etag, lastModified, checksum);
+    }
+}
@@ -45,6 +45,15 @@ public final class WebDocument implements Document {
     private String url;
     private Set<String> links;
     private long checksum;
+    /* Für das erneute Crawlen: ETag, Last-Modified und Checksum der Seite */
+    private Validators validators;
+    /*
+     * Host und Thema berechnen wir einmal beim Erzeugen und speichern sie als
+     * Felder, so dass die Datenbank darüber einen Index anlegen kann (siehe
+     * CorpusDatabase), statt für jede Anfrage alle Dokumente zu durchlaufen:
+     */
+    private String host;
+    private String topic;
     /*
      * Andere Aufgaben werden an ein aggregiertes Document delegiert (anstatt
      * die Implementierung zu erben, wir erben nur das Interface):
@@ -58,6 +67,15 @@ public final class WebDocument implements Document {
      */
     public WebDocument(final String url, final Set<String> links,
             final Document document) {
+        this(document, url);
+        /* Die Links müssen normalisiert werden: */
+        Set<String> cleanLinks = LinkHelper.normalize(links, url);
+        /* Und sollten keine verbotenen Ziele haben: */
+        cleanLinks = LinkHelper.allowed(cleanLinks, url);
+        this.links = cleanLinks;
+    }
+
+    private WebDocument(final Document document, final String url) {
         if (document == null) {
             throw new IllegalStateException("Null Document!");
         }
@@ -65,11 +83,6 @@ public final class WebDocument implements Document {
         this.index = document;
         /* Die Besonderheiten von dieser Art von Dokument: */
         this.url = url;
-        /* Die Links müssen normalisiert werden: */
-        Set<String> cleanLinks = LinkHelper.normalize(links, url);
-        /* Und sollten keine verbotenen Ziele haben: */
-        cleanLinks = LinkHelper.allowed(cleanLinks, url);
-        this.links = cleanLinks;
         /*
          * Für den effizienten Vergleich bilden wir eine Checksum für den Inhalt
          * des Dokument, der zum Vergleich benutzt wird (siehe equals() weiter
@@ -80,7 +93,55 @@ public final class WebDocument implements Document {
         cs.update(document.getContent().getBytes(), 0, document.getContent()
                 .length());
         this.checksum = cs.getValue();
+        this.host = extractHost();
+        this.topic = extractTopic();
+    }
+
+    /*
+     * Beim Laden aus einem Speicher (siehe CorpusLog) sind die Links schon
+     * normalisiert und gefiltert; hier sollen also keine robots.txt-Dateien
+     * mehr geholt werden.
+     */
+    /**
+     * @param url The URL the document represents
+     * @param links The outgoing links of the document, already normalized and
+     *            filtered
+     * @param document The document to delegate to
+     * @return A web document for the given values, as created before
+     */
+    public static WebDocument restore(final String url,
+            final Set<String> links, final Document document) {
+        WebDocument result = new WebDocument(document, url);
+        result.links = links;
+        return result;
+    }
+
+    /**
+     * @param url The URL the document represents
+     * @param links The outgoing links of the document, already normalized and
+     *            filtered
+     * @param document The document to delegate to
+     * @param validators The validators of the page, or null
+     * @return A web document for the given values, as created before
+     */
+    public static WebDocument restore(final String url,
+            final Set<String> links, final Document document,
+            final Validators validators) {
+        WebDocument result = restore(url, links, document);
+        result.validators = validators;
+        return result;
+    }
 
+    /*
+     * Für eine unveränderte Seite mit neuen Validatoren: gleicher Inhalt und
+     * gleiche Links, die wir daher nicht noch einmal filtern müssen.
+     */
+    /**
+     * @param validators The new validators
+     * @return A copy of this document with the given validators
+     */
+    WebDocument with(final Validators validators) {
+        return restore(url, links, index, validators);
     }
 
     /**
@@ -88,6 +149,7 @@ public final class WebDocument implements Document {
      */
     public WebDocument(final WebDocument document) {
         this(document.url, document.links, document.index);
+        this.validators = document.validators;
     }
 
     /**
@@ -148,6 +210,25 @@ public final class WebDocument implements Document {
      * @see de.uni_koeln.phil_fak.iv.tm.storage.Document#getTopic()
      */
     public String getTopic() {
+        if (topic == null) {
+            /* Dokumente, die ohne das Feld gespeichert wurden: */
+            topic = extractTopic();
+        }
+        return topic;
+    }
+
+    /**
+     * @return The host part of the URL of this document, or null if the URL
+     *         is malformed
+     */
+    public String getHost() {
+        if (host == null) {
+            host = extractHost();
+        }
+        return host;
+    }
+
+    private String extractTopic() {
         Extractor.Location[] values = Extractor.Location.values();
         for (Extractor.Location location : values) {
             if (this.getSource().matches(location.getPattern())) {
@@ -157,6 +238,14 @@ public final class WebDocument implements Document {
         return null;
     }
 
+    private String extractHost() {
+        try {
+            return new URL(url).getHost();
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
     /**
      * {@inheritDoc}
      * @see de.uni_koeln.phil_fak.iv.tm.storage.Document#getContent()
@@ -165,6 +254,22 @@ public final class WebDocument implements Document {
         return index.getContent();
     }
 
+    /**
+     * @return The validators of the page this document was parsed from, or
+     *         null if none are known
+     */
+    public Validators getValidators() {
+        return validators;
+    }
+
+    /**
+     * @param validators The validators of the page this document was parsed
+     *            from
+     */
+    void setValidators(final Validators validators) {
+        this.validators = validators;
+    }
+
     /**
      * @return The outgoing links of this web document.
      */
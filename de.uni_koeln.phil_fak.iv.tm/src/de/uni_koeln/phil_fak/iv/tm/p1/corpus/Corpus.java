@@ -37,6 +37,13 @@ public interface Corpus {
      */
     List<Document> getDocumentsForSource(String query);
 
+    /**
+     * @param source The source of a document
+     * @return The document with exactly the given source, or null if the
+     *         corpus contains no such document
+     */
+    Document getDocument(String source);
+
     /**
      * @param query The query
      * @return Documents whose topic contains the given query
@@ -49,6 +56,12 @@ public interface Corpus {
     /** @param documents The documents to add */
     void addAll(List<? extends Document> documents);
 
+    /**
+     * @param previous The document to replace
+     * @param current The new version of the document, replacing the previous
+     */
+    void replace(Document previous, Document current);
+
     /** Close the connection to the source of the corpus, if any. */
     void close();
 
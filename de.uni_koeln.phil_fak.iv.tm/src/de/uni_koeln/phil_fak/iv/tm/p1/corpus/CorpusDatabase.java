@@ -26,13 +26,20 @@ import java.util.Set;
 
 import com.db4o.Db4o;
 import com.db4o.ObjectContainer;
-import com.db4o.query.Predicate;
+import com.db4o.config.Configuration;
+import com.db4o.config.QueryEvaluationMode;
+import com.db4o.query.Query;
 
-import de.uni_koeln.phil_fak.iv.ir.p2.index.DocumentIndex;
+import de.uni_koeln.phil_fak.iv.ir.p2.index.TermStatistics;
+import de.uni_koeln.phil_fak.iv.ir.p6.crawler.WebDocument;
 
 /**
  * Persistent corpus implementation based on an object database (DB4O), using
- * native queries for document retrieval.
+ * indexed queries on host and topic for document retrieval. Corpus statistics
+ * are stored along with the documents, so opening a corpus does not load the
+ * documents. They are written once per {@link #addAll(List)} and on
+ * {@link #close()}; if the corpus was not closed after single additions or
+ * replacements, they are rebuilt from the documents on the next open.
  * @author Fabian Steeg (fsteeg)
  */
 public final class CorpusDatabase implements Corpus {
@@ -43,8 +50,22 @@ public final class CorpusDatabase implements Corpus {
      * Ganze auf ihre Weise regelt. Die Klassen, die das Korpus über das
      * Interface benutzen müssten nicht angepasst werden.
      */
+    private static final String URL = "url";
+    private static final String HOST = "host";
+    private static final String TOPIC = "topic";
     private ObjectContainer db;
-    private Corpus index;
+    private CorpusStatistics statistics;
+    private boolean dirty;
+
+    /*
+     * Eine Markierung in der DB, dass die gespeicherten Statistiken nicht mehr
+     * zu den Dokumenten passen, weil seitdem Dokumente hinzugefügt oder
+     * ersetzt wurden.
+     */
+    private static final class UnsavedStatistics {
+        @SuppressWarnings("unused") private long since = System
+                .currentTimeMillis();
+    }
 
     /**
      * @param location The location of the DB4O db.
@@ -68,22 +89,130 @@ public final class CorpusDatabase implements Corpus {
     }
 
     private CorpusDatabase(final String location) {
-        db = Db4o.openFile(location);
-        index = new DocumentIndex();
+        Configuration config = Db4o.newConfiguration();
+        /*
+         * Wird ein Web-Dokument gelöscht (etwa beim Ersetzen durch eine neue
+         * Version) sollen auch die Objekte gelöscht werden, an die es
+         * delegiert, sonst blieben z.B. die TermIndex-Objekte in der DB:
+         */
+        config.objectClass(WebDocument.class).cascadeOnDelete(true);
+        /*
+         * Statt für jede Anfrage nach Quelle oder Thema alle Dokumente zu
+         * instanziieren und zu prüfen (wie mit den Native Queries vorher),
+         * lassen wir die DB einen Index über Host und Thema pflegen:
+         */
+        config.objectClass(WebDocument.class).objectField(URL).indexed(true);
+        config.objectClass(WebDocument.class).objectField(HOST).indexed(true);
+        config.objectClass(WebDocument.class).objectField(TOPIC).indexed(true);
+        /*
+         * Die Statistiken werden immer komplett gespeichert und geladen, die
+         * Dokumente dagegen erst aktiviert, wenn wir die Ergebnisliste einer
+         * Anfrage durchgehen:
+         */
+        config.objectClass(CorpusStatistics.class).cascadeOnUpdate(true);
+        config.objectClass(CorpusStatistics.class).cascadeOnActivate(true);
+        config.objectClass(CorpusStatistics.class).cascadeOnDelete(true);
+        config.objectClass(TermStatistics.class).cascadeOnUpdate(true);
+        config.objectClass(TermStatistics.class).cascadeOnActivate(true);
+        config.objectClass(TermStatistics.class).cascadeOnDelete(true);
+        config.queries().evaluationMode(QueryEvaluationMode.LAZY);
+        db = Db4o.openFile(config, location);
+        migrate();
+        statistics = loadStatistics();
+    }
+
+    /*
+     * In einer DB, die vor dem Speichern der Statistiken angelegt wurde, gibt
+     * es noch keine, und nach einem Absturz passen sie evtl. nicht mehr zu
+     * den Dokumenten; dann berechnen wir sie ein letztes Mal aus allen
+     * Dokumenten und speichern sie für das nächste Öffnen.
+     */
+    private CorpusStatistics loadStatistics() {
+        List<CorpusStatistics> stored = db.query(CorpusStatistics.class);
+        if (stored.size() > 0 && db.query(UnsavedStatistics.class).isEmpty()) {
+            CorpusStatistics result = stored.get(0);
+            db.activate(result, Integer.MAX_VALUE);
+            return result;
+        }
+        for (CorpusStatistics old : new ArrayList<CorpusStatistics>(stored)) {
+            db.delete(old);
+        }
+        statistics = new CorpusStatistics();
         List<Document> documents = this.getDocuments();
         for (Document document : documents) {
-            index.add(document);
+            statistics.add(document);
+        }
+        storeStatistics();
+        return statistics;
+    }
+
+    /*
+     * Die Statistiken zu speichern, heißt das ganze Vokabular mit allen
+     * Dokumentenfrequenzen neu zu schreiben. Daher speichern wir sie nicht
+     * bei jedem einzelnen Dokument, sondern merken uns nur (auch in der DB),
+     * dass sie sich geändert haben, und speichern sie beim nächsten addAll
+     * oder beim Schließen.
+     */
+    private void changed() {
+        if (!dirty) {
+            db.store(new UnsavedStatistics());
+            dirty = true;
+        }
+    }
+
+    private void storeStatistics() {
+        db.store(statistics);
+        List<UnsavedStatistics> markers = db.query(UnsavedStatistics.class);
+        for (UnsavedStatistics marker : new ArrayList<UnsavedStatistics>(
+                markers)) {
+            db.delete(marker);
+        }
+        dirty = false;
+        db.commit();
+    }
+
+    /*
+     * Dokumente, die vor Einführung der Felder für Host und Thema gespeichert
+     * wurden, haben dort null stehen; die finden wir über den Index selbst und
+     * speichern sie einmal mit den berechneten Feldern neu.
+     */
+    private void migrate() {
+        List<WebDocument> old = byField(HOST, null);
+        for (WebDocument document : old) {
+            document.getHost();
+            document.getTopic();
+            db.store(document);
+        }
+        if (old.size() > 0) {
+            db.commit();
+            System.out.println("Indexed host and topic of " + old.size()
+                    + " documents");
         }
     }
 
+    private List<WebDocument> byField(final String field, final String value) {
+        Query query = db.query();
+        query.constrain(WebDocument.class);
+        query.descend(field).constrain(value);
+        @SuppressWarnings("unchecked") List<WebDocument> result = query
+                .execute();
+        return new ArrayList<WebDocument>(result);
+    }
+
     /**
      * {@inheritDoc}
      * @see de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus#addAll(java.util.List)
      */
     public void addAll(final List<? extends Document> list) {
+        /*
+         * Alle Dokumente in einer Transaktion, die Statistiken speichern wir
+         * nur einmal am Ende (siehe auch CorpusLoader für große Mengen):
+         */
         for (Document d : list) {
-            add(d);
+            db.store(d);
+            statistics.add(d);
         }
+        storeStatistics();
     }
 
     /**
@@ -92,7 +221,31 @@ public final class CorpusDatabase implements Corpus {
      */
     public void add(final Document document) {
         db.store(document);
-        index.add(document);
+        statistics.add(document);
+        changed();
+        db.commit();
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus#replace(de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document,
+     *      de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document)
+     */
+    public void replace(final Document previous, final Document current) {
+        /*
+         * Wie im DocumentIndex: Ist die alte Version gar nicht gespeichert
+         * (etwa ein frisch geparstes Objekt statt dem aus der DB), darf sie
+         * auch nicht aus den Statistiken abgezogen werden:
+         */
+        if (!db.ext().isStored(previous)) {
+            add(current);
+            return;
+        }
+        db.delete(previous);
+        db.store(current);
+        statistics.replace(previous, current);
+        changed();
+        db.commit();
     }
 
     /**
@@ -111,18 +264,45 @@ public final class CorpusDatabase implements Corpus {
         return db.query(type);
     }
 
+    /*
+     * Die Hosts im Korpus sind wenige (z.B. spiegel.de und bild.de), die
+     * können wir einfach durchgehen; für jeden passenden Host holen wir dann
+     * die Dokumente über den Index. Eine Anfrage wie 'spiegel.de/sport' passt
+     * aber auf keinen Host, sondern nur auf die URLs; die Dokumente der
+     * übrigen Hosts prüfen wir daher noch über das (indizierte) URL-Feld.
+     */
     /**
      * {@inheritDoc}
      * @see de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus#getDocumentsForSource(java.lang.String)
      */
     public List<Document> getDocumentsForSource(final String source) {
-        @SuppressWarnings("serial") List<Document> set = db
-                .query(new Predicate<Document>() {
-                    public boolean match(final Document candidate) {
-                        return candidate.getSource().contains(source);
-                    }
-                });
-        return new ArrayList<Document>(set);
+        List<Document> result = new ArrayList<Document>();
+        Query rest = db.query();
+        rest.constrain(WebDocument.class);
+        int matched = 0;
+        for (String host : statistics.getHosts()) {
+            if (host.contains(source)) {
+                result.addAll(byField(HOST, host));
+                rest.descend(HOST).constrain(host).not();
+                matched++;
+            }
+        }
+        if (matched < statistics.getHosts().size()) {
+            rest.descend(URL).constrain(source).contains();
+            @SuppressWarnings("unchecked") List<WebDocument> found = rest
+                    .execute();
+            result.addAll(found);
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus#getDocument(java.lang.String)
+     */
+    public Document getDocument(final String source) {
+        List<WebDocument> result = byField(URL, source);
+        return result.isEmpty() ? null : result.get(0);
     }
 
     /**
@@ -130,13 +310,7 @@ public final class CorpusDatabase implements Corpus {
      * @see de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus#getDocumentsForTopic(java.lang.String)
      */
     public List<Document> getDocumentsForTopic(final String topic) {
-        @SuppressWarnings("serial") List<Document> set = db
-                .query(new Predicate<Document>() {
-                    public boolean match(final Document candidate) {
-                        return candidate.getTopic().equals(topic);
-                    }
-                });
-        return new ArrayList<Document>(set);
+        return new ArrayList<Document>(byField(TOPIC, topic));
     }
 
     /**
@@ -144,6 +318,9 @@ public final class CorpusDatabase implements Corpus {
      * @see de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus#close()
      */
     public void close() {
+        if (dirty) {
+            storeStatistics();
+        }
         db.close();
     }
 
@@ -152,7 +329,7 @@ public final class CorpusDatabase implements Corpus {
      * @see de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus#getTerms()
      */
     public Set<String> getTerms() {
-        return index.getTerms();
+        return statistics.getTerms().getTerms();
     }
 
     /**
@@ -160,7 +337,7 @@ public final class CorpusDatabase implements Corpus {
      * @see de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus#getDocumentFrequencyOf(java.lang.String)
      */
     public Integer getDocumentFrequencyOf(final String dictionaryTerm) {
-        return index.getDocumentFrequencyOf(dictionaryTerm);
+        return statistics.getTerms().getDocumentFrequencyOf(dictionaryTerm);
     }
 
     /**
@@ -168,6 +345,6 @@ public final class CorpusDatabase implements Corpus {
      * @see de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus#getNumberOfDocuments()
      */
     public Integer getNumberOfDocuments() {
-        return index.getNumberOfDocuments();
+        return statistics.getTerms().getNumberOfDocuments();
     }
 }
@@ -0,0 +1,115 @@
+/**
+ * Material for the course 'Text-Mining', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-textmining.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.tm.p1.corpus;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.uni_koeln.phil_fak.iv.ir.p2.index.DocumentIndex;
+import de.uni_koeln.phil_fak.iv.ir.p6.crawler.WebDocument;
+
+/*
+ * Tests für das Ersetzen von Dokumenten in der CorpusDatabase, auch nach dem
+ * erneuten Öffnen. Als Referenz dient jeweils ein DocumentIndex im Speicher
+ * mit den Dokumenten, die in der DB stehen sollten.
+ */
+/**
+ * Tests for replacing documents in a corpus database.
+ * @author Fabian Steeg (fsteeg)
+ */
+public class CorpusDatabasePraxis {
+    private static final String DATA = "output/corpus-database-praxis.db";
+    private List<Document> documents;
+    private Corpus corpus;
+
+    @Before
+    public void before() {
+        documents = SampleDocuments.create(60, 1, "politik", "sport",
+                "kultur");
+        corpus = CorpusDatabase.create(DATA);
+        corpus.addAll(documents.subList(0, 40));
+    }
+
+    @Test
+    public void replaceStored() {
+        Document previous = corpus.getDocument(documents.get(0).getSource());
+        corpus.replace(previous, documents.get(40));
+        List<Document> expected = new ArrayList<Document>(documents.subList(
+                1, 41));
+        assertContains(expected);
+        corpus.close();
+        corpus = CorpusDatabase.open(DATA);
+        assertContains(expected);
+    }
+
+    @Test
+    public void replaceUnstored() {
+        /* Die alte Version war nie in der DB, die neue kommt einfach dazu: */
+        corpus.replace(documents.get(40), documents.get(41));
+        List<Document> expected = new ArrayList<Document>(documents.subList(
+                0, 40));
+        expected.add(documents.get(41));
+        assertContains(expected);
+        corpus.close();
+        corpus = CorpusDatabase.open(DATA);
+        assertContains(expected);
+    }
+
+    @After
+    public void after() {
+        corpus.close();
+        new File(DATA).delete();
+    }
+
+    private void assertContains(final List<Document> expected) {
+        Corpus reference = new DocumentIndex(expected);
+        Assert.assertEquals(reference.getNumberOfDocuments(), corpus
+                .getNumberOfDocuments());
+        Assert.assertEquals(reference.getTerms(), corpus.getTerms());
+        for (String term : reference.getTerms()) {
+            Assert.assertEquals(reference.getDocumentFrequencyOf(term), corpus
+                    .getDocumentFrequencyOf(term));
+        }
+        /* getDocuments() liefert auch die Objekte, an die delegiert wird: */
+        List<WebDocument> stored = ((CorpusDatabase) corpus)
+                .getDocuments(WebDocument.class);
+        List<String> sources = new ArrayList<String>();
+        for (Document document : stored) {
+            sources.add(document.getSource());
+        }
+        for (Document document : expected) {
+            Assert.assertTrue(sources.contains(document.getSource()));
+        }
+        Assert.assertEquals(expected.size(), sources.size());
+        /* Auf den Host, auf einen Teil der URL, und auf gar nichts: */
+        for (String source : new String[] { "spiegel", "spiegel.de/sport",
+                "/kultur/1-", "bild.de" }) {
+            Assert.assertEquals(reference.getDocumentsForSource(source)
+                    .size(), corpus.getDocumentsForSource(source).size());
+        }
+    }
+}
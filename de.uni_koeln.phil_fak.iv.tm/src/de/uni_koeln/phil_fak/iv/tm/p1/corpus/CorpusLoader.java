@@ -0,0 +1,212 @@
+/**
+ * Material for the course 'Text-Mining', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-textmining.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.tm.p1.corpus;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ * Zum Laden vieler Dokumente (z.B. eines ganzen Crawls) in ein Korpus: Die
+ * Analyse der Eingabe (Parsen, Vorverarbeitung) läuft parallel, geschrieben
+ * wird in großen Blöcken über addAll, so dass z.B. die CorpusDatabase nur
+ * einmal pro Block ihre Statistiken speichert und die Transaktion abschließt.
+ * Während ein Block geschrieben wird, wird schon der nächste analysiert.
+ */
+/**
+ * Bulk loader for corpora, with parallel analysis and batched writes.
+ * @author Fabian Steeg (fsteeg)
+ */
+public final class CorpusLoader {
+
+    /**
+     * The analysis turning raw input into a document.
+     * @param <T> The type of the raw input
+     */
+    public interface Analysis<T> {
+        /**
+         * @param input The raw input
+         * @return The document for the input, or null to skip the input
+         */
+        Document analyze(T input);
+    }
+
+    /** Throughput metrics of a bulk load. */
+    public static final class Report {
+        private int documents;
+        private int batches;
+        private long analysisMillis;
+        private long writeMillis;
+        private long totalMillis;
+
+        /** @return The number of documents loaded */
+        public int getDocuments() {
+            return documents;
+        }
+
+        /** @return The number of batches written */
+        public int getBatches() {
+            return batches;
+        }
+
+        /** @return The time spent waiting for the analysis, in milliseconds */
+        public long getAnalysisMillis() {
+            return analysisMillis;
+        }
+
+        /** @return The time spent writing to the corpus, in milliseconds */
+        public long getWriteMillis() {
+            return writeMillis;
+        }
+
+        /** @return The total time of the load, in milliseconds */
+        public long getTotalMillis() {
+            return totalMillis;
+        }
+
+        /** @return The number of documents loaded per second */
+        public double getDocumentsPerSecond() {
+            return totalMillis == 0 ? 0 : documents * 1000.0 / totalMillis;
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see java.lang.Object#toString()
+         */
+        @Override
+        public String toString() {
+            return String.format("%s: %s documents in %s batches, %s ms "
+                    + "(analysis wait %s ms, write %s ms), %.1f documents/s",
+                    getClass().getSimpleName(), documents, batches,
+                    totalMillis, analysisMillis, writeMillis,
+                    getDocumentsPerSecond());
+        }
+    }
+
+    private Corpus corpus;
+    private int batchSize;
+    private int threads;
+
+    /**
+     * @param corpus The corpus to load documents into
+     * @param batchSize The number of documents to write in one batch
+     * @param threads The number of threads to analyze input with
+     */
+    public CorpusLoader(final Corpus corpus, final int batchSize,
+            final int threads) {
+        if (batchSize < 1 || threads < 1) {
+            throw new IllegalArgumentException(
+                    "Batch size and threads must be positive, not: "
+                            + batchSize + ", " + threads);
+        }
+        this.corpus = corpus;
+        this.batchSize = batchSize;
+        this.threads = threads;
+    }
+
+    /**
+     * @param corpus The corpus to load documents into
+     */
+    public CorpusLoader(final Corpus corpus) {
+        this(corpus, 1000, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param <T> The type of the raw input
+     * @param input The raw input to analyze and load, consumed in order
+     * @param analysis The analysis turning each input into a document
+     * @return The throughput metrics of the load
+     */
+    public <T> Report load(final Iterator<T> input,
+            final Analysis<T> analysis) {
+        Report report = new Report();
+        long start = System.currentTimeMillis();
+        ExecutorService exec = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Document>> next = submit(exec, input, analysis);
+            while (!next.isEmpty()) {
+                long analysisStart = System.currentTimeMillis();
+                List<Document> batch = collect(next);
+                report.analysisMillis += System.currentTimeMillis()
+                        - analysisStart;
+                /* Den nächsten Block schon analysieren lassen: */
+                next = submit(exec, input, analysis);
+                long writeStart = System.currentTimeMillis();
+                corpus.addAll(batch);
+                report.writeMillis += System.currentTimeMillis() - writeStart;
+                report.documents += batch.size();
+                report.batches++;
+                report.totalMillis = System.currentTimeMillis() - start;
+                System.out.println(report);
+            }
+        } finally {
+            exec.shutdownNow();
+        }
+        report.totalMillis = System.currentTimeMillis() - start;
+        return report;
+    }
+
+    private <T> List<Future<Document>> submit(final ExecutorService exec,
+            final Iterator<T> input, final Analysis<T> analysis) {
+        List<Future<Document>> result = new ArrayList<Future<Document>>();
+        while (result.size() < batchSize && input.hasNext()) {
+            final T next = input.next();
+            result.add(exec.submit(new Callable<Document>() {
+                public Document call() {
+                    return analysis.analyze(next);
+                }
+            }));
+        }
+        return result;
+    }
+
+    private List<Document> collect(final List<Future<Document>> futures) {
+        List<Document> result = new ArrayList<Document>(futures.size());
+        try {
+            for (Future<Document> future : futures) {
+                Document document = future.get();
+                if (document != null) {
+                    result.add(document);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Analysis failed", e.getCause());
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("%s into %s with batches of %s using %s threads",
+                getClass().getSimpleName(), corpus, batchSize, threads);
+    }
+}
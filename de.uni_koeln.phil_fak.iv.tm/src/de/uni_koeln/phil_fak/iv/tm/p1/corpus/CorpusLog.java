@@ -0,0 +1,526 @@
+/**
+ * Material for the course 'Text-Mining', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-textmining.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.tm.p1.corpus;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import de.uni_koeln.phil_fak.iv.ir.p2.index.TermStatistics;
+import de.uni_koeln.phil_fak.iv.ir.p6.crawler.WebDocument;
+
+/*
+ * Eine Alternative zur CorpusDatabase: Die Dokumente werden als binäre
+ * Einträge (siehe DocumentRecord) an das Ende einer Datei geschrieben, nie
+ * überschrieben. Ersetzte Dokumente werden durch einen Lösch-Eintrag
+ * markiert. Gelesen wird über ein Memory-Mapping der Datei, d.h. das
+ * Betriebssystem lädt die Seiten bei Bedarf, ohne dass wir sie selbst in
+ * Puffer kopieren. Im Speicher halten wir nur die Positionen der Einträge mit
+ * Quelle, Host und Thema, sowie die Statistiken des Korpus. Beim Schließen
+ * schreiben wir diese in eine Index-Datei neben dem Log, so dass beim Öffnen
+ * nur die seitdem angehängten Einträge gelesen werden müssen.
+ */
+/**
+ * Persistent corpus implementation based on an append-only log of binary
+ * document records, read through a memory mapping of the log file. Documents
+ * are restored as {@link WebDocument} or as
+ * {@link de.uni_koeln.phil_fak.iv.ir.p2.index.TermIndex} instances. The log
+ * file is mapped as a whole, so it is limited to 2 GB. Each write is a batch
+ * of records ending with a commit record; incomplete batches are discarded as
+ * a whole when the log is opened.
+ * @author Fabian Steeg (fsteeg)
+ */
+public final class CorpusLog implements Corpus {
+
+    private static final int MAGIC = 0x434f524c;
+
+    /* Was wir über jeden Eintrag wissen, ohne ihn zu lesen: */
+    private static final class Header {
+        private final String source;
+        private final String host;
+        private final String topic;
+
+        Header(final Document document) {
+            this.source = document.getSource();
+            if (document instanceof WebDocument) {
+                this.host = ((WebDocument) document).getHost();
+                this.topic = document.getTopic();
+            } else {
+                this.host = null;
+                this.topic = null;
+            }
+        }
+
+        Header(final DataInputStream in) throws IOException {
+            this.source = in.readUTF();
+            this.host = in.readBoolean() ? in.readUTF() : null;
+            this.topic = in.readBoolean() ? in.readUTF() : null;
+        }
+
+        void write(final DataOutputStream out) throws IOException {
+            out.writeUTF(source);
+            for (String value : new String[] { host, topic }) {
+                out.writeBoolean(value != null);
+                if (value != null) {
+                    out.writeUTF(value);
+                }
+            }
+        }
+    }
+
+    private String location;
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private MappedByteBuffer log;
+    /* Die Positionen der gültigen Einträge, in der Reihenfolge im Log: */
+    private SortedMap<Long, Header> records;
+    /* Die Position des Eintrags für jede Quelle: */
+    private Map<String, Long> sources;
+    private TermStatistics statistics;
+
+    /**
+     * @param location The location of the log file
+     * @return The corpus log instance for the given location
+     */
+    public static Corpus open(final String location) {
+        return new CorpusLog(location);
+    }
+
+    /**
+     * @param location The location of the log file (the index is stored next
+     *            to it, with the suffix .index)
+     * @return A new, empty instance for the given location
+     */
+    public static Corpus create(final String location) {
+        for (File f : new File[] { new File(location), index(location) }) {
+            boolean ok = f.delete();
+            if (!ok && f.exists()) {
+                throw new IllegalArgumentException("Could not delete: " + f);
+            }
+        }
+        return new CorpusLog(location);
+    }
+
+    private static File index(final String location) {
+        return new File(location + ".index");
+    }
+
+    private CorpusLog(final String location) {
+        this.location = location;
+        this.records = new TreeMap<Long, Header>();
+        this.sources = new HashMap<String, Long>();
+        this.statistics = new TermStatistics();
+        try {
+            file = new RandomAccessFile(location, "rw");
+            channel = file.getChannel();
+            load();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not open corpus log at "
+                    + location, e);
+        }
+    }
+
+    /*
+     * Beim Öffnen laden wir den Index vom letzten Schließen und springen dann
+     * über die Längen von Eintrag zu Eintrag, die seitdem angehängt wurden.
+     * Ein Eintrag gilt erst, wenn das COMMIT am Ende seines Blocks gelesen
+     * ist; so kann z.B. beim Ersetzen nicht das Löschen des alten Dokuments
+     * ohne das neue übrig bleiben. Ist der letzte Block unvollständig (etwa
+     * weil das Programm beim Schreiben abgebrochen wurde), schneiden wir ihn
+     * ganz ab. Gelesen werden dann nur die neuen, nicht gelöschten Einträge
+     * und die gelöschten aus dem Index, um die Statistiken anzupassen.
+     */
+    private void load() throws IOException {
+        long start = loadIndex();
+        ByteBuffer buffer = mapped();
+        long size = channel.size();
+        List<Long> deleted = new ArrayList<Long>();
+        List<Long> found = new ArrayList<Long>();
+        List<Long> batchDeleted = new ArrayList<Long>();
+        List<Long> batchFound = new ArrayList<Long>();
+        int offset = (int) start;
+        int committed = offset;
+        while (offset + DocumentRecord.PREFIX <= size) {
+            int length = DocumentRecord.length(buffer, offset);
+            if (length <= 0 || offset + DocumentRecord.PREFIX + length > size) {
+                break;
+            }
+            byte type = DocumentRecord.type(buffer, offset);
+            if (type == DocumentRecord.DELETE) {
+                batchDeleted.add(DocumentRecord.deleted(buffer, offset));
+            } else if (type == DocumentRecord.COMMIT) {
+                deleted.addAll(batchDeleted);
+                found.addAll(batchFound);
+                batchDeleted.clear();
+                batchFound.clear();
+                committed = offset + DocumentRecord.PREFIX + length;
+            } else {
+                batchFound.add((long) offset);
+            }
+            offset += DocumentRecord.PREFIX + length;
+        }
+        if (committed < size) {
+            System.err.println(String.format(
+                    "Truncating incomplete batch at %s in %s", committed,
+                    location));
+            channel.truncate(committed);
+            log = null;
+        }
+        found.removeAll(new TreeSet<Long>(deleted));
+        for (Long position : deleted) {
+            if (records.containsKey(position)) {
+                remove(position);
+                statistics.remove(read(position));
+            }
+        }
+        for (Map.Entry<Long, Header> entry : records.entrySet()) {
+            sources.put(entry.getValue().source, entry.getKey());
+        }
+        for (Long position : found) {
+            Document document = read(position);
+            put(position, new Header(document));
+            statistics.add(document);
+        }
+    }
+
+    private void put(final Long offset, final Header header) {
+        records.put(offset, header);
+        sources.put(header.source, offset);
+    }
+
+    private void remove(final Long offset) {
+        Header header = records.remove(offset);
+        if (offset.equals(sources.get(header.source))) {
+            sources.remove(header.source);
+        }
+    }
+
+    /*
+     * Passt der Index nicht zum Log (etwa weil er kaputt ist oder weiter
+     * reicht als das Log), lesen wir eben alle Einträge.
+     */
+    private long loadIndex() throws IOException {
+        File index = index(location);
+        if (!index.exists()) {
+            return 0;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(index)));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a corpus log index: " + index);
+            }
+            long end = in.readLong();
+            if (end > channel.size()) {
+                throw new IOException("Index beyond end of log: " + index);
+            }
+            SortedMap<Long, Header> headers = new TreeMap<Long, Header>();
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                headers.put(in.readLong(), new Header(in));
+            }
+            TermStatistics terms = TermStatistics.read(in);
+            records = headers;
+            statistics = terms;
+            return end;
+        } catch (IOException e) {
+            System.err.println(String.format(
+                    "Ignoring index %s, reading all of %s (%s)", index,
+                    location, e.getMessage()));
+            return 0;
+        } finally {
+            in.close();
+        }
+    }
+
+    /*
+     * Wir schreiben den Index erst in eine temporäre Datei, damit bei einem
+     * Absturz nicht ein halber Index neben dem Log liegt.
+     */
+    private void writeIndex() throws IOException {
+        File index = index(location);
+        File temp = new File(index.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(temp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeLong(channel.size());
+            out.writeInt(records.size());
+            for (Map.Entry<Long, Header> entry : records.entrySet()) {
+                out.writeLong(entry.getKey());
+                entry.getValue().write(out);
+            }
+            statistics.write(out);
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(index)
+                && !(index.delete() && temp.renameTo(index))) {
+            throw new IOException("Could not replace " + index);
+        }
+    }
+
+    /* Nach dem Schreiben ist das Mapping zu kurz und muss erneuert werden: */
+    private ByteBuffer mapped() throws IOException {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Corpus log too large to map: "
+                    + location);
+        }
+        if (log == null || log.capacity() < size) {
+            log = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        return log;
+    }
+
+    private Document read(final long offset) {
+        try {
+            return DocumentRecord.read(mapped(), (int) offset);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read corpus log at "
+                    + location, e);
+        }
+    }
+
+    /*
+     * Group Commit: alle Dokumente werden in einen Puffer kodiert, mit einem
+     * Aufruf angehängt und mit einem force auf die Platte gebracht, statt
+     * jedes Dokument einzeln zu schreiben und zu synchronisieren. Das COMMIT
+     * am Ende markiert den Block als vollständig (siehe load).
+     */
+    private List<Long> append(final List<Long> deletions,
+            final List<? extends Document> documents) {
+        try {
+            long start = channel.size();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            for (Long offset : deletions) {
+                DocumentRecord.writeDelete(out, offset);
+            }
+            List<Long> offsets = new ArrayList<Long>(documents.size());
+            for (Document document : documents) {
+                offsets.add(start + out.size());
+                DocumentRecord.write(out, document);
+            }
+            DocumentRecord.writeCommit(out);
+            out.flush();
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            long position = start;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            channel.force(false);
+            return offsets;
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write corpus log at "
+                    + location, e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus#addAll(java.util.List)
+     */
+    public void addAll(final List<? extends Document> documents) {
+        List<Long> offsets = append(new ArrayList<Long>(), documents);
+        for (int i = 0; i < documents.size(); i++) {
+            Document document = documents.get(i);
+            put(offsets.get(i), new Header(document));
+            statistics.add(document);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus#add(de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document)
+     */
+    public void add(final Document document) {
+        addAll(Arrays.asList(document));
+    }
+
+    /*
+     * Das vorige Dokument finden wir über seine Quelle und seinen Inhalt, da
+     * die gelesenen Dokumente bei jedem Zugriff neu erzeugt werden. Die
+     * Quelle schlagen wir nach, statt alle Einträge durchzugehen (sonst wäre
+     * das erneute Crawlen eines Korpus quadratisch); lesen müssen wir nur den
+     * einen Eintrag mit dieser Quelle.
+     */
+    /**
+     * {@inheritDoc}
+     * @see de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus#replace(de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document,
+     *      de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document)
+     */
+    public void replace(final Document previous, final Document current) {
+        Long old = sources.get(previous.getSource());
+        if (old != null
+                && !read(old).getContent().equals(previous.getContent())) {
+            old = null;
+        }
+        List<Long> deletions = new ArrayList<Long>();
+        if (old != null) {
+            deletions.add(old);
+        }
+        List<Long> offsets = append(deletions, Arrays.asList(current));
+        if (old != null) {
+            remove(old);
+            statistics.replace(previous, current);
+        } else {
+            statistics.add(current);
+        }
+        put(offsets.get(0), new Header(current));
+    }
+
+    /*
+     * Die Dokumente werden erst beim Zugriff auf ein Element der Liste aus dem
+     * Log gelesen.
+     */
+    /**
+     * {@inheritDoc}
+     * @see de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus#getDocuments()
+     */
+    public List<Document> getDocuments() {
+        return documents(new ArrayList<Long>(records.keySet()));
+    }
+
+    private List<Document> documents(final List<Long> offsets) {
+        return new AbstractList<Document>() {
+            @Override
+            public Document get(final int index) {
+                return read(offsets.get(index));
+            }
+
+            @Override
+            public int size() {
+                return offsets.size();
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus#getDocumentsForSource(java.lang.String)
+     */
+    public List<Document> getDocumentsForSource(final String source) {
+        List<Long> result = new ArrayList<Long>();
+        for (Map.Entry<Long, Header> entry : records.entrySet()) {
+            /* Die ganze Quelle, nicht nur der Host ('spiegel.de/sport'): */
+            if (entry.getValue().source.contains(source)) {
+                result.add(entry.getKey());
+            }
+        }
+        return documents(result);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus#getDocument(java.lang.String)
+     */
+    public Document getDocument(final String source) {
+        Long offset = sources.get(source);
+        return offset == null ? null : read(offset);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus#getDocumentsForTopic(java.lang.String)
+     */
+    public List<Document> getDocumentsForTopic(final String topic) {
+        List<Long> result = new ArrayList<Long>();
+        for (Map.Entry<Long, Header> entry : records.entrySet()) {
+            if (topic.equals(entry.getValue().topic)) {
+                result.add(entry.getKey());
+            }
+        }
+        return documents(result);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus#close()
+     */
+    public void close() {
+        try {
+            writeIndex();
+        } catch (IOException e) {
+            /* Ohne Index lesen wir beim nächsten Öffnen eben alles: */
+            e.printStackTrace();
+        }
+        try {
+            log = null;
+            file.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus#getTerms()
+     */
+    public Set<String> getTerms() {
+        return statistics.getTerms();
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus#getDocumentFrequencyOf(java.lang.String)
+     */
+    public Integer getDocumentFrequencyOf(final String dictionaryTerm) {
+        return statistics.getDocumentFrequencyOf(dictionaryTerm);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus#getNumberOfDocuments()
+     */
+    public Integer getNumberOfDocuments() {
+        return statistics.getNumberOfDocuments();
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("%s at %s with %s documents", getClass()
+                .getSimpleName(), location, records.size());
+    }
+}
@@ -0,0 +1,211 @@
+/**
+ * Material for the course 'Text-Mining', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-textmining.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.tm.p1.corpus;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.uni_koeln.phil_fak.iv.ir.p2.index.DocumentIndex;
+import de.uni_koeln.phil_fak.iv.ir.p2.index.TermIndex;
+import de.uni_koeln.phil_fak.iv.ir.p6.crawler.Validators;
+import de.uni_koeln.phil_fak.iv.ir.p6.crawler.WebDocument;
+
+/*
+ * Tests für das Öffnen eines CorpusLog mit und ohne Index, und nach einem
+ * Absturz mitten im Schreiben. Als Referenz dient jeweils ein DocumentIndex
+ * im Speicher mit den Dokumenten, die im Log stehen sollten.
+ */
+/**
+ * Tests for reopening and recovering a corpus log.
+ * @author Fabian Steeg (fsteeg)
+ */
+public class CorpusLogPraxis {
+    private static final String DATA = "output/corpus-log-praxis.log";
+    private static final String INDEX = DATA + ".index";
+    private List<Document> documents;
+    private Corpus corpus;
+
+    @Before
+    public void before() {
+        documents = SampleDocuments.create(60, 1, "politik", "sport",
+                "kultur");
+        corpus = CorpusLog.create(DATA);
+        corpus.addAll(documents.subList(0, 40));
+        corpus.close();
+    }
+
+    @Test
+    public void reopen() {
+        /* Erst mit dem Index vom Schließen, dann ohne: */
+        corpus = CorpusLog.open(DATA);
+        corpus.replace(corpus.getDocuments().get(0), documents.get(40));
+        corpus.add(documents.get(41));
+        assertContains(expected(41, 42));
+        corpus.close();
+        corpus = CorpusLog.open(DATA);
+        assertContains(expected(41, 42));
+        corpus.close();
+        Assert.assertTrue(new File(INDEX).delete());
+        corpus = CorpusLog.open(DATA);
+        assertContains(expected(41, 42));
+    }
+
+    @Test
+    public void tornReplace() throws IOException {
+        byte[] index = read(INDEX);
+        long size = new File(DATA).length();
+        corpus = CorpusLog.open(DATA);
+        corpus.replace(corpus.getDocuments().get(0), documents.get(40));
+        corpus.close();
+        /*
+         * Nach dem Löschen des alten Dokuments bricht der Block ab; mit dem
+         * alten Index wie ohne Index muss das alte Dokument noch da sein:
+         */
+        truncate(size + 20);
+        write(INDEX, index);
+        corpus = CorpusLog.open(DATA);
+        assertContains(documents.subList(0, 40));
+        Assert.assertEquals(size, new File(DATA).length());
+        corpus.close();
+        truncate(size + 20);
+        Assert.assertTrue(new File(INDEX).delete());
+        corpus = CorpusLog.open(DATA);
+        assertContains(documents.subList(0, 40));
+    }
+
+    @Test
+    public void replaceChanged() {
+        /* Gleiche Quelle, anderer Inhalt als im Log: nur hinzufügen */
+        Document other = WebDocument.restore(documents.get(0).getSource(),
+                new HashSet<String>(), new TermIndex(documents.get(1)
+                        .getContent()));
+        corpus = CorpusLog.open(DATA);
+        corpus.replace(other, documents.get(40));
+        assertContains(documents.subList(0, 41));
+        corpus.replace(documents.get(40), documents.get(41));
+        List<Document> expected = new ArrayList<Document>(documents.subList(0,
+                40));
+        expected.add(documents.get(41));
+        assertContains(expected);
+    }
+
+    @Test
+    public void validators() {
+        /* Gleicher Inhalt, neue Validatoren (siehe Crawler#recrawl): */
+        String source = documents.get(0).getSource();
+        WebDocument current = WebDocument.restore(source,
+                new HashSet<String>(), new TermIndex(documents.get(0)
+                        .getContent()), Validators.restore("\"a\"", null, 42));
+        corpus = CorpusLog.open(DATA);
+        corpus.replace(corpus.getDocument(source), current);
+        corpus.close();
+        corpus = CorpusLog.open(DATA);
+        Assert.assertEquals(current.getValidators(), ((WebDocument) corpus
+                .getDocument(source)).getValidators());
+        /* Einträge ohne Validatoren: */
+        Assert.assertNull(((WebDocument) corpus.getDocument(documents.get(1)
+                .getSource())).getValidators());
+    }
+
+    @After
+    public void after() {
+        corpus.close();
+    }
+
+    /* Die ersten 40 Dokumente, ohne das erste, mit den übrigen bis to: */
+    private List<Document> expected(final int from, final int to) {
+        List<Document> result = new ArrayList<Document>(documents.subList(1,
+                from - 1));
+        result.addAll(documents.subList(from - 1, to));
+        return result;
+    }
+
+    private void assertContains(final List<Document> expected) {
+        Corpus reference = new DocumentIndex(expected);
+        Assert.assertEquals(reference.getNumberOfDocuments(), corpus
+                .getNumberOfDocuments());
+        Assert.assertEquals(reference.getTerms(), corpus.getTerms());
+        for (String term : reference.getTerms()) {
+            Assert.assertEquals(reference.getDocumentFrequencyOf(term), corpus
+                    .getDocumentFrequencyOf(term));
+        }
+        List<String> sources = new ArrayList<String>();
+        for (Document document : corpus.getDocuments()) {
+            sources.add(document.getSource());
+        }
+        for (Document document : expected) {
+            Assert.assertTrue(sources.contains(document.getSource()));
+        }
+        Assert.assertEquals(expected.size(), sources.size());
+        Assert.assertEquals(reference.getDocumentsForTopic("sport").size(),
+                corpus.getDocumentsForTopic("sport").size());
+        /* Auf den Host, auf einen Teil der URL, und auf gar nichts: */
+        for (String source : new String[] { "spiegel", "spiegel.de/sport",
+                "/kultur/1-", "bild.de" }) {
+            Assert.assertEquals(reference.getDocumentsForSource(source)
+                    .size(), corpus.getDocumentsForSource(source).size());
+        }
+    }
+
+    private static void truncate(final long length) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(DATA, "rw");
+        try {
+            file.setLength(length);
+        } finally {
+            file.close();
+        }
+    }
+
+    private static byte[] read(final String name) throws IOException {
+        FileInputStream in = new FileInputStream(name);
+        try {
+            byte[] result = new byte[(int) new File(name).length()];
+            int read = 0;
+            while (read < result.length) {
+                read += in.read(result, read, result.length - read);
+            }
+            return result;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void write(final String name, final byte[] bytes)
+            throws IOException {
+        FileOutputStream out = new FileOutputStream(name);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Material for the course 'Text-Mining', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-textmining.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.tm.p1.corpus;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+import de.uni_koeln.phil_fak.iv.ir.p2.index.TermStatistics;
+import de.uni_koeln.phil_fak.iv.ir.p6.crawler.WebDocument;
+
+/*
+ * Alles, was die CorpusDatabase über die Gesamtheit der Dokumente wissen muss
+ * (Vokabular, Dokumentenfrequenzen, Anzahl, Hosts), in einem Objekt, das mit
+ * den Dokumenten zusammen in der DB gespeichert wird. So muss beim Öffnen
+ * nicht mehr jedes Dokument geladen werden, um diese Werte neu zu berechnen.
+ */
+/**
+ * Persistent aggregate statistics of the documents in a corpus database.
+ * @author Fabian Steeg (fsteeg)
+ */
+final class CorpusStatistics {
+
+    private TermStatistics terms;
+    private Set<String> hosts;
+
+    CorpusStatistics() {
+        this.terms = new TermStatistics();
+        this.hosts = new TreeSet<String>();
+    }
+
+    void add(final Document document) {
+        terms.add(document);
+        addHost(document);
+    }
+
+    void replace(final Document previous, final Document current) {
+        terms.replace(previous, current);
+        addHost(current);
+    }
+
+    private void addHost(final Document document) {
+        if (document instanceof WebDocument) {
+            String host = ((WebDocument) document).getHost();
+            if (host != null) {
+                hosts.add(host);
+            }
+        }
+    }
+
+    TermStatistics getTerms() {
+        return terms;
+    }
+
+    Set<String> getHosts() {
+        return hosts;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("%s with %s and %s hosts", getClass()
+                .getSimpleName(), terms, hosts.size());
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * Material for the course 'Text-Mining', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-textmining.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.tm.p1.corpus;
+
+/*
+ * Die Wahl der Speicherung an einer Stelle: Code, der ein Korpus öffnet, kann
+ * die Implementierung z.B. als Parameter bekommen und arbeitet ansonsten nur
+ * mit dem Corpus-Interface.
+ */
+/**
+ * The available persistent corpus implementations.
+ * @author Fabian Steeg (fsteeg)
+ */
+public enum CorpusStorage {
+
+    /** Object database storage, see {@link CorpusDatabase}. */
+    DATABASE {
+        @Override
+        public Corpus open(final String location) {
+            return CorpusDatabase.open(location);
+        }
+
+        @Override
+        public Corpus create(final String location) {
+            return CorpusDatabase.create(location);
+        }
+    },
+
+    /** Append-only log storage, see {@link CorpusLog}. */
+    LOG {
+        @Override
+        public Corpus open(final String location) {
+            return CorpusLog.open(location);
+        }
+
+        @Override
+        public Corpus create(final String location) {
+            return CorpusLog.create(location);
+        }
+    };
+
+    /**
+     * @param location The location of the corpus
+     * @return The corpus stored at the given location
+     */
+    public abstract Corpus open(String location);
+
+    /**
+     * @param location The location of the corpus
+     * @return A new, empty corpus at the given location
+     */
+    public abstract Corpus create(String location);
+}
@@ -0,0 +1,235 @@
+/**
+ * Material for the course 'Text-Mining', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-textmining.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.tm.p1.corpus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import de.uni_koeln.phil_fak.iv.ir.p2.index.TermIndex;
+import de.uni_koeln.phil_fak.iv.ir.p6.crawler.Validators;
+import de.uni_koeln.phil_fak.iv.ir.p6.crawler.WebDocument;
+
+/*
+ * Das binäre Format eines Dokuments im CorpusLog. Jeder Eintrag beginnt mit
+ * seiner Länge, so dass man beim Öffnen von Eintrag zu Eintrag springen kann,
+ * ohne den Inhalt zu lesen. Dann folgt der Typ und, je nach Typ:
+ * 
+ * WEB: URL, Links, Terme mit Häufigkeiten, Inhalt, Validatoren (ETag,
+ * Last-Modified und Checksum, wenn bekannt; ältere Einträge enden mit dem
+ * Inhalt, dann hat das Dokument keine)
+ * 
+ * TERMS: Terme mit Häufigkeiten, Inhalt
+ * 
+ * DELETE: die Position des gelöschten Eintrags
+ * 
+ * COMMIT: nichts; schließt die Einträge seit dem letzten COMMIT ab
+ * 
+ * Die Terme speichern wir mit, damit beim Lesen nicht neu vorverarbeitet
+ * werden muss.
+ */
+/**
+ * Binary encoding of documents as length-prefixed records.
+ * @author Fabian Steeg (fsteeg)
+ */
+final class DocumentRecord {
+
+    /** Record type of a document restored as a {@link TermIndex}. */
+    static final byte TERMS = 0;
+    /** Record type of a document restored as a {@link WebDocument}. */
+    static final byte WEB = 1;
+    /** Record type marking a previous record as deleted. */
+    static final byte DELETE = 2;
+    /** Record type marking the end of a batch of records. */
+    static final byte COMMIT = 3;
+    /** Size of the length prefix of each record. */
+    static final int PREFIX = 4;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private DocumentRecord() {
+        // Enforce non-instantiability with a private constructor
+    }
+
+    /**
+     * @param out The stream to write the record for the document to
+     * @param document The document to encode
+     * @throws IOException If writing to the stream fails
+     */
+    static void write(final DataOutputStream out, final Document document)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream body = new DataOutputStream(bytes);
+        Validators validators = null;
+        if (document instanceof WebDocument) {
+            WebDocument web = (WebDocument) document;
+            validators = web.getValidators();
+            body.writeByte(WEB);
+            writeString(body, web.getSource());
+            Set<String> links = web.getLinks();
+            body.writeInt(links.size());
+            for (String link : links) {
+                writeString(body, link);
+            }
+        } else {
+            body.writeByte(TERMS);
+        }
+        Set<String> terms = document.getTerms();
+        body.writeInt(terms.size());
+        for (String term : terms) {
+            writeString(body, term);
+            body.writeInt(document.getTermFrequencyOf(term));
+        }
+        writeString(body, document.getContent());
+        if (validators != null) {
+            writeOptional(body, validators.getETag());
+            writeOptional(body, validators.getLastModified());
+            body.writeLong(validators.getChecksum());
+        }
+        body.flush();
+        out.writeInt(bytes.size());
+        bytes.writeTo(out);
+    }
+
+    /**
+     * @param out The stream to write the deletion record to
+     * @param offset The offset of the deleted record
+     * @throws IOException If writing to the stream fails
+     */
+    static void writeDelete(final DataOutputStream out, final long offset)
+            throws IOException {
+        out.writeInt(1 + 8);
+        out.writeByte(DELETE);
+        out.writeLong(offset);
+    }
+
+    /**
+     * @param out The stream to write the commit record to
+     * @throws IOException If writing to the stream fails
+     */
+    static void writeCommit(final DataOutputStream out) throws IOException {
+        out.writeInt(1);
+        out.writeByte(COMMIT);
+    }
+
+    /**
+     * @param log The log buffer
+     * @param offset The offset of a record in the buffer
+     * @return The length of the record, excluding the length prefix
+     */
+    static int length(final ByteBuffer log, final int offset) {
+        return log.getInt(offset);
+    }
+
+    /**
+     * @param log The log buffer
+     * @param offset The offset of a record in the buffer
+     * @return The type of the record
+     */
+    static byte type(final ByteBuffer log, final int offset) {
+        return log.get(offset + PREFIX);
+    }
+
+    /**
+     * @param log The log buffer
+     * @param offset The offset of a deletion record in the buffer
+     * @return The offset of the record deleted by the record
+     */
+    static long deleted(final ByteBuffer log, final int offset) {
+        return log.getLong(offset + PREFIX + 1);
+    }
+
+    /*
+     * Wir lesen direkt aus dem (gemappten) Puffer, ohne den Eintrag vorher
+     * in ein eigenes Array zu kopieren.
+     */
+    /**
+     * @param log The log buffer
+     * @param offset The offset of a document record in the buffer
+     * @return The document stored in the record
+     */
+    static Document read(final ByteBuffer log, final int offset) {
+        ByteBuffer in = log.duplicate();
+        in.position(offset + PREFIX);
+        byte type = in.get();
+        String url = null;
+        Set<String> links = null;
+        if (type == WEB) {
+            url = readString(in);
+            int size = in.getInt();
+            links = new LinkedHashSet<String>(size * 2);
+            for (int i = 0; i < size; i++) {
+                links.add(readString(in));
+            }
+        } else if (type != TERMS) {
+            throw new IllegalStateException("No document at " + offset
+                    + ", record type: " + type);
+        }
+        int size = in.getInt();
+        Map<String, Integer> frequencies = new HashMap<String, Integer>(
+                size * 2);
+        for (int i = 0; i < size; i++) {
+            String term = readString(in);
+            frequencies.put(term, in.getInt());
+        }
+        TermIndex index = new TermIndex(readString(in), frequencies);
+        if (type != WEB) {
+            return index;
+        }
+        Validators validators = null;
+        if (in.position() < offset + PREFIX + length(log, offset)) {
+            validators = Validators.restore(readOptional(in),
+                    readOptional(in), in.getLong());
+        }
+        return WebDocument.restore(url, links, index, validators);
+    }
+
+    /* writeUTF ist auf 64K begrenzt, Inhalte können länger sein: */
+    private static void writeString(final DataOutputStream out,
+            final String string) throws IOException {
+        byte[] bytes = string.getBytes(UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(final ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    private static void writeOptional(final DataOutputStream out,
+            final String string) throws IOException {
+        out.writeBoolean(string != null);
+        if (string != null) {
+            writeString(out, string);
+        }
+    }
+
+    private static String readOptional(final ByteBuffer in) {
+        return in.get() != 0 ? readString(in) : null;
+    }
+}
@@ -0,0 +1,315 @@
+/**
+ * Material for the course 'Text-Mining', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-textmining.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.tm.p1.corpus;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.uni_koeln.phil_fak.iv.ir.p5.features.HnswIndex;
+import de.uni_koeln.phil_fak.iv.ir.p5.features.SparseVector;
+import de.uni_koeln.phil_fak.iv.ir.p5.features.TfIdfVectorizer;
+
+/*
+ * Ein Korpus, das ein anderes Korpus um eine schnelle Suche nach ähnlichen
+ * Dokumenten ergänzt ("more like this"): Jedes hinzugefügte Dokument kommt
+ * auch in einen HNSW-Index (siehe HnswIndex), so dass wir für eine Anfrage
+ * nicht mit jedem Dokument im Korpus vergleichen müssen. Die Vektoren sind
+ * TF-IDF-Vektoren über feste Term-IDs (siehe TfIdfVectorizer). Dokumente
+ * werden über ihre Quelle identifiziert: für einen Treffer im Index holen wir
+ * das Dokument mit dieser Quelle aus dem Korpus.
+ */
+/**
+ * Corpus decorator maintaining an approximate nearest neighbour index over the
+ * TF-IDF vectors of its documents, persisted to a separate file.
+ * @author Fabian Steeg (fsteeg)
+ */
+public final class IndexedCorpus implements Corpus {
+
+    private Corpus corpus;
+    private String location;
+    private HnswIndex index;
+    private TfIdfVectorizer vectorizer;
+    /* Die Quelle jedes Knotens im Index, der aktuelle Knoten jeder Quelle: */
+    private List<String> sources;
+    private Map<String, Integer> nodes;
+    private int searchWidth;
+
+    /**
+     * @param corpus The corpus to index
+     * @param location The location of the index file; if it does not exist, a
+     *            new index is built from the documents in the corpus,
+     *            otherwise it is updated with documents added to or removed
+     *            from the corpus without the index
+     * @return The indexed corpus
+     */
+    public static IndexedCorpus open(final Corpus corpus,
+            final String location) {
+        return new IndexedCorpus(corpus, location);
+    }
+
+    private IndexedCorpus(final Corpus corpus, final String location) {
+        this.corpus = corpus;
+        this.location = location;
+        this.sources = new ArrayList<String>();
+        this.nodes = new HashMap<String, Integer>();
+        this.searchWidth = 50;
+        File file = new File(location);
+        if (file.exists()) {
+            try {
+                read(file);
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not read index at "
+                        + location, e);
+            }
+            update();
+        } else {
+            this.index = new HnswIndex();
+            this.vectorizer = new TfIdfVectorizer();
+            for (Document document : corpus.getDocuments()) {
+                insert(document);
+            }
+        }
+    }
+
+    /**
+     * @param searchWidth The size of the candidate list for searches: higher
+     *            values find more of the actual most similar documents, lower
+     *            values are faster (default: 50)
+     */
+    public void setSearchWidth(final int searchWidth) {
+        this.searchWidth = searchWidth;
+    }
+
+    /**
+     * @param document The document to find similar documents for
+     * @param k The maximum number of similar documents to return
+     * @return The (approximately) k most similar documents in the corpus, most
+     *         similar first, excluding documents with the same source as the
+     *         given document
+     */
+    public List<Document> moreLikeThis(final Document document, final int k) {
+        SparseVector query = vectorizer.vector(document, corpus, false);
+        int[] found = index.search(query, k + 1, Math.max(searchWidth, k + 1));
+        List<Document> result = new ArrayList<Document>(k);
+        for (int node : found) {
+            String source = sources.get(node);
+            if (result.size() < k && !source.equals(document.getSource())) {
+                Document similar = corpus.getDocument(source);
+                if (similar != null) {
+                    result.add(similar);
+                }
+            }
+        }
+        return result;
+    }
+
+    private void insert(final Document document) {
+        int node = index.add(vectorizer.vector(document, corpus, true));
+        sources.add(document.getSource());
+        nodes.put(document.getSource(), node);
+    }
+
+    /*
+     * Wurde das Korpus ohne den Index geändert (direkt über das Korpus, oder
+     * der Index nach Änderungen nicht mehr geschrieben), fehlen im Index
+     * Dokumente, oder er enthält noch welche, die es nicht mehr gibt. Beides
+     * gleichen wir beim Öffnen über die Quellen der Dokumente im Korpus ab.
+     */
+    private void update() {
+        Set<String> stale = new HashSet<String>(nodes.keySet());
+        for (Document document : corpus.getDocuments()) {
+            String source = document.getSource();
+            if (!stale.remove(source) && !nodes.containsKey(source)) {
+                insert(document);
+            }
+        }
+        for (String source : stale) {
+            index.remove(nodes.remove(source));
+        }
+    }
+
+    private void read(final File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file)));
+        try {
+            vectorizer = TfIdfVectorizer.read(in);
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                String source = in.readUTF();
+                sources.add(source);
+                nodes.put(source, i);
+            }
+            index = HnswIndex.read(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes the index to its file (done automatically on {@link #close()}).
+     */
+    public void flush() {
+        File file = new File(location);
+        File temp = new File(location + ".tmp");
+        try {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temp)));
+            try {
+                vectorizer.write(out);
+                out.writeInt(sources.size());
+                for (String source : sources) {
+                    out.writeUTF(source);
+                }
+                index.write(out);
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write index at "
+                    + location, e);
+        }
+        /* Erst umbenennen; nur wo das die alte Datei nicht ersetzt, löschen: */
+        if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file))) {
+            throw new IllegalStateException("Could not replace index at "
+                    + location);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus#add(de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document)
+     */
+    public void add(final Document document) {
+        corpus.add(document);
+        insert(document);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus#addAll(java.util.List)
+     */
+    public void addAll(final List<? extends Document> list) {
+        corpus.addAll(list);
+        for (Document document : list) {
+            insert(document);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus#replace(de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document,
+     *      de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document)
+     */
+    public void replace(final Document previous, final Document current) {
+        corpus.replace(previous, current);
+        Integer node = nodes.remove(previous.getSource());
+        if (node != null) {
+            index.remove(node);
+        }
+        insert(current);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus#close()
+     */
+    public void close() {
+        flush();
+        corpus.close();
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus#getDocuments()
+     */
+    public List<Document> getDocuments() {
+        return corpus.getDocuments();
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus#getDocumentsForSource(java.lang.String)
+     */
+    public List<Document> getDocumentsForSource(final String query) {
+        return corpus.getDocumentsForSource(query);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus#getDocument(java.lang.String)
+     */
+    public Document getDocument(final String source) {
+        return corpus.getDocument(source);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus#getDocumentsForTopic(java.lang.String)
+     */
+    public List<Document> getDocumentsForTopic(final String query) {
+        return corpus.getDocumentsForTopic(query);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus#getTerms()
+     */
+    public Set<String> getTerms() {
+        return corpus.getTerms();
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus#getDocumentFrequencyOf(java.lang.String)
+     */
+    public Integer getDocumentFrequencyOf(final String dictionaryTerm) {
+        return corpus.getDocumentFrequencyOf(dictionaryTerm);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus#getNumberOfDocuments()
+     */
+    public Integer getNumberOfDocuments() {
+        return corpus.getNumberOfDocuments();
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("%s of %s with %s", getClass().getSimpleName(),
+                corpus, index);
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * Material for the course 'Text-Mining', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-textmining.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.tm.p1.corpus;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.uni_koeln.phil_fak.iv.ir.p2.index.TermIndex;
+import de.uni_koeln.phil_fak.iv.ir.p6.crawler.WebDocument;
+
+/*
+ * Tests für das Öffnen eines IndexedCorpus, dessen Korpus ohne den Index
+ * geändert wurde. Eine Kopie eines Dokuments unter anderer Quelle muss das
+ * Dokument selbst als ähnlichstes finden, wenn es im Index ist.
+ */
+/**
+ * Tests for reopening an indexed corpus.
+ * @author Fabian Steeg (fsteeg)
+ */
+public class IndexedCorpusPraxis {
+    private static final String DATA = "output/indexed-corpus-praxis.log";
+    private static final String INDEX = DATA + ".hnsw";
+    private List<Document> documents;
+    private Corpus corpus;
+
+    @Before
+    public void before() {
+        documents = SampleDocuments.create(50, 2, "politik", "sport",
+                "kultur");
+        corpus = IndexedCorpus.open(CorpusLog.create(DATA), INDEX);
+        corpus.addAll(documents.subList(0, 30));
+        corpus.close();
+    }
+
+    @Test
+    public void reopen() {
+        corpus = IndexedCorpus.open(CorpusLog.open(DATA), INDEX);
+        assertIndexed(documents.subList(0, 30));
+    }
+
+    @Test
+    public void changedWithoutIndex() {
+        corpus = CorpusLog.open(DATA);
+        corpus.addAll(documents.subList(30, 40));
+        corpus.replace(corpus.getDocument(documents.get(0).getSource()),
+                documents.get(40));
+        corpus.close();
+        corpus = IndexedCorpus.open(CorpusLog.open(DATA), INDEX);
+        assertIndexed(documents.subList(1, 41));
+    }
+
+    @After
+    public void after() {
+        corpus.close();
+        new File(DATA).delete();
+        new File(DATA + ".index").delete();
+        new File(INDEX).delete();
+    }
+
+    private void assertIndexed(final List<Document> expected) {
+        IndexedCorpus indexed = (IndexedCorpus) corpus;
+        for (Document document : expected) {
+            List<Document> similar = indexed.moreLikeThis(copy(document), 1);
+            Assert.assertEquals(document.getSource(), similar.get(0)
+                    .getSource());
+        }
+    }
+
+    /* Der gleiche Inhalt unter einer Quelle, die nicht im Korpus ist: */
+    private static Document copy(final Document document) {
+        return WebDocument.restore("http://www.bild.de/kopie.html",
+                new HashSet<String>(), new TermIndex(document.getContent()));
+    }
+}
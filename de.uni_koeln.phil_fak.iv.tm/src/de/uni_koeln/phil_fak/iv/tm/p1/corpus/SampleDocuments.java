@@ -0,0 +1,91 @@
+/**
+ * Material for the course 'Text-Mining', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-textmining.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.tm.p1.corpus;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import de.uni_koeln.phil_fak.iv.ir.p2.index.TermIndex;
+import de.uni_koeln.phil_fak.iv.ir.p6.crawler.WebDocument;
+
+/*
+ * Für Tests, die ohne gecrawlte Daten auskommen sollen: Dokumente mit
+ * Spiegel-Online-URLs, deren Thema sich aus der URL ergibt. Jedes Dokument
+ * enthält einige Wörter, die typisch für sein Thema sind, und viele, die in
+ * allen Themen vorkommen. Bei gleichem Startwert sind die Dokumente gleich.
+ */
+/**
+ * Deterministic synthetic web documents for tests.
+ * @author Fabian Steeg (fsteeg)
+ */
+public final class SampleDocuments {
+
+    private static final int TOPIC_WORDS = 15;
+    private static final int TOPIC_VOCABULARY = 200;
+    private static final int COMMON_WORDS = 40;
+    private static final int COMMON_VOCABULARY = 300;
+
+    private SampleDocuments() {
+        // Enforce non-instantiability with a private constructor
+    }
+
+    /**
+     * @param count The number of documents to create
+     * @param seed The seed for the random choice of topics and words
+     * @param topics The topics to choose from
+     * @return Documents with random topics and words, equal for equal
+     *         arguments
+     */
+    public static List<Document> create(final int count, final long seed,
+            final String... topics) {
+        Random random = new Random(seed);
+        List<Document> result = new ArrayList<Document>(count);
+        for (int i = 0; i < count; i++) {
+            int topic = random.nextInt(topics.length);
+            StringBuilder content = new StringBuilder();
+            for (int j = 0; j < TOPIC_WORDS; j++) {
+                content.append(word(topic)).append('x').append(
+                        word(random.nextInt(TOPIC_VOCABULARY))).append(' ');
+            }
+            for (int j = 0; j < COMMON_WORDS; j++) {
+                content.append("common").append(
+                        word(random.nextInt(COMMON_VOCABULARY))).append(' ');
+            }
+            result.add(WebDocument.restore(String.format(
+                    "http://www.spiegel.de/%s/%s-%s.html", topics[topic],
+                    seed, i), new HashSet<String>(), new TermIndex(content
+                    .toString())));
+        }
+        return result;
+    }
+
+    /* Nur Buchstaben, da Ziffern bei der Vorverarbeitung wegfallen: */
+    private static String word(final int number) {
+        StringBuilder result = new StringBuilder("w");
+        int rest = number;
+        do {
+            result.append((char) ('a' + rest % 26));
+            rest /= 26;
+        } while (rest > 0);
+        return result.toString();
+    }
+}
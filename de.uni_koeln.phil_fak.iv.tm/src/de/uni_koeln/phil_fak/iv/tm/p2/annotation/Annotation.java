@@ -24,6 +24,8 @@ import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
@@ -46,6 +48,14 @@ import javax.xml.transform.stream.StreamResult;
 @XmlAccessorType(XmlAccessType.FIELD)
 public final class Annotation<T> {
 
+    /*
+     * Ein JAXBContext ist teuer zu erzeugen, aber thread-sicher: wir erzeugen
+     * ihn nur einmal pro Typ der Werte und verwenden ihn dann immer wieder
+     * (nur Marshaller und Unmarshaller sind nicht thread-sicher und werden
+     * für jeden Aufruf neu erzeugt, was billig ist).
+     */
+    private static final ConcurrentMap<Class<?>, JAXBContext> CONTEXTS = new ConcurrentHashMap<Class<?>, JAXBContext>();
+
     private T value;
     @XmlAttribute
     private URL location;
@@ -117,10 +127,20 @@ public final class Annotation<T> {
      *         {@link #fromXml(String, Class)}
      */
     public String toXml() {
+        return toXml(true);
+    }
+
+    /**
+     * @param formatted If true, the XML is indented for reading, else it is
+     *            written without any whitespace between the elements
+     * @return An XML representation of this Annotation, can be passed into
+     *         {@link #fromXml(String, Class)}
+     */
+    public String toXml(final boolean formatted) {
         try {
-            Marshaller marshaller = JAXBContext.newInstance(Annotation.class,
-                    value.getClass()).createMarshaller();
-            marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+            Marshaller marshaller = context(value.getClass())
+                    .createMarshaller();
+            marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, formatted);
             StringWriter writer = new StringWriter();
             marshaller.marshal(this, writer);
             return writer.toString();
@@ -130,6 +150,24 @@ public final class Annotation<T> {
         return null;
     }
 
+    /**
+     * @param type The type of annotation values
+     * @return The JAXB context for annotations with values of the given type,
+     *         created once per type
+     * @throws JAXBException If the context cannot be created
+     */
+    static JAXBContext context(final Class<?> type) throws JAXBException {
+        JAXBContext context = CONTEXTS.get(type);
+        if (context == null) {
+            context = JAXBContext.newInstance(Annotation.class, type);
+            JAXBContext previous = CONTEXTS.putIfAbsent(type, context);
+            if (previous != null) {
+                context = previous;
+            }
+        }
+        return context;
+    }
+
     /**
      * @param <T> The type of the annotation
      * @param xml The XML to deserialize
@@ -140,8 +178,7 @@ public final class Annotation<T> {
             final Class<T> type) {
         Unmarshaller unm;
         try {
-            unm = JAXBContext.newInstance(Annotation.class, type)
-                    .createUnmarshaller();
+            unm = context(type).createUnmarshaller();
             Annotation<?> annotation = (Annotation<?>) unm
                     .unmarshal(new StringReader(xml));
             /*
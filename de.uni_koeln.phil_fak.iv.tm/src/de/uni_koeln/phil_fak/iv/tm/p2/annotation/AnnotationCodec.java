@@ -0,0 +1,259 @@
+/**
+ * Material for the course 'Text-Mining', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-textmining.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.tm.p2.annotation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.uni_koeln.phil_fak.iv.ir.p5.features.FeatureVector;
+
+/*
+ * Eine kompakte binäre Alternative zum XML aus Annotation#toXml: jede
+ * Annotation ist ein Datensatz mit vorangestellter Länge (so kann man
+ * Datensätze überspringen oder einzeln lesen), mit Ort, Start, Ende und dem
+ * Wert. Wie der Wert kodiert wird, bestimmt ein ValueCodec für seinen Typ.
+ * Für Merkmalsvektoren schreiben wir nur die Werte ungleich 0, jeweils mit
+ * dem Abstand zur vorherigen Position als variabel langer Zahl (kleine
+ * Zahlen brauchen nur ein Byte), statt jeden Wert des dichten Vektors.
+ */
+/**
+ * Binary encoding of annotations as length-prefixed records.
+ * @param <T> The type of the annotation values
+ * @author Fabian Steeg (fsteeg)
+ */
+public final class AnnotationCodec<T> {
+
+    /**
+     * Binary encoding of annotation values.
+     * @param <T> The type of the values
+     */
+    public interface ValueCodec<T> {
+        /**
+         * @param out The output to write the value to
+         * @param value The value to write
+         * @throws IOException If writing fails
+         */
+        void write(DataOutput out, T value) throws IOException;
+
+        /**
+         * @param in The input to read a value from
+         * @return The value read
+         * @throws IOException If reading fails
+         */
+        T read(DataInput in) throws IOException;
+    }
+
+    /** String values, as UTF-8. */
+    public static final ValueCodec<String> STRINGS = new ValueCodec<String>() {
+        public void write(final DataOutput out, final String value)
+                throws IOException {
+            byte[] bytes = value.getBytes("UTF-8");
+            writeVarInt(out, bytes.length);
+            out.write(bytes);
+        }
+
+        public String read(final DataInput in) throws IOException {
+            byte[] bytes = new byte[readVarInt(in)];
+            in.readFully(bytes);
+            return new String(bytes, "UTF-8");
+        }
+    };
+
+    /** Feature vector values, with only the non-zero values encoded. */
+    public static final ValueCodec<FeatureVector> VECTORS = new ValueCodec<FeatureVector>() {
+        public void write(final DataOutput out, final FeatureVector value)
+                throws IOException {
+            float[] values = value.toArray();
+            int count = 0;
+            for (float v : values) {
+                if (v != 0) {
+                    count++;
+                }
+            }
+            writeVarInt(out, values.length);
+            writeVarInt(out, count);
+            int previous = -1;
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != 0) {
+                    writeVarInt(out, i - previous);
+                    out.writeFloat(values[i]);
+                    previous = i;
+                }
+            }
+        }
+
+        public FeatureVector read(final DataInput in) throws IOException {
+            int dimension = readVarInt(in);
+            int count = readVarInt(in);
+            /* Alle Nullen sind dasselbe Float-Objekt: */
+            Float zero = 0f;
+            List<Float> values = new ArrayList<Float>(dimension);
+            for (int i = 0; i < dimension; i++) {
+                values.add(zero);
+            }
+            /*
+             * Die Abstände sind mindestens 1 und führen nicht über die
+             * Dimension hinaus (so gefragt, damit die Summe nicht überläuft),
+             * sonst ist der Datensatz beschädigt:
+             */
+            int position = -1;
+            for (int i = 0; i < count; i++) {
+                int gap = readVarInt(in);
+                if (gap < 1 || gap > dimension - 1 - position) {
+                    throw new IOException(String.format(
+                            "Invalid gap %s after position %s in vector of "
+                                    + "dimension %s", gap, position,
+                            dimension));
+                }
+                position += gap;
+                values.set(position, in.readFloat());
+            }
+            return new FeatureVector(values);
+        }
+    };
+
+    private ValueCodec<T> values;
+
+    /**
+     * @param <T> The type of the annotation values
+     * @param values The encoding of the annotation values
+     * @return A codec for annotations with values of type T
+     */
+    public static <T> AnnotationCodec<T> of(final ValueCodec<T> values) {
+        return new AnnotationCodec<T>(values);
+    }
+
+    private AnnotationCodec(final ValueCodec<T> values) {
+        this.values = values;
+    }
+
+    /**
+     * @param annotation The annotation to encode
+     * @return The annotation as a record, without length prefix
+     */
+    public byte[] encode(final Annotation<T> annotation) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            STRINGS.write(out, annotation.getLocation().toString());
+            writeVarInt(out, annotation.getStart());
+            writeVarInt(out, annotation.getEnd() - annotation.getStart());
+            values.write(out, annotation.getValue());
+        } catch (IOException e) {
+            /* Beim Schreiben in ein Byte-Array nicht möglich */
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param record An annotation record, as returned by
+     *            {@link #encode(Annotation)}
+     * @return The annotation decoded from the record
+     */
+    public Annotation<T> decode(final byte[] record) {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+                record));
+        try {
+            URL location = new URL(STRINGS.read(in));
+            int start = readVarInt(in);
+            int end = start + readVarInt(in);
+            return Annotation.of(location, values.read(in), start, end);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid annotation record", e);
+        }
+    }
+
+    /**
+     * @param out The stream to append the annotation to, as a record prefixed
+     *            with its length
+     * @param annotation The annotation to write
+     * @throws IOException If writing fails
+     */
+    public void write(final DataOutputStream out,
+            final Annotation<T> annotation) throws IOException {
+        byte[] record = encode(annotation);
+        out.writeInt(record.length);
+        out.write(record);
+    }
+
+    /**
+     * @param in The stream to read the next annotation record from, as
+     *            written by {@link #write(DataOutputStream, Annotation)}
+     * @return The next annotation, or null at the end of the stream
+     * @throws IOException If reading fails or the stream ends within a record
+     */
+    public Annotation<T> read(final DataInputStream in) throws IOException {
+        int first = in.read();
+        if (first < 0) {
+            return null;
+        }
+        int length = first << 24 | in.readUnsignedByte() << 16
+                | in.readUnsignedShort();
+        byte[] record = new byte[length];
+        in.readFully(record);
+        return decode(record);
+    }
+
+    /* Variabel lange Zahlen: 7 Bit pro Byte, das höchste Bit für "weiter" */
+
+    static void writeVarInt(final DataOutput out, final int value)
+            throws IOException {
+        if (value < 0) {
+            throw new IllegalArgumentException(
+                    "Cannot encode negative value: " + value);
+        }
+        int rest = value;
+        while (rest >= 0x80) {
+            out.writeByte(rest & 0x7f | 0x80);
+            rest >>>= 7;
+        }
+        out.writeByte(rest);
+    }
+
+    static int readVarInt(final DataInput in) throws IOException {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            result |= (b & 0x7f) << shift;
+            if (b < 0x80) {
+                return result;
+            }
+        }
+        throw new IOException("Invalid variable length integer");
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,195 @@
+/**
+ * Material for the course 'Text-Mining', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-textmining.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.tm.p2.annotation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import de.uni_koeln.phil_fak.iv.ir.p5.features.FeatureVector;
+import de.uni_koeln.phil_fak.iv.tm.p2.annotation.AnnotationCodec.ValueCodec;
+
+/*
+ * Tests für die binäre Kodierung von Annotationen: Hin- und Rückweg für
+ * Zeichenketten und Vektoren (auch mit Nullen am Anfang und Ende), die
+ * Byte-Folgen der variabel langen Zahlen an den Grenzen, und beschädigte
+ * Vektoren.
+ */
+/**
+ * Tests for the binary annotation codec.
+ * @author Fabian Steeg (fsteeg)
+ */
+public class AnnotationCodecPraxis {
+
+    @Test
+    public void strings() throws IOException {
+        for (String value : Arrays.asList("", "a", "Köln € 𝄞",
+                "annotation\nmit\tSteuerzeichen")) {
+            Assert.assertEquals(value, roundTrip(AnnotationCodec.STRINGS,
+                    value));
+        }
+    }
+
+    @Test
+    public void vectors() throws IOException {
+        assertRoundTrip(0f, 0f, 1.5f, 0f, -2f, 0f, 0f);
+        assertRoundTrip(1f, 0f, 0f, 2f);
+        assertRoundTrip(0f, 0f, 0f);
+        assertRoundTrip();
+        /* Ein Abstand über 127, d.h. mit 2 Bytes: */
+        float[] sparse = new float[300];
+        sparse[0] = 1;
+        sparse[299] = 3;
+        assertRoundTrip(sparse);
+    }
+
+    @Test
+    public void annotations() throws MalformedURLException, IOException {
+        URL location = new URL("http://www.spiegel.de/politik/1.html");
+        List<Annotation<String>> annotations = Arrays.asList(Annotation.of(
+                location, "Person", 0, 5), Annotation.of(location, "Ort", 200,
+                210));
+        AnnotationCodec<String> codec = AnnotationCodec
+                .of(AnnotationCodec.STRINGS);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (Annotation<String> annotation : annotations) {
+            Assert.assertEquals(annotation, codec.decode(codec
+                    .encode(annotation)));
+            codec.write(out, annotation);
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+                bytes.toByteArray()));
+        List<Annotation<String>> read = new ArrayList<Annotation<String>>();
+        for (Annotation<String> a = codec.read(in); a != null; a = codec
+                .read(in)) {
+            read.add(a);
+        }
+        Assert.assertEquals(annotations, read);
+    }
+
+    @Test
+    public void varInts() throws IOException {
+        assertVarInt(0, 0x00);
+        assertVarInt(127, 0x7f);
+        assertVarInt(128, 0x80, 0x01);
+        assertVarInt(300, 0xac, 0x02);
+        assertVarInt(Integer.MAX_VALUE, 0xff, 0xff, 0xff, 0xff, 0x07);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeVarInt() throws IOException {
+        AnnotationCodec.writeVarInt(new DataOutputStream(
+                new ByteArrayOutputStream()), -1);
+    }
+
+    @Test(expected = IOException.class)
+    public void positionBeyondDimension() throws IOException {
+        /* Dimension 3, ein Wert an Position 3: */
+        readVector(bytes(3, 1, 4), 1f);
+    }
+
+    @Test(expected = IOException.class)
+    public void secondPositionBeyondDimension() throws IOException {
+        /* Dimension 3, Werte an Position 1 und 1 + 2: */
+        readVector(bytes(3, 2, 2), 1f, bytes(2), 2f);
+    }
+
+    @Test(expected = IOException.class)
+    public void repeatedPosition() throws IOException {
+        /* Abstand 0, d.h. zweimal dieselbe Position: */
+        readVector(bytes(3, 2, 1), 1f, bytes(0), 2f);
+    }
+
+    @Test(expected = IOException.class)
+    public void overflowingPosition() throws IOException {
+        /* Ein Abstand, bei dem die Summe überläuft: */
+        readVector(bytes(3, 2, 1), 1f, bytes(0xff, 0xff, 0xff, 0xff, 0x07),
+                2f);
+    }
+
+    private static void assertRoundTrip(final float... values)
+            throws IOException {
+        List<Float> list = new ArrayList<Float>();
+        for (float value : values) {
+            list.add(value);
+        }
+        FeatureVector vector = new FeatureVector(list);
+        Assert.assertEquals(vector, roundTrip(AnnotationCodec.VECTORS, vector));
+    }
+
+    private static <T> T roundTrip(final ValueCodec<T> codec, final T value)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        codec.write(new DataOutputStream(bytes), value);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+                bytes.toByteArray()));
+        T result = codec.read(in);
+        /* Alles gelesen, nicht mehr: */
+        Assert.assertEquals(-1, in.read());
+        return result;
+    }
+
+    private static void assertVarInt(final int value, final int... expected)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        AnnotationCodec.writeVarInt(new DataOutputStream(bytes), value);
+        Assert.assertTrue(Arrays.equals(bytes(expected), bytes.toByteArray()));
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+                bytes(expected)));
+        Assert.assertEquals(value, AnnotationCodec.readVarInt(in));
+        Assert.assertEquals(-1, in.read());
+    }
+
+    /* Ein Vektor aus Bytes für Zahlen (byte[]) und Werten (Float): */
+    private static FeatureVector readVector(final Object... parts)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (Object part : parts) {
+            if (part instanceof byte[]) {
+                out.write((byte[]) part);
+            } else {
+                out.writeFloat((Float) part);
+            }
+        }
+        return AnnotationCodec.VECTORS.read(new DataInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    private static byte[] bytes(final int... values) {
+        byte[] result = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (byte) values[i];
+        }
+        return result;
+    }
+}
@@ -0,0 +1,664 @@
+/**
+ * Material for the course 'Text-Mining', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-textmining.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.tm.p2.annotation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+/*
+ * Ein Speicher für viele Annotationen (etwa für alle Dokumente eines
+ * Crawls), ohne sie alle im Speicher zu halten: jede Annotation wird über
+ * StAX als XML-Fragment an eine Datei angehängt. Im Speicher halten wir nur
+ * für jeden Ort (die URL des annotierten Dokuments) einen Intervall-Index
+ * mit Start und Ende jeder Annotation und wo in der Datei sie steht. Die
+ * Positionen schreiben wir zusätzlich in eine kleine Index-Datei, so müssen
+ * wir beim Öffnen nicht das ganze XML lesen (nur, wenn der Index fehlt).
+ * Für die Anfrage "alle Annotationen, die [start, end) überschneiden" lesen
+ * wir dann nur die passenden Fragmente aus der Datei. Export und Import laufen ebenfalls
+ * als Strom, eine Annotation nach der anderen.
+ */
+/**
+ * Persistent store of annotations for many documents, appended to a file of
+ * XML fragments, with an interval index per annotated location.
+ * @param <T> The type of the annotation values
+ * @author Fabian Steeg (fsteeg)
+ */
+public final class AnnotationStore<T> {
+
+    private static final int MAGIC = 0x414e4e53;
+    private static final String ROOT = "annotations";
+    private static final String ELEMENT = "annotation";
+
+    /*
+     * Die Intervalle eines Ortes, nach Start sortiert (erst bei Bedarf), in
+     * Blöcken mit dem größten Ende jedes Blocks: Blöcke, deren Annotationen
+     * alle vor der Anfrage enden, überspringen wir.
+     */
+    private static final class Intervals {
+        private static final int BLOCK = 32;
+        private int[] starts = new int[4];
+        private int[] ends = new int[4];
+        private int[] records = new int[4];
+        private int size;
+        private boolean sorted = true;
+        private int[] blockEnds;
+
+        void add(final int start, final int end, final int record) {
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, 2 * size);
+                ends = Arrays.copyOf(ends, 2 * size);
+                records = Arrays.copyOf(records, 2 * size);
+            }
+            starts[size] = start;
+            /* Leere Annotationen zählen wie eine Position: */
+            ends[size] = Math.max(end, start + 1);
+            records[size] = record;
+            if (size > 0 && start < starts[size - 1]) {
+                sorted = false;
+            }
+            size++;
+            blockEnds = null;
+        }
+
+        void query(final int start, final int end, final List<Integer> result) {
+            prepare();
+            /* Nur Intervalle, die vor dem Ende der Anfrage beginnen: */
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (starts[middle] < end) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            for (int b = 0; b * BLOCK < low; b++) {
+                if (blockEnds[b] > start) {
+                    int to = Math.min(low, (b + 1) * BLOCK);
+                    for (int i = b * BLOCK; i < to; i++) {
+                        if (ends[i] > start) {
+                            result.add(records[i]);
+                        }
+                    }
+                }
+            }
+        }
+
+        private void prepare() {
+            if (!sorted) {
+                long[] entries = new long[size];
+                for (int i = 0; i < size; i++) {
+                    entries[i] = (long) starts[i] << 32 | i;
+                }
+                Arrays.sort(entries);
+                int[] s = new int[size];
+                int[] e = new int[size];
+                int[] r = new int[size];
+                for (int i = 0; i < size; i++) {
+                    int j = (int) entries[i];
+                    s[i] = starts[j];
+                    e[i] = ends[j];
+                    r[i] = records[j];
+                }
+                starts = s;
+                ends = e;
+                records = r;
+                sorted = true;
+            }
+            if (blockEnds == null) {
+                blockEnds = new int[(size + BLOCK - 1) / BLOCK];
+                Arrays.fill(blockEnds, Integer.MIN_VALUE);
+                for (int i = 0; i < size; i++) {
+                    blockEnds[i / BLOCK] = Math.max(blockEnds[i / BLOCK],
+                            ends[i]);
+                }
+            }
+        }
+    }
+
+    /* Zählt die geschriebenen Bytes, für die Positionen der Fragmente */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(final OutputStream out, final long count) {
+            super(out);
+            this.count = count;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len)
+                throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    /*
+     * Die Fragmente einer Datei nacheinander, ohne sie zu parsen: ein
+     * Fragment endet, wo sein äußerstes Element schließt. Im Text sind '<'
+     * immer maskiert, in Attributwerten muss nur '>' in Anführungszeichen
+     * übersprungen werden.
+     */
+    private static final class Fragments {
+        private final InputStream in;
+        private long position;
+        private long start;
+
+        Fragments(final InputStream in) {
+            this.in = in;
+        }
+
+        /* Das nächste vollständige Fragment, oder null am Ende der Datei */
+        byte[] next() throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            int depth = 0;
+            int b;
+            while ((b = read()) != -1) {
+                if (bytes.size() == 0) {
+                    if (b != '<') {
+                        continue;
+                    }
+                    start = position - 1;
+                }
+                bytes.write(b);
+                if (b == '<') {
+                    int first = read();
+                    int last = first == -1 ? -1 : tag(bytes, first);
+                    if (last == -1) {
+                        return null;
+                    }
+                    if (first == '/') {
+                        depth--;
+                    } else if (first != '?' && first != '!' && last != '/') {
+                        depth++;
+                    }
+                    if (depth == 0 && first != '?' && first != '!') {
+                        return bytes.toByteArray();
+                    }
+                }
+            }
+            return null;
+        }
+
+        /* Bis zum Ende des Tags; zurück kommt das Byte vor dem '>' */
+        private int tag(final ByteArrayOutputStream bytes, final int first)
+                throws IOException {
+            bytes.write(first);
+            int last = first;
+            int quote = 0;
+            int b;
+            while ((b = read()) != -1) {
+                bytes.write(b);
+                if (quote != 0) {
+                    quote = b == quote ? 0 : quote;
+                } else if (b == '"' || b == '\'') {
+                    quote = b;
+                } else if (b == '>') {
+                    return last;
+                }
+                last = b;
+            }
+            return -1;
+        }
+
+        private int read() throws IOException {
+            int b = in.read();
+            if (b != -1) {
+                position++;
+            }
+            return b;
+        }
+    }
+
+    private String location;
+    private Class<T> type;
+    private Map<String, Intervals> index;
+    /* Position und Länge jedes Fragments in der Datei: */
+    private long[] offsets;
+    private int[] lengths;
+    private int size;
+    private RandomAccessFile data;
+    private CountingOutputStream counter;
+    private XMLStreamWriter writer;
+    private DataOutputStream indexOut;
+    private Marshaller marshaller;
+    private Unmarshaller unmarshaller;
+
+    /**
+     * @param <T> The type of the annotation values
+     * @param location The location of the store file (the index is stored
+     *            next to it, with the suffix .index)
+     * @param type The type of the annotation values
+     * @return The store for the given location, with the annotations stored
+     *         there before
+     */
+    public static <T> AnnotationStore<T> open(final String location,
+            final Class<T> type) {
+        return new AnnotationStore<T>(location, type);
+    }
+
+    /**
+     * @param <T> The type of the annotation values
+     * @param location The location of the store file
+     * @param type The type of the annotation values
+     * @return A new, empty store for the given location
+     */
+    public static <T> AnnotationStore<T> create(final String location,
+            final Class<T> type) {
+        for (File f : new File[] { new File(location), index(location) }) {
+            if (!f.delete() && f.exists()) {
+                throw new IllegalArgumentException("Could not delete: " + f);
+            }
+        }
+        return new AnnotationStore<T>(location, type);
+    }
+
+    private static File index(final String location) {
+        return new File(location + ".index");
+    }
+
+    private AnnotationStore(final String location, final Class<T> type) {
+        this.location = location;
+        this.type = type;
+        this.index = new HashMap<String, Intervals>();
+        this.offsets = new long[16];
+        this.lengths = new int[16];
+        try {
+            marshaller = Annotation.context(type).createMarshaller();
+            marshaller.setProperty(Marshaller.JAXB_FRAGMENT, true);
+            unmarshaller = Annotation.context(type).createUnmarshaller();
+            long end = load();
+            data = new RandomAccessFile(location, "rw");
+            if (data.length() > end) {
+                /* Ein Fragment ohne Eintrag im Index: abgebrochen, weg damit */
+                data.setLength(end);
+            }
+            counter = new CountingOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(location, true)), end);
+            writer = XMLOutputFactory.newInstance().createXMLStreamWriter(
+                    counter, "UTF-8");
+            indexOut = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(index(location), true)));
+        } catch (IOException e) {
+            throw new IllegalStateException(
+                    "Could not open annotation store at " + location, e);
+        } catch (XMLStreamException e) {
+            throw new IllegalStateException(
+                    "Could not open annotation store at " + location, e);
+        } catch (JAXBException e) {
+            throw new IllegalStateException(
+                    "Could not open annotation store at " + location, e);
+        }
+    }
+
+    /*
+     * Beim Öffnen lesen wir nur den Index; ist der letzte Eintrag
+     * unvollständig, schneiden wir ihn ab (wie in CorpusLog). Zurück kommt
+     * das Ende des letzten vollständigen Fragments in der Datei. Ohne Index
+     * (oder wenn schon die Kennung nicht ganz geschrieben wurde) bauen wir
+     * ihn aus den Fragmenten neu auf, statt die Daten abzuschneiden.
+     */
+    private long load() throws IOException, JAXBException {
+        File file = index(location);
+        if (!file.exists() || file.length() < 4) {
+            return rebuild();
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file)));
+        long valid = 4;
+        long end = 0;
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IllegalStateException("Not an annotation index: "
+                        + file);
+            }
+            while (true) {
+                String url = in.readUTF();
+                int start = in.readInt();
+                int stop = in.readInt();
+                long offset = in.readLong();
+                int length = in.readInt();
+                insert(url, start, stop, offset, length);
+                end = offset + length;
+                /* UTF: 2 Bytes Länge plus Inhalt (modifiziertes UTF-8) */
+                valid += 2 + utfLength(url) + 4 + 4 + 8 + 4;
+            }
+        } catch (EOFException e) {
+            /* Das Ende des Index, vollständig oder nicht */
+        } finally {
+            in.close();
+        }
+        if (valid < file.length()) {
+            System.err.println(String.format(
+                    "Truncating incomplete index entry at %s in %s", valid,
+                    file));
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.setLength(valid);
+            } finally {
+                raf.close();
+            }
+        }
+        return end;
+    }
+
+    /*
+     * Jedes vollständige Fragment lesen wir über JAXB für Ort, Start und
+     * Ende; ein unvollständiges am Ende schneidet der Konstruktor ab. Lässt
+     * sich ein vollständiges nicht lesen, öffnen wir den Speicher nicht. Den
+     * neuen Index schreiben wir erst in eine eigene Datei, so bleibt der alte
+     * Zustand bei einem Fehler erhalten.
+     */
+    private long rebuild() throws IOException, JAXBException {
+        File file = index(location);
+        File temp = new File(file + ".tmp");
+        File source = new File(location);
+        long end = 0;
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(temp)));
+        try {
+            out.writeInt(MAGIC);
+            if (source.exists()) {
+                InputStream in = new BufferedInputStream(new FileInputStream(
+                        source));
+                try {
+                    Fragments fragments = new Fragments(in);
+                    byte[] fragment;
+                    while ((fragment = fragments.next()) != null) {
+                        Annotation<T> annotation = cast(unmarshaller
+                                .unmarshal(new ByteArrayInputStream(fragment)));
+                        String url = annotation.getLocation().toString();
+                        write(out, url, annotation, fragments.start,
+                                fragment.length);
+                        insert(url, annotation.getStart(), annotation
+                                .getEnd(), fragments.start, fragment.length);
+                        end = fragments.start + fragment.length;
+                    }
+                } finally {
+                    in.close();
+                }
+            }
+        } finally {
+            out.close();
+        }
+        /* Erst umbenennen; nur wo das die alte Datei nicht ersetzt, löschen: */
+        if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file))) {
+            throw new IOException("Could not replace index at " + file);
+        }
+        if (size > 0) {
+            System.err.println(String.format(
+                    "Rebuilt index of %s annotations in %s", size, file));
+        }
+        return end;
+    }
+
+    private static void write(final DataOutputStream out, final String url,
+            final Annotation<?> annotation, final long offset,
+            final int length) throws IOException {
+        out.writeUTF(url);
+        out.writeInt(annotation.getStart());
+        out.writeInt(annotation.getEnd());
+        out.writeLong(offset);
+        out.writeInt(length);
+    }
+
+    private static int utfLength(final String string) {
+        int length = 0;
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            length += c >= 0x0001 && c <= 0x007f ? 1 : c > 0x07ff ? 3 : 2;
+        }
+        return length;
+    }
+
+    private void insert(final String url, final int start, final int end,
+            final long offset, final int length) {
+        if (size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, 2 * size);
+            lengths = Arrays.copyOf(lengths, 2 * size);
+        }
+        offsets[size] = offset;
+        lengths[size] = length;
+        Intervals intervals = index.get(url);
+        if (intervals == null) {
+            intervals = new Intervals();
+            index.put(url, intervals);
+        }
+        intervals.add(start, end, size);
+        size++;
+    }
+
+    /**
+     * @param annotation The annotation to append to the store
+     */
+    public synchronized void add(final Annotation<T> annotation) {
+        try {
+            long offset = counter.count;
+            marshaller.marshal(annotation, writer);
+            writer.flush();
+            counter.flush();
+            int length = (int) (counter.count - offset);
+            String url = annotation.getLocation().toString();
+            /* Erst das Fragment, dann der Index-Eintrag, der darauf zeigt: */
+            write(indexOut, url, annotation, offset, length);
+            indexOut.flush();
+            insert(url, annotation.getStart(), annotation.getEnd(), offset,
+                    length);
+        } catch (JAXBException e) {
+            throw new IllegalStateException("Could not write annotation to "
+                    + location, e);
+        } catch (XMLStreamException e) {
+            throw new IllegalStateException("Could not write annotation to "
+                    + location, e);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write annotation to "
+                    + location, e);
+        }
+    }
+
+    /**
+     * @param location The location of the annotated data
+     * @param start The start offset of the range to query
+     * @param end The end offset (exclusive) of the range to query
+     * @return The annotations of the data at the given location that overlap
+     *         the range [start, end), ordered by their start offsets (empty
+     *         annotations overlap the range if their offset is in it)
+     */
+    public synchronized List<Annotation<T>> getAnnotations(final URL location,
+            final int start, final int end) {
+        Intervals intervals = index.get(location.toString());
+        if (intervals == null) {
+            return Collections.emptyList();
+        }
+        List<Integer> found = new ArrayList<Integer>();
+        intervals.query(start, end, found);
+        List<Annotation<T>> result = new ArrayList<Annotation<T>>(found
+                .size());
+        for (int record : found) {
+            result.add(read(record));
+        }
+        return result;
+    }
+
+    /**
+     * @param location The location of the annotated data
+     * @return All annotations of the data at the given location, ordered by
+     *         their start offsets
+     */
+    public List<Annotation<T>> getAnnotations(final URL location) {
+        return getAnnotations(location, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /** @return The locations of all annotated data in this store */
+    public synchronized Set<String> getLocations() {
+        return new TreeSet<String>(index.keySet());
+    }
+
+    /** @return The number of annotations in this store */
+    public synchronized int size() {
+        return size;
+    }
+
+    private Annotation<T> read(final int record) {
+        try {
+            byte[] bytes = new byte[lengths[record]];
+            data.seek(offsets[record]);
+            data.readFully(bytes);
+            return cast(unmarshaller
+                    .unmarshal(new ByteArrayInputStream(bytes)));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read annotation from "
+                    + location, e);
+        } catch (JAXBException e) {
+            throw new IllegalStateException("Could not read annotation from "
+                    + location, e);
+        }
+    }
+
+    /* Wie in Annotation#fromXml: der unsichere Cast nur an dieser Stelle */
+    @SuppressWarnings("unchecked")
+    private Annotation<T> cast(final Object annotation) {
+        return (Annotation<T>) annotation;
+    }
+
+    /**
+     * Writes all annotations in this store as one XML document, one annotation
+     * at a time.
+     * @param out The stream to write the XML document to (not closed)
+     */
+    public synchronized void exportXml(final OutputStream out) {
+        try {
+            XMLStreamWriter export = XMLOutputFactory.newInstance()
+                    .createXMLStreamWriter(out, "UTF-8");
+            export.writeStartDocument("UTF-8", "1.0");
+            export.writeStartElement(ROOT);
+            for (int record = 0; record < size; record++) {
+                marshaller.marshal(read(record), export);
+            }
+            export.writeEndElement();
+            export.writeEndDocument();
+            export.flush();
+        } catch (XMLStreamException e) {
+            throw new IllegalStateException("Could not export annotations", e);
+        } catch (JAXBException e) {
+            throw new IllegalStateException("Could not export annotations", e);
+        }
+    }
+
+    /**
+     * Adds all annotations in an XML document (as written by
+     * {@link #exportXml(OutputStream)}) to this store, one annotation at a
+     * time.
+     * @param in The stream to read the XML document from (not closed)
+     * @return The number of annotations added
+     */
+    public synchronized int importXml(final InputStream in) {
+        int count = 0;
+        try {
+            XMLStreamReader reader = XMLInputFactory.newInstance()
+                    .createXMLStreamReader(in);
+            while (reader.hasNext()) {
+                /* Nach unmarshal steht der Reader schon hinter dem Element */
+                if (reader.getEventType() == XMLStreamConstants.START_ELEMENT
+                        && reader.getLocalName().equals(ELEMENT)) {
+                    add(cast(unmarshaller.unmarshal(reader, Annotation.class)
+                            .getValue()));
+                    count++;
+                } else {
+                    reader.next();
+                }
+            }
+            reader.close();
+        } catch (XMLStreamException e) {
+            throw new IllegalStateException("Could not import annotations", e);
+        } catch (JAXBException e) {
+            throw new IllegalStateException("Could not import annotations", e);
+        }
+        return count;
+    }
+
+    /**
+     * Closes the files of this store.
+     */
+    public synchronized void close() {
+        try {
+            writer.close();
+            counter.close();
+            indexOut.close();
+            data.close();
+        } catch (IOException e) {
+            throw new IllegalStateException(
+                    "Could not close annotation store at " + location, e);
+        } catch (XMLStreamException e) {
+            throw new IllegalStateException(
+                    "Could not close annotation store at " + location, e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public synchronized String toString() {
+        return String.format("%s of %s with %s annotations for %s locations",
+                getClass().getSimpleName(), type.getSimpleName(), size, index
+                        .size());
+    }
+}
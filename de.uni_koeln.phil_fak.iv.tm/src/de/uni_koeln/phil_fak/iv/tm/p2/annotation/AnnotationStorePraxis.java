@@ -0,0 +1,253 @@
+/**
+ * Material for the course 'Text-Mining', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-textmining.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.tm.p2.annotation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/*
+ * Tests für den Annotationsspeicher: die Anfragen über den Intervall-Index
+ * vergleichen wir mit einem Durchlauf durch alle Annotationen, dazu Öffnen
+ * nach dem Schließen, eine beim Schreiben abgeschnittene oder fehlende
+ * Index-Datei sowie Export und Import. Die Annotationen sind bei jedem Lauf
+ * gleich.
+ */
+/**
+ * Tests for the annotation store, against a brute-force overlap search.
+ * @author Fabian Steeg (fsteeg)
+ */
+public class AnnotationStorePraxis {
+    private static final String DATA = "output/annotations-test.xml";
+    private static final String COPY = "output/annotations-test-copy.xml";
+    private static final int LOCATIONS = 20;
+    private AnnotationStore<String> store;
+    private List<Annotation<String>> annotations;
+    private Random random;
+
+    @Before
+    public void before() throws MalformedURLException {
+        new File(DATA).getParentFile().mkdirs();
+        random = new Random(3);
+        store = AnnotationStore.create(DATA, String.class);
+        annotations = new ArrayList<Annotation<String>>();
+        for (int i = 0; i < 3000; i++) {
+            int start = random.nextInt(5000);
+            /* Meist kurz, manchmal leer, manchmal sehr lang: */
+            int length = random.nextInt(10) == 0 ? 0 : random.nextInt(random
+                    .nextInt(20) == 0 ? 2000 : 50);
+            Annotation<String> annotation = Annotation.of(location(random
+                    .nextInt(LOCATIONS)), "token <&> " + i, start, start
+                    + length);
+            annotations.add(annotation);
+            store.add(annotation);
+        }
+    }
+
+    @Test
+    public void overlap() throws MalformedURLException {
+        Assert.assertEquals(annotations.size(), store.size());
+        Assert.assertEquals(LOCATIONS, store.getLocations().size());
+        for (int i = 0; i < 500; i++) {
+            URL location = location(random.nextInt(LOCATIONS));
+            int start = random.nextInt(5000);
+            int end = start + random.nextInt(200);
+            List<Annotation<String>> result = store.getAnnotations(location,
+                    start, end);
+            assertSame(bruteForce(location, start, end), result);
+            for (int j = 1; j < result.size(); j++) {
+                Assert.assertTrue(result.get(j - 1).getStart() <= result.get(j)
+                        .getStart());
+            }
+        }
+        Assert.assertTrue(store.getAnnotations(new URL("http://www.bild.de/"))
+                .isEmpty());
+    }
+
+    @Test
+    public void reopen() throws MalformedURLException {
+        store.close();
+        store = AnnotationStore.open(DATA, String.class);
+        Assert.assertEquals(annotations.size(), store.size());
+        for (int i = 0; i < LOCATIONS; i++) {
+            URL location = location(i);
+            assertSame(bruteForce(location, Integer.MIN_VALUE,
+                    Integer.MAX_VALUE), store.getAnnotations(location));
+        }
+    }
+
+    @Test
+    public void tornIndex() throws IOException {
+        store.close();
+        /* Der letzte Eintrag im Index wurde nicht mehr ganz geschrieben: */
+        RandomAccessFile index = new RandomAccessFile(DATA + ".index", "rw");
+        index.setLength(index.length() - 5);
+        index.close();
+        store = AnnotationStore.open(DATA, String.class);
+        Assert.assertEquals(annotations.size() - 1, store.size());
+        annotations.remove(annotations.size() - 1);
+        Annotation<String> added = Annotation.of(location(0), "added", 1, 2);
+        annotations.add(added);
+        store.add(added);
+        store.close();
+        store = AnnotationStore.open(DATA, String.class);
+        Assert.assertEquals(annotations.size(), store.size());
+        for (int i = 0; i < LOCATIONS; i++) {
+            URL location = location(i);
+            assertSame(bruteForce(location, Integer.MIN_VALUE,
+                    Integer.MAX_VALUE), store.getAnnotations(location));
+        }
+    }
+
+    @Test
+    public void missingIndex() throws IOException {
+        store.close();
+        Assert.assertTrue(new File(DATA + ".index").delete());
+        assertRebuilt();
+    }
+
+    @Test
+    public void emptyIndex() throws IOException {
+        store.close();
+        truncate(DATA + ".index", 0);
+        assertRebuilt();
+    }
+
+    @Test
+    public void tornMagic() throws IOException {
+        store.close();
+        /* Abgebrochen mitten in der Kennung, ohne und mit Daten: */
+        truncate(DATA + ".index", 2);
+        assertRebuilt();
+        store.close();
+        store = AnnotationStore.create(DATA, String.class);
+        store.close();
+        truncate(DATA + ".index", 2);
+        annotations.clear();
+        assertRebuilt();
+    }
+
+    @Test
+    public void missingIndexTornFragment() throws IOException {
+        store.close();
+        Assert.assertTrue(new File(DATA + ".index").delete());
+        truncate(DATA, new File(DATA).length() - 5);
+        annotations.remove(annotations.size() - 1);
+        assertRebuilt();
+    }
+
+    @Test
+    public void exportImport() throws MalformedURLException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        store.exportXml(out);
+        AnnotationStore<String> copy = AnnotationStore.create(COPY,
+                String.class);
+        try {
+            Assert.assertEquals(annotations.size(), copy
+                    .importXml(new ByteArrayInputStream(out.toByteArray())));
+            Assert.assertEquals(store.getLocations(), copy.getLocations());
+            for (int i = 0; i < LOCATIONS; i++) {
+                URL location = location(i);
+                Assert.assertEquals(store.getAnnotations(location), copy
+                        .getAnnotations(location));
+            }
+        } finally {
+            copy.close();
+        }
+    }
+
+    @After
+    public void after() {
+        store.close();
+        for (String location : new String[] { DATA, COPY }) {
+            new File(location).delete();
+            new File(location + ".index").delete();
+        }
+    }
+
+    /* Neu aufgebaut, dann mit einer weiteren Annotation aus dem Index: */
+    private void assertRebuilt() throws MalformedURLException {
+        store = AnnotationStore.open(DATA, String.class);
+        assertStored();
+        Annotation<String> added = Annotation.of(location(0), "added", 1, 2);
+        annotations.add(added);
+        store.add(added);
+        store.close();
+        store = AnnotationStore.open(DATA, String.class);
+        assertStored();
+    }
+
+    private void assertStored() throws MalformedURLException {
+        Assert.assertEquals(annotations.size(), store.size());
+        for (int i = 0; i < LOCATIONS; i++) {
+            URL location = location(i);
+            assertSame(bruteForce(location, Integer.MIN_VALUE,
+                    Integer.MAX_VALUE), store.getAnnotations(location));
+        }
+    }
+
+    private static void truncate(final String name, final long length)
+            throws IOException {
+        RandomAccessFile file = new RandomAccessFile(name, "rw");
+        try {
+            file.setLength(length);
+        } finally {
+            file.close();
+        }
+    }
+
+    private URL location(final int i) throws MalformedURLException {
+        return new URL("http://www.spiegel.de/" + i + ".html");
+    }
+
+    /* Leere Annotationen überschneiden, wenn ihr Start im Bereich liegt: */
+    private List<Annotation<String>> bruteForce(final URL location,
+            final int start, final int end) {
+        List<Annotation<String>> result = new ArrayList<Annotation<String>>();
+        for (Annotation<String> annotation : annotations) {
+            if (annotation.getLocation().toString().equals(location.toString())
+                    && annotation.getStart() < end
+                    && Math.max(annotation.getEnd(),
+                            annotation.getStart() + 1) > start) {
+                result.add(annotation);
+            }
+        }
+        return result;
+    }
+
+    private void assertSame(final List<Annotation<String>> expected,
+            final List<Annotation<String>> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        Assert.assertTrue(actual.containsAll(expected));
+    }
+}
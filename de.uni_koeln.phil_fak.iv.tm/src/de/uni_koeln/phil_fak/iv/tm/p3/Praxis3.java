@@ -19,10 +19,7 @@
  */
 package de.uni_koeln.phil_fak.iv.tm.p3;
 
-import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 import junit.framework.Assert;
@@ -35,8 +32,10 @@ import de.uni_koeln.phil_fak.iv.ir.p6.crawler.Crawler;
 import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus;
 import de.uni_koeln.phil_fak.iv.tm.p1.corpus.CorpusDatabase;
 import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document;
+import de.uni_koeln.phil_fak.iv.tm.p3.classification.ClassifierStrategy;
+import de.uni_koeln.phil_fak.iv.tm.p3.classification.CrossValidation;
+import de.uni_koeln.phil_fak.iv.tm.p3.classification.Evaluation;
 import de.uni_koeln.phil_fak.iv.tm.p3.classification.NaiveBayes;
-import de.uni_koeln.phil_fak.iv.tm.p3.classification.TextClassifier;
 
 /*
  * Text-Mining (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-textmining.html),
@@ -51,11 +50,8 @@ import de.uni_koeln.phil_fak.iv.tm.p3.classification.TextClassifier;
  */
 public class Praxis3 {
     private static final String DATA = "data/corpus-tm-3.db";
+    private static final int FOLDS = 5;
     private Corpus corpus;
-    private Set<Document> testingSet;
-    private Set<Document> trainingSet;
-    private ArrayList<Document> goldSet;
-    private TextClassifier textClassifier;
 
     public static void main(final String[] args) {
         /* Hier (= Run as -> Java application) erstellen und crawlen (dauert). */
@@ -75,43 +71,37 @@ public class Praxis3 {
     @Test
     public void bild() {
         /*
-         * Für unser Beispiel hier trainieren und klassifizieren wir mit den
-         * gleichen Dokumenten. Dies ist eine übliche erste Evaluierung von
-         * Klassifikationsverfahren. Wenn wir für unser Szenarion gemischte
-         * Quellen verwenden wollen (z.B. Training mit Bild, Test mit Spiegel,
-         * müssten wir uns darum kümmern die Klassen aufeinander zu mappen um
-         * sinnvolle Ergebnisse zu bekommen)
+         * Würden wir mit den gleichen Dokumenten trainieren und
+         * klassifizieren, sähen die Ergebnisse zu gut aus. Wir testen deshalb
+         * mit Kreuzvalidierung: jedes Dokument wird von einem Klassifikator
+         * klassifiziert, der es im Training nicht gesehen hat. Wenn wir für
+         * unser Szenarion gemischte Quellen verwenden wollen (z.B. Training
+         * mit Bild, Test mit Spiegel, müssten wir uns darum kümmern die
+         * Klassen aufeinander zu mappen um sinnvolle Ergebnisse zu bekommen)
          */
-        String query = "bild";
-        trainingSet = new HashSet<Document>(corpus.getDocumentsForSource(query));
-        testingSet = new HashSet<Document>(corpus.getDocumentsForSource(query));
-        testEval(query);
-
+        testEval("bild");
     }
 
     @Test
     public void spiegel() {
-        String query = "spiegel";
-        trainingSet = new HashSet<Document>(corpus.getDocumentsForSource(query));
-        testingSet = new HashSet<Document>(corpus.getDocumentsForSource(query));
-        testEval(query);
-
+        testEval("spiegel");
     }
 
     private void testEval(final String query) {
-        goldSet = new ArrayList<Document>(testingSet);
-        textClassifier = new TextClassifier(new NaiveBayes(), trainingSet);
+        List<Document> documents = corpus.getDocumentsForSource(query);
+        CrossValidation validation = new CrossValidation(documents, FOLDS, 0);
         System.out.println("Classification of documents from: " + query);
         System.out.println("------------------------------------------------");
-        System.out.println("Training set: " + trainingSet.size());
-        System.out.println("Testing set: " + testingSet.size());
-        System.out.println("Gold set: " + goldSet.size());
-        Map<Document, String> resultClasses = textClassifier.classify(testingSet);
-        Float result = textClassifier.evaluate(resultClasses, goldSet);
-        System.out.println("Result: " + resultClasses);
+        System.out.println(validation);
+        Evaluation result = validation.evaluate(new CrossValidation.Factory() {
+            public ClassifierStrategy create(final Set<Document> trainingSet) {
+                return new NaiveBayes();
+            }
+        });
         Assert.assertTrue("Result must not be null", result != null);
-        System.out.println(String.format("Correct: %1.2f (%1.2f%%)", result,
-                result * 100));
+        System.out.println(result);
+        System.out.println(String.format("Correct: %1.2f (%1.2f%%)", result
+                .getAccuracy(), result.getAccuracy() * 100));
     }
 
     @After
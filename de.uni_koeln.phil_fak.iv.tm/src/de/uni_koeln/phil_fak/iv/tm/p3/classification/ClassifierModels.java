@@ -0,0 +1,260 @@
+/**
+ * Material for the course 'Text-Mining', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-textmining.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.tm.p3.classification;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/*
+ * Ein binäres Format für trainierte Klassifikatoren, damit wir nicht bei
+ * jedem Start neu trainieren müssen. Jede Datei beginnt mit einem Kopf
+ * (Kennung, Versionsnummer, Art des Klassifikators), dann folgt der Inhalt
+ * der jeweiligen Strategie. Zählungen und Gewichte stehen dabei als Blöcke
+ * fester Breite in der Datei, so dass wir sie aus der in den Speicher
+ * abgebildeten Datei (memory mapping) am Stück in Arrays kopieren können,
+ * statt Wert für Wert zu lesen. Die Tabellen liegen nach dem Laden also als
+ * normale Arrays im Heap (sie werden nicht aus der Datei gelesen, während
+ * wir klassifizieren); die geladenen Klassifikatoren sind normale Objekte
+ * und können weiter trainiert werden.
+ */
+/**
+ * Binary persistence for trained classifier strategies.
+ * @author Fabian Steeg (fsteeg)
+ */
+public final class ClassifierModels {
+
+    /** The first bytes of every model file ("TMCM"). */
+    public static final int MAGIC = 0x544d434d;
+    /** The version of the model format written by this class. */
+    public static final int VERSION = 1;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private ClassifierModels() {
+    // Enforce non-instantiability with a private constructor
+    }
+
+    /**
+     * @param classifier The trained classifier to save (a {@link NaiveBayes},
+     *            {@link LinearClassifier} or {@link NearestNeighbours})
+     * @param file The file to write the model to (replaced if it exists)
+     */
+    public static void write(final ClassifierStrategy classifier,
+            final File file) {
+        if (!(classifier instanceof NaiveBayes
+                || classifier instanceof LinearClassifier
+                || classifier instanceof NearestNeighbours)) {
+            throw new IllegalArgumentException("No binary model format for: "
+                    + classifier.getClass().getName());
+        }
+        try {
+            DataOutputStream out = create(file, classifier.getClass()
+                    .getSimpleName());
+            try {
+                if (classifier instanceof NaiveBayes) {
+                    ((NaiveBayes) classifier).write(out);
+                } else if (classifier instanceof LinearClassifier) {
+                    ((LinearClassifier) classifier).write(out);
+                } else {
+                    ((NearestNeighbours) classifier).write(out);
+                }
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write model to "
+                    + file, e);
+        }
+        commit(file);
+    }
+
+    /**
+     * @param file The file to read a model from, as written by
+     *            {@link #write(ClassifierStrategy, File)}
+     * @return The classifier, with its tables copied from the file into
+     *         arrays on the heap, ready to classify and to continue training
+     */
+    public static ClassifierStrategy read(final File file) {
+        ByteBuffer in = map(file);
+        String type = readHeader(in, file);
+        if (type.equals(NaiveBayes.class.getSimpleName())) {
+            return NaiveBayes.read(in);
+        } else if (type.equals(LinearClassifier.class.getSimpleName())) {
+            return LinearClassifier.read(in);
+        } else if (type.equals(NearestNeighbours.class.getSimpleName())) {
+            return NearestNeighbours.read(in);
+        }
+        throw new IllegalStateException(String.format(
+                "Unknown model type '%s' in %s", type, file));
+    }
+
+    /**
+     * Opens a temporary file next to the given file and writes the header;
+     * call {@link #commit(File)} after closing the stream to replace the file.
+     * @param file The model file to write
+     * @param type The type of the model
+     * @return The stream to write the content of the model to
+     * @throws IOException If writing fails
+     */
+    public static DataOutputStream create(final File file, final String type)
+            throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(temp(file))));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        writeString(out, type);
+        return out;
+    }
+
+    /**
+     * @param file The model file whose temporary file (written with
+     *            {@link #create(File, String)}) is complete and should replace
+     *            it
+     */
+    public static void commit(final File file) {
+        File temp = temp(file);
+        /* Erst umbenennen; nur wo das die alte Datei nicht ersetzt, löschen: */
+        if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file))) {
+            throw new IllegalStateException("Could not replace model at "
+                    + file);
+        }
+    }
+
+    private static File temp(final File file) {
+        return new File(file.getPath() + ".tmp");
+    }
+
+    /**
+     * @param file The model file to map into memory
+     * @return The content of the file, positioned at its start, for copying
+     *         the tables of the model into arrays
+     */
+    public static ByteBuffer map(final File file) {
+        try {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = raf.getChannel();
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel
+                        .size());
+            } finally {
+                raf.close();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read model at " + file,
+                    e);
+        }
+    }
+
+    /**
+     * @param in The mapped model file, positioned at its start
+     * @param file The model file, for error messages
+     * @return The type of the model, with the buffer positioned after the
+     *         header
+     */
+    public static String readHeader(final ByteBuffer in, final File file) {
+        if (in.remaining() < 8 || in.getInt() != MAGIC) {
+            throw new IllegalStateException("Not a classifier model: " + file);
+        }
+        int version = in.getInt();
+        if (version != VERSION) {
+            throw new IllegalStateException(String.format(
+                    "Unsupported model version %s in %s (expected %s)",
+                    version, file, VERSION));
+        }
+        return readString(in);
+    }
+
+    /* Hilfsmethoden für die Strategien: Zeichenketten und Blöcke */
+
+    static void writeString(final DataOutputStream out, final String string)
+            throws IOException {
+        byte[] bytes = string.getBytes(UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(final ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    /* Eine Liste von Zeichenketten, oder null (als Länge -1) */
+    static void writeStrings(final DataOutputStream out,
+            final Collection<String> strings) throws IOException {
+        out.writeInt(strings == null ? -1 : strings.size());
+        if (strings != null) {
+            for (String string : strings) {
+                writeString(out, string);
+            }
+        }
+    }
+
+    static List<String> readStrings(final ByteBuffer in) {
+        int size = in.getInt();
+        if (size < 0) {
+            return null;
+        }
+        List<String> result = new ArrayList<String>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(readString(in));
+        }
+        return result;
+    }
+
+    /* Die ersten n Werte eines Arrays, als Block fester Breite */
+    static void writeInts(final DataOutputStream out, final int[] values,
+            final int n) throws IOException {
+        for (int i = 0; i < n; i++) {
+            out.writeInt(values[i]);
+        }
+    }
+
+    static int[] readInts(final ByteBuffer in, final int n) {
+        int[] result = new int[n];
+        in.asIntBuffer().get(result);
+        in.position(in.position() + 4 * n);
+        return result;
+    }
+
+    static void writeFloats(final DataOutputStream out, final float[] values,
+            final int n) throws IOException {
+        for (int i = 0; i < n; i++) {
+            out.writeFloat(values[i]);
+        }
+    }
+
+    static float[] readFloats(final ByteBuffer in, final int n) {
+        float[] result = new float[n];
+        in.asFloatBuffer().get(result);
+        in.position(in.position() + 4 * n);
+        return result;
+    }
+}
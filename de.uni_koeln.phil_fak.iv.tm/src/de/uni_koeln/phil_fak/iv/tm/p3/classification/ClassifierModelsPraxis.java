@@ -0,0 +1,137 @@
+/**
+ * Material for the course 'Text-Mining', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-textmining.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.tm.p3.classification;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document;
+import de.uni_koeln.phil_fak.iv.tm.p1.corpus.SampleDocuments;
+
+/*
+ * Tests für das binäre Modellformat: ein geladener Klassifikator muss
+ * dieselben Klassen liefern wie der gespeicherte, und nach weiterem Training
+ * mit denselben Dokumenten wieder dieselben wie das Original. Die Themen der
+ * Beispieldokumente erkennt jedes Verfahren fast fehlerlos, wir trainieren
+ * deshalb mit zufälligen Klassen: so hängt jede Klasse vom genauen Zustand
+ * des Modells ab.
+ */
+/**
+ * Round trip tests for the binary classifier models.
+ * @author Fabian Steeg (fsteeg)
+ */
+public class ClassifierModelsPraxis {
+    private static final String[] TOPICS = { "sport", "politik", "kultur",
+            "wirtschaft", "wissenschaft" };
+    private static final File FILE = new File("output/model-test.bin");
+    private List<Document> train;
+    private List<Document> test;
+    private List<String> labels;
+
+    @Before
+    public void before() {
+        train = SampleDocuments.create(2000, 1, TOPICS);
+        test = SampleDocuments.create(300, 2, TOPICS);
+        Random random = new Random(3);
+        labels = new ArrayList<String>();
+        for (int i = 0; i < train.size(); i++) {
+            labels.add(TOPICS[random.nextInt(TOPICS.length)]);
+        }
+        FILE.getParentFile().mkdirs();
+    }
+
+    @Test
+    public void naiveBayes() {
+        roundTrip(new NaiveBayes(0.5f));
+    }
+
+    @Test
+    public void linearClassifier() {
+        roundTrip(new LinearClassifier(LinearClassifier.Loss.LOGISTIC, 16));
+    }
+
+    @Test
+    public void nearestNeighbours() {
+        roundTrip(new NearestNeighbours(5));
+    }
+
+    @Test
+    public void replace() {
+        /* Eine vorhandene Datei wird ersetzt, ohne Reste zu hinterlassen: */
+        ClassifierStrategy first = trained(new NaiveBayes(), 0, 100);
+        ClassifierModels.write(first, FILE);
+        ClassifierStrategy second = trained(new NearestNeighbours(5), 0, 500);
+        ClassifierModels.write(second, FILE);
+        Assert.assertTrue(
+                ClassifierModels.read(FILE) instanceof NearestNeighbours);
+        Assert.assertFalse(new File(FILE.getPath() + ".tmp").exists());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void invalid() throws IOException {
+        new FileOutputStream(FILE).close();
+        ClassifierModels.read(FILE);
+    }
+
+    @After
+    public void after() {
+        FILE.delete();
+    }
+
+    private void roundTrip(final ClassifierStrategy classifier) {
+        int half = train.size() / 2;
+        trained(classifier, 0, half);
+        String[] before = classifier.classifyAll(test);
+        ClassifierModels.write(classifier, FILE);
+        ClassifierStrategy loaded = ClassifierModels.read(FILE);
+        Assert.assertEquals(classifier.getClass(), loaded.getClass());
+        assertSame(before, loaded.classifyAll(test));
+        /* Beide weiter trainieren, das geladene wie das ursprüngliche: */
+        trained(classifier, half, train.size());
+        trained(loaded, half, train.size());
+        assertSame(classifier.classifyAll(test), loaded.classifyAll(test));
+    }
+
+    private ClassifierStrategy trained(final ClassifierStrategy classifier,
+            final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            classifier.train(train.get(i), labels.get(i));
+        }
+        return classifier;
+    }
+
+    private void assertSame(final String[] expected, final String[] actual) {
+        Assert.assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            Assert.assertEquals(test.get(i).getSource(), expected[i],
+                    actual[i]);
+        }
+    }
+}
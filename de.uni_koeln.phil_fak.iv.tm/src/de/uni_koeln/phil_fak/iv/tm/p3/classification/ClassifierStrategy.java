@@ -19,6 +19,8 @@
  */
 package de.uni_koeln.phil_fak.iv.tm.p3.classification;
 
+import java.util.List;
+
 import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document;
 
 /**
@@ -33,6 +35,26 @@ public interface ClassifierStrategy {
      */
     String classify(Document document);
 
+    /*
+     * Für große Mengen von Dokumenten: Implementierungen können hier etwa
+     * parallel klassifizieren oder Vorarbeit nur einmal für alle Dokumente
+     * machen. Ohne eigene Optimierung einfach an
+     * ParallelClassification.classifyAll(this, documents) delegieren.
+     */
+    /**
+     * @param documents The documents to classify
+     * @return The class labels for the documents, in the order of the
+     *         documents
+     */
+    String[] classifyAll(List<? extends Document> documents);
+
+    /**
+     * @return True if this classifier's classify and classifyAll methods may
+     *         be called from multiple threads at the same time (while it is
+     *         not being trained)
+     */
+    boolean isThreadSafe();
+
     /**
      * @param document The document to train the classifier with
      * @param classLabel The correct class label for the document
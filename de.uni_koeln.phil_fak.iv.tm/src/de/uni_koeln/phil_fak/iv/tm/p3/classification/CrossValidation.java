@@ -0,0 +1,198 @@
+/**
+ * Material for the course 'Text-Mining', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-textmining.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.tm.p3.classification;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document;
+
+/*
+ * Kreuzvalidierung: statt mit denselben Dokumenten zu trainieren und zu
+ * testen (was die Qualität überschätzt), teilen wir die Dokumente in k
+ * Teile (Folds). Jeder Teil wird einmal mit einem Klassifikator
+ * klassifiziert, der mit den anderen k-1 Teilen trainiert wurde. Die
+ * Klassen verteilen wir dabei gleichmäßig auf die Teile (stratifiziert).
+ * Die Folds sind unabhängig voneinander und laufen deshalb parallel, jeder
+ * mit seinem eigenen Klassifikator. Was für alle Folds gleich ist (etwa die
+ * Merkmalspositionen und Vektoren für Weka, siehe WekaAdapter), kann die
+ * Factory einmal vorbereiten und für jeden Fold wiederverwenden.
+ */
+/**
+ * Stratified k-fold cross-validation of classifier strategies, with the folds
+ * trained and evaluated in parallel.
+ * @author Fabian Steeg (fsteeg)
+ */
+public final class CrossValidation {
+
+    /** Creates a new classifier strategy for each fold. */
+    public interface Factory {
+        /**
+         * @param trainingSet The training documents of the fold, e.g. for
+         *            adapters that need them on construction (they are trained
+         *            with each of them afterwards)
+         * @return A new, untrained classifier strategy
+         */
+        ClassifierStrategy create(Set<Document> trainingSet);
+    }
+
+    private List<List<Document>> folds;
+    private Set<String> classes;
+
+    /**
+     * @param documents The documents to evaluate with; documents without a
+     *            topic are ignored
+     * @param k The number of folds
+     * @param seed The seed for the random distribution of the documents to
+     *            the folds
+     */
+    public CrossValidation(final List<? extends Document> documents,
+            final int k, final long seed) {
+        if (k < 2) {
+            throw new IllegalArgumentException(
+                    "Need at least 2 folds, not: " + k);
+        }
+        /* Nach Klassen gruppieren, dann jede Klasse reihum verteilen: */
+        Map<String, List<Document>> byClass = new TreeMap<String, List<Document>>();
+        for (Document document : documents) {
+            String topic = document.getTopic();
+            if (topic != null) {
+                List<Document> list = byClass.get(topic);
+                if (list == null) {
+                    list = new ArrayList<Document>();
+                    byClass.put(topic, list);
+                }
+                list.add(document);
+            }
+        }
+        this.classes = byClass.keySet();
+        this.folds = new ArrayList<List<Document>>(k);
+        for (int i = 0; i < k; i++) {
+            folds.add(new ArrayList<Document>());
+        }
+        Random random = new Random(seed);
+        int next = 0;
+        for (List<Document> list : byClass.values()) {
+            Collections.shuffle(list, random);
+            for (Document document : list) {
+                folds.get(next).add(document);
+                next = (next + 1) % k;
+            }
+        }
+        /* Nicht nach Klassen sortiert lassen (etwa für Online-Lernverfahren): */
+        for (List<Document> fold : folds) {
+            Collections.shuffle(fold, random);
+        }
+    }
+
+    /**
+     * @param factory The factory for the classifier strategy to evaluate
+     * @return The evaluation over all folds, with one fold per processor
+     *         evaluated in parallel (so the times include contention, see
+     *         {@link Evaluation#getParallel()})
+     */
+    public Evaluation evaluate(final Factory factory) {
+        return evaluate(factory, Math.min(folds.size(), Runtime.getRuntime()
+                .availableProcessors()));
+    }
+
+    /**
+     * @param factory The factory for the classifier strategy to evaluate
+     * @param threads The number of folds to evaluate in parallel
+     * @return The evaluation over all folds; with more than one thread, its
+     *         times are those of folds competing for the processors (use one
+     *         thread to time each fold on its own)
+     */
+    public Evaluation evaluate(final Factory factory, final int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException(
+                    "Number of threads must be positive, not: " + threads);
+        }
+        /* Jeder Fold ist ein Block: */
+        final Evaluation[] evaluations = new Evaluation[folds.size()];
+        ParallelClassification.forEachBlock(evaluations.length, threads, 1,
+                new ParallelClassification.Block() {
+                    public void run(final int from, final int to) {
+                        for (int fold = from; fold < to; fold++) {
+                            evaluations[fold] = evaluateFold(factory, fold);
+                        }
+                    }
+                });
+        Evaluation result = new Evaluation(classes);
+        for (Evaluation evaluation : evaluations) {
+            result.add(evaluation);
+        }
+        result.setParallel(Math.min(threads, folds.size()));
+        return result;
+    }
+
+    private Evaluation evaluateFold(final Factory factory, final int fold) {
+        Set<Document> trainingSet = new LinkedHashSet<Document>();
+        for (int i = 0; i < folds.size(); i++) {
+            if (i != fold) {
+                trainingSet.addAll(folds.get(i));
+            }
+        }
+        List<Document> testingSet = folds.get(fold);
+        Evaluation evaluation = new Evaluation(classes);
+        long start = System.nanoTime();
+        TextClassifier classifier = new TextClassifier(factory
+                .create(trainingSet), trainingSet);
+        /*
+         * Manche Strategien bauen ihr Modell erst bei der ersten
+         * Klassifikation (etwa Weka-Klassifikatoren); das zählt noch zum
+         * Training, deshalb einmal ohne Dokumente klassifizieren:
+         */
+        classifier.classifyAll(Collections.<Document> emptyList());
+        evaluation.addTraining(trainingSet.size(), System.nanoTime() - start);
+        start = System.nanoTime();
+        String[] labels = classifier.classifyAll(testingSet);
+        evaluation.addClassification(System.nanoTime() - start);
+        for (int i = 0; i < labels.length; i++) {
+            evaluation.add(testingSet.get(i).getTopic(), labels[i]);
+        }
+        return evaluation;
+    }
+
+    /** @return The number of folds */
+    public int getNumberOfFolds() {
+        return folds.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        int size = 0;
+        for (List<Document> fold : folds) {
+            size += fold.size();
+        }
+        return String.format("%s with %s folds of %s documents in %s classes",
+                getClass().getSimpleName(), folds.size(), size, classes.size());
+    }
+}
@@ -0,0 +1,307 @@
+/**
+ * Material for the course 'Text-Mining', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-textmining.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.tm.p3.classification;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/*
+ * Statt nur des Anteils korrekter Klassen (wie in TextClassifier#evaluate)
+ * zählen wir in einer Konfusionsmatrix, wie oft jede richtige Klasse (Zeile)
+ * als welche Klasse (Spalte) klassifiziert wurde. Daraus ergeben sich für
+ * jede Klasse Precision (wie viele der als c klassifizierten sind c),
+ * Recall (wie viele der c wurden als c klassifiziert) und ihr harmonisches
+ * Mittel F1. Dazu merken wir uns, wie lange Training und Klassifikation
+ * gedauert haben.
+ */
+/**
+ * Evaluation of a classifier against gold standard labels: confusion matrix,
+ * per-class precision, recall and F1, and training and classification times.
+ * @author Fabian Steeg (fsteeg)
+ */
+public final class Evaluation {
+
+    private List<String> classes;
+    private Map<String, Integer> classIds;
+    /* Die letzte Spalte zählt Dokumente, für die es keine Klasse gab: */
+    private long[][] confusion;
+    private long trainingNanos;
+    private long classificationNanos;
+    private long trainingDocuments;
+    private int parallel = 1;
+
+    /**
+     * @param classes The possible class labels
+     */
+    public Evaluation(final Collection<String> classes) {
+        this.classes = Collections.unmodifiableList(new ArrayList<String>(
+                new TreeSet<String>(classes)));
+        this.classIds = new HashMap<String, Integer>();
+        for (String c : this.classes) {
+            classIds.put(c, classIds.size());
+        }
+        this.confusion = new long[this.classes.size()][this.classes.size() + 1];
+    }
+
+    /**
+     * @param gold The correct class label of a document
+     * @param predicted The class label assigned by the classifier (null if
+     *            the classifier did not assign any)
+     */
+    public void add(final String gold, final String predicted) {
+        int column = predicted == null ? classes.size() : id(predicted);
+        confusion[id(gold)][column]++;
+    }
+
+    private int id(final String c) {
+        Integer id = classIds.get(c);
+        if (id == null) {
+            throw new IllegalArgumentException("Unknown class: " + c);
+        }
+        return id;
+    }
+
+    /**
+     * @param documents The number of training documents
+     * @param nanos The time spent training
+     */
+    public void addTraining(final int documents, final long nanos) {
+        trainingDocuments += documents;
+        trainingNanos += nanos;
+    }
+
+    /**
+     * @param nanos The time spent classifying the documents added to this
+     *            evaluation
+     */
+    public void addClassification(final long nanos) {
+        classificationNanos += nanos;
+    }
+
+    /*
+     * Laufen mehrere Folds gleichzeitig, teilen sie sich die Prozessoren: die
+     * gemessenen Zeiten sind dann länger als für einen Fold allein, und ihre
+     * Summe ist mehr als die tatsächlich vergangene Zeit. Das geben wir mit
+     * aus, damit die Zeiten nicht mit einzeln gemessenen verglichen werden.
+     */
+    /**
+     * @param folds The number of evaluations that were timed while running at
+     *            the same time, competing for the processors
+     */
+    public void setParallel(final int folds) {
+        this.parallel = folds;
+    }
+
+    /**
+     * @return The number of evaluations that were timed while running at the
+     *         same time (1 if the times were measured on their own)
+     */
+    public int getParallel() {
+        return parallel;
+    }
+
+    /**
+     * @param other An evaluation over the same classes to add to this one,
+     *            e.g. of another fold of a cross-validation
+     */
+    public void add(final Evaluation other) {
+        if (!classes.equals(other.classes)) {
+            throw new IllegalArgumentException(String.format(
+                    "Classes differ: %s and %s", classes, other.classes));
+        }
+        for (int i = 0; i < confusion.length; i++) {
+            for (int j = 0; j < confusion[i].length; j++) {
+                confusion[i][j] += other.confusion[i][j];
+            }
+        }
+        trainingDocuments += other.trainingDocuments;
+        trainingNanos += other.trainingNanos;
+        classificationNanos += other.classificationNanos;
+        parallel = Math.max(parallel, other.parallel);
+    }
+
+    /** @return The class labels, in the order of the confusion matrix */
+    public List<String> getClasses() {
+        return classes;
+    }
+
+    /**
+     * @param gold The correct class label
+     * @param predicted The assigned class label (null for none)
+     * @return The number of documents of class gold classified as predicted
+     */
+    public long getCount(final String gold, final String predicted) {
+        return confusion[id(gold)][predicted == null ? classes.size()
+                : id(predicted)];
+    }
+
+    /**
+     * @return The confusion matrix: rows are correct classes, columns the
+     *         assigned classes, in the order of {@link #getClasses()}, with an
+     *         additional last column for documents without assigned class
+     */
+    public long[][] getConfusionMatrix() {
+        long[][] result = new long[confusion.length][];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = confusion[i].clone();
+        }
+        return result;
+    }
+
+    /** @return The number of classified documents */
+    public long getNumberOfDocuments() {
+        long sum = 0;
+        for (long[] row : confusion) {
+            for (long count : row) {
+                sum += count;
+            }
+        }
+        return sum;
+    }
+
+    /** @return The fraction of documents classified correctly */
+    public double getAccuracy() {
+        long correct = 0;
+        for (int i = 0; i < confusion.length; i++) {
+            correct += confusion[i][i];
+        }
+        return correct / (double) getNumberOfDocuments();
+    }
+
+    /**
+     * @param c The class label
+     * @return The fraction of documents classified as c that are of class c (0
+     *         if none were classified as c)
+     */
+    public double getPrecision(final String c) {
+        int id = id(c);
+        long assigned = 0;
+        for (long[] row : confusion) {
+            assigned += row[id];
+        }
+        return assigned == 0 ? 0 : confusion[id][id] / (double) assigned;
+    }
+
+    /**
+     * @param c The class label
+     * @return The fraction of documents of class c that were classified as c
+     *         (0 if there were none)
+     */
+    public double getRecall(final String c) {
+        int id = id(c);
+        long actual = 0;
+        for (long count : confusion[id]) {
+            actual += count;
+        }
+        return actual == 0 ? 0 : confusion[id][id] / (double) actual;
+    }
+
+    /**
+     * @param c The class label
+     * @return The harmonic mean of precision and recall for c
+     */
+    public double getF1(final String c) {
+        double p = getPrecision(c);
+        double r = getRecall(c);
+        return p + r == 0 ? 0 : 2 * p * r / (p + r);
+    }
+
+    /** @return The unweighted mean of the F1 values of all classes */
+    public double getMacroF1() {
+        double sum = 0;
+        for (String c : classes) {
+            sum += getF1(c);
+        }
+        return sum / classes.size();
+    }
+
+    /**
+     * @return The total training time in milliseconds, summed over all added
+     *         evaluations (see {@link #getParallel()})
+     */
+    public double getTrainingTime() {
+        return trainingNanos / 1000d / 1000d;
+    }
+
+    /**
+     * @return The total classification time in milliseconds, summed over all
+     *         added evaluations (see {@link #getParallel()})
+     */
+    public double getClassificationTime() {
+        return classificationNanos / 1000d / 1000d;
+    }
+
+    /** @return The mean training time per training document in milliseconds */
+    public double getTrainingLatency() {
+        return getTrainingTime() / trainingDocuments;
+    }
+
+    /** @return The mean classification time per document in milliseconds */
+    public double getClassificationLatency() {
+        return getClassificationTime() / getNumberOfDocuments();
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(String.format(
+                "%s of %s documents: accuracy %.3f, macro F1 %.3f%n"
+                        + "Training %.2f ms (%.4f ms/doc), "
+                        + "classification %.2f ms (%.4f ms/doc)%n", getClass()
+                        .getSimpleName(), getNumberOfDocuments(),
+                getAccuracy(), getMacroF1(), getTrainingTime(),
+                getTrainingLatency(), getClassificationTime(),
+                getClassificationLatency()));
+        if (parallel > 1) {
+            builder.append(String.format("(Times summed over evaluations "
+                    + "running %s at a time, including contention)%n",
+                    parallel));
+        }
+        int width = 5;
+        for (String c : classes) {
+            width = Math.max(width, c.length());
+        }
+        String cell = "%" + width + "s";
+        builder.append(String.format(cell, ""));
+        for (String c : classes) {
+            builder.append(' ').append(String.format(cell, c));
+        }
+        builder.append(' ').append(String.format(cell, "-"));
+        builder.append(String.format(" %6s %6s %6s%n", "P", "R", "F1"));
+        for (int i = 0; i < classes.size(); i++) {
+            String c = classes.get(i);
+            builder.append(String.format(cell, c));
+            for (long count : confusion[i]) {
+                builder.append(' ').append(String.format(cell, count));
+            }
+            builder.append(String.format(" %6.3f %6.3f %6.3f%n",
+                    getPrecision(c), getRecall(c), getF1(c)));
+        }
+        return builder.toString();
+    }
+}
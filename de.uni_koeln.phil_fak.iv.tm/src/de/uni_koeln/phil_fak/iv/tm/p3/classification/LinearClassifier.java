@@ -0,0 +1,392 @@
+/**
+ * Material for the course 'Text-Mining', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-textmining.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.tm.p3.classification;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import de.uni_koeln.phil_fak.iv.ir.p5.features.HashingVectorizer;
+import de.uni_koeln.phil_fak.iv.ir.p5.features.SparseVector;
+import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document;
+
+/*
+ * Ein linearer Klassifikator: für jede Klasse ein Gewichtsvektor, und die
+ * Klasse eines Dokuments ist die mit dem höchsten Skalarprodukt aus Gewichten
+ * und Merkmalen. Die Gewichte lernen wir mit stochastischem Gradientenabstieg
+ * (SGD), d.h. nach jedem Trainingsdokument schieben wir die Gewichte ein
+ * Stück in die Richtung, die den Fehler für dieses Dokument verringert; mit
+ * AdaGrad bekommt dabei jedes Gewicht seine eigene, mit der Zeit kleiner
+ * werdende Schrittweite. Der Fehler ist entweder der der logistischen
+ * Regression (Wahrscheinlichkeiten über Softmax) oder der Hinge-Fehler der
+ * linearen SVM (die richtige Klasse soll mit Abstand 1 vorne liegen).
+ *
+ * Die Merkmale kommen aus einem HashingVectorizer, so hat das Modell eine
+ * feste Größe (ein float-Array, Klassen mal 2^k Gewichte) und braucht kein
+ * Vokabular. Weil jedes Dokument nur wenige Merkmale hat, ändert jeder
+ * Schritt nur wenige Gewichte; mehrere Threads können deshalb ohne Sperren
+ * gleichzeitig trainieren (Hogwild), die seltenen Konflikte schaden kaum.
+ */
+/**
+ * Linear classifier (multinomial logistic regression or linear SVM) trained
+ * with stochastic gradient descent over hashed sparse features.
+ * @author Fabian Steeg (fsteeg)
+ */
+public final class LinearClassifier implements ClassifierStrategy {
+
+    /** The loss function to minimize. */
+    public enum Loss {
+        /** Multinomial logistic regression (softmax cross entropy). */
+        LOGISTIC,
+        /** Multi-class hinge loss of a linear support vector machine. */
+        HINGE
+    }
+
+    private static final float EPSILON = 1e-8f;
+
+    private Loss loss;
+    private int bits;
+    private HashingVectorizer vectorizer;
+    /* Gewichte pro Klasse, plus ein Gewicht für den Achsenabschnitt: */
+    private int dimension;
+    private float[] weights = new float[0];
+    /* Für AdaGrad: die Summe der quadrierten Gradienten jedes Gewichts */
+    private float[] squares = new float[0];
+    private Map<String, Integer> classIds = new HashMap<String, Integer>();
+    private List<String> classes = new ArrayList<String>();
+    private float learningRate = 0.5f;
+    private float regularization = 1e-6f;
+    private boolean adaGrad = true;
+    private long steps;
+
+    /**
+     * @param loss The loss function, i.e. logistic regression or linear SVM
+     */
+    public LinearClassifier(final Loss loss) {
+        this(loss, 18);
+    }
+
+    /**
+     * @param loss The loss function, i.e. logistic regression or linear SVM
+     * @param bits The number of bits k of the hashed feature space of size 2^k
+     */
+    public LinearClassifier(final Loss loss, final int bits) {
+        this.loss = loss;
+        this.bits = bits;
+        this.vectorizer = new HashingVectorizer(bits);
+        this.dimension = vectorizer.getDimension() + 1;
+    }
+
+    /**
+     * @param learningRate The initial step size (default: 0.5)
+     */
+    public void setLearningRate(final float learningRate) {
+        this.learningRate = learningRate;
+    }
+
+    /**
+     * @param regularization The L2 regularization strength, applied to the
+     *            weights of the features of each training document, not to
+     *            the intercept (default: 1e-6)
+     */
+    public void setRegularization(final float regularization) {
+        this.regularization = regularization;
+    }
+
+    /**
+     * @param adaGrad If true (the default), use per-weight step sizes
+     *            (AdaGrad); else use a global step size decaying with the
+     *            square root of the number of training steps
+     */
+    public void setAdaGrad(final boolean adaGrad) {
+        this.adaGrad = adaGrad;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see de.uni_koeln.phil_fak.iv.tm.p3.classification.ClassifierStrategy#train(de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document,
+     *      java.lang.String)
+     */
+    public ClassifierStrategy train(final Document document,
+            final String classLabel) {
+        int c = classId(classLabel);
+        update(vector(document), c, new float[classes.size()]);
+        return this;
+    }
+
+    /**
+     * Trains with multiple passes over the given documents, each in a new
+     * random order, with multiple threads updating the model without locking
+     * (Hogwild).
+     * @param documents The training documents
+     * @param labels The correct class label of each document
+     * @param epochs The number of passes over the documents
+     * @param threads The number of threads to train with
+     * @param seed The seed for the random orders
+     * @return This classifier
+     */
+    public LinearClassifier train(final List<? extends Document> documents,
+            final List<String> labels, final int epochs, final int threads,
+            final long seed) {
+        if (documents.size() != labels.size()) {
+            throw new IllegalArgumentException(String.format(
+                    "Got %s labels for %s documents", labels.size(), documents
+                            .size()));
+        }
+        /* Alle Klassen vorher anlegen, das Modell wächst dann nicht mehr: */
+        final int[] targets = new int[labels.size()];
+        for (int i = 0; i < targets.length; i++) {
+            targets[i] = classId(labels.get(i));
+        }
+        final SparseVector[] vectors = new SparseVector[documents.size()];
+        ParallelClassification.forEachBlock(vectors.length, threads,
+                new ParallelClassification.Block() {
+                    public void run(final int from, final int to) {
+                        for (int i = from; i < to; i++) {
+                            vectors[i] = vector(documents.get(i));
+                        }
+                    }
+                });
+        Random random = new Random(seed);
+        final int[] order = new int[vectors.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        for (int epoch = 0; epoch < epochs; epoch++) {
+            for (int i = order.length - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int swap = order[i];
+                order[i] = order[j];
+                order[j] = swap;
+            }
+            ParallelClassification.forEachBlock(order.length, threads,
+                    new ParallelClassification.Block() {
+                        public void run(final int from, final int to) {
+                            float[] scores = new float[classes.size()];
+                            for (int i = from; i < to; i++) {
+                                update(vectors[order[i]], targets[order[i]],
+                                        scores);
+                            }
+                        }
+                    });
+        }
+        return this;
+    }
+
+    private SparseVector vector(final Document document) {
+        return vectorizer.vector(document).normalized();
+    }
+
+    private int classId(final String c) {
+        Integer id = classIds.get(c);
+        if (id == null) {
+            id = classes.size();
+            classIds.put(c, id);
+            classes.add(c);
+            weights = Arrays.copyOf(weights, classes.size() * dimension);
+            squares = Arrays.copyOf(squares, classes.size() * dimension);
+        }
+        return id;
+    }
+
+    /*
+     * Ein Schritt für ein Dokument: der Gradient des Fehlers nach den Gewichten
+     * einer Klasse ist ein Vielfaches der Merkmale des Dokuments, wir
+     * berechnen also nur den Faktor pro Klasse.
+     */
+    private void update(final SparseVector x, final int y,
+            final float[] scores) {
+        scores(x, scores);
+        if (loss == Loss.LOGISTIC) {
+            /* Softmax, mit dem Maximum abgezogen gegen Überlauf: */
+            float max = Float.NEGATIVE_INFINITY;
+            for (float score : scores) {
+                max = Math.max(max, score);
+            }
+            float sum = 0;
+            for (int c = 0; c < scores.length; c++) {
+                scores[c] = (float) Math.exp(scores[c] - max);
+                sum += scores[c];
+            }
+            for (int c = 0; c < scores.length; c++) {
+                float gradient = scores[c] / sum - (c == y ? 1 : 0);
+                step(c, x, gradient);
+            }
+        } else {
+            /* Die beste falsche Klasse soll mindestens 1 hinter y liegen: */
+            int rival = -1;
+            for (int c = 0; c < scores.length; c++) {
+                if (c != y && (rival < 0 || scores[c] > scores[rival])) {
+                    rival = c;
+                }
+            }
+            if (rival >= 0 && scores[y] - scores[rival] < 1) {
+                step(y, x, -1);
+                step(rival, x, 1);
+            }
+        }
+        steps++;
+    }
+
+    private void step(final int c, final SparseVector x, final float gradient) {
+        if (gradient == 0) {
+            return;
+        }
+        int offset = c * dimension;
+        int[] indices = x.getIndices();
+        float[] values = x.getValues();
+        /*
+         * Ohne AdaGrad: eta / Wurzel(t), unabhängig von der (meist sehr
+         * kleinen) Regularisierung, mit der die Schrittweite sonst kaum
+         * kleiner würde.
+         */
+        float rate = adaGrad ? learningRate : learningRate
+                / (float) Math.sqrt(1 + steps);
+        for (int i = 0; i <= indices.length; i++) {
+            /*
+             * Der Achsenabschnitt ist das letzte Merkmal, immer mit Wert 1,
+             * und wird nicht regularisiert (er soll die Verteilung der
+             * Klassen abbilden können, nicht gegen 0 gehen):
+             */
+            int k = offset + (i < indices.length ? indices[i] : dimension - 1);
+            float g = i < indices.length ? gradient * values[i]
+                    + regularization * weights[k] : gradient;
+            if (adaGrad) {
+                squares[k] += g * g;
+                weights[k] -= rate * g
+                        / (float) Math.sqrt(squares[k] + EPSILON);
+            } else {
+                weights[k] -= rate * g;
+            }
+        }
+    }
+
+    private void scores(final SparseVector x, final float[] scores) {
+        int[] indices = x.getIndices();
+        float[] values = x.getValues();
+        for (int c = 0; c < scores.length; c++) {
+            int offset = c * dimension;
+            float score = weights[offset + dimension - 1];
+            for (int i = 0; i < indices.length; i++) {
+                score += weights[offset + indices[i]] * values[i];
+            }
+            scores[c] = score;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see de.uni_koeln.phil_fak.iv.tm.p3.classification.ClassifierStrategy#classify(de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document)
+     */
+    public String classify(final Document document) {
+        return classify(document, new float[classes.size()]);
+    }
+
+    private String classify(final Document document, final float[] scores) {
+        if (classes.isEmpty()) {
+            throw new IllegalStateException("Classifier is not trained");
+        }
+        scores(vector(document), scores);
+        int best = 0;
+        for (int c = 1; c < scores.length; c++) {
+            if (scores[c] > scores[best]) {
+                best = c;
+            }
+        }
+        return classes.get(best);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see de.uni_koeln.phil_fak.iv.tm.p3.classification.ClassifierStrategy#classifyAll(java.util.List)
+     */
+    public String[] classifyAll(final List<? extends Document> documents) {
+        final String[] result = new String[documents.size()];
+        ParallelClassification.forEachBlock(documents.size(), Runtime
+                .getRuntime().availableProcessors(),
+                new ParallelClassification.Block() {
+                    public void run(final int from, final int to) {
+                        float[] scores = new float[classes.size()];
+                        for (int i = from; i < to; i++) {
+                            result[i] = classify(documents.get(i), scores);
+                        }
+                    }
+                });
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see de.uni_koeln.phil_fak.iv.tm.p3.classification.ClassifierStrategy#isThreadSafe()
+     */
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    /*
+     * Für ClassifierModels: die Einstellungen, die Klassen und das Modell
+     * selbst, d.h. die Gewichte (und für AdaGrad die Summen der Gradienten,
+     * damit das Training nach dem Laden genauso weitergeht).
+     */
+    void write(final DataOutputStream out) throws IOException {
+        ClassifierModels.writeString(out, loss.name());
+        out.writeInt(bits);
+        out.writeFloat(learningRate);
+        out.writeFloat(regularization);
+        out.writeBoolean(adaGrad);
+        out.writeLong(steps);
+        ClassifierModels.writeStrings(out, classes);
+        ClassifierModels.writeFloats(out, weights, weights.length);
+        ClassifierModels.writeFloats(out, squares, squares.length);
+    }
+
+    static LinearClassifier read(final ByteBuffer in) {
+        Loss loss = Loss.valueOf(ClassifierModels.readString(in));
+        LinearClassifier result = new LinearClassifier(loss, in.getInt());
+        result.learningRate = in.getFloat();
+        result.regularization = in.getFloat();
+        result.adaGrad = in.get() != 0;
+        result.steps = in.getLong();
+        for (String c : ClassifierModels.readStrings(in)) {
+            result.classIds.put(c, result.classes.size());
+            result.classes.add(c);
+        }
+        int size = result.classes.size() * result.dimension;
+        result.weights = ClassifierModels.readFloats(in, size);
+        result.squares = ClassifierModels.readFloats(in, size);
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("%s (%s, 2^%s features, %s classes)", getClass()
+                .getSimpleName(), loss, bits, classes.size());
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ * Material for the course 'Text-Mining', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-textmining.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.tm.p3.classification;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document;
+import de.uni_koeln.phil_fak.iv.tm.p1.corpus.SampleDocuments;
+import de.uni_koeln.phil_fak.iv.tm.p3.classification.LinearClassifier.Loss;
+
+/*
+ * Tests für den linearen Klassifikator: die Themenwörter der
+ * Beispieldokumente kommen nur in ihrem Thema vor, die Trainingsdokumente
+ * sind also linear trennbar. Mit jeder Fehlerfunktion und Schrittweite muss
+ * der Klassifikator sie deshalb alle richtig einordnen, und auch fast alle
+ * anderen Dokumente derselben Themen.
+ */
+/**
+ * Tests for the linear classifier, on linearly separable documents.
+ * @author Fabian Steeg (fsteeg)
+ */
+public class LinearClassifierPraxis {
+    private static final String[] TOPICS = { "sport", "politik", "kultur" };
+    private static final int EPOCHS = 10;
+    private static final float ACCURACY = 0.95f;
+    private List<Document> train;
+    private List<Document> test;
+    private List<String> labels;
+
+    @Before
+    public void before() {
+        train = SampleDocuments.create(300, 1, TOPICS);
+        test = SampleDocuments.create(100, 2, TOPICS);
+        labels = new ArrayList<String>();
+        for (Document document : train) {
+            labels.add(document.getTopic());
+        }
+    }
+
+    @Test
+    public void logistic() {
+        assertSeparates(incremental(new LinearClassifier(Loss.LOGISTIC)));
+    }
+
+    @Test
+    public void hinge() {
+        assertSeparates(incremental(new LinearClassifier(Loss.HINGE)));
+    }
+
+    @Test
+    public void logisticWithoutAdaGrad() {
+        LinearClassifier classifier = new LinearClassifier(Loss.LOGISTIC);
+        classifier.setAdaGrad(false);
+        assertSeparates(incremental(classifier));
+    }
+
+    @Test
+    public void hingeWithoutAdaGrad() {
+        LinearClassifier classifier = new LinearClassifier(Loss.HINGE);
+        classifier.setAdaGrad(false);
+        assertSeparates(incremental(classifier));
+    }
+
+    @Test
+    public void hogwildSingleThread() {
+        for (Loss loss : Loss.values()) {
+            assertSeparates(new LinearClassifier(loss).train(train, labels,
+                    EPOCHS, 1, 3));
+        }
+    }
+
+    @Test
+    public void hogwildMultipleThreads() {
+        for (Loss loss : Loss.values()) {
+            assertSeparates(new LinearClassifier(loss).train(train, labels,
+                    EPOCHS, 4, 3));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void hogwildLabels() {
+        new LinearClassifier(Loss.LOGISTIC).train(train, labels.subList(0,
+                10), EPOCHS, 1, 3);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void untrained() {
+        new LinearClassifier(Loss.LOGISTIC).classify(test.get(0));
+    }
+
+    /* Training Dokument für Dokument, immer in derselben Reihenfolge: */
+    private LinearClassifier incremental(final LinearClassifier classifier) {
+        for (int epoch = 0; epoch < EPOCHS; epoch++) {
+            for (int i = 0; i < train.size(); i++) {
+                classifier.train(train.get(i), labels.get(i));
+            }
+        }
+        return classifier;
+    }
+
+    private void assertSeparates(final LinearClassifier classifier) {
+        Assert.assertEquals(1f, accuracy(classifier, train));
+        float accuracy = accuracy(classifier, test);
+        Assert.assertTrue(classifier + ": " + accuracy, accuracy >= ACCURACY);
+    }
+
+    private static float accuracy(final LinearClassifier classifier,
+            final List<Document> documents) {
+        String[] classes = classifier.classifyAll(documents);
+        int correct = 0;
+        for (int i = 0; i < classes.length; i++) {
+            if (classes[i].equals(documents.get(i).getTopic())) {
+                correct++;
+            }
+        }
+        return correct / (float) classes.length;
+    }
+}
@@ -19,26 +19,90 @@
  */
 package de.uni_koeln.phil_fak.iv.tm.p3.classification;
 
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import de.uni_koeln.phil_fak.iv.ir.p5.features.FeatureSelection;
 import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document;
 
+/*
+ * Naive Bayes mit Zählungen in Arrays: jeder Term und jede Klasse bekommt
+ * eine feste Nummer, und für jede Klasse zählen wir in einem int-Array die
+ * Häufigkeit jedes Terms. Die Summe der Häufigkeiten pro Klasse führen wir
+ * beim Training mit, statt sie bei jeder Klassifikation neu auszurechnen,
+ * und die Logarithmen der (geglätteten) Häufigkeiten halten wir ebenfalls
+ * vor. So kostet die Klassifikation eines Dokuments nur noch (Terme im
+ * Dokument) mal (Klassen) Additionen. Weil wir nur zählen, können wir
+ * Dokumente auch wieder austrainieren (untrain), etwa wenn sich ihre Klasse
+ * als falsch herausstellt.
+ */
 /**
- * Naive bayes classifier strategy to use for text classification.
+ * Multinomial naive bayes classifier strategy to use for text classification,
+ * with Laplace smoothing and support for incremental training and untraining.
  * @author Fabian Steeg (fsteeg)
  */
 public final class NaiveBayes implements ClassifierStrategy {
 
-    /** Number of documents for each class */
-    private Map<String, Integer> classFrequencies = new HashMap<String, Integer>();
+    private float smoothing;
+    private float logSmoothing;
+    /* Die Nummern der Terme und Klassen: */
+    private Map<String, Integer> termIds = new HashMap<String, Integer>();
+    private Map<String, Integer> classIds = new HashMap<String, Integer>();
+    private List<String> classes = new ArrayList<String>();
+    /* Pro Klasse: Anzahl der Dokumente, Summe und Häufigkeit jedes Terms */
+    private int[] classFrequencies = new int[0];
+    private long[] classTotals = new long[0];
+    private int[][] termFrequencies = new int[0][];
+    /* Pro Klasse und Term: log(Häufigkeit + Glättung) */
+    private float[][] logFrequencies = new float[0][];
+    /* Pro Klasse: log(Summe + Glättung * Vokabulargröße) */
+    private float[] logTotals = new float[0];
+    /* Pro Term: Häufigkeit über alle Klassen, für die Vokabulargröße */
+    private int[] termTotals = new int[0];
+    private int vocabulary;
+    private int docCount;
+    /* Die verwendeten Terme (etwa aus einer Merkmalsauswahl), sonst null */
+    private Set<String> features;
+
+    /**
+     * Naive bayes with add-one (Laplace) smoothing.
+     */
+    public NaiveBayes() {
+        this(1);
+    }
+
     /**
-     * For each class, we map a mapping of all the terms of that class to their
-     * term frequencies:
+     * @param smoothing The count added to every term frequency, so that terms
+     *            not seen with a class do not rule out that class (1 for
+     *            Laplace smoothing)
      */
-    private Map<String, Map<String, Integer>> termFrequenciesForClasses = new HashMap<String, Map<String, Integer>>();
-    private int docCount = 0;
+    public NaiveBayes(final float smoothing) {
+        if (smoothing <= 0) {
+            throw new IllegalArgumentException(
+                    "Smoothing must be positive, not: " + smoothing);
+        }
+        this.smoothing = smoothing;
+        this.logSmoothing = (float) Math.log(smoothing);
+    }
+
+    /**
+     * @param smoothing The count added to every term frequency (1 for Laplace
+     *            smoothing)
+     * @param features The terms to use for classification, e.g. selected with
+     *            a {@link FeatureSelection}; other terms are ignored
+     */
+    public NaiveBayes(final float smoothing, final Set<String> features) {
+        this(smoothing);
+        this.features = features;
+    }
 
     /**
      * {@inheritDoc}
@@ -46,47 +110,115 @@ public final class NaiveBayes implements ClassifierStrategy {
      *      java.lang.String)
      */
     public ClassifierStrategy train(final Document doc, final String c) {
-        /*
-         * Wir zählen mit, wie viele Dokumente wir insgesamt haben, für die
-         * Berechnung der A-Priori-Wahrscheinlichkeit ('prior probability')
-         */
-        docCount++;
-        Integer classCount = classFrequencies.get(c);
-        if (classCount == null) {
-            /* Erstes Vorkommen der Klasse: */
-            classCount = 0;
+        count(doc, classId(c), 1);
+        return this;
+    }
+
+    /**
+     * Removes a document that was used for training before, as if it had never
+     * been trained.
+     * @param doc The document to remove
+     * @param c The class label the document was trained with
+     * @return This classifier
+     */
+    public ClassifierStrategy untrain(final Document doc, final String c) {
+        Integer id = classIds.get(c);
+        if (id == null || classFrequencies[id] == 0) {
+            throw new IllegalArgumentException(String.format(
+                    "No documents trained for class '%s'", c));
         }
-        classFrequencies.put(c, classCount + 1);
-        /*
-         * Für die Evidenz: Häufigkeit eines Terms in den Dokumenten einer
-         * Klasse.
-         */
-        Map<String, Integer> termCount = termFrequenciesForClasses.get(c);
-        if (termCount == null) {
-            /* Erstes Vorkommen der Klasse: */
-            termCount = new HashMap<String, Integer>();
+        count(doc, id, -1);
+        return this;
+    }
+
+    /*
+     * Training und Austrainieren sind dasselbe, nur mit anderem Vorzeichen.
+     * Wir aktualisieren nur die Werte der Terme im Dokument, und dann die
+     * Summen der Klassen (die sich mit dem Vokabular alle ändern können).
+     */
+    private void count(final Document doc, final int c, final int sign) {
+        if (sign < 0) {
+            check(doc, c);
         }
-        /* Jetzt für jeden Term hochzählen: */
+        docCount += sign;
+        classFrequencies[c] += sign;
         for (String term : doc.getTerms()) {
-            Integer count = termCount.get(term);
-            if (count == null) {
-                /* Erstes Vorkommen des Terms: */
-                count = 0;
+            if (features != null && !features.contains(term)) {
+                continue;
             }
-            /*
-             * Wir addieren hier nicht einfach 1 wie ich es fälschlicherweise im
-             * Seminar gemacht habe, sondern die Häufigkeit des Terms im
-             * Dokument. Diese Zahl bekommen wir aus dem Dokument, weshalb wir
-             * die Trennung doch nicht so machen können wie ich es vorhatte. So
-             * kennt die Classifier-Strategie die Dokumentenklasse. Das ist
-             * nicht weiter schlimm, weil die verschiedenen Strategien trotzdem
-             * austauschbar sind. Sie können nur nicht mit einer anderen Klasse
-             * als Document-Implementierungen zusammenarbeiten.
-             */
-            termCount.put(term, count + doc.getTermFrequencyOf(term));
-        }
-        termFrequenciesForClasses.put(c, termCount);
-        return this;
+            int t = termId(term);
+            int frequency = sign * doc.getTermFrequencyOf(term);
+            int before = termTotals[t];
+            termTotals[t] += frequency;
+            if (before == 0 && termTotals[t] > 0) {
+                vocabulary++;
+            } else if (before > 0 && termTotals[t] == 0) {
+                vocabulary--;
+            }
+            termFrequencies[c][t] += frequency;
+            classTotals[c] += frequency;
+            logFrequencies[c][t] = (float) Math.log(termFrequencies[c][t]
+                    + smoothing);
+        }
+        for (int i = 0; i < classes.size(); i++) {
+            logTotals[i] = (float) Math.log(classTotals[i] + smoothing
+                    * vocabulary);
+        }
+    }
+
+    /* Vor dem Austrainieren prüfen, damit wir nicht halb austrainieren: */
+    private void check(final Document doc, final int c) {
+        for (String term : doc.getTerms()) {
+            if (features != null && !features.contains(term)) {
+                continue;
+            }
+            Integer t = termIds.get(term);
+            if (t == null
+                    || termFrequencies[c][t] < doc.getTermFrequencyOf(term)) {
+                throw new IllegalArgumentException(String.format(
+                        "Term '%s' was not trained for class '%s'", term,
+                        classes.get(c)));
+            }
+        }
+    }
+
+    private int classId(final String c) {
+        Integer id = classIds.get(c);
+        if (id == null) {
+            id = classes.size();
+            classIds.put(c, id);
+            classes.add(c);
+            classFrequencies = Arrays.copyOf(classFrequencies, id + 1);
+            classTotals = Arrays.copyOf(classTotals, id + 1);
+            logTotals = Arrays.copyOf(logTotals, id + 1);
+            termFrequencies = Arrays.copyOf(termFrequencies, id + 1);
+            logFrequencies = Arrays.copyOf(logFrequencies, id + 1);
+            termFrequencies[id] = new int[termTotals.length];
+            logFrequencies[id] = new float[termTotals.length];
+            Arrays.fill(logFrequencies[id], logSmoothing);
+        }
+        return id;
+    }
+
+    /* Neue Terme bekommen die nächste Nummer, die Arrays wachsen doppelt: */
+    private int termId(final String term) {
+        Integer id = termIds.get(term);
+        if (id == null) {
+            id = termIds.size();
+            termIds.put(term, id);
+            if (id == termTotals.length) {
+                int capacity = Math.max(16, 2 * id);
+                termTotals = Arrays.copyOf(termTotals, capacity);
+                for (int c = 0; c < classes.size(); c++) {
+                    termFrequencies[c] = Arrays.copyOf(termFrequencies[c],
+                            capacity);
+                    logFrequencies[c] = Arrays.copyOf(logFrequencies[c],
+                            capacity);
+                    Arrays.fill(logFrequencies[c], id, capacity, logSmoothing);
+                }
+            }
+        }
+        return id;
     }
 
     /**
@@ -94,71 +226,170 @@ public final class NaiveBayes implements ClassifierStrategy {
      * @see de.uni_koeln.phil_fak.iv.tm.p3.classification.ClassifierStrategy#classify(de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document)
      */
     public String classify(final Document doc) {
-        /* Das Maximum... */
+        return classify(doc, new float[classes.size()], priors());
+    }
+
+    /*
+     * Für viele Dokumente berechnen wir die A-Priori-Wahrscheinlichkeiten nur
+     * einmal, und jeder Block verwendet sein Array für die Werte wieder. Die
+     * Klassifikation liest nur, deshalb können die Blöcke parallel laufen.
+     */
+    /**
+     * {@inheritDoc}
+     * @see de.uni_koeln.phil_fak.iv.tm.p3.classification.ClassifierStrategy#classifyAll(java.util.List)
+     */
+    public String[] classifyAll(final List<? extends Document> documents) {
+        final String[] result = new String[documents.size()];
+        final float[] priors = priors();
+        ParallelClassification.forEachBlock(documents.size(), Runtime
+                .getRuntime().availableProcessors(),
+                new ParallelClassification.Block() {
+                    public void run(final int from, final int to) {
+                        float[] scores = new float[priors.length];
+                        for (int i = from; i < to; i++) {
+                            Arrays.fill(scores, 0);
+                            result[i] = classify(documents.get(i), scores,
+                                    priors);
+                        }
+                    }
+                });
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see de.uni_koeln.phil_fak.iv.tm.p3.classification.ClassifierStrategy#isThreadSafe()
+     */
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    /* Die A-Priori-Wahrscheinlichkeit jeder Klasse (ohne Dokumente: keine) */
+    private float[] priors() {
+        if (docCount == 0) {
+            throw new IllegalStateException("Classifier is not trained");
+        }
+        float[] priors = new float[classes.size()];
+        for (int c = 0; c < priors.length; c++) {
+            priors[c] = classFrequencies[c] == 0 ? Float.NaN : (float) Math
+                    .log(classFrequencies[c] / (float) docCount);
+        }
+        return priors;
+    }
+
+    private String classify(final Document doc, final float[] scores,
+            final float[] priors) {
+        scores(doc, scores);
+        /* Dazu kommt die A-Priori-Wahrscheinlichkeit jeder Klasse: */
+        String best = null;
         float max = Float.NEGATIVE_INFINITY;
-        Set<String> classes = termFrequenciesForClasses.keySet();
-        String best = classes.iterator().next();
-        /* ...der möglichen Klassen... */
-        for (String c : classes) {
-            /*
-             * Das Produkt oder die Summe der Termwahrscheinlichkeiten ist
-             * unsere Evidenz...
-             */
-            float evidence = 0f;
-            /*
-             * Hier lag das Problem: Wir sind hier im Seminar absurderweise über
-             * alle Terme für die Klasse die wir hier betrachten gelaufen, statt
-             * nur über die Terme in dem Dokument das wir klassifizieren wollen.
-             */
-            for (String term : doc.getTerms()) {
-                float e = evidence(term, c);
-                evidence = (float) (evidence * Math.log(e));
-            }
-            float prior = prior(c);
-            /* Die eigentliche Naive-Bayes Berechnung: */
-            float probability = (float) (prior + evidence);
-            /* Und davon das Maximum: */
-            if (probability >= max) {
-                max = probability;
-                best = c;
+        for (int c = 0; c < scores.length; c++) {
+            if (!Float.isNaN(priors[c])) {
+                float probability = scores[c] + priors[c];
+                if (best == null || probability > max) {
+                    max = probability;
+                    best = classes.get(c);
+                }
             }
         }
         return best;
     }
 
-    private float prior(final String c) {
-        /* The relative frequency of the class: */
-        Integer classCount = classFrequencies.get(c);
-        float prior = (float) Math.log(classCount / (float) docCount);
-        return prior;
+    /* log P(c) + Summe log P(t|c) für die Terme t des Dokuments (für Tests) */
+    float score(final Document doc, final String c) {
+        Integer id = classIds.get(c);
+        if (id == null) {
+            throw new IllegalArgumentException(String.format(
+                    "Unknown class '%s'", c));
+        }
+        float[] scores = new float[classes.size()];
+        scores(doc, scores);
+        return scores[id] + priors()[id];
     }
 
-    private float evidence(final String term, final String c) {
-        Map<String, Integer> termFreqsForClass = termFrequenciesForClasses
-                .get(c);
-        Integer termFrequency = termFreqsForClass.get(term);
-        float evidence;
+    private void scores(final Document doc, final float[] scores) {
         /*
-         * Dieser Test fehlte auch noch: wenn ein Term in den
-         * Trainingsdokumenten für die Klasse nicht vorkommt, ist die Evidenz
-         * unendlich klein (weil wir damit vergleiche bei der Suche nach dem
-         * Maximum):
+         * Statt die Wahrscheinlichkeiten zu multiplizieren (was bei vielen
+         * Termen zu 0 wird), addieren wir ihre Logarithmen. Terme, die wir im
+         * Training nie gesehen haben, sagen nichts über die Klasse aus und
+         * werden übersprungen.
          */
-        if (termFrequency != null) {
-            evidence = termFrequency / (float) sum(termFreqsForClass);
-        } else {
-            evidence = Float.NEGATIVE_INFINITY;
+        for (String term : doc.getTerms()) {
+            Integer t = termIds.get(term);
+            if (t != null && termTotals[t] > 0) {
+                int frequency = doc.getTermFrequencyOf(term);
+                for (int c = 0; c < scores.length; c++) {
+                    scores[c] += frequency
+                            * (logFrequencies[c][t] - logTotals[c]);
+                }
+            }
+        }
+    }
+
+    /*
+     * Für ClassifierModels: erst die Namen der Klassen und Terme, dann pro
+     * Klasse die Zählungen als Blöcke fester Breite (nur bis zur Anzahl der
+     * Terme, die Arrays sind meist größer). Die Logarithmen speichern wir mit,
+     * damit wir sie beim Laden nicht neu berechnen müssen.
+     */
+    void write(final DataOutputStream out) throws IOException {
+        out.writeFloat(smoothing);
+        out.writeInt(docCount);
+        out.writeInt(vocabulary);
+        ClassifierModels.writeStrings(out, features);
+        ClassifierModels.writeStrings(out, classes);
+        String[] terms = new String[termIds.size()];
+        for (Map.Entry<String, Integer> entry : termIds.entrySet()) {
+            terms[entry.getValue()] = entry.getKey();
+        }
+        ClassifierModels.writeStrings(out, Arrays.asList(terms));
+        for (int c = 0; c < classes.size(); c++) {
+            out.writeInt(classFrequencies[c]);
+            out.writeLong(classTotals[c]);
+            out.writeFloat(logTotals[c]);
+        }
+        ClassifierModels.writeInts(out, termTotals, terms.length);
+        for (int c = 0; c < classes.size(); c++) {
+            ClassifierModels.writeInts(out, termFrequencies[c], terms.length);
+            ClassifierModels.writeFloats(out, logFrequencies[c], terms.length);
         }
-        return evidence;
     }
 
-    /* Die Summe der Häufigkeiten der Termfrequenzen für die Klasse: */
-    private float sum(final Map<String, Integer> termFreqsForClass) {
-        int sum = 0;
-        for (Integer i : termFreqsForClass.values()) {
-            sum += i;
+    static NaiveBayes read(final ByteBuffer in) {
+        NaiveBayes result = new NaiveBayes(in.getFloat());
+        result.docCount = in.getInt();
+        result.vocabulary = in.getInt();
+        List<String> features = ClassifierModels.readStrings(in);
+        if (features != null) {
+            result.features = new HashSet<String>(features);
+        }
+        for (String c : ClassifierModels.readStrings(in)) {
+            result.classIds.put(c, result.classes.size());
+            result.classes.add(c);
+        }
+        List<String> terms = ClassifierModels.readStrings(in);
+        for (String term : terms) {
+            result.termIds.put(term, result.termIds.size());
+        }
+        int n = result.classes.size();
+        result.classFrequencies = new int[n];
+        result.classTotals = new long[n];
+        result.logTotals = new float[n];
+        for (int c = 0; c < n; c++) {
+            result.classFrequencies[c] = in.getInt();
+            result.classTotals[c] = in.getLong();
+            result.logTotals[c] = in.getFloat();
+        }
+        result.termTotals = ClassifierModels.readInts(in, terms.size());
+        result.termFrequencies = new int[n][];
+        result.logFrequencies = new float[n][];
+        for (int c = 0; c < n; c++) {
+            result.termFrequencies[c] = ClassifierModels.readInts(in, terms
+                    .size());
+            result.logFrequencies[c] = ClassifierModels.readFloats(in, terms
+                    .size());
         }
-        return sum;
+        return result;
     }
 
     /**
@@ -169,6 +400,4 @@ public final class NaiveBayes implements ClassifierStrategy {
     public String toString() {
         return getClass().getSimpleName();
     }
-    
-    
 }
@@ -0,0 +1,144 @@
+/**
+ * Material for the course 'Text-Mining', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-textmining.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.tm.p3.classification;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.uni_koeln.phil_fak.iv.ir.p2.index.TermIndex;
+import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document;
+
+/*
+ * Tests für Naive Bayes mit dem Beispiel aus Manning et al., Introduction to
+ * Information Retrieval, Kap. 13.2: 3 Dokumente der Klasse china, 1 der
+ * Klasse japan, 6 Terme. Die Werte mit Laplace-Glättung rechnen wir von Hand
+ * nach, dazu Austrainieren, danach muss alles wie vorher sein.
+ */
+/**
+ * Tests for the naive bayes classifier, against hand-computed values.
+ * @author Fabian Steeg (fsteeg)
+ */
+public class NaiveBayesPraxis {
+    private static final float DELTA = 1E-5f;
+    private static final Document TEST = new TermIndex(
+            "Chinese Chinese Chinese Tokyo Japan");
+    private NaiveBayes classifier;
+
+    @Before
+    public void before() {
+        classifier = new NaiveBayes();
+        classifier.train(new TermIndex("Chinese Beijing Chinese"), "china");
+        classifier.train(new TermIndex("Chinese Chinese Shanghai"), "china");
+        classifier.train(new TermIndex("Chinese Macao"), "china");
+        classifier.train(new TermIndex("Tokyo Japan Chinese"), "japan");
+    }
+
+    @Test
+    public void laplace() {
+        /*
+         * china: 8 Tokens, P(chinese) = (5 + 1) / (8 + 6) = 3/7,
+         * P(tokyo) = P(japan) = (0 + 1) / (8 + 6) = 1/14; japan: 3 Tokens,
+         * P(chinese) = P(tokyo) = P(japan) = (1 + 1) / (3 + 6) = 2/9.
+         */
+        Assert.assertEquals(Math.log(3 / 4.0) + 3 * Math.log(3 / 7.0) + 2
+                * Math.log(1 / 14.0), classifier.score(TEST, "china"), DELTA);
+        Assert.assertEquals(Math.log(1 / 4.0) + 5 * Math.log(2 / 9.0),
+                classifier.score(TEST, "japan"), DELTA);
+        Assert.assertEquals("china", classifier.classify(TEST));
+        /* Unbekannte Terme zählen nicht: */
+        Assert.assertEquals(classifier.score(TEST, "china"), classifier.score(
+                new TermIndex("Chinese Chinese Chinese Tokyo Japan Osaka"),
+                "china"), DELTA);
+    }
+
+    @Test
+    public void smoothing() {
+        NaiveBayes half = new NaiveBayes(0.5f);
+        half.train(new TermIndex("Chinese Beijing Chinese"), "china");
+        half.train(new TermIndex("Tokyo Japan Chinese"), "japan");
+        /* china: 3 Tokens, 4 Terme, P(tokyo) = 0.5 / (3 + 0.5 * 4) */
+        Assert.assertEquals(Math.log(1 / 2.0) + Math.log(0.5 / 5), half
+                .score(new TermIndex("Tokyo"), "china"), DELTA);
+    }
+
+    @Test
+    public void untrain() {
+        float china = classifier.score(TEST, "china");
+        float japan = classifier.score(TEST, "japan");
+        Document more = new TermIndex("Japan Tokyo Chinese Chinese Chinese");
+        classifier.train(more, "japan");
+        Assert.assertEquals("japan", classifier.classify(TEST));
+        classifier.untrain(more, "japan");
+        Assert.assertEquals("china", classifier.classify(TEST));
+        Assert.assertEquals(china, classifier.score(TEST, "china"), DELTA);
+        Assert.assertEquals(japan, classifier.score(TEST, "japan"), DELTA);
+    }
+
+    @Test
+    public void untrainNewClass() {
+        /* Austrainieren einer ganzen Klasse: sie wird nicht mehr vergeben */
+        Document mexico = new TermIndex("Chinese Mexico Chinese Chinese");
+        Document query = new TermIndex("Mexico Mexico");
+        classifier.train(mexico, "mexico");
+        Assert.assertEquals("mexico", classifier.classify(query));
+        classifier.untrain(mexico, "mexico");
+        Assert.assertEquals("china", classifier.classify(query));
+        /* Auch das Vokabular ist wieder wie vorher (6 Terme): */
+        Assert.assertEquals(Math.log(3 / 4.0) + 3 * Math.log(3 / 7.0) + 2
+                * Math.log(1 / 14.0), classifier.score(TEST, "china"), DELTA);
+    }
+
+    @Test
+    public void untrainUnseenTerm() {
+        assertUntrainFails(new TermIndex("Chinese Osaka"), "china");
+    }
+
+    @Test
+    public void untrainTooFrequentTerm() {
+        /* Macao kam in china nur einmal vor: */
+        assertUntrainFails(new TermIndex("Macao Macao"), "china");
+    }
+
+    @Test
+    public void untrainOtherClass() {
+        /* Beijing kam in japan nicht vor: */
+        assertUntrainFails(new TermIndex("Chinese Beijing Chinese"), "japan");
+    }
+
+    @Test
+    public void untrainUnseenClass() {
+        assertUntrainFails(new TermIndex("Chinese"), "korea");
+    }
+
+    /* Die Ausnahme kommt, bevor sich etwas ändert: */
+    private void assertUntrainFails(final Document document, final String c) {
+        float china = classifier.score(TEST, "china");
+        float japan = classifier.score(TEST, "japan");
+        try {
+            classifier.untrain(document, c);
+            Assert.fail("Untraining should fail for " + c);
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals(china, classifier.score(TEST, "china"));
+            Assert.assertEquals(japan, classifier.score(TEST, "japan"));
+        }
+    }
+}
@@ -0,0 +1,468 @@
+/**
+ * Material for the course 'Text-Mining', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-textmining.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.tm.p3.classification;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.uni_koeln.phil_fak.iv.ir.p5.features.SparseVector;
+import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document;
+
+/*
+ * k-nächste-Nachbarn ohne Vergleich mit allen Trainingsdokumenten: das zu
+ * klassifizierende Dokument ist eine Anfrage an einen invertierten Index der
+ * Trainingsdokumente (wie bei der Suche, vgl. ir.p2.index). Wir gehen die
+ * Postings-Listen der Terme der Anfrage durch und summieren für jedes
+ * Trainingsdokument, das darin vorkommt, seinen Anteil am Kosinus in einem
+ * Akkumulator. Dokumente ohne gemeinsame Terme sehen wir also nie an.
+ *
+ * Dazu kommt ein vorzeitiger Abbruch: wir nehmen die Terme in der
+ * Reihenfolge ihres größtmöglichen Beitrags, und wenn die übrigen Terme die
+ * k besten Dokumente nicht mehr ändern können, hören wir auf und rechnen
+ * nur für diese k Dokumente den Kosinus über ihre Termlisten zu Ende. Zum
+ * Schluss stimmen die k Nachbarn ab, jeder mit seiner Ähnlichkeit.
+ */
+/**
+ * k nearest neighbours classifier strategy retrieving the neighbours from an
+ * inverted index of the training documents (TF-IDF cosine similarity).
+ * @author Fabian Steeg (fsteeg)
+ */
+public final class NearestNeighbours implements ClassifierStrategy {
+
+    /* Akkumulatoren für eine Anfrage, wiederverwendbar für viele Anfragen */
+    private static final class Accumulators {
+        private float[] scores;
+        private int[] touched;
+        private int size;
+
+        Accumulators(final int documents) {
+            scores = new float[documents];
+            touched = new int[16];
+        }
+
+        void add(final int d, final float score) {
+            if (scores[d] == 0) {
+                if (size == touched.length) {
+                    touched = Arrays.copyOf(touched, 2 * size);
+                }
+                touched[size++] = d;
+            }
+            scores[d] += score;
+        }
+
+        void clear() {
+            for (int i = 0; i < size; i++) {
+                scores[touched[i]] = 0;
+            }
+            size = 0;
+        }
+    }
+
+    private int k;
+    /* Der invertierte Index: für jeden Term die Dokumente und Häufigkeiten */
+    private Map<String, Integer> termIds = new HashMap<String, Integer>();
+    private int[][] postings = new int[0][];
+    private int[][] frequencies = new int[0][];
+    private int[] lengths = new int[0];
+    /* Und für jedes Dokument seine Terme (sortiert) und Häufigkeiten: */
+    private List<int[]> documentTerms = new ArrayList<int[]>();
+    private List<int[]> documentFrequencies = new ArrayList<int[]>();
+    private int[] labels = new int[0];
+    private Map<String, Integer> classIds = new HashMap<String, Integer>();
+    private List<String> classes = new ArrayList<String>();
+    private int[] classFrequencies = new int[0];
+    /* Abgeleitet, nach dem Training neu berechnet (siehe prepare): */
+    private float[] idfs;
+    private float[] norms;
+    private float[] maxWeights;
+    private boolean prepared;
+
+    /**
+     * @param k The number of neighbours voting for the class of a document
+     */
+    public NearestNeighbours(final int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be positive, not: " + k);
+        }
+        this.k = k;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see de.uni_koeln.phil_fak.iv.tm.p3.classification.ClassifierStrategy#train(de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document,
+     *      java.lang.String)
+     */
+    public synchronized ClassifierStrategy train(final Document document,
+            final String classLabel) {
+        Set<String> terms = document.getTerms();
+        /* Term-ID und Häufigkeit zusammen nach der ID sortieren: */
+        long[] entries = new long[terms.size()];
+        int count = 0;
+        for (String term : terms) {
+            entries[count++] = ((long) termId(term) << 32)
+                    | document.getTermFrequencyOf(term);
+        }
+        Arrays.sort(entries);
+        int[] ids = new int[count];
+        int[] tfs = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = (int) (entries[i] >>> 32);
+            tfs[i] = (int) entries[i];
+        }
+        add(ids, tfs, classId(classLabel));
+        return this;
+    }
+
+    /* Ein Dokument in beide Indexe aufnehmen (Terme nach ID sortiert): */
+    private void add(final int[] ids, final int[] tfs, final int label) {
+        int d = documentTerms.size();
+        for (int j = 0; j < ids.length; j++) {
+            int t = ids[j];
+            if (lengths[t] == postings[t].length) {
+                int capacity = Math.max(4, 2 * lengths[t]);
+                postings[t] = Arrays.copyOf(postings[t], capacity);
+                frequencies[t] = Arrays.copyOf(frequencies[t], capacity);
+            }
+            postings[t][lengths[t]] = d;
+            frequencies[t][lengths[t]] = tfs[j];
+            lengths[t]++;
+        }
+        documentTerms.add(ids);
+        documentFrequencies.add(tfs);
+        if (d == labels.length) {
+            labels = Arrays.copyOf(labels, Math.max(16, 2 * d));
+        }
+        labels[d] = label;
+        classFrequencies[label]++;
+        prepared = false;
+    }
+
+    private int termId(final String term) {
+        Integer id = termIds.get(term);
+        if (id == null) {
+            id = termIds.size();
+            termIds.put(term, id);
+            if (id == lengths.length) {
+                int capacity = Math.max(16, 2 * id);
+                lengths = Arrays.copyOf(lengths, capacity);
+                postings = Arrays.copyOf(postings, capacity);
+                frequencies = Arrays.copyOf(frequencies, capacity);
+            }
+            postings[id] = new int[0];
+            frequencies[id] = new int[0];
+        }
+        return id;
+    }
+
+    private int classId(final String c) {
+        Integer id = classIds.get(c);
+        if (id == null) {
+            id = classes.size();
+            classIds.put(c, id);
+            classes.add(c);
+            classFrequencies = Arrays.copyOf(classFrequencies, id + 1);
+        }
+        return id;
+    }
+
+    /*
+     * Die IDF-Werte und damit die Längen der Dokumentvektoren ändern sich mit
+     * jedem Trainingsdokument, wir berechnen sie deshalb erst vor der ersten
+     * Klassifikation nach dem Training, für alle Dokumente auf einmal. Dazu
+     * für jeden Term das höchste Gewicht in seiner Postings-Liste, für die
+     * Abschätzung beim vorzeitigen Abbruch.
+     */
+    private synchronized void prepare() {
+        if (prepared) {
+            return;
+        }
+        int n = documentTerms.size();
+        if (n == 0) {
+            throw new IllegalStateException("Classifier is not trained");
+        }
+        int terms = termIds.size();
+        idfs = new float[terms];
+        for (int t = 0; t < terms; t++) {
+            idfs[t] = (float) Math.log(n / (float) lengths[t]);
+        }
+        norms = new float[n];
+        for (int d = 0; d < n; d++) {
+            int[] ids = documentTerms.get(d);
+            int[] tfs = documentFrequencies.get(d);
+            float sum = 0;
+            for (int i = 0; i < ids.length; i++) {
+                float weight = tfs[i] * idfs[ids[i]];
+                sum += weight * weight;
+            }
+            norms[d] = (float) Math.sqrt(sum);
+        }
+        maxWeights = new float[terms];
+        for (int t = 0; t < terms; t++) {
+            for (int i = 0; i < lengths[t]; i++) {
+                int d = postings[t][i];
+                if (norms[d] > 0) {
+                    maxWeights[t] = Math.max(maxWeights[t], frequencies[t][i]
+                            * idfs[t] / norms[d]);
+                }
+            }
+        }
+        prepared = true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see de.uni_koeln.phil_fak.iv.tm.p3.classification.ClassifierStrategy#classify(de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document)
+     */
+    public String classify(final Document document) {
+        prepare();
+        return classify(document, new Accumulators(norms.length));
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see de.uni_koeln.phil_fak.iv.tm.p3.classification.ClassifierStrategy#classifyAll(java.util.List)
+     */
+    public String[] classifyAll(final List<? extends Document> documents) {
+        prepare();
+        final String[] result = new String[documents.size()];
+        ParallelClassification.forEachBlock(documents.size(), Runtime
+                .getRuntime().availableProcessors(),
+                new ParallelClassification.Block() {
+                    public void run(final int from, final int to) {
+                        Accumulators accumulators = new Accumulators(
+                                norms.length);
+                        for (int i = from; i < to; i++) {
+                            result[i] = classify(documents.get(i),
+                                    accumulators);
+                        }
+                    }
+                });
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see de.uni_koeln.phil_fak.iv.tm.p3.classification.ClassifierStrategy#isThreadSafe()
+     */
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    private String classify(final Document document,
+            final Accumulators accumulators) {
+        /* Die Anfrage: bekannte Terme mit ihren Gewichten, nach ID sortiert */
+        Set<String> terms = document.getTerms();
+        int[] ids = new int[terms.size()];
+        float[] weights = new float[terms.size()];
+        int count = 0;
+        for (String term : terms) {
+            Integer t = termIds.get(term);
+            if (t != null && idfs[t] > 0) {
+                ids[count] = t;
+                weights[count++] = document.getTermFrequencyOf(term) * idfs[t];
+            }
+        }
+        SparseVector vector = SparseVector.sorted(ids, weights, count,
+                termIds.size());
+        int[] query = vector.getIndices();
+        float[] queryWeights = vector.getValues();
+        final float[] bounds = new float[query.length];
+        float remaining = 0;
+        for (int i = 0; i < query.length; i++) {
+            bounds[i] = queryWeights[i] * maxWeights[query[i]];
+            remaining += bounds[i];
+        }
+        /* Die Terme mit dem größten möglichen Beitrag zuerst: */
+        Integer[] order = new Integer[query.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(final Integer i1, final Integer i2) {
+                return Float.compare(bounds[i2], bounds[i1]);
+            }
+        });
+        int[] neighbours = null;
+        float max = 0;
+        float checked = Float.POSITIVE_INFINITY;
+        for (int i : order) {
+            int t = query[i];
+            remaining -= bounds[i];
+            float factor = queryWeights[i] * idfs[t];
+            for (int p = 0; p < lengths[t]; p++) {
+                int d = postings[t][p];
+                accumulators.add(d, factor * frequencies[t][p] / norms[d]);
+                max = Math.max(max, accumulators.scores[d]);
+            }
+            /*
+             * Abbruch, wenn kein anderes Dokument (auch keins, das wir noch
+             * nicht gesehen haben) mit den übrigen Termen noch am k-ten
+             * vorbeiziehen kann. Prüfen lohnt erst, wenn der Rest kleiner als
+             * das Beste ist, und dann nur wieder, wenn sich der Rest seit der
+             * letzten Prüfung halbiert hat.
+             */
+            if (remaining < max && remaining < checked / 2
+                    && accumulators.size >= k) {
+                checked = remaining;
+                neighbours = top(accumulators, k + 1);
+                float next = neighbours.length > k
+                        ? accumulators.scores[neighbours[k]] : 0;
+                float kth = accumulators.scores[neighbours[k - 1]];
+                if (kth >= next + remaining) {
+                    neighbours = Arrays.copyOf(neighbours, k);
+                    /* Die Summen dieser k Dokumente sind noch unvollständig: */
+                    for (int d : neighbours) {
+                        accumulators.scores[d] = cosine(d, query, queryWeights);
+                    }
+                    break;
+                }
+                neighbours = null;
+            }
+        }
+        if (neighbours == null) {
+            neighbours = top(accumulators, k);
+        }
+        float[] votes = new float[classes.size()];
+        for (int d : neighbours) {
+            votes[labels[d]] += accumulators.scores[d];
+        }
+        accumulators.clear();
+        /* Ohne Nachbarn (keine gemeinsamen Terme): die häufigste Klasse */
+        if (neighbours.length == 0) {
+            votes = new float[classes.size()];
+            for (int c = 0; c < votes.length; c++) {
+                votes[c] = classFrequencies[c];
+            }
+        }
+        int best = 0;
+        for (int c = 1; c < votes.length; c++) {
+            if (votes[c] > votes[best]) {
+                best = c;
+            }
+        }
+        return classes.get(best);
+    }
+
+    /*
+     * Die n Dokumente mit den höchsten Werten, der höchste zuerst: für kleine
+     * n ein sortiertes Array, in das nur Dokumente kommen, die besser als das
+     * bisher n-te sind.
+     */
+    private int[] top(final Accumulators accumulators, final int n) {
+        float[] scores = accumulators.scores;
+        int[] result = new int[Math.min(n, accumulators.size)];
+        int size = 0;
+        for (int i = 0; i < accumulators.size; i++) {
+            int d = accumulators.touched[i];
+            float score = scores[d];
+            if (size == result.length && score <= scores[result[size - 1]]) {
+                continue;
+            }
+            int j = size == result.length ? size - 1 : size++;
+            for (; j > 0 && scores[result[j - 1]] < score; j--) {
+                result[j] = result[j - 1];
+            }
+            result[j] = d;
+        }
+        return result;
+    }
+
+    /* Der Kosinus (ohne die Länge der Anfrage) über die sortierten Terme */
+    private float cosine(final int d, final int[] query,
+            final float[] queryWeights) {
+        int[] ids = documentTerms.get(d);
+        int[] tfs = documentFrequencies.get(d);
+        float sum = 0;
+        int i = 0;
+        int j = 0;
+        while (i < query.length && j < ids.length) {
+            if (query[i] < ids[j]) {
+                i++;
+            } else if (query[i] > ids[j]) {
+                j++;
+            } else {
+                sum += queryWeights[i] * tfs[j] * idfs[ids[j]];
+                i++;
+                j++;
+            }
+        }
+        return sum / norms[d];
+    }
+
+    /*
+     * Für ClassifierModels: die Termlisten der Dokumente (der Vorwärtsindex)
+     * mit ihren Klassen; den invertierten Index bauen wir beim Laden daraus
+     * wieder auf, IDF-Werte und Längen werden wie nach dem Training bei der
+     * ersten Klassifikation berechnet.
+     */
+    synchronized void write(final DataOutputStream out) throws IOException {
+        out.writeInt(k);
+        ClassifierModels.writeStrings(out, classes);
+        String[] terms = new String[termIds.size()];
+        for (Map.Entry<String, Integer> entry : termIds.entrySet()) {
+            terms[entry.getValue()] = entry.getKey();
+        }
+        ClassifierModels.writeStrings(out, Arrays.asList(terms));
+        out.writeInt(documentTerms.size());
+        for (int d = 0; d < documentTerms.size(); d++) {
+            int[] ids = documentTerms.get(d);
+            out.writeInt(labels[d]);
+            out.writeInt(ids.length);
+            ClassifierModels.writeInts(out, ids, ids.length);
+            ClassifierModels.writeInts(out, documentFrequencies.get(d),
+                    ids.length);
+        }
+    }
+
+    static NearestNeighbours read(final ByteBuffer in) {
+        NearestNeighbours result = new NearestNeighbours(in.getInt());
+        for (String c : ClassifierModels.readStrings(in)) {
+            result.classId(c);
+        }
+        for (String term : ClassifierModels.readStrings(in)) {
+            result.termId(term);
+        }
+        int documents = in.getInt();
+        for (int d = 0; d < documents; d++) {
+            int label = in.getInt();
+            int size = in.getInt();
+            result.add(ClassifierModels.readInts(in, size), ClassifierModels
+                    .readInts(in, size), label);
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("%s (k=%s)", getClass().getSimpleName(), k);
+    }
+}
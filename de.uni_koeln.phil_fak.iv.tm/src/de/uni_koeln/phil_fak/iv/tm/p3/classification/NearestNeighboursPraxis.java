@@ -0,0 +1,188 @@
+/**
+ * Material for the course 'Text-Mining', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-textmining.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.tm.p3.classification;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document;
+import de.uni_koeln.phil_fak.iv.tm.p1.corpus.SampleDocuments;
+
+/*
+ * Tests für die k-nächsten-Nachbarn über den invertierten Index: mit dem
+ * vorzeitigen Abbruch müssen wir dieselben Klassen bekommen wie beim
+ * Vergleich mit allen Trainingsdokumenten (hier ganz naiv über die Terme,
+ * in double gerechnet). Mit den echten Themen wäre das zu leicht (fast alle
+ * Nachbarn haben dasselbe Thema), für den Vergleich bekommen die
+ * Trainingsdokumente deshalb zufällige Klassen: dann hängt das Ergebnis
+ * davon ab, genau die richtigen Nachbarn zu finden. Die Dokumente und
+ * Klassen sind bei jedem Lauf gleich.
+ */
+/**
+ * Tests for the nearest neighbours classifier, against a brute-force search.
+ * @author Fabian Steeg (fsteeg)
+ */
+public class NearestNeighboursPraxis {
+    private static final String[] TOPICS = { "sport", "politik", "kultur",
+            "wirtschaft", "wissenschaft" };
+    private List<Document> train;
+    private List<Document> test;
+    private List<String> labels;
+    private Map<String, Integer> documentFrequencies;
+
+    @Before
+    public void before() {
+        train = SampleDocuments.create(3000, 1, TOPICS);
+        test = SampleDocuments.create(300, 2, TOPICS);
+        Random random = new Random(3);
+        labels = new ArrayList<String>();
+        for (int i = 0; i < train.size(); i++) {
+            labels.add(TOPICS[random.nextInt(TOPICS.length)]);
+        }
+        documentFrequencies = new HashMap<String, Integer>();
+        for (Document document : train) {
+            for (String term : document.getTerms()) {
+                Integer df = documentFrequencies.get(term);
+                documentFrequencies.put(term, df == null ? 1 : df + 1);
+            }
+        }
+    }
+
+    @Test
+    public void singleNeighbour() {
+        compare(1);
+    }
+
+    @Test
+    public void tenNeighbours() {
+        compare(10);
+    }
+
+    @Test
+    public void classifyAll() {
+        NearestNeighbours classifier = train(10, labels);
+        String[] all = classifier.classifyAll(test);
+        for (int i = 0; i < test.size(); i++) {
+            Assert.assertEquals(classifier.classify(test.get(i)), all[i]);
+        }
+    }
+
+    @Test
+    public void topics() {
+        List<String> topics = new ArrayList<String>();
+        for (Document document : train) {
+            topics.add(document.getTopic());
+        }
+        NearestNeighbours classifier = train(10, topics);
+        int correct = 0;
+        for (Document document : test) {
+            if (classifier.classify(document).equals(document.getTopic())) {
+                correct++;
+            }
+        }
+        System.out.println(String.format("%s of %s correct", correct, test
+                .size()));
+        Assert.assertTrue(correct > test.size() * 0.9);
+    }
+
+    private void compare(final int k) {
+        NearestNeighbours classifier = train(k, labels);
+        for (Document document : test) {
+            Assert.assertEquals(document.getSource(), bruteForce(document, k),
+                    classifier.classify(document));
+        }
+    }
+
+    private NearestNeighbours train(final int k, final List<String> classes) {
+        NearestNeighbours classifier = new NearestNeighbours(k);
+        for (int i = 0; i < train.size(); i++) {
+            classifier.train(train.get(i), classes.get(i));
+        }
+        return classifier;
+    }
+
+    /*
+     * Kosinus mit allen Trainingsdokumenten, die k ähnlichsten (mit einer
+     * Ähnlichkeit über 0) stimmen ab; bei Gleichstand gewinnt wie im
+     * Klassifikator die Klasse, die im Training zuerst vorkam.
+     */
+    private String bruteForce(final Document query, final int k) {
+        int n = train.size();
+        Map<String, Double> queryWeights = new HashMap<String, Double>();
+        for (String term : query.getTerms()) {
+            Integer df = documentFrequencies.get(term);
+            if (df != null) {
+                queryWeights.put(term, query.getTermFrequencyOf(term)
+                        * Math.log(n / (double) df));
+            }
+        }
+        final double[] similarities = new double[n];
+        Integer[] order = new Integer[n];
+        for (int d = 0; d < n; d++) {
+            Document document = train.get(d);
+            double dot = 0;
+            double norm = 0;
+            for (String term : document.getTerms()) {
+                double weight = document.getTermFrequencyOf(term)
+                        * Math.log(n / (double) documentFrequencies.get(term));
+                norm += weight * weight;
+                Double queryWeight = queryWeights.get(term);
+                if (queryWeight != null) {
+                    dot += queryWeight * weight;
+                }
+            }
+            similarities[d] = norm > 0 ? dot / Math.sqrt(norm) : 0;
+            order[d] = d;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(final Integer i1, final Integer i2) {
+                return Double.compare(similarities[i2], similarities[i1]);
+            }
+        });
+        List<String> classes = new ArrayList<String>();
+        for (String label : labels) {
+            if (!classes.contains(label)) {
+                classes.add(label);
+            }
+        }
+        double[] votes = new double[classes.size()];
+        for (int i = 0; i < k && similarities[order[i]] > 0; i++) {
+            String label = labels.get(order[i]);
+            votes[classes.indexOf(label)] += similarities[order[i]];
+        }
+        int best = 0;
+        for (int c = 1; c < votes.length; c++) {
+            if (votes[c] > votes[best]) {
+                best = c;
+            }
+        }
+        return classes.get(best);
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ * Material for the course 'Text-Mining', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-textmining.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.tm.p3.classification;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document;
+
+/*
+ * Die Standard-Implementierung von ClassifierStrategy#classifyAll: wir teilen
+ * die Dokumente in Blöcke und klassifizieren die Blöcke parallel, wenn die
+ * Strategie das erlaubt (isThreadSafe), sonst nacheinander. Jeder Block
+ * schreibt nur in seinen eigenen Bereich des Ergebnis-Arrays, so dass die
+ * Reihenfolge der Ergebnisse der Reihenfolge der Dokumente entspricht.
+ */
+/**
+ * Batch classification of documents with a classifier strategy.
+ * @author Fabian Steeg (fsteeg)
+ */
+public final class ParallelClassification {
+
+    /** The number of documents each thread classifies at a time. */
+    public static final int BLOCK_SIZE = 512;
+
+    private ParallelClassification() {
+    // Enforce non-instantiability with a private constructor
+    }
+
+    /**
+     * @param classifier The trained classifier to use
+     * @param documents The documents to classify
+     * @return The class labels for the documents, in the order of the
+     *         documents, classified in parallel if the classifier is thread
+     *         safe
+     */
+    public static String[] classifyAll(final ClassifierStrategy classifier,
+            final List<? extends Document> documents) {
+        return classifyAll(classifier, documents, classifier.isThreadSafe()
+                ? Runtime.getRuntime().availableProcessors() : 1);
+    }
+
+    /**
+     * @param classifier The trained classifier to use
+     * @param documents The documents to classify
+     * @param threads The number of threads to use; must be 1 if the
+     *            classifier is not thread safe
+     * @return The class labels for the documents, in the order of the
+     *         documents
+     */
+    public static String[] classifyAll(final ClassifierStrategy classifier,
+            final List<? extends Document> documents, final int threads) {
+        final String[] result = new String[documents.size()];
+        forEachBlock(documents.size(), threads, new Block() {
+            public void run(final int from, final int to) {
+                for (int i = from; i < to; i++) {
+                    result[i] = classifier.classify(documents.get(i));
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * A range of positions to process.
+     */
+    public interface Block {
+        /**
+         * @param from The first position to process
+         * @param to The position after the last position to process
+         */
+        void run(int from, int to);
+    }
+
+    /**
+     * @param size The number of positions to process
+     * @param threads The number of threads to process blocks of positions
+     *            with; if 1, all blocks are processed in the calling thread
+     * @param block The processing of a block
+     */
+    public static void forEachBlock(final int size, final int threads,
+            final Block block) {
+        forEachBlock(size, threads, BLOCK_SIZE, block);
+    }
+
+    /*
+     * Kleinere Blöcke, wenn jede Position viel Arbeit ist (etwa ein ganzer
+     * Durchlauf einer Kreuzvalidierung) oder die Positionen unterschiedlich
+     * viel Arbeit sind (etwa die Zeilen einer Dreiecksmatrix).
+     */
+    /**
+     * @param size The number of positions to process
+     * @param threads The number of threads to process blocks of positions
+     *            with; if 1, all blocks are processed in the calling thread
+     * @param blockSize The number of positions in each block
+     * @param block The processing of a block
+     */
+    public static void forEachBlock(final int size, final int threads,
+            final int blockSize, final Block block) {
+        if (threads < 1) {
+            throw new IllegalArgumentException(
+                    "Number of threads must be positive, not: " + threads);
+        }
+        if (blockSize < 1) {
+            throw new IllegalArgumentException(
+                    "Block size must be positive, not: " + blockSize);
+        }
+        if (threads == 1 || size <= blockSize) {
+            block.run(0, size);
+            return;
+        }
+        ExecutorService exec = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (int start = 0; start < size; start += blockSize) {
+                final int from = start;
+                final int to = Math.min(start + blockSize, size);
+                futures.add(exec.submit(new Callable<Void>() {
+                    public Void call() {
+                        block.run(from, to);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            exec.shutdownNow();
+        }
+    }
+}
@@ -59,20 +59,30 @@ public final class TextClassifier {
      * @return A mapping of documents to their class labels
      */
     public Map<Document, String> classify(final Set<Document> documents) {
+        /* Wie beim Training delegieren wir an die Strategie: */
+        List<Document> list = new ArrayList<Document>(documents);
+        String[] classLabels = classifyAll(list);
         Map<Document, String> resultClasses = new HashMap<Document, String>();
-        for (Document document : documents) {
-            /* Wie beim Training delegieren wir an die Strategie: */
-            String classLabel = classifier.classify(document);
+        for (int i = 0; i < classLabels.length; i++) {
             /*
              * Und speichern wie im Seminar vorgeschlagen wurde, die Ergebnisse
              * in einer Map, um die fehleranfälligen korrespondierenden Listen
              * zu vermeiden:
              */
-            resultClasses.put(document, classLabel);
+            resultClasses.put(list.get(i), classLabels[i]);
         }
         return resultClasses;
     }
 
+    /**
+     * @param documents The documents to classify
+     * @return The class labels for the documents, in the order of the
+     *         documents (classified in parallel if the strategy supports it)
+     */
+    public String[] classifyAll(final List<? extends Document> documents) {
+        return classifier.classifyAll(documents);
+    }
+
     /**
      * @param resultClasses The classification result
      * @param gold The gold standard
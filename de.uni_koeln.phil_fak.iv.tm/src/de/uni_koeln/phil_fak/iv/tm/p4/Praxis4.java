@@ -19,11 +19,11 @@
  */
 package de.uni_koeln.phil_fak.iv.tm.p4;
 
-import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import junit.framework.Assert;
 
@@ -31,16 +31,20 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import weka.classifiers.Classifier;
 import weka.classifiers.functions.SMO;
 import weka.classifiers.lazy.IBk;
 import weka.classifiers.misc.HyperPipes;
+import de.uni_koeln.phil_fak.iv.ir.p5.features.SparseVector;
+import de.uni_koeln.phil_fak.iv.ir.p5.features.TfIdfFeatures;
 import de.uni_koeln.phil_fak.iv.ir.p6.crawler.Crawler;
 import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus;
 import de.uni_koeln.phil_fak.iv.tm.p1.corpus.CorpusDatabase;
 import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document;
 import de.uni_koeln.phil_fak.iv.tm.p3.classification.ClassifierStrategy;
+import de.uni_koeln.phil_fak.iv.tm.p3.classification.CrossValidation;
+import de.uni_koeln.phil_fak.iv.tm.p3.classification.Evaluation;
 import de.uni_koeln.phil_fak.iv.tm.p3.classification.NaiveBayes;
-import de.uni_koeln.phil_fak.iv.tm.p3.classification.TextClassifier;
 import de.uni_koeln.phil_fak.iv.tm.p4.classification.WekaAdapter;
 
 /*
@@ -57,11 +61,12 @@ import de.uni_koeln.phil_fak.iv.tm.p4.classification.WekaAdapter;
 public class Praxis4 {
     private static final String LINE = "------------------------------------------------------------------------";
     private static final String DATA = "output/corpus-tm-4.db";
+    private static final int FOLDS = 5;
     private Corpus corpus;
-    private Set<Document> testingSet;
-    private Set<Document> trainingSet;
-    private ArrayList<Document> goldSet;
-    private TextClassifier textClassifier;
+    private CrossValidation validation;
+    /* Für alle Weka-Klassifikatoren und Folds nur einmal berechnet: */
+    private Map<String, Integer> positions;
+    private ConcurrentMap<Document, SparseVector> vectors;
 
     public static void main(final String[] args) {
         /* Hier (= Run as -> Java application) erstellen und crawlen (dauert). */
@@ -99,59 +104,66 @@ public class Praxis4 {
         setupData(query);
         printInfo(query);
         /*
-         * Wir übergeben hier die Startzeit um die Trainingsphase mitzumessen;
-         * das Training findet im Konstrukltor statt und war so nicht mit in der
-         * Messung. So sieht man auch dass der SVM-Klassifikator immer etwa
-         * doppelt so lange dauert wie die anderen hier.
+         * Training und Klassifikation misst die Kreuzvalidierung für jeden
+         * Fold (inklusive des Aufbaus der Weka-Modelle, der erst bei der
+         * ersten Klassifikation stattfindet). So sieht man auch, dass der
+         * SVM-Klassifikator länger trainiert als die anderen hier.
          */
-        testEval(System.nanoTime(), query, new NaiveBayes());
-        testEval(System.nanoTime(), query, new WekaAdapter(
-                new weka.classifiers.bayes.NaiveBayes(), trainingSet, corpus));
-        testEval(System.nanoTime(), query, new WekaAdapter(new IBk(),
-                trainingSet, corpus));
-        testEval(System.nanoTime(), query, new WekaAdapter(new SMO(),
-                trainingSet, corpus));
-        testEval(System.nanoTime(), query, new WekaAdapter(new HyperPipes(),
-                trainingSet, corpus));
+        testEval("NaiveBayes", new CrossValidation.Factory() {
+            public ClassifierStrategy create(final Set<Document> trainingSet) {
+                return new NaiveBayes();
+            }
+        });
+        testEval("Weka NaiveBayes",
+                weka(new weka.classifiers.bayes.NaiveBayes()));
+        testEval("Weka IBk", weka(new IBk()));
+        testEval("Weka SMO", weka(new SMO()));
+        testEval("Weka HyperPipes", weka(new HyperPipes()));
     }
 
     private void setupData(final String query) {
         /*
-         * Für unser Beispiel hier trainieren und klassifizieren wir mit den
-         * gleichen Dokumenten. Dies ist eine übliche erste Evaluierung von
-         * Klassifikationsverfahren. Wenn wir für unser Szenarion gemischte
-         * Quellen verwenden wollen (z.B. Training mit Bild, Test mit Spiegel,
-         * müssten wir uns darum kümmern die Klassen aufeinander zu mappen um
-         * sinnvolle Ergebnisse zu bekommen)
+         * Statt mit den gleichen Dokumenten zu trainieren und zu
+         * klassifizieren (was die Ergebnisse zu gut aussehen lässt), testen
+         * wir mit Kreuzvalidierung: jedes Dokument wird von einem
+         * Klassifikator klassifiziert, der es im Training nicht gesehen hat.
+         * Wenn wir für unser Szenarion gemischte Quellen verwenden wollen
+         * (z.B. Training mit Bild, Test mit Spiegel, müssten wir uns darum
+         * kümmern die Klassen aufeinander zu mappen um sinnvolle Ergebnisse zu
+         * bekommen)
          */
-        trainingSet = new HashSet<Document>(corpus.getDocumentsForSource(query));
-        testingSet = trainingSet;
-        goldSet = new ArrayList<Document>(testingSet);
+        List<Document> documents = corpus.getDocumentsForSource(query);
+        validation = new CrossValidation(documents, FOLDS, 0);
+        positions = TfIdfFeatures.positions(corpus);
+        vectors = new ConcurrentHashMap<Document, SparseVector>();
     }
 
-    private void testEval(final long start, final String query,
-            final ClassifierStrategy classifier) {
-        System.out.print(classifier + "... ");
-        textClassifier = new TextClassifier(classifier, trainingSet);
-        Map<Document, String> resultClasses = textClassifier
-                .classify(testingSet);
-        Float result = textClassifier.evaluate(resultClasses, goldSet);
+    /* Jeder Fold braucht seine eigene Kopie des Weka-Klassifikators: */
+    private CrossValidation.Factory weka(final Classifier classifier) {
+        return new CrossValidation.Factory() {
+            public ClassifierStrategy create(final Set<Document> trainingSet) {
+                try {
+                    return new WekaAdapter(Classifier.makeCopy(classifier),
+                            trainingSet, corpus, positions, vectors);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+    }
+
+    private void testEval(final String name,
+            final CrossValidation.Factory factory) {
+        Evaluation result = validation.evaluate(factory);
         Assert.assertTrue("Result must not be null", result != null);
-        long ns = System.nanoTime() - start;
-        double ms = ns / 1000d / 1000d;
-        double s = ms / 1000d;
-        System.out.println(String.format(
-                "Correct: %1.2f (%1.2f%%); Time: %1.2f ms (%1.2f s.)", result,
-                result * 100, ms, s));
+        System.out.println(name + ": " + result);
     }
 
     private void printInfo(final String query) {
         System.out.println("Classification of documents from: " + query
                 + "... ");
         System.out.println(LINE);
-        System.out.println("Training set: " + trainingSet.size());
-        System.out.println("Testing set: " + testingSet.size());
-        System.out.println("Gold set: " + goldSet.size());
+        System.out.println(validation);
         System.out.println(LINE);
     }
 }
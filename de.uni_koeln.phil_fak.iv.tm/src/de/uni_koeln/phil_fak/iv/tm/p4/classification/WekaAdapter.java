@@ -19,20 +19,36 @@
  */
 package de.uni_koeln.phil_fak.iv.tm.p4.classification;
 
+import java.io.ByteArrayInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 
 import weka.classifiers.Classifier;
+import weka.classifiers.UpdateableClassifier;
 import weka.core.Attribute;
 import weka.core.FastVector;
 import weka.core.Instance;
 import weka.core.Instances;
-import de.uni_koeln.phil_fak.iv.ir.p5.features.FeatureVector;
+import weka.core.SparseInstance;
+import de.uni_koeln.phil_fak.iv.ir.p5.features.FeatureSelection;
+import de.uni_koeln.phil_fak.iv.ir.p5.features.SparseVector;
+import de.uni_koeln.phil_fak.iv.ir.p5.features.TfIdfFeatures;
 import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus;
 import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document;
+import de.uni_koeln.phil_fak.iv.tm.p3.classification.ClassifierModels;
 import de.uni_koeln.phil_fak.iv.tm.p3.classification.ClassifierStrategy;
+import de.uni_koeln.phil_fak.iv.tm.p3.classification.ParallelClassification;
 
 /**
  * Adapter for Weka classifiers.
@@ -46,6 +62,10 @@ public class WekaAdapter implements ClassifierStrategy {
     private Instances trainingSet;
     private Corpus corpus;
     private boolean classifierBuilt = false;
+    /* Die Position jedes Terms im Merkmalsvektor, einmal berechnet: */
+    private Map<String, Integer> positions;
+    /* Bereits berechnete Vektoren, evtl. mit anderen Adaptern geteilt: */
+    private ConcurrentMap<Document, SparseVector> vectors;
 
     /**
      * @param wekaClassifier The Weka classifier to adapt
@@ -54,17 +74,54 @@ public class WekaAdapter implements ClassifierStrategy {
      */
     public WekaAdapter(Classifier wekaClassifier,
             Set<Document> trainingData, Corpus corpus) {
+        this(wekaClassifier, trainingData, corpus, TfIdfFeatures
+                .positions(corpus));
+    }
+
+    /**
+     * @param wekaClassifier The Weka classifier to adapt
+     * @param trainingData The training documents
+     * @param corpus The corpus
+     * @param positions The terms to use as features and their positions in
+     *            the feature vectors, e.g. from a {@link FeatureSelection}
+     */
+    public WekaAdapter(Classifier wekaClassifier,
+            Set<Document> trainingData, Corpus corpus,
+            Map<String, Integer> positions) {
         this.wekaClassifier = wekaClassifier;
         this.corpus = corpus;
         // Fuer Weka brauchen wir jetzt ein paar Sachen:
-        // 1. Die Groesse des Merkmalsvektors:
-        FeatureVector vector = trainingData.iterator().next().getVector(corpus);
-        this.vectorSize = vector.getValues().size();
+        // 1. Die Groesse des Merkmalsvektors (und die Position jedes Terms):
+        this.positions = positions;
+        this.vectorSize = positions.size();
         // 2. Die moegliche Klassen:
         this.classes = collectClasses(trainingData);
-        // 3. Die Struktur der Trainingsdaten
+        // 3. Die Struktur der Trainingsdaten (die wir auch bei der
+        // Klassifikation als Struktur fuer die Instanzen verwenden)
         this.trainingSet = initTraininSet(trainingData);
     }
+
+    /**
+     * @param wekaClassifier The Weka classifier to adapt
+     * @param trainingData The training documents
+     * @param corpus The corpus
+     * @param positions The terms to use as features and their positions in
+     *            the feature vectors
+     * @param vectors A cache for the feature vectors of documents, e.g. shared
+     *            by the adapters for the folds of a cross-validation (all
+     *            adapters sharing it must use the same corpus and positions)
+     */
+    public WekaAdapter(Classifier wekaClassifier,
+            Set<Document> trainingData, Corpus corpus,
+            Map<String, Integer> positions,
+            ConcurrentMap<Document, SparseVector> vectors) {
+        this(wekaClassifier, trainingData, corpus, positions);
+        this.vectors = vectors;
+    }
+
+    private WekaAdapter(Corpus corpus) {
+        this.corpus = corpus;
+    }
     
     private List<String> collectClasses(Set<Document> trainingData) {
         Set<String> classes = new HashSet<String>();
@@ -119,32 +176,69 @@ public class WekaAdapter implements ClassifierStrategy {
      *      java.lang.String)
      */
     @Override public ClassifierStrategy train(Document document, String label) {
-        trainingSet.add(instance(document, label));
-        classifierBuilt = false;
+        Instance instance = instance(document, label);
+        /*
+         * Ist der Klassifikator schon gebaut und kann er inkrementell lernen,
+         * lernen wir nur die neue Instanz, statt beim nächsten classify alles
+         * neu zu bauen:
+         */
+        if (classifierBuilt && wekaClassifier instanceof UpdateableClassifier) {
+            try {
+                ((UpdateableClassifier) wekaClassifier)
+                        .updateClassifier(instance);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        } else {
+            trainingSet.add(instance);
+            classifierBuilt = false;
+        }
         return this;
     }
-    
+
+    /*
+     * Statt eines Arrays mit einem Wert für jeden Term im Vokabular (fast alle
+     * 0) erstellen wir dünn besetzte Instanzen, die nur die Werte der Terme im
+     * Dokument enthalten, direkt aus den Termen des Dokuments berechnet.
+     */
     private Instance instance(Document document, String label) {
-        List<Float> values = document.getVector(corpus).getValues();
-        /* Die Instanz enthält alle Merkmale plus die Klasse: */
-        double[] vals = new double[values.size() + 1];
-        for (int i = 0; i < values.size(); i++) {
-            vals[i + 1] = values.get(i);
+        SparseVector vector = vectors == null ? null : vectors.get(document);
+        if (vector == null) {
+            vector = new TfIdfFeatures(document, corpus)
+                    .sparseVector(positions);
+            if (vectors != null) {
+                vectors.putIfAbsent(document, vector);
+            }
+        }
+        int[] terms = vector.getIndices();
+        float[] weights = vector.getValues();
+        /* Die Instanz enthält alle Merkmale plus die Klasse an Stelle 0: */
+        int[] indices = new int[terms.length + 1];
+        double[] vals = new double[terms.length + 1];
+        for (int i = 0; i < terms.length; i++) {
+            indices[i + 1] = terms[i] + 1;
+            vals[i + 1] = weights[i];
         }
-        Instance instance = new Instance(1, vals);
-        /*
-         * Und muss erfahren, was die Werte bedeuten, was wir für unser
-         * Trainingsset beschrieben hatten:
-         */
-        instance.setDataset(trainingSet);
         /*
          * Beim Training haben wir Instanzen mit vorhandenem Klassenlabel, bei
          * der Klassifikation ist die Klasse unbekannt:
          */
         if (label == null) {
-            instance.setClassMissing(); // during classification
-        } else
-            instance.setClassValue(label); // during training
+            vals[0] = Instance.missingValue(); // during classification
+        } else {
+            int classValue = trainingSet.classAttribute().indexOfValue(label);
+            if (classValue < 0) {
+                throw new IllegalArgumentException("Unknown class: " + label);
+            }
+            vals[0] = classValue; // during training
+        }
+        Instance instance = new SparseInstance(1, vals, indices,
+                vectorSize + 1);
+        /*
+         * Und muss erfahren, was die Werte bedeuten, was wir für unser
+         * Trainingsset beschrieben hatten:
+         */
+        instance.setDataset(trainingSet);
         return instance;
     }
     
@@ -153,14 +247,7 @@ public class WekaAdapter implements ClassifierStrategy {
      * @see de.uni_koeln.phil_fak.iv.tm.p3.ClassifierStrategy#classify(de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document)
      */
     @Override public String classify(Document document) {
-        if (!classifierBuilt) {
-            try {
-                wekaClassifier.buildClassifier(trainingSet);
-                classifierBuilt = true;
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        }
+        build();
         try {
             Instance instance = instance(document, null);
             int i = (int) wekaClassifier.classifyInstance(instance);
@@ -173,6 +260,131 @@ public class WekaAdapter implements ClassifierStrategy {
         return null;
     }
 
+    /*
+     * Weka-Klassifikatoren sind im Allgemeinen nicht thread-sicher, aber das
+     * Aufwändige ist oft das Erstellen der Instanzen (die Tf-Idf-Vektoren):
+     * das machen wir parallel, und klassifizieren dann nacheinander mit dem
+     * nur einmal gebauten Klassifikator.
+     */
+    /**
+     * {@inheritDoc}
+     * @see de.uni_koeln.phil_fak.iv.tm.p3.classification.ClassifierStrategy#classifyAll(java.util.List)
+     */
+    @Override public String[] classifyAll(
+            final List<? extends Document> documents) {
+        build();
+        final Instance[] instances = new Instance[documents.size()];
+        ParallelClassification.forEachBlock(documents.size(), Runtime
+                .getRuntime().availableProcessors(),
+                new ParallelClassification.Block() {
+                    public void run(final int from, final int to) {
+                        for (int i = from; i < to; i++) {
+                            instances[i] = instance(documents.get(i), null);
+                        }
+                    }
+                });
+        String[] result = new String[instances.length];
+        for (int i = 0; i < instances.length; i++) {
+            try {
+                result[i] = classes.get((int) wekaClassifier
+                        .classifyInstance(instances[i]));
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see de.uni_koeln.phil_fak.iv.tm.p3.classification.ClassifierStrategy#isThreadSafe()
+     */
+    @Override public boolean isThreadSafe() {
+        return false;
+    }
+
+    private void build() {
+        if (!classifierBuilt) {
+            try {
+                wekaClassifier.buildClassifier(trainingSet);
+                classifierBuilt = true;
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /*
+     * Weka-Klassifikatoren sind serialisierbar, wir speichern sie (gebaut)
+     * mit Java-Serialisierung, zusammen mit den Trainingsinstanzen (für
+     * Klassifikatoren, die nicht inkrementell lernen und neu gebaut werden)
+     * und den Merkmalspositionen, hinter dem Kopf aus ClassifierModels.
+     */
+    /**
+     * Saves the Weka classifier (built with the training data so far), the
+     * training instances and the feature positions.
+     * @param file The file to write the model to (replaced if it exists)
+     */
+    public void write(File file) {
+        build();
+        try {
+            DataOutputStream data = ClassifierModels.create(file, getClass()
+                    .getSimpleName());
+            ObjectOutputStream out = new ObjectOutputStream(data);
+            try {
+                out.writeObject(wekaClassifier);
+                out.writeObject(trainingSet);
+                out.writeObject(new ArrayList<String>(classes));
+                out.writeObject(new HashMap<String, Integer>(positions));
+                out.writeBoolean(classifierBuilt);
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write model to "
+                    + file, e);
+        }
+        ClassifierModels.commit(file);
+    }
+
+    /**
+     * @param file The file to read the model from, as written by
+     *            {@link #write(File)}
+     * @param corpus The corpus to compute the feature vectors of new documents
+     *            with
+     * @return The adapter, ready to classify and to continue training
+     */
+    @SuppressWarnings("unchecked")
+    public static WekaAdapter read(File file, Corpus corpus) {
+        ByteBuffer buffer = ClassifierModels.map(file);
+        String type = ClassifierModels.readHeader(buffer, file);
+        if (!type.equals(WekaAdapter.class.getSimpleName())) {
+            throw new IllegalStateException(String.format(
+                    "Not a %s model but %s: %s", WekaAdapter.class
+                            .getSimpleName(), type, file));
+        }
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        WekaAdapter result = new WekaAdapter(corpus);
+        try {
+            ObjectInputStream in = new ObjectInputStream(
+                    new ByteArrayInputStream(bytes));
+            result.wekaClassifier = (Classifier) in.readObject();
+            result.trainingSet = (Instances) in.readObject();
+            result.classes = (List<String>) in.readObject();
+            result.positions = (Map<String, Integer>) in.readObject();
+            result.classifierBuilt = in.readBoolean();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read model at " + file,
+                    e);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Could not read model at " + file,
+                    e);
+        }
+        result.vectorSize = result.positions.size();
+        return result;
+    }
+
     public String toString() {
         return String.format("%s for %s", getClass().getSimpleName(),
                 wekaClassifier.getClass().getSimpleName());
@@ -33,6 +33,7 @@ import de.uni_koeln.phil_fak.iv.tm.p1.corpus.CorpusDatabase;
 import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document;
 import de.uni_koeln.phil_fak.iv.tm.p5.clustering.Cluster;
 import de.uni_koeln.phil_fak.iv.tm.p5.clustering.ClusterAnalysis;
+import de.uni_koeln.phil_fak.iv.tm.p5.clustering.StreamingClustering;
 
 /*
  * Text-Mining (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-textmining.html),
@@ -94,6 +95,26 @@ public class Praxis5 {
         Assert.assertNotNull(clustersForEachK);
     }
 
+    @Test
+    public void clusterStreaming() {
+        /*
+         * Für ein wachsendes Korpus: wer ein Dokument ins Korpus schreibt
+         * (etwa ein Crawler für jede neue Seite), gibt es danach auch dem
+         * Clustering, das es mit dem nächsten Block von 10 Dokumenten
+         * zuordnet. Unsere Dokumente sind schon im Korpus, wir tun so, als
+         * kämen sie gerade erst dazu.
+         */
+        StreamingClustering clustering =
+                new StreamingClustering(corpus, CLUSTER_START, 10);
+        for (Document document : documents) {
+            clustering.add(document);
+        }
+        clustering.flush();
+        List<Cluster> clusters = clustering.getClusters();
+        System.out.println(clusters);
+        Assert.assertFalse(clusters.isEmpty());
+    }
+
     @After
     public void after() {
         /* Hier (nach jedem Test) schliessen. */
@@ -22,8 +22,10 @@ package de.uni_koeln.phil_fak.iv.tm.p5.clustering;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
 
+import de.uni_koeln.phil_fak.iv.ir.p5.features.NeighbourGraph;
 import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus;
 import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document;
 
@@ -42,6 +44,18 @@ public final class Cluster implements Iterable<Document> {
         this.documents.add(document);
     }
 
+    /**
+     * @param corpus The corpus the documents belong to
+     * @param medoid The medoid of the cluster
+     * @param members The documents in the cluster, including the medoid
+     */
+    Cluster(final Corpus corpus, final Document medoid,
+            final List<Document> members) {
+        this.corpus = corpus;
+        this.medoid = medoid;
+        this.documents.addAll(members);
+    }
+
     /**
      * @return The medoid of this cluster, i.e. the document with the highest
      *         similarity to the other documents, the most central member of the
@@ -141,4 +155,48 @@ public final class Cluster implements Iterable<Document> {
             throw new IllegalStateException("No max found!");
         }
     }
+
+    /*
+     * Statt alle Paare im Cluster zu vergleichen (quadratisch in der Größe
+     * des Clusters, und für jedes Paar zwei Vektoren), nehmen wir die
+     * Ähnlichkeiten aus dem Graphen der ähnlichsten Nachbarn jedes Dokuments
+     * (siehe AllPairsSimilarity), der nur einmal für alle Dokumente berechnet
+     * wird. Ähnlichkeiten zu Dokumenten, die keine Nachbarn sind, zählen als
+     * 0: der Medoid ist so das Dokument mit den meisten und ähnlichsten
+     * Nachbarn im Cluster.
+     */
+    /**
+     * Recompute the medoid of this cluster from the similarities of its
+     * members to their nearest neighbours
+     * @param graph The neighbour graph of all clustered documents
+     * @param positions The position of each clustered document in the graph
+     */
+    void recomputeMedoid(final NeighbourGraph graph,
+            final Map<Document, Integer> positions) {
+        boolean[] members = new boolean[graph.size()];
+        for (Document document : documents) {
+            members[positions.get(document)] = true;
+        }
+        float max = Float.NEGATIVE_INFINITY;
+        Document best = null;
+        for (Document document : documents) {
+            int i = positions.get(document);
+            int[] neighbours = graph.getNeighbours(i);
+            float[] similarities = graph.getSimilarities(i);
+            float sum = 0;
+            for (int n = 0; n < neighbours.length; n++) {
+                if (members[neighbours[n]]) {
+                    sum += similarities[n];
+                }
+            }
+            if (sum > max) {
+                max = sum;
+                best = document;
+            }
+        }
+        if (best == null) {
+            throw new IllegalStateException("No max found!");
+        }
+        this.medoid = best;
+    }
 }
@@ -19,18 +19,20 @@
  */
 package de.uni_koeln.phil_fak.iv.tm.p5.clustering;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 
+import de.uni_koeln.phil_fak.iv.ir.p5.features.AllPairsSimilarity;
+import de.uni_koeln.phil_fak.iv.ir.p5.features.NeighbourGraph;
 import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus;
 import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document;
+import de.uni_koeln.phil_fak.iv.tm.p3.classification.ParallelClassification;
 
 /*
  * Einfaches k-Means-Clustering über Tf-Idf und Kosinusähnlichkeit. Um die
@@ -44,9 +46,16 @@ import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document;
  */
 public final class ClusterAnalysis {
 
+    private static final int NEIGHBOURS = 20;
+    private static final float THRESHOLD = 0.05f;
+
     private Corpus corpus;
     private List<Cluster> clusters;
     private List<Document> documents;
+    /* Für die Medoide: die ähnlichsten Nachbarn jedes Dokuments */
+    private int neighbours = NEIGHBOURS;
+    private NeighbourGraph graph;
+    private Map<Document, Integer> positions;
 
     /**
      * K-Means clustering of the given documents, as part of the given corpus
@@ -69,6 +78,33 @@ public final class ClusterAnalysis {
         this.documents = documents;
     }
 
+    /**
+     * @param neighbours The number of most similar documents to keep for each
+     *            document for recomputing the medoids in
+     *            {@link #analyse(int, int)}, or 0 to compare all pairs of
+     *            documents in each cluster (default: 20)
+     */
+    public void setNeighbours(final int neighbours) {
+        this.neighbours = neighbours;
+    }
+
+    /*
+     * Der Graph hängt nur von den Dokumenten ab, nicht von k oder den
+     * Clustern; wir berechnen ihn einmal (vor dem Mischen) und merken uns
+     * die Position jedes Dokuments darin. Gleiche Dokumente können mehrfach
+     * vorkommen, daher zählt das Objekt, nicht equals.
+     */
+    private void neighbours() {
+        if (neighbours > 0 && (graph == null || graph.getK() != neighbours)) {
+            graph = AllPairsSimilarity.of(corpus, documents).neighbours(
+                    neighbours, THRESHOLD);
+            positions = new IdentityHashMap<Document, Integer>();
+            for (int i = 0; i < documents.size(); i++) {
+                positions.put(documents.get(i), i);
+            }
+        }
+    }
+
     /**
      * Single clustering into k clusters.
      * @param k The number of clusters to partition the documents into
@@ -76,6 +112,7 @@ public final class ClusterAnalysis {
      * @return The k clusters
      */
     public List<Cluster> analyse(final int k, final int iterations) {
+        neighbours();
         // Initiale Mittelpunkte: k zufällige Dokumente
         Collections.shuffle(documents);
         for (int i = 0; i < k; i++) {
@@ -105,6 +142,68 @@ public final class ClusterAnalysis {
         return this.clusters;
     }
 
+    /*
+     * Dasselbe mit der KMeans-Klasse: parallel, auf Arrays, mit k-means++ als
+     * Start und Abbruch, sobald sich nichts mehr ändert. Das Ergebnis packen
+     * wir in Cluster-Objekte, so dass Purity und DOT-Ausgabe wie oben
+     * funktionieren.
+     */
+    /**
+     * Single clustering into k clusters using {@link KMeans}.
+     * @param k The number of clusters to partition the documents into
+     * @param center The kind of cluster centers to use
+     * @param maxIterations The maximum number of iterations
+     * @return The k clusters
+     */
+    public List<Cluster> analyse(final int k, final KMeans.Center center,
+            final int maxIterations) {
+        Partition partition = KMeans.of(corpus, documents).cluster(k, center,
+                maxIterations, System.currentTimeMillis());
+        this.clusters = clusters(partition);
+        System.out.println(String.format("%s, purity for k=%s: %1.2f, clusters: %s", partition,
+                k, getPurity(), toString()));
+        return this.clusters;
+    }
+
+    /*
+     * Hierarchisch: erst der ganze Baum (siehe HierarchicalClustering), dann
+     * schneiden wir ihn so, dass k Cluster übrig bleiben.
+     */
+    /**
+     * Hierarchical clustering, cut into k clusters.
+     * @param k The number of clusters to cut the dendrogram into
+     * @param linkage The distance between clusters to use
+     * @return The k clusters
+     */
+    public List<Cluster> analyse(final int k, final HierarchicalClustering.Linkage linkage) {
+        HierarchicalClustering clustering = HierarchicalClustering.of(corpus, documents);
+        Dendrogram dendrogram = clustering.cluster(linkage);
+        this.clusters = clusters(clustering.partition(dendrogram, k));
+        System.out.println(String.format("%s, purity for k=%s: %1.2f, clusters: %s", dendrogram,
+                k, getPurity(), toString()));
+        List<String> topics = new ArrayList<String>();
+        for (Document document : documents) {
+            topics.add(document.getTopic());
+        }
+        System.out.println(dendrogram.toDot(topics));
+        return this.clusters;
+    }
+
+    List<Cluster> clusters(final Partition partition) {
+        List<Cluster> result = new CopyOnWriteArrayList<Cluster>();
+        for (int c = 0; c < partition.getK(); c++) {
+            int representative = partition.getRepresentative(c);
+            if (representative >= 0) {
+                List<Document> members = new ArrayList<Document>();
+                for (int i : partition.getMembers(c)) {
+                    members.add(documents.get(i));
+                }
+                result.add(new Cluster(corpus, documents.get(representative), members));
+            }
+        }
+        return result;
+    }
+
     private List<Cluster> recompute(final List<Cluster> clusters) {
         List<Cluster> result = new CopyOnWriteArrayList<Cluster>(clusters);
         /* Wir betrachten jedes Dokument in jedem Cluster: */
@@ -147,7 +246,11 @@ public final class ClusterAnalysis {
              * Nach der Neuberechnung des aktuellen Clusters setzen wir seinen
              * Medoid neu fest:
              */
-            currentCluster.recomputeMedoid();
+            if (neighbours > 0) {
+                currentCluster.recomputeMedoid(graph, positions);
+            } else {
+                currentCluster.recomputeMedoid();
+            }
         }
         return result;
     }
@@ -163,38 +266,70 @@ public final class ClusterAnalysis {
      */
     public List<List<Cluster>> analyse(final int clusterStart, final int clusterEnd,
             final int iterations) {
-        final List<List<Cluster>> clustersForKs = new CopyOnWriteArrayList<List<Cluster>>();
         /*
          * Wir lassen die verschiedenen, völlig unabhängigen Versuchsaufbauten,
          * nämlich mit unterschiedlicher Clusterzahl (und leicht einbaubar
-         * unterschiedlich vielen Iterationen) parallel laufen. Hier können wir
-         * parallele Durchführung der verschiedenen Aufbauten einstellen. Ist
-         * auf 1 gestellt um einfacher die Ausgabe interpretieren zu können und
-         * fürs Debuggen. In Produktionacode würde man so einen Wert z.B. in
-         * eine Properties-Datei aulagern.
+         * unterschiedlich vielen Iterationen) parallel laufen. Damit sie
+         * wirklich unabhängig sind, bekommt jeder seine eigene Kopie der
+         * Dokumentliste (analyse mischt sie) und schreibt nur in seine eigene
+         * ClusterAnalysis; die Zahl der Threads ist durch die Zahl der
+         * Prozessoren begrenzt.
          */
-        ExecutorService exec = Executors.newFixedThreadPool(clusterEnd - clusterStart); // threads
-        for (int i = clusterStart; i <= clusterEnd; i++) {
-            final int k = i;
-            exec.execute(new Runnable() {
-                public void run() {
-                    ClusterAnalysis c = new ClusterAnalysis(corpus, documents);
-                    clusters = c.analyse(k, iterations);
-                    /* Wir sammeln die Ergbeniss für jedes k: */
-                    clustersForKs.add(clusters);
+        int threads = Math.min(clusterEnd - clusterStart + 1, Runtime
+                .getRuntime().availableProcessors());
+        /* Den Graphen teilen sich alle, er ändert sich nicht mehr: */
+        neighbours();
+        /*
+         * Jedes k ist ein Block (siehe ParallelClassification#forEachBlock,
+         * dort sind ExecutorService und Fehlerbehandlung), und schreibt sein
+         * Ergebnis an seine Stelle, so bekommen wir die Ergebnisse in der
+         * Reihenfolge der k:
+         */
+        final List<List<Cluster>> clustersForKs = new ArrayList<List<Cluster>>(
+                Collections.nCopies(clusterEnd - clusterStart + 1,
+                        (List<Cluster>) null));
+        ParallelClassification.forEachBlock(clustersForKs.size(), Math.max(1,
+                threads), 1, new ParallelClassification.Block() {
+            public void run(final int from, final int to) {
+                for (int i = from; i < to; i++) {
+                    ClusterAnalysis c = new ClusterAnalysis(corpus,
+                            new ArrayList<Document>(documents));
+                    c.neighbours = neighbours;
+                    c.graph = graph;
+                    c.positions = positions;
+                    clustersForKs.set(i, c.analyse(clusterStart + i,
+                            iterations));
                 }
-            });
-        }
-        exec.shutdown();
-        try {
-            /** Basically no timeout */
-            exec.awaitTermination(Integer.MAX_VALUE, TimeUnit.SECONDS);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
+            }
+        });
         return clustersForKs;
     }
 
+    /*
+     * Dasselbe mit KSweep: Vektoren und Ähnlichkeiten werden nur einmal
+     * berechnet, und wir bekommen für jedes k Maße, um das beste zu wählen.
+     */
+    /**
+     * Multiple clusterings for different values of k using {@link KSweep}.
+     * @param clusterStart The minimum k cluster count
+     * @param clusterEnd The maximum k cluster count
+     * @param center The kind of cluster centers to use
+     * @param maxIterations The maximum number of iterations for each k
+     * @return The clusters for the k with the best silhouette
+     */
+    public List<Cluster> analyse(final int clusterStart, final int clusterEnd,
+            final KMeans.Center center, final int maxIterations) {
+        List<KSweep.Result> results = KSweep.of(corpus, documents).sweep(clusterStart,
+                clusterEnd, center, maxIterations, System.currentTimeMillis());
+        for (KSweep.Result result : results) {
+            System.out.println(result);
+        }
+        KSweep.Result best = KSweep.best(results);
+        this.clusters = clusters(best.getPartition());
+        System.out.println(String.format("Best: %s, clusters: %s", best, toString()));
+        return this.clusters;
+    }
+
     /**
      * @return The purity of the clusters
      */
@@ -0,0 +1,81 @@
+/**
+ * Material for the course 'Text-Mining', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-textmining.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.tm.p5.clustering;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.uni_koeln.phil_fak.iv.ir.p2.index.DocumentIndex;
+import de.uni_koeln.phil_fak.iv.ir.p5.features.AllPairsSimilarity;
+import de.uni_koeln.phil_fak.iv.ir.p5.features.NeighbourGraph;
+import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus;
+import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document;
+import de.uni_koeln.phil_fak.iv.tm.p1.corpus.SampleDocuments;
+
+/*
+ * Tests für den Medoid über den Nachbarschaftsgraphen: behalten wir für jedes
+ * Dokument alle anderen als Nachbarn, muss das derselbe Medoid sein wie beim
+ * Vergleich aller Paare im Cluster.
+ */
+/**
+ * Tests for recomputing cluster medoids from a neighbour graph.
+ * @author Fabian Steeg (fsteeg)
+ */
+public class ClusterPraxis {
+    private List<Document> documents;
+    private Corpus corpus;
+    private Map<Document, Integer> positions;
+
+    @Before
+    public void before() {
+        documents = SampleDocuments.create(40, 4, "politik", "sport",
+                "kultur");
+        corpus = new DocumentIndex(documents);
+        positions = new IdentityHashMap<Document, Integer>();
+        for (int i = 0; i < documents.size(); i++) {
+            positions.put(documents.get(i), i);
+        }
+    }
+
+    @Test
+    public void completeGraph() {
+        NeighbourGraph graph = AllPairsSimilarity.of(corpus, documents)
+                .neighbours(documents.size() - 1, 1E-6f);
+        /* Der ganze Korpus und die Dokumente eines Themas als Cluster: */
+        assertMedoid(graph, documents);
+        assertMedoid(graph, corpus.getDocumentsForTopic("sport"));
+    }
+
+    private void assertMedoid(final NeighbourGraph graph,
+            final List<Document> members) {
+        Cluster exact = new Cluster(corpus, members.get(0), members);
+        exact.recomputeMedoid();
+        Cluster approximate = new Cluster(corpus, members.get(0), members);
+        approximate.recomputeMedoid(graph, positions);
+        Assert.assertNotSame(members.get(0), exact.getMedoid());
+        Assert.assertSame(exact.getMedoid(), approximate.getMedoid());
+    }
+}
@@ -0,0 +1,176 @@
+/**
+ * Material for the course 'Text-Mining', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-textmining.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.tm.p5.clustering;
+
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Das Ergebnis eines hierarchischen Clusterings: die Folge der
+ * Verschmelzungen, sortiert nach ihrer Distanz. Die Blätter sind die
+ * Nummern 0 bis n-1 (die Positionen der Dokumente), die i-te Verschmelzung
+ * ergibt den Knoten n+i.
+ */
+/**
+ * A binary tree of merges produced by hierarchical agglomerative clustering.
+ * @author Fabian Steeg (fsteeg)
+ */
+public final class Dendrogram {
+
+    private int leaves;
+    private int[] left;
+    private int[] right;
+    private float[] heights;
+    private int[] sizes;
+
+    Dendrogram(final int leaves, final int[] left, final int[] right,
+            final float[] heights, final int[] sizes) {
+        this.leaves = leaves;
+        this.left = left;
+        this.right = right;
+        this.heights = heights;
+        this.sizes = sizes;
+    }
+
+    /** @return The number of clustered items, the leaves of the tree */
+    public int getNumberOfLeaves() {
+        return leaves;
+    }
+
+    /** @return The number of merges, i.e. the number of leaves minus 1 */
+    public int getNumberOfMerges() {
+        return heights.length;
+    }
+
+    /**
+     * @param merge The number of the merge
+     * @return The node merged first in the given merge (a leaf if smaller
+     *         than the number of leaves)
+     */
+    public int getLeft(final int merge) {
+        return left[merge];
+    }
+
+    /**
+     * @param merge The number of the merge
+     * @return The node merged second in the given merge
+     */
+    public int getRight(final int merge) {
+        return right[merge];
+    }
+
+    /**
+     * @param merge The number of the merge
+     * @return The distance between the merged clusters under the linkage used
+     */
+    public float getHeight(final int merge) {
+        return heights[merge];
+    }
+
+    /**
+     * @param merge The number of the merge
+     * @return The number of leaves in the cluster resulting from the merge
+     */
+    public int getSize(final int merge) {
+        return sizes[merge];
+    }
+
+    /**
+     * @param k The number of clusters
+     * @return The cluster of each leaf after all but the last k - 1 merges,
+     *         clusters numbered in order of their first leaf
+     */
+    public int[] cut(final int k) {
+        if (k < 1 || k > leaves) {
+            throw new IllegalArgumentException(String.format(
+                    "Cannot cut %s leaves into %s clusters", leaves, k));
+        }
+        /* Union-Find über die Blätter, mit den ersten n-k Verschmelzungen: */
+        int[] parents = new int[leaves + heights.length];
+        for (int i = 0; i < parents.length; i++) {
+            parents[i] = i;
+        }
+        for (int m = 0; m < leaves - k; m++) {
+            parents[left[m]] = leaves + m;
+            parents[right[m]] = leaves + m;
+        }
+        int[] ids = new int[parents.length];
+        Arrays.fill(ids, -1);
+        int[] assignments = new int[leaves];
+        int next = 0;
+        for (int i = 0; i < leaves; i++) {
+            int root = root(parents, i);
+            if (ids[root] < 0) {
+                ids[root] = next++;
+            }
+            assignments[i] = ids[root];
+        }
+        return assignments;
+    }
+
+    private static int root(final int[] parents, final int node) {
+        int root = node;
+        while (parents[root] != root) {
+            root = parents[root];
+        }
+        /* Pfade verkürzen, damit spätere Suchen schnell sind: */
+        int current = node;
+        while (parents[current] != root) {
+            int next = parents[current];
+            parents[current] = root;
+            current = next;
+        }
+        return root;
+    }
+
+    /**
+     * @param labels The labels of the leaves, e.g. the topics of the clustered
+     *            documents
+     * @return A Graphviz DOT represention of the dendrogram
+     */
+    public String toDot(final List<String> labels) {
+        StringBuilder builder = new StringBuilder(String.format(
+                "graph dendrogram { label=\"%s merges\" node[shape=record] "
+                        + "rankdir=TD\n", heights.length));
+        for (int i = 0; i < leaves; i++) {
+            builder.append(String.format("\t%s[label = \"%s\"]\n", i, labels
+                    .get(i)));
+        }
+        for (int m = 0; m < heights.length; m++) {
+            int node = leaves + m;
+            builder.append(String.format("\t%s[label = \"{%.3f|%s}\"]\n",
+                    node, heights[m], sizes[m]));
+            builder.append(String.format("\t%s -- %s\n", node, left[m]));
+            builder.append(String.format("\t%s -- %s\n", node, right[m]));
+        }
+        return builder.append("}\n").toString();
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("%s of %s leaves, last merge at %.3f", getClass()
+                .getSimpleName(), leaves, heights.length == 0 ? 0
+                : heights[heights.length - 1]);
+    }
+}
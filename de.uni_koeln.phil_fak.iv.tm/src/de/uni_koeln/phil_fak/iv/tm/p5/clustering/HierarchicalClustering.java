@@ -0,0 +1,340 @@
+/**
+ * Material for the course 'Text-Mining', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-textmining.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.tm.p5.clustering;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import de.uni_koeln.phil_fak.iv.ir.p5.features.SparseVector;
+import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus;
+import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document;
+
+/*
+ * Hierarchisches agglomeratives Clustering: am Anfang ist jedes Dokument ein
+ * Cluster, dann verschmelzen wir immer die zwei nächsten Cluster, bis nur
+ * einer übrig ist. Naiv (immer das global nächste Paar suchen) kostet das
+ * n^3. Mit der Nächste-Nachbarn-Kette geht es in n^2: wir folgen vom einem
+ * Cluster zu seinem nächsten Nachbarn, von dort zu dessen nächstem Nachbarn
+ * usw., bis zwei Cluster gegenseitig nächste Nachbarn sind; die verschmelzen
+ * wir, und der Rest der Kette bleibt gültig. Das funktioniert für alle
+ * Distanzen zwischen Clustern, die durch Verschmelzen nicht kleiner werden
+ * können (single, complete, average und Ward). Die Distanzen stehen als
+ * Dreiecksmatrix in einem float-Array und werden beim Verschmelzen mit der
+ * Lance-Williams-Formel an Ort und Stelle aktualisiert.
+ */
+/**
+ * Hierarchical agglomerative clustering using the nearest-neighbour chain
+ * algorithm, in O(n^2) time and memory.
+ * @author Fabian Steeg (fsteeg)
+ */
+public final class HierarchicalClustering {
+
+    /** The distance between two clusters. */
+    public enum Linkage {
+        /** The distance of the closest members. */
+        SINGLE {
+            @Override
+            float update(final float ik, final float jk, final float ij,
+                    final int i, final int j, final int k) {
+                return Math.min(ik, jk);
+            }
+        },
+        /** The distance of the most distant members. */
+        COMPLETE {
+            @Override
+            float update(final float ik, final float jk, final float ij,
+                    final int i, final int j, final int k) {
+                return Math.max(ik, jk);
+            }
+        },
+        /** The mean distance of all pairs of members. */
+        AVERAGE {
+            @Override
+            float update(final float ik, final float jk, final float ij,
+                    final int i, final int j, final int k) {
+                return (i * ik + j * jk) / (i + j);
+            }
+        },
+        /** The increase in the sum of squared distances to the means. */
+        WARD {
+            @Override
+            float update(final float ik, final float jk, final float ij,
+                    final int i, final int j, final int k) {
+                return ((i + k) * ik + (j + k) * jk - k * ij) / (i + j + k);
+            }
+        };
+
+        /*
+         * Lance-Williams: die Distanz des Clusters aus i und j zu k, aus den
+         * bisherigen Distanzen und den Größen der Cluster.
+         */
+        abstract float update(float ik, float jk, float ij, int i, int j,
+                int k);
+    }
+
+    private SparseVector[] vectors;
+    private int threads;
+
+    /**
+     * @param vectors The vectors to cluster
+     * @param threads The number of threads to use for computing the distances
+     */
+    public HierarchicalClustering(final List<SparseVector> vectors,
+            final int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException(
+                    "Number of threads must be positive, not: " + threads);
+        }
+        this.threads = threads;
+        this.vectors = new SparseVector[vectors.size()];
+        for (int i = 0; i < this.vectors.length; i++) {
+            this.vectors[i] = vectors.get(i).normalized();
+        }
+    }
+
+    /**
+     * @param vectors The vectors to cluster
+     */
+    public HierarchicalClustering(final List<SparseVector> vectors) {
+        this(vectors, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param corpus The corpus the documents are part of
+     * @param documents The documents to cluster
+     * @return A clustering of the TF-IDF vectors of the documents, in the
+     *         order of the given documents
+     */
+    public static HierarchicalClustering of(final Corpus corpus,
+            final List<? extends Document> documents) {
+        List<SparseVector> vectors = new ArrayList<SparseVector>(documents
+                .size());
+        for (Document document : documents) {
+            vectors.add(SparseVector.of(document.getVector(corpus)));
+        }
+        return new HierarchicalClustering(vectors);
+    }
+
+    /**
+     * @param linkage The distance between clusters to use
+     * @return The dendrogram of all merges, from the closest to the most
+     *         distant clusters
+     */
+    public Dendrogram cluster(final Linkage linkage) {
+        int n = vectors.length;
+        if (n == 0) {
+            throw new IllegalStateException("Nothing to cluster");
+        }
+        float[] distances = distances(linkage == Linkage.WARD ? 2 : 1);
+        boolean[] active = new boolean[n];
+        Arrays.fill(active, true);
+        int[] sizes = new int[n];
+        Arrays.fill(sizes, 1);
+        /* Die Verschmelzungen, über das jeweils erste Blatt der Cluster: */
+        int[] first = new int[n - 1];
+        int[] second = new int[n - 1];
+        float[] heights = new float[n - 1];
+        int[] chain = new int[n];
+        int length = 0;
+        for (int merge = 0; merge < n - 1; merge++) {
+            if (length == 0) {
+                chain[length++] = firstActive(active);
+            }
+            while (true) {
+                int a = chain[length - 1];
+                /*
+                 * Bei gleichen Distanzen gewinnt der Vorgänger in der Kette,
+                 * sonst könnte sie im Kreis laufen:
+                 */
+                int b = length > 1 ? chain[length - 2] : -1;
+                float min = b < 0 ? Float.POSITIVE_INFINITY
+                        : distances[TriangularMatrix.index(a, b, n)];
+                for (int c = 0; c < n; c++) {
+                    if (active[c] && c != a) {
+                        float d = distances[TriangularMatrix.index(a, c, n)];
+                        if (d < min) {
+                            min = d;
+                            b = c;
+                        }
+                    }
+                }
+                if (length > 1 && b == chain[length - 2]) {
+                    length -= 2;
+                    first[merge] = Math.min(a, b);
+                    second[merge] = Math.max(a, b);
+                    heights[merge] = min;
+                    merge(linkage, distances, active, sizes, first[merge],
+                            second[merge]);
+                    break;
+                }
+                chain[length++] = b;
+            }
+        }
+        return dendrogram(first, second, heights);
+    }
+
+    /*
+     * Der verschmolzene Cluster bleibt an der Stelle von i, j fällt weg.
+     */
+    private void merge(final Linkage linkage, final float[] distances,
+            final boolean[] active, final int[] sizes, final int i,
+            final int j) {
+        int n = vectors.length;
+        float ij = distances[TriangularMatrix.index(i, j, n)];
+        for (int k = 0; k < n; k++) {
+            if (active[k] && k != i && k != j) {
+                int ik = TriangularMatrix.index(i, k, n);
+                distances[ik] = linkage.update(distances[ik],
+                        distances[TriangularMatrix.index(j, k, n)], ij,
+                        sizes[i], sizes[j], sizes[k]);
+            }
+        }
+        sizes[i] += sizes[j];
+        active[j] = false;
+    }
+
+    private static int firstActive(final boolean[] active) {
+        for (int i = 0; i < active.length; i++) {
+            if (active[i]) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("No active cluster");
+    }
+
+    /*
+     * Die Kette liefert die Verschmelzungen nicht in der Reihenfolge ihrer
+     * Distanz; wir sortieren sie und vergeben dann die Knotennummern neu.
+     */
+    private Dendrogram dendrogram(final int[] first, final int[] second,
+            final float[] heights) {
+        int n = vectors.length;
+        Integer[] order = new Integer[n - 1];
+        for (int m = 0; m < order.length; m++) {
+            order[m] = m;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(final Integer x, final Integer y) {
+                return Float.compare(heights[x], heights[y]);
+            }
+        });
+        int[] parents = new int[n];
+        int[] nodes = new int[n];
+        for (int i = 0; i < n; i++) {
+            parents[i] = i;
+            nodes[i] = i;
+        }
+        int[] left = new int[n - 1];
+        int[] right = new int[n - 1];
+        float[] sorted = new float[n - 1];
+        int[] sizes = new int[n - 1];
+        for (int m = 0; m < order.length; m++) {
+            int a = root(parents, first[order[m]]);
+            int b = root(parents, second[order[m]]);
+            left[m] = Math.min(nodes[a], nodes[b]);
+            right[m] = Math.max(nodes[a], nodes[b]);
+            sorted[m] = heights[order[m]];
+            sizes[m] = size(left[m], sizes) + size(right[m], sizes);
+            parents[b] = a;
+            nodes[a] = n + m;
+        }
+        return new Dendrogram(n, left, right, sorted, sizes);
+    }
+
+    private int size(final int node, final int[] sizes) {
+        return node < vectors.length ? 1 : sizes[node - vectors.length];
+    }
+
+    private static int root(final int[] parents, final int node) {
+        int root = node;
+        while (parents[root] != root) {
+            root = parents[root];
+        }
+        parents[node] = root;
+        return root;
+    }
+
+    /*
+     * Die Distanzen aller Paare als Dreiecksmatrix, zeilenweise parallel
+     * berechnet. Für Ward nehmen wir die quadrierte euklidische Distanz der
+     * normierten Vektoren, das ist 2 * (1 - Kosinus).
+     */
+    private float[] distances(final float factor) {
+        return TriangularMatrix.compute(vectors.length, threads,
+                new TriangularMatrix.Entry() {
+                    public float value(final int i, final int j) {
+                        return factor * (1 - vectors[i].dot(vectors[j]));
+                    }
+                });
+    }
+
+    /**
+     * @param dendrogram A dendrogram of the vectors of this clustering
+     * @param k The number of clusters to cut the dendrogram into
+     * @return The partition into k clusters, with the normalized means as
+     *         centers and the members most similar to them as representatives
+     */
+    public Partition partition(final Dendrogram dendrogram, final int k) {
+        int[] assignments = dendrogram.cut(k);
+        int dimension = 0;
+        for (SparseVector vector : vectors) {
+            dimension = Math.max(dimension, vector.getDimension());
+        }
+        float[][] sums = new float[k][dimension];
+        for (int i = 0; i < vectors.length; i++) {
+            int[] indices = vectors[i].getIndices();
+            float[] values = vectors[i].getValues();
+            for (int j = 0; j < indices.length; j++) {
+                sums[assignments[i]][indices[j]] += values[j];
+            }
+        }
+        SparseVector[] centers = new SparseVector[k];
+        for (int c = 0; c < k; c++) {
+            centers[c] = SparseVector.of(sums[c]).normalized();
+        }
+        int[] representatives = new int[k];
+        Arrays.fill(representatives, -1);
+        float[] best = new float[k];
+        double inertia = 0;
+        for (int i = 0; i < vectors.length; i++) {
+            int c = assignments[i];
+            float similarity = vectors[i].dot(centers[c]);
+            inertia += 1 - similarity;
+            if (representatives[c] < 0 || similarity > best[c]) {
+                representatives[c] = i;
+                best[c] = similarity;
+            }
+        }
+        return new Partition(assignments, centers, representatives,
+                vectors.length - k, true, inertia, 0, 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("%s of %s vectors", getClass().getSimpleName(),
+                vectors.length);
+    }
+}
@@ -0,0 +1,211 @@
+/**
+ * Material for the course 'Text-Mining', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-textmining.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.tm.p5.clustering;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.uni_koeln.phil_fak.iv.ir.p5.features.SparseVector;
+import de.uni_koeln.phil_fak.iv.tm.p5.clustering.HierarchicalClustering.Linkage;
+
+/*
+ * Tests für das hierarchische Clustering: mit der Nächste-Nachbarn-Kette
+ * müssen wir dieselben Verschmelzungen bekommen wie naiv in n^3, wo wir vor
+ * jeder Verschmelzung die Distanzen aller Cluster nach ihrer Definition
+ * berechnen (ohne Lance-Williams, in double). Die Vektoren sind zufällig um
+ * Gruppen herum verteilt und bei jedem Lauf gleich.
+ */
+/**
+ * Tests for the nearest-neighbour chain, against naive agglomeration.
+ * @author Fabian Steeg (fsteeg)
+ */
+public class HierarchicalClusteringPraxis {
+    private static final int SIZE = 40;
+    private static final int DIMENSION = 30;
+    private static final int GROUPS = 4;
+    private List<SparseVector> vectors;
+    private double[][] dense;
+
+    @Before
+    public void before() {
+        Random random = new Random(1);
+        vectors = new ArrayList<SparseVector>(SIZE);
+        int width = DIMENSION / GROUPS;
+        for (int i = 0; i < SIZE; i++) {
+            float[] values = new float[DIMENSION];
+            int group = random.nextInt(GROUPS);
+            for (int j = 0; j < 8; j++) {
+                int position = (group * width
+                        + (int) (random.nextGaussian() * width) + DIMENSION)
+                        % DIMENSION;
+                values[position] += random.nextFloat();
+            }
+            vectors.add(SparseVector.of(values));
+        }
+        dense = new double[SIZE][];
+        for (int i = 0; i < SIZE; i++) {
+            float[] values = vectors.get(i).normalized().getValues();
+            int[] indices = vectors.get(i).normalized().getIndices();
+            dense[i] = new double[DIMENSION];
+            for (int j = 0; j < indices.length; j++) {
+                dense[i][indices[j]] = values[j];
+            }
+        }
+    }
+
+    @Test
+    public void single() {
+        compare(Linkage.SINGLE);
+    }
+
+    @Test
+    public void complete() {
+        compare(Linkage.COMPLETE);
+    }
+
+    @Test
+    public void average() {
+        compare(Linkage.AVERAGE);
+    }
+
+    @Test
+    public void ward() {
+        compare(Linkage.WARD);
+    }
+
+    private void compare(final Linkage linkage) {
+        List<List<Integer>> clusters = new ArrayList<List<Integer>>();
+        for (int i = 0; i < SIZE; i++) {
+            clusters.add(new ArrayList<Integer>(Arrays.asList(i)));
+        }
+        List<int[]> cuts = new ArrayList<int[]>();
+        double[] heights = new double[SIZE - 1];
+        for (int m = 0; m < SIZE - 1; m++) {
+            int first = -1;
+            int second = -1;
+            double min = Double.POSITIVE_INFINITY;
+            for (int a = 0; a < clusters.size(); a++) {
+                for (int b = a + 1; b < clusters.size(); b++) {
+                    double d = distance(linkage, clusters.get(a), clusters
+                            .get(b));
+                    if (d < min) {
+                        min = d;
+                        first = a;
+                        second = b;
+                    }
+                }
+            }
+            heights[m] = min;
+            clusters.get(first).addAll(clusters.remove(second));
+            cuts.add(assignments(clusters));
+        }
+        /* Mit einem und mit mehreren Threads für die Distanzen: */
+        for (int threads : new int[] { 1, 3 }) {
+            Dendrogram dendrogram = new HierarchicalClustering(vectors,
+                    threads).cluster(linkage);
+            Assert.assertEquals(SIZE - 1, dendrogram.getNumberOfMerges());
+            for (int m = 0; m < SIZE - 1; m++) {
+                Assert.assertEquals(linkage + " merge " + m, heights[m],
+                        dendrogram.getHeight(m), 1E-4);
+                int k = SIZE - m - 1;
+                Assert.assertTrue(linkage + " k=" + k, Arrays.equals(cuts
+                        .get(m), dendrogram.cut(k)));
+            }
+        }
+    }
+
+    private double distance(final Linkage linkage, final List<Integer> a,
+            final List<Integer> b) {
+        if (linkage == Linkage.WARD) {
+            /* 2 |A| |B| / (|A| + |B|) ||mean(A) - mean(B)||^2 */
+            double[] difference = new double[DIMENSION];
+            for (int i : a) {
+                add(difference, dense[i], 1.0 / a.size());
+            }
+            for (int j : b) {
+                add(difference, dense[j], -1.0 / b.size());
+            }
+            return 2.0 * a.size() * b.size() / (a.size() + b.size())
+                    * dot(difference, difference);
+        }
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        double sum = 0;
+        for (int i : a) {
+            for (int j : b) {
+                double d = 1 - dot(dense[i], dense[j]);
+                min = Math.min(min, d);
+                max = Math.max(max, d);
+                sum += d;
+            }
+        }
+        switch (linkage) {
+        case SINGLE:
+            return min;
+        case COMPLETE:
+            return max;
+        default:
+            return sum / (a.size() * b.size());
+        }
+    }
+
+    /* Wie Dendrogram#cut: Cluster in der Reihenfolge ihres ersten Blatts */
+    private static int[] assignments(final List<List<Integer>> clusters) {
+        int[] cluster = new int[SIZE];
+        for (int c = 0; c < clusters.size(); c++) {
+            for (int i : clusters.get(c)) {
+                cluster[i] = c;
+            }
+        }
+        int[] ids = new int[clusters.size()];
+        Arrays.fill(ids, -1);
+        int[] result = new int[SIZE];
+        int next = 0;
+        for (int i = 0; i < SIZE; i++) {
+            if (ids[cluster[i]] < 0) {
+                ids[cluster[i]] = next++;
+            }
+            result[i] = ids[cluster[i]];
+        }
+        return result;
+    }
+
+    private static void add(final double[] sum, final double[] vector,
+            final double factor) {
+        for (int i = 0; i < sum.length; i++) {
+            sum[i] += factor * vector[i];
+        }
+    }
+
+    private static double dot(final double[] a, final double[] b) {
+        double result = 0;
+        for (int i = 0; i < a.length; i++) {
+            result += a[i] * b[i];
+        }
+        return result;
+    }
+}
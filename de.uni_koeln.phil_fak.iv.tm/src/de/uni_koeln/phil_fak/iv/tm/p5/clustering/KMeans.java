@@ -0,0 +1,551 @@
+/**
+ * Material for the course 'Text-Mining', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-textmining.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.tm.p5.clustering;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import de.uni_koeln.phil_fak.iv.ir.p5.features.SparseVector;
+import de.uni_koeln.phil_fak.iv.ir.p5.features.VectorKernels;
+import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus;
+import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document;
+
+/*
+ * k-Means über normierte, dünn besetzte TF-IDF-Vektoren mit
+ * Kosinusähnlichkeit (sphärisches k-Means), oder k-Medoids, bei dem die
+ * Mittelpunkte immer Dokumente sind. Anders als in ClusterAnalysis arbeiten
+ * wir hier auf Arrays: jeder Vektor hat eine Nummer, ein Clustering ist ein
+ * int-Array mit der Cluster-Nummer für jeden Vektor. Die Zuordnung der
+ * Vektoren zu den Mittelpunkten ist für jeden Vektor unabhängig, die läuft
+ * parallel in Blöcken. Die Startpunkte wählen wir mit k-means++ (weit
+ * auseinander liegende Dokumente sind wahrscheinlicher), und wir hören auf,
+ * wenn sich die Zuordnung nicht mehr (oder kaum noch) ändert.
+ */
+/**
+ * Parallel spherical k-means and k-medoids clustering of sparse vectors, with
+ * k-means++ seeding and a convergence check.
+ * @author Fabian Steeg (fsteeg)
+ */
+public final class KMeans {
+
+    /** The kind of cluster centers to use. */
+    public enum Center {
+        /** The normalized mean of the members (spherical k-means). */
+        MEAN,
+        /** The member most similar to the other members (k-medoids). */
+        MEDOID
+    }
+
+    private static final int BLOCK_SIZE = 256;
+
+    private SparseVector[] vectors;
+    private int dimension;
+    private int threads;
+    private double tolerance;
+    private boolean accelerated;
+
+    /**
+     * @param vectors The vectors to cluster, all of the same dimension
+     * @param threads The number of threads to use for the assignment
+     */
+    public KMeans(final List<SparseVector> vectors, final int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException(
+                    "Number of threads must be positive, not: " + threads);
+        }
+        this.threads = threads;
+        this.vectors = new SparseVector[vectors.size()];
+        for (int i = 0; i < this.vectors.length; i++) {
+            this.vectors[i] = vectors.get(i).normalized();
+            dimension = Math.max(dimension, this.vectors[i].getDimension());
+        }
+    }
+
+    /**
+     * @param vectors The vectors to cluster, all of the same dimension
+     */
+    public KMeans(final List<SparseVector> vectors) {
+        this(vectors, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param corpus The corpus the documents are part of
+     * @param documents The documents to cluster
+     * @return A clustering of the TF-IDF vectors of the documents, in the
+     *         order of the given documents
+     */
+    public static KMeans of(final Corpus corpus,
+            final List<? extends Document> documents) {
+        List<SparseVector> vectors = new ArrayList<SparseVector>(documents
+                .size());
+        for (Document document : documents) {
+            vectors.add(SparseVector.of(document.getVector(corpus)));
+        }
+        return new KMeans(vectors);
+    }
+
+    /**
+     * @param tolerance The fraction of vectors that may still change their
+     *            cluster in an iteration for the clustering to be considered
+     *            converged (default: 0, i.e. stop when nothing changes)
+     */
+    public void setTolerance(final double tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    /*
+     * Mit den Schranken nach Hamerly: für jedes Dokument merken wir uns eine
+     * obere Schranke für die Distanz zum eigenen Mittelpunkt und eine untere
+     * für die Distanz zum zweitnächsten. Bewegen sich die Mittelpunkte nur
+     * wenig, bleibt die obere Schranke unter der unteren, und wir wissen ohne
+     * Rechnen, dass sich die Zuordnung nicht ändert (Dreiecksungleichung über
+     * die euklidische Distanz der normierten Vektoren).
+     */
+    /**
+     * @param accelerated If true, use distance bounds (Hamerly's algorithm) to
+     *            skip distance computations that cannot change an assignment;
+     *            the resulting assignments are the same as without bounds
+     */
+    public void setAccelerated(final boolean accelerated) {
+        this.accelerated = accelerated;
+    }
+
+    /**
+     * @param k The number of clusters
+     * @param center The kind of cluster centers to use
+     * @param maxIterations The maximum number of iterations, if the
+     *            clustering does not converge earlier
+     * @param seed The seed for the random choice of initial centers
+     * @return The partition of the vectors into k clusters
+     */
+    public Partition cluster(final int k, final Center center,
+            final int maxIterations, final long seed) {
+        if (k < 1 || k > vectors.length) {
+            throw new IllegalArgumentException(String.format(
+                    "Cannot cluster %s vectors into %s clusters",
+                    vectors.length, k));
+        }
+        float[][] centers = seed(k, new Random(seed));
+        int[] assignments = new int[vectors.length];
+        Arrays.fill(assignments, -1);
+        float[] similarities = new float[vectors.length];
+        Bounds bounds = accelerated ? new Bounds(vectors.length, k) : null;
+        long[] counts = new long[2];
+        int iterations = 0;
+        boolean converged = false;
+        ExecutorService exec = Executors.newFixedThreadPool(threads);
+        try {
+            while (true) {
+                iterations++;
+                if (bounds != null) {
+                    bounds.separate(centers);
+                }
+                int changed = assign(exec, centers, assignments,
+                        similarities, bounds, counts);
+                if (iterations > 1 && changed <= tolerance * vectors.length) {
+                    converged = true;
+                    break;
+                }
+                if (iterations == maxIterations) {
+                    break;
+                }
+                float[][] previous = centers.clone();
+                update(center, centers, assignments);
+                if (bounds != null) {
+                    bounds.move(previous, centers, assignments);
+                }
+            }
+        } finally {
+            exec.shutdownNow();
+        }
+        if (bounds != null) {
+            /* Für übersprungene Dokumente ist die Ähnlichkeit veraltet: */
+            for (int i = 0; i < vectors.length; i++) {
+                similarities[i] = similarity(i, centers[assignments[i]]);
+            }
+            counts[0] += vectors.length;
+        }
+        return partition(centers, assignments, similarities, iterations,
+                converged, counts);
+    }
+
+    /*
+     * k-means++: der erste Mittelpunkt ist ein zufälliges Dokument, jeder
+     * weitere wird mit einer Wahrscheinlichkeit proportional zum Quadrat
+     * seiner Distanz zum nächsten schon gewählten Mittelpunkt gewählt.
+     */
+    private float[][] seed(final int k, final Random random) {
+        float[][] centers = new float[k][];
+        float[] distances = new float[vectors.length];
+        Arrays.fill(distances, Float.MAX_VALUE);
+        int chosen = random.nextInt(vectors.length);
+        for (int c = 0; c < k; c++) {
+            centers[c] = dense(vectors[chosen]);
+            double total = 0;
+            for (int i = 0; i < vectors.length; i++) {
+                float d = 1 - similarity(i, centers[c]);
+                distances[i] = Math.min(distances[i], d * d);
+                total += distances[i];
+            }
+            chosen = sample(distances, total, random);
+        }
+        return centers;
+    }
+
+    private int sample(final float[] weights, final double total,
+            final Random random) {
+        if (total <= 0) {
+            return random.nextInt(weights.length);
+        }
+        double target = random.nextDouble() * total;
+        for (int i = 0; i < weights.length; i++) {
+            target -= weights[i];
+            if (target <= 0 && weights[i] > 0) {
+                return i;
+            }
+        }
+        return weights.length - 1;
+    }
+
+    private int assign(final ExecutorService exec, final float[][] centers,
+            final int[] assignments, final float[] similarities,
+            final Bounds bounds, final long[] counts) {
+        List<Callable<long[]>> blocks = new ArrayList<Callable<long[]>>();
+        for (int start = 0; start < vectors.length; start += BLOCK_SIZE) {
+            final int from = start;
+            final int to = Math.min(start + BLOCK_SIZE, vectors.length);
+            blocks.add(new Callable<long[]>() {
+                public long[] call() {
+                    long[] result = new long[3];
+                    for (int i = from; i < to; i++) {
+                        int current = assignments[i];
+                        int best = bounds == null ? assign(i, centers,
+                                similarities, result) : assign(i, current,
+                                centers, similarities, bounds, result);
+                        if (current != best) {
+                            assignments[i] = best;
+                            result[2]++;
+                        }
+                    }
+                    return result;
+                }
+            });
+        }
+        long[] result = sum(exec, blocks);
+        counts[0] += result[0];
+        counts[1] += result[1];
+        return (int) result[2];
+    }
+
+    /* Ohne Schranken: die Ähnlichkeit zu jedem Mittelpunkt berechnen */
+    private int assign(final int i, final float[][] centers,
+            final float[] similarities, final long[] counts) {
+        int best = 0;
+        float max = Float.NEGATIVE_INFINITY;
+        for (int c = 0; c < centers.length; c++) {
+            float s = similarity(i, centers[c]);
+            if (s > max) {
+                max = s;
+                best = c;
+            }
+        }
+        counts[0] += centers.length;
+        similarities[i] = max;
+        return best;
+    }
+
+    /*
+     * Mit Schranken: erst prüfen, ob die Schranken schon reichen; dann die
+     * obere Schranke durch die echte Distanz ersetzen und nochmal prüfen; nur
+     * wenn auch das nicht reicht (oder das Dokument noch keinen Cluster hat),
+     * alle Distanzen berechnen.
+     */
+    private int assign(final int i, final int current, final float[][] centers,
+            final float[] similarities, final Bounds bounds,
+            final long[] counts) {
+        int k = centers.length;
+        int best = current;
+        float max = Float.NEGATIVE_INFINITY;
+        if (current >= 0) {
+            float limit = Math.max(bounds.separation[current],
+                    bounds.lower[i])
+                    - Bounds.SLACK;
+            if (bounds.upper[i] < limit) {
+                counts[1] += k;
+                return current;
+            }
+            max = similarity(i, centers[current]);
+            counts[0]++;
+            bounds.upper[i] = bounds.distance(max, current);
+            similarities[i] = max;
+            if (bounds.upper[i] < limit) {
+                counts[1] += k - 1;
+                return current;
+            }
+        }
+        /*
+         * Entschieden wird wie ohne Schranken über die Ähnlichkeit (bei
+         * gleicher gewinnt der erste Mittelpunkt), die Distanzen brauchen wir
+         * nur für die neuen Schranken:
+         */
+        float second = Float.MAX_VALUE;
+        for (int c = 0; c < k; c++) {
+            if (c != current) {
+                float s = similarity(i, centers[c]);
+                counts[0]++;
+                if (s > max || s == max && c < best) {
+                    if (best >= 0) {
+                        second = Math.min(second, bounds.distance(max, best));
+                    }
+                    max = s;
+                    best = c;
+                } else {
+                    second = Math.min(second, bounds.distance(s, c));
+                }
+            }
+        }
+        similarities[i] = max;
+        bounds.upper[i] = bounds.distance(max, best);
+        bounds.lower[i] = second;
+        return best;
+    }
+
+    private long[] sum(final ExecutorService exec,
+            final List<Callable<long[]>> blocks) {
+        long[] result = new long[3];
+        try {
+            for (Future<long[]> future : exec.invokeAll(blocks)) {
+                long[] counts = future.get();
+                for (int i = 0; i < result.length; i++) {
+                    result[i] += counts[i];
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while clustering", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Clustering failed", e.getCause());
+        }
+        return result;
+    }
+
+    /*
+     * Für beide Arten von Mittelpunkten brauchen wir die Summe der Vektoren
+     * in jedem Cluster: normiert ist das der neue Mittelpunkt beim k-Means.
+     * Beim k-Medoids ist die Summe der Ähnlichkeiten eines Mitglieds zu allen
+     * anderen Mitgliedern gleich dem Dot-Produkt mit dieser Summe (die
+     * Vektoren haben Länge 1), d.h. wir finden den Medoid in linearer statt
+     * quadratischer Zeit.
+     */
+    private void update(final Center center, final float[][] centers,
+            final int[] assignments) {
+        float[][] sums = new float[centers.length][dimension];
+        int[] counts = new int[centers.length];
+        for (int i = 0; i < vectors.length; i++) {
+            int c = assignments[i];
+            int[] indices = vectors[i].getIndices();
+            float[] values = vectors[i].getValues();
+            for (int j = 0; j < indices.length; j++) {
+                sums[c][indices[j]] += values[j];
+            }
+            counts[c]++;
+        }
+        if (center == Center.MEAN) {
+            for (int c = 0; c < centers.length; c++) {
+                if (counts[c] > 0) {
+                    centers[c] = normalize(sums[c]);
+                }
+            }
+        } else {
+            int[] medoids = new int[centers.length];
+            float[] max = new float[centers.length];
+            Arrays.fill(medoids, -1);
+            Arrays.fill(max, Float.NEGATIVE_INFINITY);
+            for (int i = 0; i < vectors.length; i++) {
+                int c = assignments[i];
+                float s = similarity(i, sums[c]);
+                if (s > max[c]) {
+                    max[c] = s;
+                    medoids[c] = i;
+                }
+            }
+            for (int c = 0; c < centers.length; c++) {
+                if (medoids[c] >= 0) {
+                    centers[c] = dense(vectors[medoids[c]]);
+                }
+            }
+        }
+    }
+
+    private Partition partition(final float[][] centers,
+            final int[] assignments, final float[] similarities,
+            final int iterations, final boolean converged,
+            final long[] counts) {
+        SparseVector[] sparse = new SparseVector[centers.length];
+        for (int c = 0; c < centers.length; c++) {
+            sparse[c] = SparseVector.of(centers[c]);
+        }
+        int[] representatives = new int[centers.length];
+        float[] max = new float[centers.length];
+        Arrays.fill(representatives, -1);
+        Arrays.fill(max, Float.NEGATIVE_INFINITY);
+        double inertia = 0;
+        for (int i = 0; i < vectors.length; i++) {
+            int c = assignments[i];
+            if (similarities[i] > max[c]) {
+                max[c] = similarities[i];
+                representatives[c] = i;
+            }
+            inertia += 1 - similarities[i];
+        }
+        return new Partition(assignments, sparse, representatives,
+                iterations, converged, inertia, counts[0], counts[1]);
+    }
+
+    private float similarity(final int i, final float[] center) {
+        return VectorKernels.dot(vectors[i].getIndices(), vectors[i]
+                .getValues(), center);
+    }
+
+    private float[] dense(final SparseVector vector) {
+        float[] result = new float[dimension];
+        int[] indices = vector.getIndices();
+        float[] values = vector.getValues();
+        for (int i = 0; i < indices.length; i++) {
+            result[indices[i]] = values[i];
+        }
+        return result;
+    }
+
+    private float[] normalize(final float[] vector) {
+        float length = VectorKernels.norm(vector);
+        if (length > 0) {
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] /= length;
+            }
+        }
+        return vector;
+    }
+
+    /*
+     * Die Schranken für Hamerlys Algorithmus, als euklidische Distanzen
+     * zwischen den Dokumenten (Länge 1) und den Mittelpunkten.
+     */
+    private static final class Bounds {
+        /*
+         * Rundungsfehler in den Distanzen dürfen nicht dazu führen, dass wir
+         * bei (fast) gleich weit entfernten Mittelpunkten anders entscheiden
+         * als ohne Schranken, deshalb lassen wir etwas Abstand:
+         */
+        private static final float SLACK = 1e-5f;
+        private final float[] upper;
+        private final float[] lower;
+        /* Die halbe Distanz jedes Mittelpunkts zum nächsten anderen: */
+        private final float[] separation;
+        /* Die quadrierte Länge jedes Mittelpunkts: */
+        private final float[] squares;
+
+        Bounds(final int n, final int k) {
+            this.upper = new float[n];
+            this.lower = new float[n];
+            this.separation = new float[k];
+            this.squares = new float[k];
+        }
+
+        /* |x - c|² = |x|² + |c|² - 2 x·c, mit |x| = 1 */
+        float distance(final float similarity, final int center) {
+            return (float) Math.sqrt(Math.max(0, 1 + squares[center] - 2
+                    * similarity));
+        }
+
+        void separate(final float[][] centers) {
+            for (int c = 0; c < centers.length; c++) {
+                squares[c] = VectorKernels.dot(centers[c], centers[c]);
+            }
+            Arrays.fill(separation, Float.MAX_VALUE);
+            for (int c = 0; c < centers.length; c++) {
+                for (int o = c + 1; o < centers.length; o++) {
+                    float d = (float) Math.sqrt(Math.max(0, squares[c]
+                            + squares[o] - 2
+                            * VectorKernels.dot(centers[c], centers[o])));
+                    separation[c] = Math.min(separation[c], d / 2);
+                    separation[o] = Math.min(separation[o], d / 2);
+                }
+            }
+            if (centers.length == 1) {
+                separation[0] = 0;
+            }
+        }
+
+        /*
+         * Hat sich ein Mittelpunkt um p bewegt, kann die Distanz zu ihm um
+         * höchstens p gewachsen sein; die zu jedem anderen um höchstens die
+         * größte Bewegung der anderen geschrumpft sein.
+         */
+        void move(final float[][] previous, final float[][] centers,
+                final int[] assignments) {
+            float[] moved = new float[centers.length];
+            int farthest = 0;
+            for (int c = 0; c < centers.length; c++) {
+                if (previous[c] != centers[c]) {
+                    float[] a = previous[c];
+                    float[] b = centers[c];
+                    double sum = 0;
+                    for (int j = 0; j < a.length; j++) {
+                        float d = a[j] - b[j];
+                        sum += d * d;
+                    }
+                    moved[c] = (float) Math.sqrt(sum);
+                }
+                if (moved[c] > moved[farthest]) {
+                    farthest = c;
+                }
+            }
+            float secondFarthest = 0;
+            for (int c = 0; c < centers.length; c++) {
+                if (c != farthest) {
+                    secondFarthest = Math.max(secondFarthest, moved[c]);
+                }
+            }
+            for (int i = 0; i < upper.length; i++) {
+                int a = assignments[i];
+                upper[i] += moved[a];
+                lower[i] -= a == farthest ? secondFarthest : moved[farthest];
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("%s of %s vectors with dimension %s", getClass()
+                .getSimpleName(), vectors.length, dimension);
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * Material for the course 'Text-Mining', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-textmining.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.tm.p5.clustering;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.uni_koeln.phil_fak.iv.ir.p5.features.SparseVector;
+
+/*
+ * Tests für das beschleunigte k-Means: mit den Schranken nach Hamerly müssen
+ * wir dieselben Cluster bekommen wie ohne, nur mit weniger Berechnungen. Die
+ * Vektoren sind zufällig um K Gruppen herum verteilt und bei jedem Lauf gleich.
+ */
+/**
+ * Tests for k-means with distance bounds, against k-means without bounds.
+ * @author Fabian Steeg (fsteeg)
+ */
+public class KMeansPraxis {
+    private static final int SIZE = 3000;
+    private static final int DIMENSION = 1000;
+    private static final int K = 10;
+    private static final int ITERATIONS = 50;
+    private List<SparseVector> vectors;
+
+    @Before
+    public void before() {
+        Random random = new Random(1);
+        vectors = new ArrayList<SparseVector>(SIZE);
+        int width = DIMENSION / K;
+        for (int i = 0; i < SIZE; i++) {
+            float[] dense = new float[DIMENSION];
+            int group = random.nextInt(K);
+            for (int j = 0; j < 20; j++) {
+                int position = (group * width
+                        + (int) (random.nextGaussian() * width / 3) + DIMENSION)
+                        % DIMENSION;
+                dense[position] += random.nextFloat();
+            }
+            vectors.add(SparseVector.of(dense));
+        }
+    }
+
+    @Test
+    public void acceleratedMeans() {
+        Partition exact = cluster(false, 1);
+        Partition accelerated = cluster(true, 1);
+        System.out.println(exact);
+        System.out.println(accelerated);
+        Assert.assertTrue(Arrays.equals(exact.getAssignments(), accelerated
+                .getAssignments()));
+        Assert.assertEquals(exact.getIterations(), accelerated.getIterations());
+        Assert.assertEquals(exact.getInertia(), accelerated.getInertia(), 1E-3);
+        Assert.assertTrue(accelerated.getPruned() > 0);
+        Assert.assertTrue(accelerated.getComputations() < exact
+                .getComputations());
+    }
+
+    @Test
+    public void acceleratedThreads() {
+        /* Die Aufteilung auf Threads ändert nichts am Ergebnis: */
+        Assert.assertTrue(Arrays.equals(cluster(true, 1).getAssignments(),
+                cluster(true, 4).getAssignments()));
+    }
+
+    private Partition cluster(final boolean accelerated, final int threads) {
+        KMeans kMeans = new KMeans(vectors, threads);
+        kMeans.setAccelerated(accelerated);
+        return kMeans.cluster(K, KMeans.Center.MEAN, ITERATIONS, 7);
+    }
+}
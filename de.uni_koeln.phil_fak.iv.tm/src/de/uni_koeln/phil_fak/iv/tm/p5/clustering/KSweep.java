@@ -0,0 +1,340 @@
+/**
+ * Material for the course 'Text-Mining', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-textmining.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.tm.p5.clustering;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import de.uni_koeln.phil_fak.iv.ir.p5.features.SparseVector;
+import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus;
+import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document;
+import de.uni_koeln.phil_fak.iv.tm.p3.classification.ParallelClassification;
+
+/*
+ * Um ein gutes k zu finden, clustern wir mit verschiedenen k und vergleichen
+ * die Ergebnisse. Was für alle k gleich ist, machen wir dabei nur einmal: die
+ * Vektoren (in einem gemeinsamen KMeans) und die paarweisen Ähnlichkeiten für
+ * den Silhouettenkoeffizienten. Die einzelnen k laufen parallel, jedes mit
+ * seinem eigenen Zustand (KMeans hält keinen Zustand zwischen Aufrufen).
+ */
+/**
+ * Clustering with a range of k, reporting purity, silhouette and inertia for
+ * each k.
+ * @author Fabian Steeg (fsteeg)
+ */
+public final class KSweep {
+
+    /** The clustering and its quality for a single k. */
+    public static final class Result {
+        private Partition partition;
+        private double purity;
+        private double silhouette;
+
+        Result(final Partition partition, final double purity,
+                final double silhouette) {
+            this.partition = partition;
+            this.purity = purity;
+            this.silhouette = silhouette;
+        }
+
+        /** @return The number of clusters */
+        public int getK() {
+            return partition.getK();
+        }
+
+        /** @return The clustering */
+        public Partition getPartition() {
+            return partition;
+        }
+
+        /**
+         * @return The fraction of vectors that have the most frequent label of
+         *         their cluster (NaN if there are no labels)
+         */
+        public double getPurity() {
+            return purity;
+        }
+
+        /**
+         * @return The mean silhouette coefficient (between -1 and 1, higher is
+         *         better) over the sampled vectors, using cosine distance
+         */
+        public double getSilhouette() {
+            return silhouette;
+        }
+
+        /** @return The sum of the cosine distances to the cluster centers */
+        public double getInertia() {
+            return partition.getInertia();
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see java.lang.Object#toString()
+         */
+        @Override
+        public String toString() {
+            return String.format("k=%s: purity %.2f, silhouette %.3f, "
+                    + "inertia %.2f", getK(), purity, silhouette,
+                    getInertia());
+        }
+    }
+
+    /* Mehr passen nicht in ein Array für die Dreiecksmatrix (m (m - 1) / 2): */
+    private static final int MAX_SAMPLE_SIZE = 65536;
+
+    private KMeans kmeans;
+    private SparseVector[] vectors;
+    private int[] labels;
+    private int threads;
+    private int sampleSize;
+    /* Die Stichprobe für die Silhouette und ihre paarweisen Ähnlichkeiten: */
+    private int[] sample;
+    private float[] similarities;
+
+    /**
+     * @param vectors The vectors to cluster
+     * @param labels The true class of each vector for computing the purity,
+     *            or null
+     * @param threads The number of values of k to cluster in parallel
+     */
+    public KSweep(final List<SparseVector> vectors, final int[] labels,
+            final int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException(
+                    "Number of threads must be positive, not: " + threads);
+        }
+        if (labels != null && labels.length != vectors.size()) {
+            throw new IllegalArgumentException(String.format(
+                    "Got %s labels for %s vectors", labels.length, vectors
+                            .size()));
+        }
+        /* Parallel laufen hier die k, nicht die Zuordnung in KMeans: */
+        this.kmeans = new KMeans(vectors, 1);
+        this.vectors = new SparseVector[vectors.size()];
+        for (int i = 0; i < this.vectors.length; i++) {
+            this.vectors[i] = vectors.get(i).normalized();
+        }
+        this.labels = labels;
+        this.threads = threads;
+        this.sampleSize = 2000;
+    }
+
+    /**
+     * @param corpus The corpus the documents are part of
+     * @param documents The documents to cluster, with their topics as labels
+     * @return A sweep over the TF-IDF vectors of the documents
+     */
+    public static KSweep of(final Corpus corpus,
+            final List<? extends Document> documents) {
+        List<SparseVector> vectors = new ArrayList<SparseVector>(documents
+                .size());
+        int[] labels = new int[documents.size()];
+        Map<String, Integer> topics = new HashMap<String, Integer>();
+        for (int i = 0; i < labels.length; i++) {
+            Document document = documents.get(i);
+            vectors.add(SparseVector.of(document.getVector(corpus)));
+            Integer topic = topics.get(document.getTopic());
+            if (topic == null) {
+                topic = topics.size();
+                topics.put(document.getTopic(), topic);
+            }
+            labels[i] = topic;
+        }
+        return new KSweep(vectors, labels, Runtime.getRuntime()
+                .availableProcessors());
+    }
+
+    /*
+     * Der Silhouettenkoeffizient braucht alle paarweisen Distanzen, d.h. n^2
+     * Speicher; bei großen Korpora berechnen wir ihn deshalb auf einer
+     * zufälligen Stichprobe (für alle k dieselbe).
+     */
+    /**
+     * @param sampleSize The maximum number of vectors to compute the
+     *            silhouette on (default: 2000, at most 65536); all vectors
+     *            are used if there are not more
+     */
+    public synchronized void setSampleSize(final int sampleSize) {
+        if (sampleSize < 2 || sampleSize > MAX_SAMPLE_SIZE) {
+            throw new IllegalArgumentException(String.format(
+                    "Sample size must be between 2 and %s, not: %s",
+                    MAX_SAMPLE_SIZE, sampleSize));
+        }
+        this.sampleSize = sampleSize;
+        this.sample = null;
+        this.similarities = null;
+    }
+
+    /**
+     * @param start The smallest k
+     * @param end The largest k (inclusive)
+     * @param center The kind of cluster centers to use
+     * @param maxIterations The maximum number of iterations for each k
+     * @param seed The seed for the random choices of initial centers and of
+     *            the silhouette sample
+     * @return The results for each k, in order of k
+     */
+    public List<Result> sweep(final int start, final int end,
+            final KMeans.Center center, final int maxIterations,
+            final long seed) {
+        if (start < 1 || end < start || end > vectors.length) {
+            throw new IllegalArgumentException(String.format(
+                    "Cannot sweep k from %s to %s for %s vectors", start, end,
+                    vectors.length));
+        }
+        prepare(seed);
+        final Result[] results = new Result[end - start + 1];
+        ParallelClassification.forEachBlock(results.length, Math.min(threads,
+                results.length), 1, new ParallelClassification.Block() {
+            public void run(final int from, final int to) {
+                for (int i = from; i < to; i++) {
+                    int k = start + i;
+                    Partition partition = kmeans.cluster(k, center,
+                            maxIterations, seed + k);
+                    int[] assignments = partition.getAssignments();
+                    results[i] = new Result(partition, purity(assignments, k),
+                            silhouette(assignments, k));
+                }
+            }
+        });
+        return new ArrayList<Result>(Arrays.asList(results));
+    }
+
+    /**
+     * @param results The results of a sweep
+     * @return The result with the highest silhouette
+     */
+    public static Result best(final List<Result> results) {
+        Result best = null;
+        for (Result result : results) {
+            if (best == null
+                    || result.getSilhouette() > best.getSilhouette()) {
+                best = result;
+            }
+        }
+        return best;
+    }
+
+    /*
+     * Die Ähnlichkeiten der Stichprobe als Dreiecksmatrix in einem Array, nur
+     * einmal berechnet und dann von allen k nur noch gelesen.
+     */
+    private synchronized void prepare(final long seed) {
+        if (similarities != null) {
+            return;
+        }
+        int m = Math.min(sampleSize, vectors.length);
+        int[] order = new int[vectors.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Random random = new Random(seed);
+        for (int i = 0; i < m; i++) {
+            int j = i + random.nextInt(order.length - i);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        final int[] chosen = new int[m];
+        System.arraycopy(order, 0, chosen, 0, m);
+        float[] result = TriangularMatrix.compute(m, threads,
+                new TriangularMatrix.Entry() {
+                    public float value(final int i, final int j) {
+                        return vectors[chosen[i]].dot(vectors[chosen[j]]);
+                    }
+                });
+        this.sample = chosen;
+        this.similarities = result;
+    }
+
+    private double purity(final int[] assignments, final int k) {
+        if (labels == null) {
+            return Double.NaN;
+        }
+        Map<Long, Integer> counts = new HashMap<Long, Integer>();
+        int[] max = new int[k];
+        for (int i = 0; i < assignments.length; i++) {
+            Long key = (long) assignments[i] << 32 | labels[i];
+            Integer count = counts.get(key);
+            count = count == null ? 1 : count + 1;
+            counts.put(key, count);
+            max[assignments[i]] = Math.max(max[assignments[i]], count);
+        }
+        int sum = 0;
+        for (int c : max) {
+            sum += c;
+        }
+        return sum / (double) assignments.length;
+    }
+
+    /*
+     * Für jedes Dokument i: a = mittlere Distanz zu den anderen Dokumenten im
+     * eigenen Cluster, b = mittlere Distanz zum nächsten anderen Cluster, und
+     * s = (b - a) / max(a, b); Dokumente allein in ihrem Cluster zählen 0.
+     */
+    private double silhouette(final int[] assignments, final int k) {
+        int m = sample.length;
+        int[] sizes = new int[k];
+        for (int i = 0; i < m; i++) {
+            sizes[assignments[sample[i]]]++;
+        }
+        double[] sums = new double[k];
+        double total = 0;
+        for (int i = 0; i < m; i++) {
+            Arrays.fill(sums, 0);
+            for (int j = 0; j < m; j++) {
+                if (i != j) {
+                    float similarity = similarities[TriangularMatrix.index(i,
+                            j, m)];
+                    sums[assignments[sample[j]]] += 1 - similarity;
+                }
+            }
+            int own = assignments[sample[i]];
+            if (sizes[own] > 1) {
+                double a = sums[own] / (sizes[own] - 1);
+                double b = Double.MAX_VALUE;
+                for (int c = 0; c < k; c++) {
+                    if (c != own && sizes[c] > 0) {
+                        b = Math.min(b, sums[c] / sizes[c]);
+                    }
+                }
+                if (b < Double.MAX_VALUE && Math.max(a, b) > 0) {
+                    total += (b - a) / Math.max(a, b);
+                }
+            }
+        }
+        return total / m;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("%s over %s vectors with %s threads", getClass()
+                .getSimpleName(), vectors.length, threads);
+    }
+}
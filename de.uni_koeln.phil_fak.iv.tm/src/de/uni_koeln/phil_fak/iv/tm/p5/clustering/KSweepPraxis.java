@@ -0,0 +1,156 @@
+/**
+ * Material for the course 'Text-Mining', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-textmining.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.tm.p5.clustering;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.uni_koeln.phil_fak.iv.ir.p5.features.SparseVector;
+import de.uni_koeln.phil_fak.iv.tm.p5.clustering.KSweep.Result;
+
+/*
+ * Tests für KSweep mit 3 klar getrennten Gruppen von 5, 4 und 3 Vektoren
+ * (jede Gruppe hat ihre eigenen Dimensionen): mit k = 3 sind die Cluster
+ * genau die Gruppen. Die Silhouette rechnen wir für die Zuordnungen naiv
+ * nach, in double.
+ */
+/**
+ * Tests for the k sweep, against a naive silhouette and known purity.
+ * @author Fabian Steeg (fsteeg)
+ */
+public class KSweepPraxis {
+    private static final int[] GROUPS = { 5, 4, 3 };
+    private static final int WIDTH = 3;
+    private List<SparseVector> vectors;
+    private int[] labels;
+
+    @Before
+    public void before() {
+        Random random = new Random(1);
+        vectors = new ArrayList<SparseVector>();
+        List<Integer> list = new ArrayList<Integer>();
+        for (int g = 0; g < GROUPS.length; g++) {
+            for (int i = 0; i < GROUPS[g]; i++) {
+                float[] values = new float[GROUPS.length * WIDTH];
+                for (int j = 0; j < WIDTH; j++) {
+                    values[g * WIDTH + j] = 1 + random.nextFloat();
+                }
+                vectors.add(SparseVector.of(values));
+                list.add(g);
+            }
+        }
+        labels = new int[list.size()];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = list.get(i);
+        }
+    }
+
+    @Test
+    public void sweep() {
+        for (int threads : new int[] { 1, 3 }) {
+            List<Result> results = new KSweep(vectors, labels, threads).sweep(
+                    1, 4, KMeans.Center.MEAN, 20, 1);
+            Assert.assertEquals(4, results.size());
+            for (int k = 1; k <= 4; k++) {
+                Result result = results.get(k - 1);
+                Assert.assertEquals(k, result.getK());
+                Assert.assertEquals(silhouette(result.getPartition()
+                        .getAssignments()), result.getSilhouette(), 1E-5);
+            }
+            /* Ein Cluster: die größte Gruppe, keine Silhouette */
+            Assert.assertEquals(5 / 12.0, results.get(0).getPurity(), 1E-9);
+            Assert.assertEquals(0.0, results.get(0).getSilhouette(), 1E-9);
+            Assert.assertEquals(1.0, results.get(2).getPurity(), 1E-9);
+            Assert.assertEquals(1.0, results.get(3).getPurity(), 1E-9);
+            Assert.assertEquals(3, KSweep.best(results).getK());
+        }
+    }
+
+    @Test
+    public void withoutLabels() {
+        Result result = new KSweep(vectors, null, 1).sweep(3, 3,
+                KMeans.Center.MEAN, 20, 1).get(0);
+        Assert.assertTrue(Double.isNaN(result.getPurity()));
+        Assert.assertEquals(silhouette(result.getPartition()
+                .getAssignments()), result.getSilhouette(), 1E-5);
+    }
+
+    @Test
+    public void sample() {
+        /* Die Stichprobe ist für alle k dieselbe, hier mit 6 der 12: */
+        KSweep sweep = new KSweep(vectors, labels, 2);
+        sweep.setSampleSize(6);
+        List<Result> results = sweep.sweep(2, 4, KMeans.Center.MEAN, 20, 1);
+        for (Result result : results) {
+            Assert.assertTrue(result.getSilhouette() >= -1
+                    && result.getSilhouette() <= 1);
+        }
+        Assert.assertEquals(1.0, results.get(1).getPurity(), 1E-9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tooLarge() {
+        new KSweep(vectors, labels, 1).sweep(1, 13, KMeans.Center.MEAN, 20, 1);
+    }
+
+    /* Mit Kosinus-Distanz, für alle Vektoren: */
+    private double silhouette(final int[] assignments) {
+        int n = vectors.size();
+        double total = 0;
+        for (int i = 0; i < n; i++) {
+            double a = mean(i, assignments, assignments[i]);
+            if (Double.isNaN(a)) {
+                continue;
+            }
+            double b = Double.POSITIVE_INFINITY;
+            for (int c = 0; c < n; c++) {
+                double d = c == assignments[i] ? Double.NaN : mean(i,
+                        assignments, c);
+                if (!Double.isNaN(d)) {
+                    b = Math.min(b, d);
+                }
+            }
+            if (b < Double.POSITIVE_INFINITY) {
+                total += (b - a) / Math.max(a, b);
+            }
+        }
+        return total / n;
+    }
+
+    /* Die mittlere Distanz von i zu den anderen Vektoren in c, oder NaN */
+    private double mean(final int i, final int[] assignments, final int c) {
+        double sum = 0;
+        int count = 0;
+        for (int j = 0; j < assignments.length; j++) {
+            if (j != i && assignments[j] == c) {
+                sum += 1 - vectors.get(i).normalized().dot(
+                        vectors.get(j).normalized());
+                count++;
+            }
+        }
+        return count == 0 ? Double.NaN : sum / count;
+    }
+}
@@ -0,0 +1,155 @@
+/**
+ * Material for the course 'Text-Mining', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-textmining.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.tm.p5.clustering;
+
+import de.uni_koeln.phil_fak.iv.ir.p5.features.SparseVector;
+
+/*
+ * Das Ergebnis eines Clusterings mit KMeans: für jeden Vektor (über seine
+ * Position identifiziert) die Nummer seines Clusters, die Mittelpunkte, und
+ * was wir über den Verlauf wissen.
+ */
+/**
+ * The result of partitioning vectors into k clusters.
+ * @author Fabian Steeg (fsteeg)
+ */
+public final class Partition {
+
+    private int[] assignments;
+    private SparseVector[] centers;
+    private int[] representatives;
+    private int iterations;
+    private boolean converged;
+    private double inertia;
+    private long computations;
+    private long pruned;
+
+    Partition(final int[] assignments, final SparseVector[] centers,
+            final int[] representatives, final int iterations,
+            final boolean converged, final double inertia,
+            final long computations, final long pruned) {
+        this.assignments = assignments;
+        this.centers = centers;
+        this.representatives = representatives;
+        this.iterations = iterations;
+        this.converged = converged;
+        this.inertia = inertia;
+        this.computations = computations;
+        this.pruned = pruned;
+    }
+
+    /** @return The number of clusters */
+    public int getK() {
+        return centers.length;
+    }
+
+    /**
+     * @return For each vector, the number of the cluster it is assigned to
+     */
+    public int[] getAssignments() {
+        return assignments;
+    }
+
+    /**
+     * @param cluster The number of a cluster
+     * @return The positions of the vectors in the cluster
+     */
+    public int[] getMembers(final int cluster) {
+        int count = 0;
+        for (int assignment : assignments) {
+            if (assignment == cluster) {
+                count++;
+            }
+        }
+        int[] result = new int[count];
+        for (int i = 0, j = 0; i < assignments.length; i++) {
+            if (assignments[i] == cluster) {
+                result[j++] = i;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param cluster The number of a cluster
+     * @return The normalized center of the cluster
+     */
+    public SparseVector getCenter(final int cluster) {
+        return centers[cluster];
+    }
+
+    /**
+     * @param cluster The number of a cluster
+     * @return The position of the member most similar to the center of the
+     *         cluster (the medoid when clustering with medoids), or -1 if the
+     *         cluster is empty
+     */
+    public int getRepresentative(final int cluster) {
+        return representatives[cluster];
+    }
+
+    /** @return The number of iterations performed */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /** @return True, if the clustering stopped because it converged */
+    public boolean isConverged() {
+        return converged;
+    }
+
+    /**
+     * @return The sum of the cosine distances (1 - cosine similarity) of all
+     *         vectors to the centers of their clusters
+     */
+    public double getInertia() {
+        return inertia;
+    }
+
+    /**
+     * @return The number of similarity computations between vectors and
+     *         cluster centers
+     */
+    public long getComputations() {
+        return computations;
+    }
+
+    /**
+     * @return The number of similarity computations between vectors and
+     *         cluster centers that were skipped using distance bounds
+     */
+    public long getPruned() {
+        return pruned;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format(
+                "%s of %s vectors into %s clusters after %s iterations "
+                        + "(converged: %s, inertia: %.2f, computed: %s, "
+                        + "pruned: %s)", getClass().getSimpleName(),
+                assignments.length, getK(), iterations, converged, inertia,
+                computations, pruned);
+    }
+}
@@ -0,0 +1,445 @@
+/**
+ * Material for the course 'Text-Mining', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-textmining.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.tm.p5.clustering;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.uni_koeln.phil_fak.iv.ir.p5.features.SparseVector;
+import de.uni_koeln.phil_fak.iv.ir.p5.features.TfIdfVectorizer;
+import de.uni_koeln.phil_fak.iv.ir.p5.features.VectorKernels;
+import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus;
+import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document;
+
+/*
+ * Clustering für ein Korpus, das ständig wächst (etwa beim fortlaufenden
+ * Crawlen): statt immer wieder alles neu zu clustern, passen wir die
+ * Mittelpunkte mit jedem kleinen Block neuer Dokumente an (Mini-Batch
+ * k-Means nach Sculley). Jeder Mittelpunkt bewegt sich mit einer Lernrate
+ * von 1 durch die Anzahl seiner bisherigen Dokumente auf die neuen Dokumente
+ * zu, d.h. er bleibt der Durchschnitt aller seiner Dokumente, ohne dass wir
+ * die alten nochmal ansehen müssen. Optional können neue Cluster entstehen
+ * (wenn ein Dokument keinem Mittelpunkt ähnlich genug ist) und alte
+ * wegfallen (wenn sie lange keine neuen Dokumente bekommen haben). Wer
+ * Dokumente ins Korpus schreibt (etwa ein Crawler für jede neue Seite), ruft
+ * danach add auf, siehe Praxis5#clusterStreaming.
+ */
+/**
+ * Mini-batch spherical k-means clustering of documents as they are added.
+ * @author Fabian Steeg (fsteeg)
+ */
+public final class StreamingClustering {
+
+    /* Ein Mitglied: wie ähnlich es dem Mittelpunkt war, und wann */
+    private static final class Member {
+        private final float similarity;
+        private final long order;
+
+        Member(final float similarity, final long order) {
+            this.similarity = similarity;
+            this.order = order;
+        }
+    }
+
+    /*
+     * Ein Mittelpunkt, als skalierter dünn besetzter Vektor (siehe step). Von
+     * den Mitgliedern merken wir uns nur die Quellen der zuletzt zugeordneten
+     * (höchstens maxMembers), sonst wüchse der Speicher mit jedem Dokument.
+     */
+    private static final class Center {
+        private int[] indices;
+        private float[] values;
+        private float scale = 1;
+        private int count = 1;
+        private int lastBatch;
+        private Map<String, Member> members;
+
+        Center(final SparseVector vector, final int batch) {
+            SparseVector unit = vector.normalized();
+            this.indices = unit.getIndices().clone();
+            this.values = unit.getValues().clone();
+            this.lastBatch = batch;
+            this.members = new LinkedHashMap<String, Member>();
+        }
+
+        float similarity(final SparseVector vector) {
+            return scale
+                    * VectorKernels.dot(indices, values, vector.getIndices(),
+                            vector.getValues());
+        }
+    }
+
+    private Corpus corpus;
+    private TfIdfVectorizer vectorizer;
+    private int k;
+    private int batchSize;
+    private float creationThreshold;
+    private int maxClusters;
+    private int retirementAge;
+    private int maxTerms = 1000;
+    private int maxMembers = 1000;
+    private List<Center> centers;
+    private List<Document> pending;
+    private int batch;
+    private long order;
+
+    /**
+     * @param corpus The corpus the documents are added to
+     * @param k The minimum number of clusters: while there are fewer, the
+     *            documents of a batch least similar to the existing clusters
+     *            start new ones
+     * @param batchSize The number of documents to collect before updating the
+     *            clusters
+     */
+    public StreamingClustering(final Corpus corpus, final int k,
+            final int batchSize) {
+        if (k < 1 || batchSize < 1) {
+            throw new IllegalArgumentException(String.format(
+                    "Need k > 0 and batch size > 0, got %s and %s", k,
+                    batchSize));
+        }
+        this.corpus = corpus;
+        this.vectorizer = new TfIdfVectorizer();
+        this.k = k;
+        this.maxClusters = k;
+        this.batchSize = batchSize;
+        this.centers = new ArrayList<Center>();
+        this.pending = new ArrayList<Document>();
+    }
+
+    /**
+     * @param threshold Documents with a lower similarity to every cluster
+     *            center start a new cluster (default: 0, i.e. never)
+     * @param max The maximum number of clusters to create
+     */
+    public synchronized void setCreation(final float threshold, final int max) {
+        this.creationThreshold = threshold;
+        this.maxClusters = Math.max(k, max);
+    }
+
+    /**
+     * @param batches Clusters that did not get any documents in this many
+     *            batches are removed (default: 0, i.e. never); if fewer than k
+     *            clusters remain, new ones are started with the next batch
+     */
+    public synchronized void setRetirement(final int batches) {
+        this.retirementAge = batches;
+    }
+
+    /**
+     * @param terms Each cluster center keeps only this many of its terms with
+     *            the highest weights (default: 1000), so its size does not grow
+     *            with the vocabulary
+     */
+    public synchronized void setMaxTerms(final int terms) {
+        if (terms < 1) {
+            throw new IllegalArgumentException(String.format(
+                    "Need at least one term per center, got %s", terms));
+        }
+        this.maxTerms = terms;
+    }
+
+    /**
+     * @param members Each cluster keeps only this many of its most recently
+     *            assigned documents as members (default: 1000), so its size
+     *            does not grow with the corpus
+     */
+    public synchronized void setMaxMembers(final int members) {
+        if (members < 1) {
+            throw new IllegalArgumentException(String.format(
+                    "Need at least one member per cluster, got %s", members));
+        }
+        this.maxMembers = members;
+    }
+
+    /**
+     * @param document A document that was added to the corpus, to be assigned
+     *            to a cluster with the next batch
+     */
+    public synchronized void add(final Document document) {
+        pending.add(document);
+        if (pending.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Update the clusters with the documents added since the last update.
+     */
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        batch++;
+        List<SparseVector> vectors = new ArrayList<SparseVector>();
+        for (Document document : pending) {
+            SparseVector vector = vectorizer.vector(document, corpus, true);
+            vectors.add(vector.normalized());
+        }
+        Center[] assigned = new Center[vectors.size()];
+        float[] similarities = new float[vectors.size()];
+        boolean[] created = new boolean[vectors.size()];
+        seed(vectors, created);
+        /*
+         * Dann ordnen wir alle anderen Dokumente des Blocks den Mittelpunkten
+         * zu, wie sie vor dem Block waren (plus den neu entstandenen)...
+         */
+        for (int i = 0; i < vectors.size(); i++) {
+            if (created[i]) {
+                continue;
+            }
+            float max = Float.NEGATIVE_INFINITY;
+            for (Center center : centers) {
+                float s = center.similarity(vectors.get(i));
+                if (s > max) {
+                    max = s;
+                    assigned[i] = center;
+                }
+            }
+            similarities[i] = max;
+            if (centers.size() < maxClusters && max < creationThreshold) {
+                create(vectors, created, i);
+            }
+        }
+        /* ...dann bewegen wir jeden ein Stück auf seine neuen Dokumente zu: */
+        for (int i = 0; i < vectors.size(); i++) {
+            if (!created[i]) {
+                Center center = assigned[i];
+                step(center, vectors.get(i));
+                center.lastBatch = batch;
+                member(center, pending.get(i), similarities[i]);
+            }
+        }
+        for (Center center : centers) {
+            prune(center);
+            normalize(center);
+        }
+        retire();
+        pending.clear();
+    }
+
+    /*
+     * Solange wir weniger als k Cluster haben, beginnen wir neue mit den
+     * Dokumenten des Blocks, die den bisherigen Mittelpunkten am wenigsten
+     * ähnlich sind (so fangen nicht mehrere Cluster mit fast gleichen
+     * Dokumenten an, vgl. die k-means++-Initialisierung in KMeans).
+     */
+    private void seed(final List<SparseVector> vectors,
+            final boolean[] created) {
+        while (centers.size() < k) {
+            int next = -1;
+            float min = Float.POSITIVE_INFINITY;
+            for (int i = 0; i < vectors.size(); i++) {
+                if (!created[i]) {
+                    float max = Float.NEGATIVE_INFINITY;
+                    for (Center center : centers) {
+                        max = Math.max(max, center.similarity(vectors.get(i)));
+                    }
+                    if (max < min) {
+                        min = max;
+                        next = i;
+                    }
+                }
+            }
+            if (next < 0) {
+                return;
+            }
+            create(vectors, created, next);
+        }
+    }
+
+    private void create(final List<SparseVector> vectors,
+            final boolean[] created, final int i) {
+        Center center = new Center(vectors.get(i), batch);
+        centers.add(center);
+        created[i] = true;
+        member(center, pending.get(i), 1);
+    }
+
+    /*
+     * Ein erneut hinzugefügtes Dokument (etwa eine neue Version) rückt ans
+     * Ende; ist der Cluster voll, fällt das am längsten zugeordnete heraus.
+     */
+    private void member(final Center center, final Document document,
+            final float similarity) {
+        center.members.remove(document.getSource());
+        center.members.put(document.getSource(), new Member(similarity,
+                order++));
+        Iterator<String> oldest = center.members.keySet().iterator();
+        while (center.members.size() > maxMembers) {
+            oldest.next();
+            oldest.remove();
+        }
+    }
+
+    /*
+     * c = (1 - eta) c + eta x: statt jeden Wert von c mit (1 - eta) zu
+     * multiplizieren (den ganzen Vektor für jedes Dokument), merken wir uns
+     * den Faktor und teilen nur die Werte von x dadurch, die wir addieren.
+     * Dazu laufen wir wie beim Vereinigen von Postings-Listen gleichzeitig
+     * durch die sortierten Indizes von c und x.
+     */
+    private void step(final Center center, final SparseVector vector) {
+        center.count++;
+        float eta = 1f / center.count;
+        center.scale *= 1 - eta;
+        float factor = eta / center.scale;
+        int[] a = center.indices;
+        float[] aValues = center.values;
+        int[] b = vector.getIndices();
+        float[] bValues = vector.getValues();
+        int[] indices = new int[a.length + b.length];
+        float[] values = new float[indices.length];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length || j < b.length) {
+            if (j == b.length || (i < a.length && a[i] < b[j])) {
+                indices[n] = a[i];
+                values[n++] = aValues[i++];
+            } else if (i == a.length || b[j] < a[i]) {
+                indices[n] = b[j];
+                values[n++] = factor * bValues[j++];
+            } else {
+                indices[n] = a[i];
+                values[n++] = aValues[i++] + factor * bValues[j++];
+            }
+        }
+        center.indices = Arrays.copyOf(indices, n);
+        center.values = Arrays.copyOf(values, n);
+    }
+
+    /*
+     * Damit ein Mittelpunkt nicht mit dem Vokabular wächst, behalten wir nach
+     * jedem Block nur die maxTerms Terme mit den höchsten Gewichten (die
+     * anderen tragen kaum zur Ähnlichkeit bei); normalize gleicht die
+     * Länge danach wieder aus.
+     */
+    private void prune(final Center center) {
+        int n = center.values.length;
+        if (n <= maxTerms) {
+            return;
+        }
+        float[] sorted = new float[n];
+        for (int i = 0; i < n; i++) {
+            sorted[i] = Math.abs(center.values[i]);
+        }
+        Arrays.sort(sorted);
+        float min = sorted[n - maxTerms];
+        int[] indices = new int[maxTerms];
+        float[] values = new float[maxTerms];
+        int kept = 0;
+        for (int i = 0; i < n && kept < maxTerms; i++) {
+            if (Math.abs(center.values[i]) >= min) {
+                indices[kept] = center.indices[i];
+                values[kept++] = center.values[i];
+            }
+        }
+        center.indices = indices;
+        center.values = values;
+    }
+
+    private void normalize(final Center center) {
+        float length = center.scale * VectorKernels.norm(center.values);
+        if (length > 0) {
+            float factor = center.scale / length;
+            for (int i = 0; i < center.values.length; i++) {
+                center.values[i] *= factor;
+            }
+        }
+        center.scale = 1;
+    }
+
+    private void retire() {
+        if (retirementAge > 0) {
+            for (Iterator<Center> i = centers.iterator(); i.hasNext();) {
+                if (batch - i.next().lastBatch >= retirementAge) {
+                    i.remove();
+                }
+            }
+        }
+    }
+
+    /** @return The current number of clusters */
+    public synchronized int getNumberOfClusters() {
+        return centers.size();
+    }
+
+    /*
+     * Die Mitglieder sind die Dokumente, wie sie beim Verarbeiten ihres
+     * Blocks zugeordnet wurden; neu zugeordnet wird nicht (das hieße, das
+     * ganze Korpus neu zu vektorisieren). Kam ein Dokument mehrmals, zählt
+     * die letzte Zuordnung. Die Dokumente holen wir über ihre Quelle aus dem
+     * Korpus.
+     */
+    /**
+     * @return The current clusters, each with its most recently assigned
+     *         documents still in the corpus (see {@link #setMaxMembers(int)})
+     *         and the member most similar to the center when it was assigned
+     *         as the medoid; clusters without such documents are left out
+     */
+    public synchronized List<Cluster> getClusters() {
+        Map<String, Long> latest = new HashMap<String, Long>();
+        for (Center center : centers) {
+            for (Map.Entry<String, Member> entry : center.members.entrySet()) {
+                Long previous = latest.get(entry.getKey());
+                if (previous == null || previous < entry.getValue().order) {
+                    latest.put(entry.getKey(), entry.getValue().order);
+                }
+            }
+        }
+        List<Cluster> result = new ArrayList<Cluster>();
+        for (Center center : centers) {
+            List<Document> members = new ArrayList<Document>();
+            Document medoid = null;
+            float best = Float.NEGATIVE_INFINITY;
+            for (Map.Entry<String, Member> entry : center.members.entrySet()) {
+                Member member = entry.getValue();
+                Document document = latest.get(entry.getKey()) == member.order
+                        ? corpus.getDocument(entry.getKey())
+                        : null;
+                if (document != null) {
+                    members.add(document);
+                    if (member.similarity > best) {
+                        best = member.similarity;
+                        medoid = document;
+                    }
+                }
+            }
+            if (!members.isEmpty()) {
+                result.add(new Cluster(corpus, medoid, members));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public synchronized String toString() {
+        return String.format("%s with %s clusters after %s batches",
+                getClass().getSimpleName(), centers.size(), batch);
+    }
+}
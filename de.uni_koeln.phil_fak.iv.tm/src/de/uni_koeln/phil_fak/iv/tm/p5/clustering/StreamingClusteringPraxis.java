@@ -0,0 +1,179 @@
+/**
+ * Material for the course 'Text-Mining', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-textmining.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.tm.p5.clustering;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.uni_koeln.phil_fak.iv.ir.p2.index.DocumentIndex;
+import de.uni_koeln.phil_fak.iv.ir.p2.index.TermIndex;
+import de.uni_koeln.phil_fak.iv.ir.p6.crawler.WebDocument;
+import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Corpus;
+import de.uni_koeln.phil_fak.iv.tm.p1.corpus.Document;
+
+/*
+ * Tests für das Clustering eines wachsenden Korpus: die Dokumente kommen
+ * Block für Block dazu, wie beim Crawlen. Die Themen der Testdokumente sind
+ * (anders als bei SampleDocuments) klar getrennt, so dass jeder Cluster
+ * genau ein Thema haben muss.
+ */
+/**
+ * Tests for mini-batch clustering of documents as they are added.
+ * @author Fabian Steeg (fsteeg)
+ */
+public class StreamingClusteringPraxis {
+    private static final String[] TOPICS = { "politik", "sport", "kultur" };
+    private Corpus corpus;
+
+    @Before
+    public void before() {
+        corpus = new DocumentIndex();
+    }
+
+    @Test
+    public void incremental() {
+        StreamingClustering clustering = new StreamingClustering(corpus, 3, 10);
+        add(clustering, documents(45, 1, TOPICS));
+        /* Die letzten 5 warten noch auf ihren Block: */
+        Assert.assertEquals(3, clustering.getNumberOfClusters());
+        assertTopics(clustering.getClusters(), 40, 3);
+        clustering.flush();
+        assertTopics(clustering.getClusters(), 45, 3);
+        add(clustering, documents(45, 2, TOPICS));
+        clustering.flush();
+        assertTopics(clustering.getClusters(), 90, 3);
+        /* Erneut hinzugefügte Dokumente zählen nur einmal: */
+        add(clustering, documents(20, 2, TOPICS));
+        clustering.flush();
+        assertTopics(clustering.getClusters(), 90, 3);
+    }
+
+    @Test
+    public void maxMembers() {
+        StreamingClustering clustering = new StreamingClustering(corpus, 3, 10);
+        clustering.setMaxMembers(5);
+        add(clustering, documents(60, 3, TOPICS));
+        for (Cluster cluster : clustering.getClusters()) {
+            Assert.assertEquals(5, cluster.getDocuments().size());
+        }
+        assertTopics(clustering.getClusters(), 15, 3);
+    }
+
+    @Test
+    public void creation() {
+        StreamingClustering clustering = new StreamingClustering(corpus, 1, 10);
+        clustering.setCreation(0.2f, 3);
+        add(clustering, documents(40, 4, TOPICS[0], TOPICS[1]));
+        Assert.assertEquals(2, clustering.getNumberOfClusters());
+        assertTopics(clustering.getClusters(), 40, 2);
+        add(clustering, documents(30, 5, TOPICS));
+        Assert.assertEquals(3, clustering.getNumberOfClusters());
+        assertTopics(clustering.getClusters(), 70, 3);
+        /* Mehr als 3 werden es nicht: */
+        add(clustering, documents(20, 6, "wetter"));
+        Assert.assertEquals(3, clustering.getNumberOfClusters());
+    }
+
+    @Test
+    public void retirement() {
+        StreamingClustering clustering = new StreamingClustering(corpus, 2, 10);
+        clustering.setCreation(0.2f, 3);
+        clustering.setRetirement(2);
+        add(clustering, documents(40, 8, TOPICS[0], TOPICS[1]));
+        Assert.assertEquals(2, clustering.getNumberOfClusters());
+        /* Jetzt nur noch Kultur: nach 2 Blöcken fallen die anderen weg */
+        add(clustering, documents(10, 9, TOPICS[2]));
+        Assert.assertEquals(3, clustering.getNumberOfClusters());
+        add(clustering, documents(10, 10, TOPICS[2]));
+        Assert.assertEquals(1, clustering.getNumberOfClusters());
+        assertTopics(clustering.getClusters(), 20, 1);
+        /* Mit dem nächsten Block beginnt wieder ein zweiter Cluster: */
+        add(clustering, documents(10, 11, TOPICS[0]));
+        Assert.assertEquals(2, clustering.getNumberOfClusters());
+        assertTopics(clustering.getClusters(), 30, 2);
+    }
+
+    private void add(final StreamingClustering clustering,
+            final List<Document> documents) {
+        for (Document document : documents) {
+            corpus.add(document);
+            clustering.add(document);
+        }
+    }
+
+    /*
+     * Jedes Dokument besteht aus Wörtern seines Themas und ein paar
+     * gemeinsamen Wörtern (nur Buchstaben, da Ziffern bei der
+     * Vorverarbeitung wegfallen).
+     */
+    private static List<Document> documents(final int count, final long seed,
+            final String... topics) {
+        Random random = new Random(seed);
+        List<Document> result = new ArrayList<Document>(count);
+        for (int i = 0; i < count; i++) {
+            String topic = topics[random.nextInt(topics.length)];
+            StringBuilder content = new StringBuilder();
+            for (int j = 0; j < 8; j++) {
+                content.append(topic).append((char) ('a' + random.nextInt(4)))
+                        .append(' ');
+            }
+            for (int j = 0; j < 2; j++) {
+                content.append("common").append(
+                        (char) ('a' + random.nextInt(10))).append(' ');
+            }
+            result.add(WebDocument.restore(String.format(
+                    "http://www.spiegel.de/%s/%s-%s.html", topic, seed, i),
+                    new HashSet<String>(), new TermIndex(content.toString())));
+        }
+        return result;
+    }
+
+    /* Jedes Dokument in genau einem Cluster, jeder Cluster ein Thema: */
+    private void assertTopics(final List<Cluster> clusters, final int size,
+            final int topics) {
+        Set<String> sources = new HashSet<String>();
+        Set<String> all = new HashSet<String>();
+        for (Cluster cluster : clusters) {
+            Map<String, Integer> counts = new HashMap<String, Integer>();
+            for (Document document : cluster) {
+                Assert.assertTrue(sources.add(document.getSource()));
+                Integer count = counts.get(document.getTopic());
+                counts.put(document.getTopic(), count == null ? 1 : count + 1);
+            }
+            Assert.assertEquals(counts.toString(), 1, counts.size());
+            all.addAll(counts.keySet());
+            Assert.assertTrue(cluster.getDocuments().contains(
+                    cluster.getMedoid()));
+        }
+        Assert.assertEquals(size, sources.size());
+        Assert.assertEquals(all.toString(), topics, all.size());
+        Assert.assertEquals(topics, clusters.size());
+    }
+}
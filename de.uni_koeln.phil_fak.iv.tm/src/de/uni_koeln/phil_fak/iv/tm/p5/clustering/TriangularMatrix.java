@@ -0,0 +1,90 @@
+/**
+ * Material for the course 'Text-Mining', University of Cologne.
+ * (http://www.spinfo.phil-fak.uni-koeln.de/spinfo-textmining.html)
+ * <p/>
+ * Copyright (C) 2008-2009 Fabian Steeg
+ * <p/>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_koeln.phil_fak.iv.tm.p5.clustering;
+
+import de.uni_koeln.phil_fak.iv.tm.p3.classification.ParallelClassification;
+
+/*
+ * Die Werte aller Paare (Distanzen oder Ähnlichkeiten) sind symmetrisch und
+ * auf der Diagonalen uninteressant; wir speichern deshalb nur die obere
+ * Dreiecksmatrix, zeilenweise hintereinander in einem float-Array, also
+ * n (n - 1) / 2 statt n^2 Werte. Die Zeilen werden parallel berechnet, jede
+ * als eigener Block, da sie verschieden lang sind.
+ */
+/**
+ * Pairwise values of n elements as a condensed upper triangular matrix.
+ * @author Fabian Steeg (fsteeg)
+ */
+final class TriangularMatrix {
+
+    /** The value of a pair of elements. */
+    interface Entry {
+        /**
+         * @param i The first element
+         * @param j The second element, greater than i
+         * @return The value for the pair
+         */
+        float value(int i, int j);
+    }
+
+    private TriangularMatrix() {
+    // Enforce non-instantiability with a private constructor
+    }
+
+    /**
+     * @param n The number of elements
+     * @param threads The number of threads to compute the rows with
+     * @param entry The value of each pair
+     * @return The values of all pairs, at the positions given by
+     *         {@link #index(int, int, int)}
+     */
+    static float[] compute(final int n, final int threads, final Entry entry) {
+        long size = (long) n * (n - 1) / 2;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalStateException(String.format(
+                    "Too many elements for a triangular matrix: %s", n));
+        }
+        final float[] result = new float[(int) size];
+        ParallelClassification.forEachBlock(Math.max(0, n - 1), threads, 1,
+                new ParallelClassification.Block() {
+                    public void run(final int from, final int to) {
+                        for (int row = from; row < to; row++) {
+                            int offset = index(row, row + 1, n);
+                            for (int j = row + 1; j < n; j++) {
+                                result[offset++] = entry.value(row, j);
+                            }
+                        }
+                    }
+                });
+        return result;
+    }
+
+    /**
+     * @param i An element
+     * @param j Another element (smaller or greater than i)
+     * @param n The number of elements
+     * @return The position of the pair in the matrix of n elements
+     */
+    static int index(final int i, final int j, final int n) {
+        int a = Math.min(i, j);
+        int b = Math.max(i, j);
+        return (int) ((long) a * (2L * n - a - 1) / 2 + (b - a - 1));
+    }
+}